@@ -0,0 +1,54 @@
+package com.ufcg.psoft.mercadofacil.carga;
+
+import com.ufcg.psoft.mercadofacil.repository.ProdutoCacheRepository;
+import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Troca o repositorio de produtos usado pelos controladores por um proxy que
+ * bloqueia a thread por {@code carga.latencia} a cada chamada, como faria um
+ * repositorio apoiado em I/O, e conta quantas chamadas estao em andamento ao
+ * mesmo tempo. Registrado apenas pelo {@link TesteDeCarga}.
+ */
+public class LatenciaSimulada implements BeanPostProcessor {
+
+    private final Duration latencia;
+
+    private final AtomicInteger emAndamento = new AtomicInteger();
+
+    private final AtomicInteger maximoEmAndamento = new AtomicInteger();
+
+    public LatenciaSimulada(@Value("${carga.latencia:50ms}") Duration latencia) {
+        this.latencia = latencia;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ProdutoCacheRepository)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ProdutoRepository.class},
+                (proxy, metodo, argumentos) -> {
+                    maximoEmAndamento.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(latencia);
+                        return metodo.invoke(bean, argumentos);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        emAndamento.decrementAndGet();
+                    }
+                });
+    }
+
+    /** Maior numero de chamadas simultaneas desde a ultima consulta. */
+    public int consumirMaximoEmAndamento() {
+        return maximoEmAndamento.getAndSet(0);
+    }
+}
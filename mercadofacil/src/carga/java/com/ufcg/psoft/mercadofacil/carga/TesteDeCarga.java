@@ -0,0 +1,143 @@
+package com.ufcg.psoft.mercadofacil.carga;
+
+import com.ufcg.psoft.mercadofacil.MercadofacilApplication;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.repository.VolatilProdutoRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de carga de {@code GET /v1/produtos} com latencia simulada no
+ * repositorio. Para cada modo (threads de plataforma e threads virtuais) sobe
+ * a aplicacao em uma porta livre e, para cada nivel de concorrencia, mantem
+ * esse numero de clientes fazendo requisicoes em laco fechado durante a
+ * duracao pedida. Imprime vazao, p50, p99, maximo e o maior numero de
+ * requisicoes que chegaram ao repositorio ao mesmo tempo.
+ *
+ * <p>Argumentos opcionais: {@code latencia=50ms duracao=10s
+ * concorrencia=50,200,800 threads-plataforma=200}.
+ */
+public class TesteDeCarga {
+
+    record Resultado(long requisicoes, long erros, double porSegundo, long[] latencias) {
+
+        double percentil(double p) {
+            if (latencias.length == 0) {
+                return Double.NaN;
+            }
+            int posicao = (int) Math.ceil(p * latencias.length) - 1;
+            return latencias[Math.max(0, posicao)] / 1e6;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> parametros = new HashMap<>();
+        for (String arg : args) {
+            String[] chaveValor = arg.split("=", 2);
+            parametros.put(chaveValor[0], chaveValor[1]);
+        }
+        String latencia = parametros.getOrDefault("latencia", "50ms");
+        Duration duracao = Duration.parse("PT" + parametros.getOrDefault("duracao", "10s"));
+        int[] concorrencias = Arrays.stream(parametros.getOrDefault("concorrencia", "50,200,800").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        String threadsPlataforma = parametros.getOrDefault("threads-plataforma", "200");
+
+        System.out.printf("latencia do repositorio=%s duracao=%s threads de plataforma=%s%n",
+                latencia, duracao, threadsPlataforma);
+        System.out.printf("%-10s %12s %10s %10s %10s %10s %14s %8s%n",
+                "modo", "concorrencia", "req/s", "p50 ms", "p99 ms", "max ms", "max simultaneo", "erros");
+        for (boolean virtuais : new boolean[] {false, true}) {
+            try (var contexto = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+                    MercadofacilApplication.class, LatenciaSimulada.class)
+                    .run(
+                            "--server.port=0",
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.root=WARN",
+                            "--server.tomcat.threads.max=" + threadsPlataforma,
+                            "--server.tomcat.max-connections=20000",
+                            "--server.tomcat.accept-count=10000",
+                            "--mercadofacil.threads.virtuais=" + virtuais,
+                            "--carga.latencia=" + latencia)) {
+                VolatilProdutoRepository produtos = contexto.getBean(VolatilProdutoRepository.class);
+                for (long id = 1; id <= 100; id++) {
+                    produtos.save(Produto.builder().id(id).nome("Produto " + id).preco(id)
+                            .codigoBarra("cb-" + id).fabricante("Fabricante").build());
+                }
+                LatenciaSimulada latenciaSimulada = contexto.getBean(LatenciaSimulada.class);
+                URI uri = URI.create("http://localhost:" + contexto.getWebServer().getPort() + "/v1/produtos?limit=10");
+                for (int concorrencia : concorrencias) {
+                    executar(uri, concorrencia, Duration.ofSeconds(2));
+                    latenciaSimulada.consumirMaximoEmAndamento();
+                    Resultado resultado = executar(uri, concorrencia, duracao);
+                    System.out.printf("%-10s %12d %10.0f %10.1f %10.1f %10.1f %14d %8d%n",
+                            virtuais ? "virtuais" : "plataforma", concorrencia, resultado.porSegundo(),
+                            resultado.percentil(0.50), resultado.percentil(0.99), resultado.percentil(1.0),
+                            latenciaSimulada.consumirMaximoEmAndamento(), resultado.erros());
+                }
+            }
+        }
+    }
+
+    static Resultado executar(URI uri, int concorrencia, Duration duracao) throws Exception {
+        AtomicLong erros = new AtomicLong();
+        long fim = System.nanoTime() + duracao.toNanos();
+        List<Future<long[]>> clientes = new ArrayList<>(concorrencia);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient cliente = HttpClient.newBuilder()
+                     .executor(executor)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            HttpRequest requisicao = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+            for (int i = 0; i < concorrencia; i++) {
+                clientes.add(executor.submit(() -> {
+                    long[] latencias = new long[1024];
+                    int n = 0;
+                    while (System.nanoTime() < fim) {
+                        long inicio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> resposta = cliente.send(requisicao, HttpResponse.BodyHandlers.discarding());
+                            if (resposta.statusCode() != 200) {
+                                erros.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            erros.incrementAndGet();
+                            continue;
+                        }
+                        if (n == latencias.length) {
+                            latencias = Arrays.copyOf(latencias, n * 2);
+                        }
+                        latencias[n++] = System.nanoTime() - inicio;
+                    }
+                    return Arrays.copyOf(latencias, n);
+                }));
+            }
+            long[] todas = new long[0];
+            for (Future<long[]> futuro : clientes) {
+                long[] latencias = futuro.get();
+                int anterior = todas.length;
+                todas = Arrays.copyOf(todas, anterior + latencias.length);
+                System.arraycopy(latencias, 0, todas, anterior, latencias.length);
+            }
+            Arrays.sort(todas);
+            double segundos = duracao.toNanos() / 1e9;
+            return new Resultado(todas.length, erros.get(), todas.length / segundos, todas);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import com.ufcg.psoft.mercadofacil.MercadofacilApplication;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import jakarta.servlet.Filter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.ResolvableType;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Custo da instrumentacao em uma requisicao inteira: {@code PUT /v1/produtos/10}
+ * contra a aplicacao completa. {@code desligadas} desliga tudo
+ * ({@code management.metrics.enable.all=false}), {@code http} mantem so o
+ * {@code http.server.requests} do Spring Boot e {@code ligadas} e o padrao,
+ * com os Timers de servico e repositorio. A requisicao passa pelo MockMvc com os filtros
+ * da aplicacao, sem a rede local, cuja variacao e maior que a diferenca medida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequisicaoMetricasBenchmark {
+
+    @Param({"desligadas", "http", "ligadas"})
+    String metricas;
+
+    ServletWebServerApplicationContext contexto;
+
+    MockMvc mockMvc;
+
+    RequestBuilder requisicao;
+
+    @Setup
+    public void setup() {
+        contexto = (ServletWebServerApplicationContext) new SpringApplicationBuilder(MercadofacilApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--mercadofacil.metricas.habilitadas=" + metricas.equals("ligadas"),
+                        "--management.metrics.enable.all=" + !metricas.equals("desligadas"));
+        ProdutoRepository<Produto, Long> produtos = contexto.<ProdutoRepository<Produto, Long>>getBeanProvider(
+                ResolvableType.forClassWithGenerics(ProdutoRepository.class, Produto.class, Long.class)).getObject();
+        produtos.save(Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build());
+        mockMvc = MockMvcBuilders.webAppContextSetup(contexto)
+                .addFilters(contexto.getBeansOfType(Filter.class).values().toArray(new Filter[0]))
+                .build();
+        requisicao = put("/v1/produtos/10")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":10,\"nome\":\"Produto Dez\",\"codigoBarra\":\"7899137500100\","
+                        + "\"fabricante\":\"Empresa Dez\",\"preco\":450.0}");
+    }
+
+    @TearDown
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int alterarProduto() throws Exception {
+        return mockMvc.perform(requisicao).andReturn().getResponse().getStatus();
+    }
+}
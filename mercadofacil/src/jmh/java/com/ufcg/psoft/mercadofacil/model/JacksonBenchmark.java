@@ -0,0 +1,94 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serializacao JSON de Produto e Lote. O ObjectMapper registra o
+ * ParameterNamesModule da mesma forma que a autoconfiguracao do Spring Boot,
+ * que e o que permite criar os modelos pelo construtor gerado pelo Lombok.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+
+    ObjectWriter produtoWriter;
+
+    ObjectReader produtoReader;
+
+    ObjectWriter loteWriter;
+
+    ObjectReader loteReader;
+
+    Produto produto;
+
+    Lote lote;
+
+    String produtoJson;
+
+    String loteJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
+        produtoWriter = objectMapper.writerFor(Produto.class);
+        produtoReader = objectMapper.readerFor(Produto.class);
+        loteWriter = objectMapper.writerFor(Lote.class);
+        loteReader = objectMapper.readerFor(Lote.class);
+        produto = Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build();
+        lote = Lote.builder()
+                .id(1L)
+                .numeroDeItens(100)
+                .produto(produto)
+                .build();
+        produtoJson = produtoWriter.writeValueAsString(produto);
+        loteJson = loteWriter.writeValueAsString(lote);
+    }
+
+    @Benchmark
+    public String serializarProduto() throws JsonProcessingException {
+        return produtoWriter.writeValueAsString(produto);
+    }
+
+    @Benchmark
+    public Produto desserializarProduto() throws JsonProcessingException {
+        return produtoReader.readValue(produtoJson);
+    }
+
+    @Benchmark
+    public String serializarLote() throws JsonProcessingException {
+        return loteWriter.writeValueAsString(lote);
+    }
+
+    @Benchmark
+    public Lote desserializarLote() throws JsonProcessingException {
+        return loteReader.readValue(loteJson);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codecs binarios contra o JacksonCodec, codificando e decodificando o mesmo
+ * Produto e Lote em um ByteBuffer direto, como faz o log de escrita.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    Codec<Produto> produtoBinario;
+
+    Codec<Produto> produtoJackson;
+
+    Codec<Lote> loteBinario;
+
+    Codec<Lote> loteJackson;
+
+    Produto produto;
+
+    Lote lote;
+
+    ByteBuffer destino;
+
+    ByteBuffer produtoBinarioCodificado;
+
+    ByteBuffer produtoJacksonCodificado;
+
+    ByteBuffer loteBinarioCodificado;
+
+    ByteBuffer loteJacksonCodificado;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
+        produtoBinario = new ProdutoCodec();
+        produtoJackson = new JacksonCodec<>(objectMapper, Produto.class);
+        loteBinario = new LoteCodec();
+        loteJackson = new JacksonCodec<>(objectMapper, Lote.class);
+        produto = Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build();
+        lote = Lote.builder()
+                .id(1L)
+                .numeroDeItens(100)
+                .produto(produto)
+                .build();
+        destino = ByteBuffer.allocateDirect(4096);
+        produtoBinarioCodificado = codificado(produtoBinario, produto);
+        produtoJacksonCodificado = codificado(produtoJackson, produto);
+        loteBinarioCodificado = codificado(loteBinario, lote);
+        loteJacksonCodificado = codificado(loteJackson, lote);
+    }
+
+    @Benchmark
+    public int codificarProdutoBinario() {
+        destino.clear();
+        produtoBinario.codificar(produto, destino);
+        return destino.position();
+    }
+
+    @Benchmark
+    public int codificarProdutoJackson() {
+        destino.clear();
+        produtoJackson.codificar(produto, destino);
+        return destino.position();
+    }
+
+    @Benchmark
+    public Produto decodificarProdutoBinario() {
+        return produtoBinario.decodificar(produtoBinarioCodificado.duplicate());
+    }
+
+    @Benchmark
+    public Produto decodificarProdutoJackson() {
+        return produtoJackson.decodificar(produtoJacksonCodificado.duplicate());
+    }
+
+    @Benchmark
+    public int codificarLoteBinario() {
+        destino.clear();
+        loteBinario.codificar(lote, destino);
+        return destino.position();
+    }
+
+    @Benchmark
+    public int codificarLoteJackson() {
+        destino.clear();
+        loteJackson.codificar(lote, destino);
+        return destino.position();
+    }
+
+    @Benchmark
+    public Lote decodificarLoteBinario() {
+        return loteBinario.decodificar(loteBinarioCodificado.duplicate());
+    }
+
+    @Benchmark
+    public Lote decodificarLoteJackson() {
+        return loteJackson.decodificar(loteJacksonCodificado.duplicate());
+    }
+
+    private static <T> ByteBuffer codificado(Codec<T> codec, T valor) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        codec.codificar(valor, buffer);
+        return buffer.flip();
+    }
+}
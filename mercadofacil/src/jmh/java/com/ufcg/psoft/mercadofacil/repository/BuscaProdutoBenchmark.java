@@ -0,0 +1,74 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia (p50/p99 no modo SampleTime) de {@code search} sobre um catalogo
+ * com nomes e fabricantes acentuados. As consultas vao de um prefixo curto e
+ * pouco seletivo a combinacoes de palavras que casam com poucos produtos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BuscaProdutoBenchmark {
+
+    static final String[] ITENS = {"Açúcar", "Café", "Feijão", "Arroz", "Macarrão", "Óleo", "Farinha",
+            "Leite", "Manteiga", "Pão", "Biscoito", "Sabão", "Detergente", "Maçã", "Limão", "Molho",
+            "Achocolatado", "Requeijão", "Iogurte", "Salsicha"};
+
+    static final String[] VARIEDADES = {"Refinado", "Cristal", "Torrado", "Moído", "Carioca", "Preto",
+            "Integral", "Parboilizado", "Espaguete", "Parafuso", "Soja", "Girassol", "Trigo", "Mandioca",
+            "Desnatado", "Integral", "Sem Sal", "Francês", "Recheado", "Em Pó", "Líquido", "Fuji",
+            "Tahiti", "Tomate", "Natural"};
+
+    static final String[] MARCAS = {"União", "Pilão", "Camil", "Tio João", "Dona Benta", "Liza",
+            "Itambé", "Aviação", "Nestlé", "Ypê", "Omo", "Sadia", "Perdigão", "Quero", "Vigor"};
+
+    @Param({"1000000"})
+    int tamanho;
+
+    @Param({"a", "cafe", "feij cari", "acucar uniao", "arroz integral camil 1"})
+    String consulta;
+
+    VolatilProdutoRepository repository;
+
+    @Setup
+    public void setup() {
+        repository = new VolatilProdutoRepository();
+        Random aleatorio = new Random(42);
+        for (long id = 1; id <= tamanho; id++) {
+            repository.save(Produto.builder()
+                    .id(id)
+                    .nome(ITENS[aleatorio.nextInt(ITENS.length)] + " "
+                            + VARIEDADES[aleatorio.nextInt(VARIEDADES.length)] + " "
+                            + (1 + aleatorio.nextInt(5000)) + "g")
+                    .codigoBarra("cb-" + id)
+                    .fabricante(MARCAS[aleatorio.nextInt(MARCAS.length)] + " " + aleatorio.nextInt(200))
+                    .preco(1 + id % 500)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<Produto> search() {
+        return repository.search(consulta, 20);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o repositorio volatil com o colunar no mesmo catalogo: latencia de
+ * leitura, a pausa de uma coleta completa ({@code gcCompleto}, em tiro unico)
+ * e, ao fim de cada rodada, o heap ocupado depois de uma coleta e os bytes
+ * reservados fora do heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=1g"})
+public class ColunarProdutoRepositoryBenchmark {
+
+    @Param({"volatil", "colunar"})
+    String armazenamento;
+
+    @Param({"1000000"})
+    int tamanho;
+
+    ProdutoRepository<Produto, Long> repository;
+
+    @Setup
+    public void setup() {
+        repository = armazenamento.equals("colunar") ? new ColunarProdutoRepository() : new VolatilProdutoRepository();
+        for (long id = 1; id <= tamanho; id++) {
+            repository.save(produto(id));
+        }
+    }
+
+    @TearDown
+    public void relatorio() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        long foraDoHeap = repository instanceof ColunarProdutoRepository colunar ? colunar.bytesForaDoHeap() : 0;
+        System.out.printf("%n%s: heap apos GC %d MB, fora do heap %d MB%n",
+                armazenamento, heap >> 20, foraDoHeap >> 20);
+    }
+
+    @Benchmark
+    public Produto find() {
+        return repository.find(idAleatorio());
+    }
+
+    @Benchmark
+    public Produto findByCodigoBarra() {
+        return repository.findByCodigoBarra(codigoBarra(idAleatorio()));
+    }
+
+    @Benchmark
+    public Produto update() {
+        return repository.update(produto(idAleatorio()));
+    }
+
+    @Benchmark
+    public List<Produto> findPagePorPreco() {
+        return repository.findPage(idAleatorio(), 20, Ordenacao.PRECO);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public void gcCompleto() {
+        System.gc();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, tamanho + 1L);
+    }
+
+    /* EAN-13 valido derivado do id, com digito verificador. */
+    static String codigoBarra(long id) {
+        String base = String.format("789%09d", id);
+        int soma = 0;
+        for (int i = 0; i < 12; i++) {
+            soma += (base.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return base + (10 - soma % 10) % 10;
+    }
+
+    static Produto produto(long id) {
+        return Produto.builder()
+                .id(id)
+                .nome("Produto " + id)
+                .codigoBarra(codigoBarra(id))
+                .fabricante("Fabricante " + (id % 1000))
+                .preco(1 + id % 500)
+                .build();
+    }
+}
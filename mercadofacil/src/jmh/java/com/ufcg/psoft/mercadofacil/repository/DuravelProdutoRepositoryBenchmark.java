@@ -0,0 +1,164 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.LogDeEscrita;
+import com.ufcg.psoft.mercadofacil.persistencia.ProdutoCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Escritas por segundo com fsync (uma thread e 64 threads, que e onde o group
+ * commit junta varios registros por force), a distribuicao da latencia de uma
+ * escrita, cada uma esperando o disco ou com escrita adiada, e tempo de
+ * recuperacao de um log ou de um snapshot com ate 10M produtos.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class DuravelProdutoRepositoryBenchmark {
+
+    static final Codec<Produto> CODEC = new ProdutoCodec();
+
+    static final int IDS_ESCRITA = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Escrita {
+
+        @Param({"sincrona", "adiada"})
+        String modo;
+
+        Path diretorio;
+
+        DuravelProdutoRepository repository;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            diretorio = Files.createTempDirectory("mercadofacil-wal");
+            repository = new DuravelProdutoRepository(diretorio, CODEC,
+                    new LogDeEscrita.Configuracao(1_000_000, 4096, true,
+                            LogDeEscrita.Configuracao.CAPACIDADE_FILA_PADRAO, modo.equals("adiada")));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            repository.close();
+            apagar(diretorio);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recuperacao {
+
+        @Param({"1000000", "10000000"})
+        int tamanho;
+
+        @Param({"log", "snapshot"})
+        String origem;
+
+        Path diretorio;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            diretorio = Files.createTempDirectory("mercadofacil-wal");
+            long registrosPorSnapshot = origem.equals("snapshot") ? tamanho : Long.MAX_VALUE;
+            LogDeEscrita<Produto> log = new LogDeEscrita<>(diretorio, "produtos", CODEC,
+                    new LogDeEscrita.Configuracao(registrosPorSnapshot, 65536, false));
+            log.abrir(new LogDeEscrita.Aplicador<>() {
+                @Override
+                public void gravar(Produto produto) {
+                }
+
+                @Override
+                public void remover(long id) {
+                }
+
+                @Override
+                public void limpar() {
+                }
+            }, () -> LongStream.rangeClosed(1, tamanho).mapToObj(VolatilProdutoRepositoryBenchmark::produto));
+            for (long id = 1; id <= tamanho; id++) {
+                log.gravar(id, VolatilProdutoRepositoryBenchmark.produto(id));
+            }
+            log.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            apagar(diretorio);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(1)
+    public Produto save(Escrita escrita) {
+        return escrita.repository.save(VolatilProdutoRepositoryBenchmark.produto(idAleatorio()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(64)
+    public Produto saveConcorrente(Escrita escrita) {
+        return escrita.repository.save(VolatilProdutoRepositoryBenchmark.produto(idAleatorio()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(4)
+    public Produto saveLatencia(Escrita escrita) {
+        return escrita.repository.save(VolatilProdutoRepositoryBenchmark.produto(idAleatorio()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int recuperar(Recuperacao recuperacao) throws IOException {
+        try (DuravelProdutoRepository repository = new DuravelProdutoRepository(recuperacao.diretorio, CODEC,
+                new LogDeEscrita.Configuracao(Long.MAX_VALUE, 4096, false))) {
+            return repository.memoria.produtos.tamanho();
+        }
+    }
+
+    private static long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, IDS_ESCRITA + 1L);
+    }
+
+    static void apagar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(arquivo);
+            }
+        }
+    }
+}
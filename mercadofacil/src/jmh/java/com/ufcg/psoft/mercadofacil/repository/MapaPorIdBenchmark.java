@@ -0,0 +1,92 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o {@link MapaPorId} com o {@code ConcurrentHashMap<Long, T>} que os
+ * repositorios usavam: busca e substituicao por id aleatorio e, no setup, os
+ * bytes de heap por entrada. Todas as entradas apontam para o mesmo valor,
+ * entao a medida de memoria e so a do mapa, com chaves e nos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MapaPorIdBenchmark {
+
+    private static final Object VALOR = new Object();
+
+    @Param({"mapaPorId", "concurrentHashMap"})
+    String estrutura;
+
+    @Param({"1000000"})
+    int tamanho;
+
+    MapaPorId<Object> mapaPorId;
+
+    ConcurrentHashMap<Long, Object> concurrentHashMap;
+
+    @Setup
+    public void setup() {
+        long antes = heapAposGc();
+        if (estrutura.equals("mapaPorId")) {
+            mapaPorId = new MapaPorId<>();
+            for (long id = 1; id <= tamanho; id++) {
+                mapaPorId.put(id, VALOR);
+            }
+        } else {
+            concurrentHashMap = new ConcurrentHashMap<>();
+            for (long id = 1; id <= tamanho; id++) {
+                concurrentHashMap.put(id, VALOR);
+            }
+        }
+        System.out.printf("%n%s: %.1f bytes por entrada%n", estrutura,
+                (double) (heapAposGc() - antes) / tamanho);
+    }
+
+    @Benchmark
+    public Object get() {
+        long id = idAleatorio();
+        return mapaPorId != null ? mapaPorId.get(id) : concurrentHashMap.get(id);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getConcorrente() {
+        return get();
+    }
+
+    @Benchmark
+    public Object put() {
+        long id = idAleatorio();
+        return mapaPorId != null ? mapaPorId.put(id, VALOR) : concurrentHashMap.put(id, VALOR);
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, tamanho + 1L);
+    }
+
+    private static long heapAposGc() {
+        System.gc();
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
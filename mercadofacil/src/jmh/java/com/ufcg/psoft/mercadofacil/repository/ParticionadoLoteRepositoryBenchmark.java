@@ -0,0 +1,92 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escalabilidade do repositorio particionado de 1 a 64 threads, com
+ * particoes = 1 como referencia sem particao. Cada operacao escolhe um lote
+ * ao acaso entre 100 mil: nove em cada dez sao leituras e a decima reserva e
+ * libera um item. {@code totalEstoque} mede o custo de reunir as particoes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ParticionadoLoteRepositoryBenchmark {
+
+    static final int LOTES = 100_000;
+
+    @Param({"1", "16", "64"})
+    int particoes;
+
+    ParticionadoLoteRepository repository;
+
+    @Setup
+    public void setup() {
+        repository = new ParticionadoLoteRepository(particoes);
+        for (int i = 1; i <= LOTES; i++) {
+            repository.save(Lote.builder()
+                    .numeroDeItens(1_000_000)
+                    .produto(Produto.builder().id((long) i % 500).fabricante("Fabricante " + i % 50).preco(10).build())
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Lote misto1Thread() {
+        return misto();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Lote misto4Threads() {
+        return misto();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Lote misto16Threads() {
+        return misto();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Lote misto64Threads() {
+        return misto();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object totalEstoque() {
+        return repository.totalEstoque();
+    }
+
+    private Lote misto() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        long id = aleatorio.nextLong(LOTES) + 1;
+        if (aleatorio.nextInt(10) != 0) {
+            return repository.find(id);
+        }
+        repository.reservar(id, 1);
+        return repository.liberar(id, 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contencao sobre um unico lote: cada operacao reserva e libera um item, de
+ * modo que o estoque nunca acaba, com 1 a 128 threads disputando o mesmo
+ * contador.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservaEstoqueBenchmark {
+
+    static final long LOTE_QUENTE = 1L;
+
+    VolatilLoteRepository repository;
+
+    @Setup
+    public void setup() {
+        repository = new VolatilLoteRepository();
+        repository.save(Lote.builder()
+                .id(LOTE_QUENTE)
+                .numeroDeItens(1_000_000)
+                .produto(Produto.builder().id(1L).preco(10).build())
+                .build());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Lote reservarLiberar1Thread() {
+        return reservarLiberar();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Lote reservarLiberar8Threads() {
+        return reservarLiberar();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Lote reservarLiberar32Threads() {
+        return reservarLiberar();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public Lote reservarLiberar128Threads() {
+        return reservarLiberar();
+    }
+
+    private Lote reservarLiberar() {
+        repository.reservar(LOTE_QUENTE, 1);
+        return repository.liberar(LOTE_QUENTE, 1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class VolatilLoteRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int tamanho;
+
+    VolatilLoteRepository repository;
+
+    Produto produto;
+
+    @Setup
+    public void setup() {
+        repository = new VolatilLoteRepository();
+        produto = Produto.builder()
+                .id(1L)
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+        for (long id = 1; id <= tamanho; id++) {
+            repository.save(lote(id));
+        }
+    }
+
+    @Benchmark
+    public Lote find() {
+        return repository.find(idAleatorio());
+    }
+
+    @Benchmark
+    public Lote save() {
+        return repository.save(lote(idAleatorio()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Lote> findAll() {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public TotalEstoque totalEstoquePorFabricante() {
+        return repository.totalEstoquePorFabricante("Fabricante Base");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ResumoEstoque recalcularEstoque() {
+        return repository.recalcularEstoque();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, tamanho + 1L);
+    }
+
+    private Lote lote(long id) {
+        return Lote.builder()
+                .id(id)
+                .numeroDeItens(100)
+                .produto(produto)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class VolatilProdutoRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int tamanho;
+
+    VolatilProdutoRepository repository;
+
+    @Setup
+    public void setup() {
+        repository = new VolatilProdutoRepository();
+        for (long id = 1; id <= tamanho; id++) {
+            repository.save(produto(id));
+        }
+    }
+
+    @Benchmark
+    public Produto find() {
+        return repository.find(idAleatorio());
+    }
+
+    @Benchmark
+    public Produto findByCodigoBarra() {
+        return repository.findByCodigoBarra(codigoBarra(idAleatorio()));
+    }
+
+    @Benchmark
+    public Produto save() {
+        return repository.save(produto(idAleatorio()));
+    }
+
+    @Benchmark
+    public List<Produto> findPagePorId() {
+        return repository.findPage(idAleatorio(), 20, Ordenacao.ID);
+    }
+
+    @Benchmark
+    public List<Produto> findPagePorPreco() {
+        return repository.findPage(idAleatorio(), 20, Ordenacao.PRECO);
+    }
+
+    @Benchmark
+    public List<Produto> findByPreco() {
+        double minimo = ThreadLocalRandom.current().nextInt(1, 450);
+        return repository.findByPreco(minimo, minimo + 40, null, 20);
+    }
+
+    @Benchmark
+    public List<Produto> findMaisCaros() {
+        return repository.findMaisCaros(20);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Produto> findAll() {
+        return repository.findAll();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, tamanho + 1L);
+    }
+
+    static String codigoBarra(long id) {
+        return "cb-" + id;
+    }
+
+    static Produto produto(long id) {
+        return Produto.builder()
+                .id(id)
+                .nome("Produto " + id)
+                .codigoBarra(codigoBarra(id))
+                .fabricante("Fabricante " + (id % 1000))
+                .preco(1 + id % 500)
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ufcg.psoft.mercadofacil.model.ResultadoImportacao;
+import com.ufcg.psoft.mercadofacil.repository.VolatilClienteRepository;
+import com.ufcg.psoft.mercadofacil.validator.CpfValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importacao de uma base de clientes inteira em um repositorio vazio, em
+ * tiro unico. O arquivo e gerado sob demanda enquanto e lido, sem ocupar
+ * memoria, com CPFs validos e distintos e poucos enderecos repetidos. Ao fim
+ * de cada rodada sao impressas as linhas por segundo medidas pelo servico.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=1g"})
+public class ClienteImportacaoBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int linhas;
+
+    @Param({"CSV", "NDJSON"})
+    FormatoImportacao formato;
+
+    ClienteCadastroImplService service;
+
+    ResultadoImportacao resultado;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        service = new ClienteCadastroImplService();
+        service.clienteRepository = new VolatilClienteRepository();
+        service.cpfValidator = new CpfValidator();
+        service.objectMapper = new ObjectMapper();
+        System.gc();
+    }
+
+    @TearDown(Level.Iteration)
+    public void relatorio() {
+        System.out.printf("%n%s: %d linhas, %d importadas, %d linhas/s%n", formato, resultado.getLinhas(),
+                resultado.getImportados(), resultado.getLinhasPorSegundo());
+        service = null;
+    }
+
+    @Benchmark
+    public ResultadoImportacao importar() throws IOException {
+        resultado = service.importar(new ArquivoGerado(linhas, formato), formato);
+        return resultado;
+    }
+
+    /* CPF valido cujos nove primeiros digitos sao o numero da linha. */
+    static long cpf(long base) {
+        int primeiraSoma = 0, segundaSoma = 0;
+        long resto = base;
+        for (int d = 8; d >= 0; d--, resto /= 10) {
+            int digito = (int) (resto % 10);
+            primeiraSoma += digito * (10 - d);
+            segundaSoma += digito * (11 - d);
+        }
+        int verificador1 = primeiraSoma % 11 < 2 ? 0 : 11 - primeiraSoma % 11;
+        segundaSoma += verificador1 * 2;
+        int verificador2 = segundaSoma % 11 < 2 ? 0 : 11 - segundaSoma % 11;
+        return base * 100 + verificador1 * 10 + verificador2;
+    }
+
+    static final class ArquivoGerado extends InputStream {
+
+        private final int linhas;
+
+        private final FormatoImportacao formato;
+
+        private byte[] atual;
+
+        private int posicao;
+
+        private int linha;
+
+        ArquivoGerado(int linhas, FormatoImportacao formato) {
+            this.linhas = linhas;
+            this.formato = formato;
+            this.atual = formato == FormatoImportacao.CSV
+                    ? "cpf,nome,idade,endereco\n".getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+
+        @Override
+        public int read() {
+            byte[] um = new byte[1];
+            return read(um, 0, 1) < 0 ? -1 : um[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destino, int inicio, int tamanho) {
+            int copiados = 0;
+            while (copiados < tamanho) {
+                if (posicao == atual.length) {
+                    if (linha == linhas) {
+                        break;
+                    }
+                    atual = proxima(++linha).getBytes(StandardCharsets.UTF_8);
+                    posicao = 0;
+                }
+                int n = Math.min(tamanho - copiados, atual.length - posicao);
+                System.arraycopy(atual, posicao, destino, inicio + copiados, n);
+                posicao += n;
+                copiados += n;
+            }
+            return copiados == 0 && tamanho > 0 ? -1 : copiados;
+        }
+
+        private String proxima(int numero) {
+            String digitos = Long.toString(cpf(numero));
+            String cpf = "00000000000".substring(digitos.length()) + digitos;
+            int idade = 18 + numero % 70;
+            String endereco = "Rua " + numero % 5000 + ", " + numero % 300;
+            return formato == FormatoImportacao.CSV
+                    ? cpf + ",Cliente " + numero + "," + idade + ",\"" + endereco + "\"\n"
+                    : "{\"cpf\":" + cpf(numero) + ",\"nome\":\"Cliente " + numero + "\",\"idade\":" + idade
+                    + ",\"endereco\":\"" + endereco + "\"}\n";
+        }
+    }
+}
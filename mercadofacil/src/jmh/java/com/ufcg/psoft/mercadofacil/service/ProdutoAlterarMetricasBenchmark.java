@@ -0,0 +1,123 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.metricas.MetricasConfig;
+import com.ufcg.psoft.mercadofacil.metricas.MetricasValidacao;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import com.ufcg.psoft.mercadofacil.repository.VolatilLoteRepository;
+import com.ufcg.psoft.mercadofacil.repository.VolatilProdutoRepository;
+import com.ufcg.psoft.mercadofacil.validator.Ean13Validator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo da instrumentacao em {@link ProdutoAlterarService#alterar(Produto)}.
+ * Com {@code metricas=desligadas} o servico e o repositorio sao chamados
+ * diretamente e os medidores de validacao sao no-op; com
+ * {@code metricas=completas} servico e repositorio passam pelo
+ * {@link MetricasConfig} e cronometram toda chamada, e com
+ * {@code metricas=amostradas} cronometram uma a cada
+ * {@link MetricasConfig#AMOSTRAGEM_PADRAO}, como no contexto Spring. Tudo e
+ * registrado em um PrometheusMeterRegistry com histogramas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProdutoAlterarMetricasBenchmark {
+
+    /*
+     * O VolatilProdutoRepository fica atras do cache e nao e medido no
+     * contexto Spring; aqui ele faz o papel do repositorio medido.
+     */
+    static final String PONTOS_REPOSITORIO =
+            "execution(* com.ufcg.psoft.mercadofacil.repository.ProdutoRepository+.*(..))";
+
+    @Param({"desligadas", "completas", "amostradas"})
+    String metricas;
+
+    ProdutoAlterarService service;
+
+    Produto valido;
+
+    Produto invalido;
+
+    @Setup
+    public void setup() {
+        final MeterRegistry registry;
+        if (metricas.equals("desligadas")) {
+            registry = new SimpleMeterRegistry();
+            registry.config().meterFilter(MeterFilter.deny());
+        } else {
+            registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        }
+        ProdutoAlterarImplService alvo = new ProdutoAlterarImplService();
+        ProdutoRepository<Produto, Long> repository = new VolatilProdutoRepository();
+        alvo.loteRepository = new VolatilLoteRepository();
+        alvo.ean13Validator = new Ean13Validator("78991375", 3);
+        alvo.metricasValidacao = new MetricasValidacao(registry);
+        valido = repository.save(Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build());
+        /* Sem versao, cada alteracao sobrescreve a anterior em vez de conflitar com ela. */
+        valido.setVersao(null);
+        invalido = valido.toBuilder().codigoBarra("7899137500104").build();
+        if (metricas.equals("desligadas")) {
+            alvo.produtoRepository = repository;
+            service = alvo;
+        } else {
+            int amostragem = metricas.equals("amostradas") ? MetricasConfig.AMOSTRAGEM_PADRAO : 1;
+            alvo.produtoRepository = medido(repository, MetricasConfig.medir(PONTOS_REPOSITORIO, () -> registry,
+                    MetricasConfig.REPOSITORIO, amostragem));
+            service = medido(alvo, MetricasConfig.medir(MetricasConfig.PONTOS_SERVICO, () -> registry,
+                    MetricasConfig.SERVICO, amostragem));
+        }
+    }
+
+    @Benchmark
+    public Produto alterarValido() {
+        return service.alterar(valido);
+    }
+
+    @Benchmark
+    public String alterarInvalido() {
+        try {
+            service.alterar(invalido);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T medido(T alvo, Advisor advisor) {
+        ProxyFactory fabrica = new ProxyFactory(alvo);
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAdvisor(advisor);
+        return (T) fabrica.getProxy();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.metricas.MetricasValidacao;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResultadoAlteracao;
+import com.ufcg.psoft.mercadofacil.repository.VolatilLoteRepository;
+import com.ufcg.psoft.mercadofacil.repository.VolatilProdutoRepository;
+import com.ufcg.psoft.mercadofacil.validator.Ean13Validator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vazao de {@link ProdutoAlterarImplService#alterar(Produto)} com o
+ * repositorio volatil, para um produto valido e para um produto rejeitado
+ * pelo digito verificador. {@link #alterarTodos} e {@link #alterarUmAUm}
+ * alteram os mesmos {@link #TAMANHO_LOTE} produtos distintos, em lote e um por
+ * chamada; divida o resultado por TAMANHO_LOTE para ter produtos/ms. Com o
+ * repositorio volatil os dois ficam na mesma faixa: o lote nao e mais barato em
+ * memoria, o ganho dele e nao criar excecao por item rejeitado e, no
+ * repositorio duravel, esperar um unico force pelo lote inteiro.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProdutoAlterarServiceBenchmark {
+
+    static final int TAMANHO_LOTE = 1000;
+
+    ProdutoAlterarImplService service;
+
+    Produto valido;
+
+    Produto invalido;
+
+    List<Produto> lote;
+
+    @Setup
+    public void setup() {
+        service = new ProdutoAlterarImplService();
+        service.produtoRepository = new VolatilProdutoRepository();
+        service.loteRepository = new VolatilLoteRepository();
+        service.ean13Validator = new Ean13Validator("78991375", 3);
+        service.metricasValidacao = new MetricasValidacao(new SimpleMeterRegistry());
+        valido = service.produtoRepository.save(Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build());
+        /* Sem versao, cada alteracao sobrescreve a anterior em vez de conflitar com ela. */
+        valido.setVersao(null);
+        invalido = valido.toBuilder().codigoBarra("7899137500104").build();
+        lote = new ArrayList<>(TAMANHO_LOTE);
+        for (long id = 1; id <= TAMANHO_LOTE; id++) {
+            lote.add(service.produtoRepository.save(valido.toBuilder()
+                    .id(100 + id)
+                    .codigoBarra(codigoBarra(1000 + (int) id))
+                    .build()).toBuilder().versao(null).build());
+        }
+    }
+
+    @Benchmark
+    public Produto alterarValido() {
+        return service.alterar(valido);
+    }
+
+    @Benchmark
+    public String alterarInvalido() {
+        try {
+            service.alterar(invalido);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public List<ResultadoAlteracao> alterarTodos() {
+        return service.alterarTodos(lote);
+    }
+
+    @Benchmark
+    public int alterarUmAUm() {
+        int alterados = 0;
+        for (Produto produto : lote) {
+            if (service.alterar(produto) != null) {
+                alterados++;
+            }
+        }
+        return alterados;
+    }
+
+    /* Codigo EAN-13 valido para o prefixo 78991375 e o item informado. */
+    static String codigoBarra(int item) {
+        String semDigito = String.format("78991375%04d", item);
+        int impar = 0, par = 0;
+        for (int i = 0; i < 12; i++) {
+            if (i % 2 == 0) {
+                impar += semDigito.charAt(i) - '0';
+            } else {
+                par += semDigito.charAt(i) - '0';
+            }
+        }
+        return semDigito + (10 - (par * 3 + impar) % 10) % 10;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo do {@link CpfValidator} sobre texto, com e sem pontuacao, e sobre o
+ * numero guardado no cliente. Rode com {@code -prof gc} para conferir que a
+ * validacao nao aloca.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpfValidatorBenchmark {
+
+    @Param({"52998224725", "529.982.247-25"})
+    String cpf;
+
+    long numero;
+
+    CpfValidator validator = new CpfValidator();
+
+    @Setup
+    public void setup() {
+        numero = CpfValidator.numero(cpf);
+    }
+
+    @Benchmark
+    public CpfResultado texto() {
+        return validator.validar(cpf);
+    }
+
+    @Benchmark
+    public CpfResultado numero() {
+        return validator.validar(numero);
+    }
+}
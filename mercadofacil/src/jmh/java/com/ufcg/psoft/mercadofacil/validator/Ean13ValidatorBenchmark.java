@@ -0,0 +1,84 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o {@link Ean13Validator} com a validacao que existia dentro de
+ * ProdutoAlterarImplService.alterar, reproduzida em {@link #validarLegado}.
+ * Rode com {@code -prof gc} para conferir a alocacao por operacao.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ean13ValidatorBenchmark {
+
+    @Param({"7899137500117", "7899137500104"})
+    String codigoBarra;
+
+    Ean13Validator validator = new Ean13Validator("78991375", 3);
+
+    @Benchmark
+    public Ean13Resultado validator() {
+        return validator.validar(codigoBarra);
+    }
+
+    @Benchmark
+    public String legado() {
+        try {
+            validarLegado(codigoBarra);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    static void validarLegado(String codigoBarra) {
+        if (codigoBarra.length() != 13) {
+            throw new RuntimeException("Codigo de barra não possui 13 numeros!");
+        }
+        Integer[] sequencia = {7, 8, 9, 9, 1, 3, 7, 5};
+        for (int i = 0; i < 8; i++) {
+            if (sequencia[i] != Integer.parseInt(String.valueOf(codigoBarra.charAt(i)))) {
+                if (i < 3) {
+                    throw new RuntimeException("Codigo de barra com país errado");
+                } else {
+                    throw new RuntimeException("Codigo de barra com empresa errada!");
+                }
+            }
+        }
+
+        int impar = 0, par = 0;
+
+        for (int i = 0; i < 12; i++) {
+            if (i % 2 == 0) {
+                impar += Integer.parseInt(String.valueOf(codigoBarra.charAt(i)));
+            } else {
+                par += Integer.parseInt(String.valueOf(codigoBarra.charAt(i)));
+            }
+        }
+
+        int verificador = 0;
+        int calculo = (par * 3) + impar;
+
+        while ((calculo + verificador) % 10 != 0) {
+            verificador++;
+        }
+        if (verificador != Integer.parseInt(String.valueOf(codigoBarra.charAt(12)))) {
+            throw new RuntimeException("Codigo de barra com digito verificador incorreto!");
+        }
+    }
+}
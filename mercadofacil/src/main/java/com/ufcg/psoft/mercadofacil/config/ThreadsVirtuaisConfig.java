@@ -0,0 +1,24 @@
+package com.ufcg.psoft.mercadofacil.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Com {@code mercadofacil.threads.virtuais=true}, o Tomcat atende cada
+ * requisicao em uma thread virtual nova em vez do pool de threads de
+ * plataforma ({@code server.tomcat.threads.max}). Uma requisicao bloqueada em
+ * I/O deixa de segurar uma thread do pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "mercadofacil.threads.virtuais", havingValue = "true")
+public class ThreadsVirtuaisConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> executorDeThreadsVirtuais() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,88 @@
+package com.ufcg.psoft.mercadofacil.controller;
+
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import com.ufcg.psoft.mercadofacil.model.ResultadoImportacao;
+import com.ufcg.psoft.mercadofacil.repository.ClienteRepository;
+import com.ufcg.psoft.mercadofacil.service.ClienteCadastroService;
+import com.ufcg.psoft.mercadofacil.service.FormatoImportacao;
+import com.ufcg.psoft.mercadofacil.service.ImportacaoInterrompidaException;
+import com.ufcg.psoft.mercadofacil.validator.CpfResultado;
+import com.ufcg.psoft.mercadofacil.validator.CpfValidator;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping(
+        value = "/v1/clientes",
+        produces = MediaType.APPLICATION_JSON_VALUE
+)
+
+public class ClienteV1Controller {
+    static final int LIMITE_MAXIMO_PAGINA = 1000;
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    @Autowired
+    ClienteCadastroService clienteCadastroService;
+
+    @Autowired
+    ClienteRepository<Cliente, Long> clienteRepository;
+
+    @Autowired
+    CpfValidator cpfValidator;
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Cliente> buscarCliente(@PathVariable Long id) {
+        Cliente cliente = clienteRepository.find(id);
+        return cliente == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(cliente);
+    }
+
+    /* O CPF pode vir so com os numeros ou no formato 000.000.000-00. */
+    @GetMapping("/cpf/{cpf}")
+    public ResponseEntity<Cliente> buscarPorCpf(@PathVariable String cpf) {
+        CpfResultado resultado = cpfValidator.validar(cpf);
+        if (resultado != CpfResultado.VALIDO) {
+            throw new RuntimeException(resultado.getMensagem());
+        }
+        Cliente cliente = clienteRepository.findByCpf(CpfValidator.numero(cpf));
+        return cliente == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(cliente);
+    }
+
+    @GetMapping
+    public List<Cliente> listarClientes(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit) {
+        return clienteRepository.findPage(after, Math.max(1, Math.min(limit, LIMITE_MAXIMO_PAGINA)));
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Cliente cadastrarCliente(@RequestBody Cliente cliente) {
+        return clienteCadastroService.cadastrar(cliente);
+    }
+
+    /*
+     * O corpo e lido em fluxo, sem ser carregado inteiro; o resultado traz
+     * as contagens e as primeiras linhas rejeitadas com o motivo.
+     */
+    @PostMapping(value = "/importar", consumes = TEXT_CSV_VALUE)
+    public ResultadoImportacao importarCsv(HttpServletRequest request) throws IOException {
+        return clienteCadastroService.importar(request.getInputStream(), FormatoImportacao.CSV);
+    }
+
+    @PostMapping(value = "/importar", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResultadoImportacao importarNdjson(HttpServletRequest request) throws IOException {
+        return clienteCadastroService.importar(request.getInputStream(), FormatoImportacao.NDJSON);
+    }
+
+    /* O corpo leva o que ja foi gravado, para o cliente retomar dali. */
+    @ExceptionHandler(ImportacaoInterrompidaException.class)
+    public ResponseEntity<ResultadoImportacao> importacaoInterrompida(ImportacaoInterrompidaException e) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getParcial());
+    }
+}
@@ -0,0 +1,44 @@
+package com.ufcg.psoft.mercadofacil.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Escreve um stream de entidades na resposta como NDJSON (um objeto JSON por
+ * linha), direto no JsonGenerator. Apenas o buffer do gerador fica em memoria,
+ * independentemente do tamanho do stream.
+ */
+@Component
+public class ExportadorNdjson {
+
+    static final int REGISTROS_POR_FLUSH = 1000;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    public void exportar(Stream<?> registros, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        try (registros; JsonGenerator gerador = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            gerador.setRootValueSeparator(null);
+            int pendentes = 0;
+            Iterator<?> iterador = registros.iterator();
+            while (iterador.hasNext()) {
+                gerador.writeObject(iterador.next());
+                gerador.writeRaw('\n');
+                if (++pendentes == REGISTROS_POR_FLUSH) {
+                    gerador.flush();
+                    pendentes = 0;
+                }
+            }
+        }
+    }
+}
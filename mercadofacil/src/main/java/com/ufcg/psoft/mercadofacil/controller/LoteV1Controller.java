@@ -0,0 +1,100 @@
+package com.ufcg.psoft.mercadofacil.controller;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import com.ufcg.psoft.mercadofacil.replicacao.ReplicaSomenteLeituraException;
+import com.ufcg.psoft.mercadofacil.repository.LoteRepository;
+import com.ufcg.psoft.mercadofacil.repository.Ordenacao;
+import com.ufcg.psoft.mercadofacil.service.LoteEstoqueService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping(
+        value = "/v1/lotes",
+        produces = MediaType.APPLICATION_JSON_VALUE
+)
+
+public class LoteV1Controller {
+    static final int LIMITE_MAXIMO_PAGINA = 1000;
+
+    @Autowired
+    LoteRepository<Lote, Long> loteRepository;
+
+    @Autowired
+    LoteEstoqueService loteEstoqueService;
+
+    @Autowired
+    ExportadorNdjson exportadorNdjson;
+
+    @GetMapping
+    public List<Lote> listarLotes(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "id") String sort) {
+        int limite = Math.max(1, Math.min(limit, LIMITE_MAXIMO_PAGINA));
+        return loteRepository.findPage(after, limite, ordenacao(sort));
+    }
+
+    @GetMapping(value = "/exportar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportarLotes(HttpServletResponse response) throws IOException {
+        exportadorNdjson.exportar(loteRepository.streamAll(), response);
+    }
+
+    @GetMapping("/estoque")
+    public TotalEstoque totalEstoque() {
+        return loteRepository.totalEstoque();
+    }
+
+    @GetMapping("/estoque/produtos/{produtoId}")
+    public TotalEstoque totalEstoquePorProduto(@PathVariable Long produtoId) {
+        return loteRepository.totalEstoquePorProduto(produtoId);
+    }
+
+    @GetMapping("/estoque/fabricantes/{fabricante}")
+    public TotalEstoque totalEstoquePorFabricante(@PathVariable String fabricante) {
+        return loteRepository.totalEstoquePorFabricante(fabricante);
+    }
+
+    @GetMapping("/estoque/resumo")
+    public ResumoEstoque resumoEstoque(@RequestParam(defaultValue = "false") boolean recalcular) {
+        return recalcular ? loteRepository.recalcularEstoque() : loteRepository.resumoEstoque();
+    }
+
+    @PostMapping("/{id}/reserva")
+    public Lote reservarItens(
+            @PathVariable Long id,
+            @RequestParam int quantidade) {
+        return loteEstoqueService.reservar(id, quantidade);
+    }
+
+    @PostMapping("/{id}/liberacao")
+    public Lote liberarItens(
+            @PathVariable Long id,
+            @RequestParam int quantidade) {
+        return loteEstoqueService.liberar(id, quantidade);
+    }
+
+    /* Numa replica as escritas sao recusadas: este no nao atende, o primario sim. */
+    @ExceptionHandler(ReplicaSomenteLeituraException.class)
+    public ResponseEntity<Void> replicaSomenteLeitura() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    private static Ordenacao ordenacao(String sort) {
+        Ordenacao ordenacao = Ordenacao.de(sort);
+        if (ordenacao == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ordenacao invalida!");
+        }
+        return ordenacao;
+    }
+}
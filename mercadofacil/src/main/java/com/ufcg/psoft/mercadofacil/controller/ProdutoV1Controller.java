@@ -1,10 +1,31 @@
 package com.ufcg.psoft.mercadofacil.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import com.ufcg.psoft.mercadofacil.model.ResultadoAlteracao;
+import com.ufcg.psoft.mercadofacil.replicacao.ReplicaSomenteLeituraException;
+import com.ufcg.psoft.mercadofacil.repository.ConflitoDeVersaoException;
+import com.ufcg.psoft.mercadofacil.repository.Ordenacao;
+import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
 import com.ufcg.psoft.mercadofacil.service.ProdutoAlterarService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(
@@ -13,13 +34,175 @@ import org.springframework.web.bind.annotation.*;
 )
 
 public class ProdutoV1Controller {
+    static final int TAMANHO_LOTE_ALTERACAO = 1000;
+    static final int LIMITE_MAXIMO_PAGINA = 1000;
+
     @Autowired
     ProdutoAlterarService produtoAtualizarService;
 
+    @Autowired
+    ProdutoRepository<Produto, Long> produtoRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ExportadorNdjson exportadorNdjson;
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Produto> buscarProduto(@PathVariable Long id, WebRequest request) {
+        Produto produto = produtoRepository.find(id);
+        if (produto == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(etag(produto))) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag(produto)).body(produto);
+    }
+
+    /*
+     * Com If-Match a alteracao so e aplicada se o produto ainda estiver na
+     * versao da ETag informada; sem ele, vale a versao do corpo, se houver.
+     */
     @PutMapping("/{id}")
-    public Produto atualizarProduto(
+    public ResponseEntity<Produto> atualizarProduto(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody Produto produto) {
-        return produtoAtualizarService.alterar(produto);
+        aplicarIfMatch(produto, ifMatch);
+        return respostaAlteracao(produtoAtualizarService.alterar(produto));
+    }
+
+    /*
+     * Com Prefer: respond-async a alteracao vai pelo caminho de escrita
+     * adiada: a thread da requisicao e liberada enquanto o log grava, e a
+     * resposta sai quando o produto estiver duravel.
+     */
+    @PutMapping(value = "/{id}", headers = "Prefer=respond-async")
+    public CompletableFuture<ResponseEntity<Produto>> atualizarProdutoAssincrono(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Produto produto) {
+        aplicarIfMatch(produto, ifMatch);
+        return produtoAtualizarService.alterarAssincrono(produto).thenApply(ProdutoV1Controller::respostaAlteracao);
+    }
+
+    private static void aplicarIfMatch(Produto produto, String ifMatch) {
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            produto.setVersao(versao(ifMatch));
+        }
+    }
+
+    private static ResponseEntity<Produto> respostaAlteracao(Produto atualizado) {
+        if (atualizado == null) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok().eTag(etag(atualizado)).body(atualizado);
+    }
+
+    @ExceptionHandler(ConflitoDeVersaoException.class)
+    public ResponseEntity<Void> conflitoDeVersao() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+
+    /* Numa replica as escritas sao recusadas: este no nao atende, o primario sim. */
+    @ExceptionHandler(ReplicaSomenteLeituraException.class)
+    public ResponseEntity<Void> replicaSomenteLeitura() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    /*
+     * O corpo e um array JSON de produtos lido elemento a elemento. Nada e
+     * gravado antes de o array inteiro ser lido: um elemento malformado
+     * devolve 400 sem alterar nenhum produto. Depois, a cada
+     * TAMANHO_LOTE_ALTERACAO produtos o lote e validado e gravado de uma vez.
+     */
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<ResultadoAlteracao> atualizarProdutos(HttpServletRequest request) throws IOException {
+        List<Produto> alterados = new ArrayList<>();
+        try (MappingIterator<Produto> produtos = objectMapper.readerFor(Produto.class)
+                .readValues(request.getInputStream())) {
+            while (produtos.hasNextValue()) {
+                alterados.add(produtos.nextValue());
+            }
+        }
+        List<ResultadoAlteracao> resultados = new ArrayList<>(alterados.size());
+        for (int i = 0; i < alterados.size(); i += TAMANHO_LOTE_ALTERACAO) {
+            resultados.addAll(produtoAtualizarService.alterarTodos(
+                    alterados.subList(i, Math.min(i + TAMANHO_LOTE_ALTERACAO, alterados.size()))));
+        }
+        return resultados;
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<Void> corpoMalformado() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping
+    public List<Produto> listarProdutos(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) Double minPreco,
+            @RequestParam(required = false) Double maxPreco) {
+        int limite = Math.max(1, Math.min(limit, LIMITE_MAXIMO_PAGINA));
+        if (minPreco != null || maxPreco != null) {
+            double minimo = minPreco == null ? Double.NEGATIVE_INFINITY : minPreco;
+            double maximo = maxPreco == null ? Double.POSITIVE_INFINITY : maxPreco;
+            if (minimo > maximo) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Faixa de preco invalida!");
+            }
+            return produtoRepository.findByPreco(minimo, maximo, after, limite);
+        }
+        return produtoRepository.findPage(after, limite, ordenacao(sort));
+    }
+
+    @GetMapping("/search")
+    public List<Produto> buscarProdutos(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        int limite = Math.max(1, Math.min(limit, LIMITE_MAXIMO_PAGINA));
+        return produtoRepository.search(q, limite);
+    }
+
+    @GetMapping(value = "/exportar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportarProdutos(HttpServletResponse response) throws IOException {
+        exportadorNdjson.exportar(produtoRepository.streamAll(), response);
+    }
+
+    /* Memoria de cada campo guardado com dicionario, comparada a uma String por produto. */
+    @GetMapping("/memoria")
+    public List<RelatorioDicionario> relatorioMemoria() {
+        return produtoRepository.relatorioMemoria();
+    }
+
+    private static String etag(Produto produto) {
+        return "\"" + produto.getVersao() + "\"";
+    }
+
+    /* Versao da ETag de If-Match; uma ETag que nao e deste servidor nunca confere. */
+    private static Long versao(String ifMatch) {
+        String etag = ifMatch.trim();
+        if (etag.startsWith("W/")) {
+            etag = etag.substring(2);
+        }
+        if (etag.length() < 2 || etag.charAt(0) != '"' || etag.charAt(etag.length() - 1) != '"') {
+            throw new ConflitoDeVersaoException();
+        }
+        try {
+            return Long.parseLong(etag.substring(1, etag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ConflitoDeVersaoException();
+        }
+    }
+
+    private static Ordenacao ordenacao(String sort) {
+        Ordenacao ordenacao = Ordenacao.de(sort);
+        if (ordenacao == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ordenacao invalida!");
+        }
+        return ordenacao;
     }
 }
@@ -0,0 +1,95 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Conta cada chamada interceptada em {@code <nome>.chamadas} e registra a
+ * duracao de uma a cada {@code amostragem} chamadas, sorteada, em um Timer
+ * {@code <nome>} com histograma de percentis. Ambos tem as tags
+ * {@code classe} e {@code metodo} e sao criados na primeira chamada de cada
+ * metodo de cada classe.
+ *
+ * <p>Medir cada chamada custava duas leituras de {@link System#nanoTime()} e
+ * o registro no histograma, cerca de 340 ns por metodo, mais que o proprio
+ * metodo medido. Uma chamada fora da amostra custa duas consultas a mapas, um
+ * sorteio e um incremento de {@link LongAdder}. Os percentis e a media
+ * continuam representativos; o total de chamadas vem do contador, nao do
+ * Timer.
+ */
+public class MedidorDeMetodos implements MethodInterceptor {
+
+    private final Supplier<MeterRegistry> registry;
+
+    private final String nome;
+
+    private final int amostragem;
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Medidas>> medidas = new ConcurrentHashMap<>();
+
+    public MedidorDeMetodos(Supplier<MeterRegistry> registry, String nome, int amostragem) {
+        if (amostragem < 1) {
+            throw new IllegalArgumentException("Amostragem deve ser positiva!");
+        }
+        this.registry = registry;
+        this.nome = nome;
+        this.amostragem = amostragem;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation chamada) throws Throwable {
+        Medidas medidas = medidas(chamada.getThis().getClass(), chamada.getMethod());
+        medidas.chamadas.increment();
+        if (amostragem > 1 && ThreadLocalRandom.current().nextInt(amostragem) != 0) {
+            return chamada.proceed();
+        }
+        long inicio = System.nanoTime();
+        try {
+            return chamada.proceed();
+        } finally {
+            medidas.timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Medidas medidas(Class<?> classe, Method metodo) {
+        ConcurrentMap<Method, Medidas> porMetodo = medidas.get(classe);
+        if (porMetodo == null) {
+            porMetodo = medidas.computeIfAbsent(classe, c -> new ConcurrentHashMap<>());
+        }
+        Medidas encontradas = porMetodo.get(metodo);
+        if (encontradas == null) {
+            encontradas = porMetodo.computeIfAbsent(metodo, m -> registrar(classe, m));
+        }
+        return encontradas;
+    }
+
+    private Medidas registrar(Class<?> classe, Method metodo) {
+        String nomeClasse = ClassUtils.getUserClass(classe).getSimpleName();
+        LongAdder chamadas = new LongAdder();
+        FunctionCounter.builder(nome + ".chamadas", chamadas, LongAdder::sum)
+                .tag("classe", nomeClasse)
+                .tag("metodo", metodo.getName())
+                .register(registry.get());
+        Timer timer = Timer.builder(nome)
+                .tag("classe", nomeClasse)
+                .tag("metodo", metodo.getName())
+                .publishPercentileHistogram()
+                .register(registry.get());
+        return new Medidas(timer, chamadas);
+    }
+
+    private record Medidas(Timer timer, LongAdder chamadas) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import com.ufcg.psoft.mercadofacil.repository.ProdutoCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Supplier;
+
+/**
+ * Mede cada metodo dos repositorios ({@code mercadofacil.repositorio}) e dos
+ * servicos ({@code mercadofacil.servico}). Os controladores ja sao medidos
+ * pelo {@code http.server.requests} do Spring Boot. Usa um
+ * {@link MedidorDeMetodos} em vez de um {@code @Aspect}: o conselho
+ * {@code @Around} e invocado por reflexao e custava cerca do dobro por chamada.
+ * Os advisors sao criados antes dos demais beans, entao o MeterRegistry so e
+ * resolvido quando o primeiro Timer e registrado. So uma a cada
+ * {@code mercadofacil.metricas.amostragem} chamadas e cronometrada; todas sao
+ * contadas. As estatisticas do cache de produtos sao publicadas como
+ * {@code cache.*} com a tag {@code cache=produtos}.
+ *
+ * <p>Com {@code mercadofacil.metricas.habilitadas=false} nenhum proxy e criado.
+ */
+@Configuration
+@ConditionalOnProperty(name = "mercadofacil.metricas.habilitadas", havingValue = "true", matchIfMissing = true)
+public class MetricasConfig {
+
+    public static final String REPOSITORIO = "mercadofacil.repositorio";
+
+    public static final String SERVICO = "mercadofacil.servico";
+
+    /*
+     * Dos repositorios de produtos so o cache e medido: o armazenamento por
+     * tras dele ja entra no Timer do cache, e um segundo proxy por chamada
+     * dobraria o custo da medicao.
+     */
+    public static final String PONTOS_REPOSITORIO =
+            "(execution(* com.ufcg.psoft.mercadofacil.repository.ProdutoRepository.*(..))"
+                    + " && within(com.ufcg.psoft.mercadofacil.repository.ProdutoCacheRepository))"
+                    + " || execution(* com.ufcg.psoft.mercadofacil.repository.LoteRepository+.*(..))";
+
+    public static final String PONTOS_SERVICO =
+            "execution(* com.ufcg.psoft.mercadofacil.service.ProdutoAlterarService+.*(..))"
+                    + " || execution(* com.ufcg.psoft.mercadofacil.service.LoteEstoqueService+.*(..))";
+
+    public static final int AMOSTRAGEM_PADRAO = 16;
+
+    @Bean
+    public static Advisor medirRepositorios(ObjectProvider<MeterRegistry> registry,
+            @Value("${mercadofacil.metricas.amostragem:" + AMOSTRAGEM_PADRAO + "}") int amostragem) {
+        return medir(PONTOS_REPOSITORIO, registry::getObject, REPOSITORIO, amostragem);
+    }
+
+    @Bean
+    public static Advisor medirServicos(ObjectProvider<MeterRegistry> registry,
+            @Value("${mercadofacil.metricas.amostragem:" + AMOSTRAGEM_PADRAO + "}") int amostragem) {
+        return medir(PONTOS_SERVICO, registry::getObject, SERVICO, amostragem);
+    }
+
+    @Bean
+    public MeterBinder metricasCacheProduto(ObjectProvider<ProdutoCacheRepository> cache) {
+        return registry -> cache.ifAvailable(repositorio -> repositorio.registrarMetricas(registry, "produtos"));
+    }
+
+    public static Advisor medir(String expressao, Supplier<MeterRegistry> registry, String nome, int amostragem) {
+        AspectJExpressionPointcut pontos = new AspectJExpressionPointcut();
+        pontos.setExpression(expressao);
+        return new DefaultPointcutAdvisor(pontos, new MedidorDeMetodos(registry, nome, amostragem));
+    }
+}
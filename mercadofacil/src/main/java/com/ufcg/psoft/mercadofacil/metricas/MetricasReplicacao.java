@@ -0,0 +1,61 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import com.ufcg.psoft.mercadofacil.replicacao.Replicacao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Vazao e atraso da replicacao, lidos da {@link Replicacao} a cada coleta.
+ * No primario as alteracoes e os bytes sao os enviados, somados entre as
+ * replicas, e {@code tipo=original} mostra o tamanho antes da compressao; na
+ * replica sao os recebidos, e o atraso e o dela em relacao ao primario.
+ */
+@Component
+@Profile("replicado")
+public class MetricasReplicacao {
+
+    static final String ALTERACOES = "mercadofacil.replicacao.alteracoes";
+
+    static final String BYTES = "mercadofacil.replicacao.bytes";
+
+    static final String ATRASO = "mercadofacil.replicacao.atraso";
+
+    static final String ATRASO_ALTERACOES = "mercadofacil.replicacao.atraso.alteracoes";
+
+    static final String REPLICAS = "mercadofacil.replicacao.replicas";
+
+    static final String SNAPSHOTS = "mercadofacil.replicacao.snapshots";
+
+    public MetricasReplicacao(MeterRegistry registry, Replicacao replicacao) {
+        String papel = replicacao.getPapel().name().toLowerCase();
+        FunctionCounter.builder(ALTERACOES, replicacao, Replicacao::alteracoes)
+                .tag("papel", papel)
+                .register(registry);
+        FunctionCounter.builder(BYTES, replicacao, Replicacao::bytes)
+                .tag("papel", papel)
+                .tag("tipo", "transferido")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(BYTES, replicacao, Replicacao::bytesOriginais)
+                .tag("papel", papel)
+                .tag("tipo", "original")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder(SNAPSHOTS, replicacao, Replicacao::snapshots)
+                .tag("papel", papel)
+                .register(registry);
+        Gauge.builder(ATRASO, replicacao, Replicacao::atrasoMs)
+                .tag("papel", papel)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder(ATRASO_ALTERACOES, replicacao, Replicacao::atrasoAlteracoes)
+                .tag("papel", papel)
+                .register(registry);
+        Gauge.builder(REPLICAS, replicacao, Replicacao::replicasConectadas)
+                .tag("papel", papel)
+                .register(registry);
+    }
+}
@@ -0,0 +1,49 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import com.ufcg.psoft.mercadofacil.validator.Ean13Resultado;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Um contador por motivo de rejeicao na validacao de produtos
+ * ({@code mercadofacil.produto.validacao.falhas}, tag {@code motivo}). Os
+ * motivos sao conhecidos de antemao, entao todos os contadores sao
+ * registrados na criacao e aparecem zerados ate a primeira falha. O tempo da
+ * validacao ja entra no Timer do servico; um Timer proprio custaria mais que a
+ * validacao.
+ */
+@Component
+public class MetricasValidacao {
+
+    public static final String ATRIBUTOS_FALTANDO = "ATRIBUTOS_FALTANDO";
+
+    public static final String PRECO_INVALIDO = "PRECO_INVALIDO";
+
+    static final String FALHAS = "mercadofacil.produto.validacao.falhas";
+
+    private final Map<String, Counter> falhas = new HashMap<>();
+
+    public MetricasValidacao(MeterRegistry registry) {
+        registrarFalha(registry, ATRIBUTOS_FALTANDO);
+        registrarFalha(registry, PRECO_INVALIDO);
+        for (Ean13Resultado resultado : Ean13Resultado.values()) {
+            if (resultado != Ean13Resultado.VALIDO) {
+                registrarFalha(registry, resultado.name());
+            }
+        }
+    }
+
+    public void contarFalha(String motivo) {
+        falhas.get(motivo).increment();
+    }
+
+    private void registrarFalha(MeterRegistry registry, String motivo) {
+        falhas.put(motivo, Counter.builder(FALHAS)
+                .tag("motivo", motivo)
+                .register(registry));
+    }
+}
@@ -1,20 +1,26 @@
 package com.ufcg.psoft.mercadofacil.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Cliente {
 
+	@JsonProperty("id")
     private Long id;
 
+	@JsonProperty("cpf")
 	private Long cpf;
 
+	@JsonProperty("nome")
 	private String nome;
 
+	@JsonProperty("idade")
 	private Integer idade;
 
+	@JsonProperty("endereco")
 	private String endereco;
 
 
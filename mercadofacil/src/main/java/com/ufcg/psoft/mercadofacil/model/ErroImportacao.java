@@ -0,0 +1,14 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ErroImportacao {
+
+   private long linha;
+
+   private String erro;
+
+}
@@ -4,7 +4,7 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Lote {
 
 	   private Long id;
@@ -13,5 +13,7 @@ public class Lote {
 
 	   private int numeroDeItens;
 
+	   private Long versao;
+
 	}
 
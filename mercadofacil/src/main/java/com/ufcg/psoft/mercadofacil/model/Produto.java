@@ -5,7 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Produto {
 
    @JsonProperty("id")
@@ -23,5 +23,8 @@ public class Produto {
    @JsonProperty("fabricante")
    private String fabricante;
 
+   @JsonProperty("versao")
+   private Long versao;
+
 }
 
@@ -0,0 +1,24 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RelatorioDicionario {
+
+    private String campo;
+
+    private int entradas;
+
+    private long bytesDicionario;
+
+    private long referencias;
+
+    private long bytesSemDicionario;
+
+    private long bytesEconomizados;
+
+    private long copiasDescartadas;
+
+}
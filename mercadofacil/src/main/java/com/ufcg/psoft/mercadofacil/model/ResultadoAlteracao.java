@@ -0,0 +1,20 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoAlteracao {
+
+   private Long id;
+
+   private boolean sucesso;
+
+   private String erro;
+
+   private Produto produto;
+
+}
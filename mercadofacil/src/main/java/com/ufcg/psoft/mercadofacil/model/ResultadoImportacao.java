@@ -0,0 +1,24 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ResultadoImportacao {
+
+   private long linhas;
+
+   private long importados;
+
+   private long rejeitados;
+
+   private List<ErroImportacao> erros;
+
+   private long duracaoMs;
+
+   private long linhasPorSegundo;
+
+}
@@ -0,0 +1,18 @@
+package com.ufcg.psoft.mercadofacil.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class ResumoEstoque {
+
+   private TotalEstoque geral;
+
+   private Map<Long, TotalEstoque> porProduto;
+
+   private Map<String, TotalEstoque> porFabricante;
+
+}
@@ -0,0 +1,125 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Area fora do heap onde strings sao gravadas em sequencia, em UTF-8
+ * precedido do tamanho, em segmentos de {@link #TAMANHO_SEGMENTO} bytes
+ * alocados com {@link ByteBuffer#allocateDirect}. Cada string gravada e
+ * identificada por uma referencia {@code long} (segmento e posicao), que e o
+ * que os repositorios guardam no lugar do objeto.
+ *
+ * <p>A area so cresce: uma string gravada nunca muda, entao pode ser lida sem
+ * trava por qualquer thread que tenha a referencia. Quem guarda as
+ * referencias informa as strings que deixou de usar em {@link #descartar};
+ * a arena so conta os bytes delas, e cabe a esse dono copiar as vivas para
+ * uma arena nova quando o descarte pesar. Gravacoes sao serializadas pelo
+ * monitor da arena.
+ */
+public final class ArenaDeTextos {
+
+    /** Referencia de uma string nula. */
+    public static final long NULO = -1;
+
+    static final int TAMANHO_SEGMENTO = 1 << 22;
+
+    private volatile ByteBuffer[] segmentos = {ByteBuffer.allocateDirect(TAMANHO_SEGMENTO)};
+
+    private int posicao;
+
+    private long usados;
+
+    private final LongAdder descartados = new LongAdder();
+
+    public synchronized long gravar(String texto) {
+        if (texto == null) {
+            return NULO;
+        }
+        int bytes = 5 + Binario.tamanhoUtf8(texto);
+        ByteBuffer[] atuais = segmentos;
+        int segmento = atuais.length - 1;
+        if (posicao + bytes > TAMANHO_SEGMENTO) {
+            ByteBuffer[] maiores = new ByteBuffer[atuais.length + 1];
+            System.arraycopy(atuais, 0, maiores, 0, atuais.length);
+            maiores[++segmento] = ByteBuffer.allocateDirect(Math.max(TAMANHO_SEGMENTO, bytes));
+            segmentos = atuais = maiores;
+            posicao = 0;
+        }
+        ByteBuffer destino = atuais[segmento];
+        destino.position(posicao);
+        Binario.escreverString(texto, destino);
+        long referencia = ((long) segmento << 32) | posicao;
+        usados += destino.position() - posicao;
+        posicao = destino.position();
+        return referencia;
+    }
+
+    public String ler(long referencia) {
+        if (referencia == NULO) {
+            return null;
+        }
+        ByteBuffer origem = segmentos[(int) (referencia >>> 32)].duplicate();
+        origem.position((int) referencia);
+        return Binario.lerString(origem);
+    }
+
+    /** Conta a string da referencia como descartada; ela continua legivel. */
+    public void descartar(long referencia) {
+        if (referencia == NULO) {
+            return;
+        }
+        ByteBuffer origem = segmentos[(int) (referencia >>> 32)].duplicate();
+        origem.position((int) referencia);
+        int bytes = Binario.lerVarInt(origem);
+        descartados.add(origem.position() - (int) referencia + bytes);
+    }
+
+    /** Bytes gravados desde a criacao, inclusive os das strings descartadas. */
+    public synchronized long usados() {
+        return usados;
+    }
+
+    public long descartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Compara a string da referencia com {@code utf8}, os bytes gravados por
+     * {@link Binario#escreverString} para o texto procurado, sem criar a string.
+     */
+    public boolean igual(long referencia, byte[] utf8) {
+        if (referencia == NULO) {
+            return false;
+        }
+        ByteBuffer origem = segmentos[(int) (referencia >>> 32)];
+        int inicio = (int) referencia;
+        if (inicio + utf8.length > origem.capacity()) {
+            return false;
+        }
+        for (int i = 0; i < utf8.length; i++) {
+            if (origem.get(inicio + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Os bytes que {@link #igual} espera para o texto. */
+    public static byte[] codificar(String texto) {
+        ByteBuffer destino = ByteBuffer.allocate(5 + Binario.tamanhoUtf8(texto));
+        Binario.escreverString(texto, destino);
+        byte[] bytes = new byte[destino.position()];
+        destino.flip().get(bytes);
+        return bytes;
+    }
+
+    /** Bytes reservados fora do heap. */
+    public long capacidade() {
+        long total = 0;
+        for (ByteBuffer segmento : segmentos) {
+            total += segmento.capacity();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,141 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Primitivas dos codecs binarios: inteiros de tamanho variavel, strings em
+ * UTF-8 precedidas do tamanho em bytes e codigos EAN-13 empacotados em um
+ * {@code long}. Tudo le e escreve direto no {@link ByteBuffer}.
+ */
+public final class Binario {
+
+    public static final int DIGITOS_EAN = 13;
+
+    private Binario() {
+    }
+
+    public static void escreverVarInt(int valor, ByteBuffer destino) {
+        while ((valor & ~0x7F) != 0) {
+            destino.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        destino.put((byte) valor);
+    }
+
+    public static int lerVarInt(ByteBuffer origem) {
+        int valor = 0;
+        for (int deslocamento = 0; deslocamento < 32; deslocamento += 7) {
+            byte b = origem.get();
+            valor |= (b & 0x7F) << deslocamento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IllegalStateException("Inteiro de tamanho variavel invalido!");
+    }
+
+    /* Substitutos sem par sao gravados como '?', como faz o encoder UTF-8 do JDK. */
+    public static void escreverString(String texto, ByteBuffer destino) {
+        escreverVarInt(tamanhoUtf8(texto), destino);
+        int tamanho = texto.length();
+        for (int i = 0; i < tamanho; i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                destino.put((byte) c);
+            } else if (c < 0x800) {
+                destino.put((byte) (0xC0 | (c >> 6)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < tamanho
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int codigo = Character.toCodePoint(c, texto.charAt(++i));
+                destino.put((byte) (0xF0 | (codigo >> 18)));
+                destino.put((byte) (0x80 | ((codigo >> 12) & 0x3F)));
+                destino.put((byte) (0x80 | ((codigo >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (codigo & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                destino.put((byte) '?');
+            } else {
+                destino.put((byte) (0xE0 | (c >> 12)));
+                destino.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                destino.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    public static String lerString(ByteBuffer origem) {
+        int bytes = lerVarInt(origem);
+        char[] caracteres = new char[bytes];
+        int fim = origem.position() + bytes;
+        int n = 0;
+        while (origem.position() < fim) {
+            int b = origem.get() & 0xFF;
+            if (b < 0x80) {
+                caracteres[n++] = (char) b;
+            } else if (b < 0xE0) {
+                caracteres[n++] = (char) (((b & 0x1F) << 6) | (origem.get() & 0x3F));
+            } else if (b < 0xF0) {
+                caracteres[n++] = (char) (((b & 0x0F) << 12) | ((origem.get() & 0x3F) << 6)
+                        | (origem.get() & 0x3F));
+            } else {
+                int codigo = ((b & 0x07) << 18) | ((origem.get() & 0x3F) << 12)
+                        | ((origem.get() & 0x3F) << 6) | (origem.get() & 0x3F);
+                caracteres[n++] = Character.highSurrogate(codigo);
+                caracteres[n++] = Character.lowSurrogate(codigo);
+            }
+        }
+        return new String(caracteres, 0, n);
+    }
+
+    public static int tamanhoUtf8(String texto) {
+        int tamanho = texto.length();
+        int bytes = 0;
+        for (int i = 0; i < tamanho; i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < tamanho
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /** Verdadeiro se o texto tem exatamente 13 digitos e cabe em {@link #empacotarEan}. */
+    public static boolean ehEan(String codigo) {
+        if (codigo.length() != DIGITOS_EAN) {
+            return false;
+        }
+        for (int i = 0; i < DIGITOS_EAN; i++) {
+            char c = codigo.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long empacotarEan(String codigo) {
+        long valor = 0;
+        for (int i = 0; i < DIGITOS_EAN; i++) {
+            valor = valor * 10 + (codigo.charAt(i) - '0');
+        }
+        return valor;
+    }
+
+    public static String desempacotarEan(long valor) {
+        char[] digitos = new char[DIGITOS_EAN];
+        for (int i = DIGITOS_EAN - 1; i >= 0; i--) {
+            digitos[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        return new String(digitos);
+    }
+}
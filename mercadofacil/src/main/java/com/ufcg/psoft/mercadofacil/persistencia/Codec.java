@@ -0,0 +1,19 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converte uma entidade de e para bytes gravados no log de escrita.
+ */
+public interface Codec<T> {
+
+    /**
+     * Escreve o valor a partir da posicao atual do destino. Se nao houver
+     * espaco, lanca {@link java.nio.BufferOverflowException}; o log aumenta o
+     * buffer e tenta de novo.
+     */
+    void codificar(T valor, ByteBuffer destino);
+
+    /** Le um valor que ocupa todos os bytes restantes da origem. */
+    T decodificar(ByteBuffer origem);
+}
@@ -0,0 +1,40 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Diretorio e parametros dos logs de escrita usados pelo perfil
+ * {@code duravel}.
+ */
+@Component
+@Profile("duravel")
+public class ConfiguracaoPersistencia {
+
+    private final Path diretorio;
+
+    private final LogDeEscrita.Configuracao log;
+
+    public ConfiguracaoPersistencia(
+            @Value("${mercadofacil.persistencia.diretorio:dados}") Path diretorio,
+            @Value("${mercadofacil.persistencia.registros-por-snapshot:1000000}") long registrosPorSnapshot,
+            @Value("${mercadofacil.persistencia.tamanho-maximo-lote:4096}") int tamanhoMaximoLote,
+            @Value("${mercadofacil.persistencia.fsync:true}") boolean fsync,
+            @Value("${mercadofacil.persistencia.capacidade-fila:65536}") int capacidadeFila,
+            @Value("${mercadofacil.persistencia.escrita-adiada:false}") boolean escritaAdiada) {
+        this.diretorio = diretorio;
+        this.log = new LogDeEscrita.Configuracao(registrosPorSnapshot, tamanhoMaximoLote, fsync,
+                capacidadeFila, escritaAdiada);
+    }
+
+    public Path getDiretorio() {
+        return diretorio;
+    }
+
+    public LogDeEscrita.Configuracao getLog() {
+        return log;
+    }
+}
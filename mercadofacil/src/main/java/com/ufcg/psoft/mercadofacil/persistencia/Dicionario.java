@@ -0,0 +1,227 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Codificacao por dicionario de um campo de texto com poucos valores
+ * distintos, como o fabricante do produto. Cada texto recebe um codigo
+ * {@code int} e uma unica instancia de {@link String}; quem guarda o campo
+ * guarda o codigo ou a instancia canonica, e as copias iguais que chegam em
+ * cada requisicao viram lixo jovem em vez de ficarem retidas.
+ *
+ * <p>O dicionario pertence ao repositorio que guarda o campo e so conhece os
+ * textos guardados nele: cada {@link #adquirir} ou {@link #canonico} conta
+ * uma referencia, devolvida com {@link #soltar} quando o valor deixa de ser
+ * guardado. O texto sem referencias sai do dicionario e o codigo dele volta a
+ * ser usado. Depois de {@link #LIMITE} entradas vivas os textos novos ficam
+ * sem codigo e sao guardados como vieram.
+ */
+public final class Dicionario {
+
+    public static final int SEM_CODIGO = -1;
+
+    public static final int LIMITE = 1 << 20;
+
+    /* No do mapa, Integer do codigo e posicoes nos vetores de textos e referencias. */
+    private static final int BYTES_POR_ENTRADA = 60;
+
+    private final String campo;
+
+    private final int limite;
+
+    private final ConcurrentMap<String, Integer> codigos = new ConcurrentHashMap<>();
+
+    private volatile String[] textos = new String[1024];
+
+    private int[] referencias = new int[1024];
+
+    /* Codigos soltos, reusados antes de abrir um codigo novo. */
+    private int[] livres = new int[16];
+
+    private int quantidadeLivres;
+
+    private int proximoCodigo;
+
+    private int entradas;
+
+    private long bytes;
+
+    private final LongAdder copiasDescartadas = new LongAdder();
+
+    public Dicionario(String campo) {
+        this(campo, LIMITE);
+    }
+
+    Dicionario(String campo, int limite) {
+        this.campo = campo;
+        this.limite = limite;
+    }
+
+    /**
+     * Codigo do texto com uma referencia a mais, registrando-o se for novo;
+     * {@link #SEM_CODIGO}, sem referencia, para nulo ou dicionario cheio.
+     */
+    public synchronized int adquirir(String texto) {
+        if (texto == null) {
+            return SEM_CODIGO;
+        }
+        Integer existente = codigos.get(texto);
+        int codigo = existente != null ? existente : registrar(texto);
+        if (codigo != SEM_CODIGO) {
+            referencias[codigo]++;
+        }
+        return codigo;
+    }
+
+    /** Codigo do texto se ele ja estiver no dicionario, sem registra-lo. */
+    public int codigoExistente(String texto) {
+        Integer codigo = texto == null ? null : codigos.get(texto);
+        return codigo == null ? SEM_CODIGO : codigo;
+    }
+
+    /** Texto do codigo, ou {@code null} se o codigo nao estiver em uso. */
+    public String texto(int codigo) {
+        String[] atuais = textos;
+        return codigo >= 0 && codigo < atuais.length ? atuais[codigo] : null;
+    }
+
+    /**
+     * A instancia compartilhada igual ao texto, com uma referencia a mais, ou
+     * o proprio texto se ele ficar sem codigo.
+     */
+    public String canonico(String texto) {
+        int codigo = adquirir(texto);
+        if (codigo == SEM_CODIGO) {
+            return texto;
+        }
+        String canonico = textos[codigo];
+        if (canonico != texto) {
+            copiasDescartadas.increment();
+        }
+        return canonico;
+    }
+
+    /** Devolve uma referencia obtida com {@link #adquirir}. */
+    public synchronized void soltar(int codigo) {
+        if (codigo == SEM_CODIGO || codigo >= proximoCodigo || referencias[codigo] == 0) {
+            return;
+        }
+        if (--referencias[codigo] == 0) {
+            remover(codigo);
+        }
+    }
+
+    /**
+     * Devolve uma referencia obtida com {@link #canonico}. So a propria
+     * instancia canonica conta: um texto que ficou sem codigo, ou que e de
+     * antes de um {@link #limpar}, nao solta nada.
+     */
+    public synchronized void soltar(String canonico) {
+        int codigo = codigoExistente(canonico);
+        if (codigo != SEM_CODIGO && textos[codigo] == canonico) {
+            soltar(codigo);
+        }
+    }
+
+    /** Esquece todas as entradas, como quando o repositorio dono e esvaziado. */
+    public synchronized void limpar() {
+        codigos.clear();
+        textos = new String[1024];
+        referencias = new int[1024];
+        quantidadeLivres = 0;
+        proximoCodigo = 0;
+        entradas = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Memoria do campo com e sem o dicionario. {@code referencias} sao os
+     * valores do campo guardados hoje; sem o dicionario cada um seria uma
+     * {@link String} propria, com ele todos apontam para as entradas.
+     */
+    public RelatorioDicionario relatorio(Stream<String> referencias) {
+        long[] semDicionario = new long[2];
+        referencias.forEach(texto -> {
+            if (texto != null) {
+                semDicionario[0]++;
+                semDicionario[1] += bytesDaString(texto);
+            }
+        });
+        int entradasAtuais;
+        long bytesAtuais;
+        synchronized (this) {
+            entradasAtuais = entradas;
+            bytesAtuais = bytes;
+        }
+        return RelatorioDicionario.builder()
+                .campo(campo)
+                .entradas(entradasAtuais)
+                .bytesDicionario(bytesAtuais)
+                .referencias(semDicionario[0])
+                .bytesSemDicionario(semDicionario[1])
+                .bytesEconomizados(semDicionario[1] - bytesAtuais)
+                .copiasDescartadas(copiasDescartadas.sum())
+                .build();
+    }
+
+    /*
+     * O texto e gravado no vetor antes de o codigo entrar no mapa, entao quem
+     * le o codigo no mapa sempre encontra o texto.
+     */
+    private int registrar(String texto) {
+        if (entradas == limite) {
+            return SEM_CODIGO;
+        }
+        int codigo;
+        if (quantidadeLivres > 0) {
+            codigo = livres[--quantidadeLivres];
+        } else {
+            String[] atuais = textos;
+            if (proximoCodigo == atuais.length) {
+                String[] maiores = new String[atuais.length * 2];
+                System.arraycopy(atuais, 0, maiores, 0, proximoCodigo);
+                int[] maisReferencias = new int[maiores.length];
+                System.arraycopy(referencias, 0, maisReferencias, 0, proximoCodigo);
+                referencias = maisReferencias;
+                textos = maiores;
+            }
+            codigo = proximoCodigo++;
+        }
+        textos[codigo] = texto;
+        entradas++;
+        bytes += bytesDaString(texto) + BYTES_POR_ENTRADA;
+        codigos.put(texto, codigo);
+        return codigo;
+    }
+
+    private void remover(int codigo) {
+        String texto = textos[codigo];
+        codigos.remove(texto);
+        textos[codigo] = null;
+        entradas--;
+        bytes -= bytesDaString(texto) + BYTES_POR_ENTRADA;
+        if (quantidadeLivres == livres.length) {
+            int[] maiores = new int[livres.length * 2];
+            System.arraycopy(livres, 0, maiores, 0, quantidadeLivres);
+            livres = maiores;
+        }
+        livres[quantidadeLivres++] = codigo;
+    }
+
+    /* Objeto String com o vetor de bytes, em LATIN1 ou UTF16, alinhados em 8 bytes. */
+    static long bytesDaString(String texto) {
+        int porCaractere = 1;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 0xFF) {
+                porCaractere = 2;
+                break;
+            }
+        }
+        return 24 + ((16L + (long) porCaractere * texto.length() + 7) & ~7L);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila limitada de varios produtores e um unico consumidor sobre um vetor
+ * circular, sem travas. Cada posicao tem uma sequencia que diz de quem e a
+ * vez: um produtor reserva a proxima posicao com compare-and-set na cauda,
+ * grava o elemento e publica a sequencia; o consumidor so le posicoes
+ * publicadas e as devolve aos produtores avancando a sequencia em uma volta.
+ * Com a fila cheia {@link #oferecer} devolve {@code false} sem esperar.
+ */
+final class FilaCircular<E> {
+
+    private final Object[] elementos;
+
+    private final AtomicLongArray sequencias;
+
+    private final int mascara;
+
+    private final AtomicLong cauda = new AtomicLong();
+
+    /* So o consumidor escreve; produtores leem para saber o tamanho. */
+    private volatile long cabeca;
+
+    FilaCircular(int capacidadeMinima) {
+        int capacidade = Integer.highestOneBit(Math.max(2, capacidadeMinima - 1)) << 1;
+        elementos = new Object[capacidade];
+        sequencias = new AtomicLongArray(capacidade);
+        for (int i = 0; i < capacidade; i++) {
+            sequencias.set(i, i);
+        }
+        mascara = capacidade - 1;
+    }
+
+    boolean oferecer(E elemento) {
+        long posicao = cauda.get();
+        while (true) {
+            long sequencia = sequencias.get((int) posicao & mascara);
+            if (sequencia == posicao) {
+                if (cauda.compareAndSet(posicao, posicao + 1)) {
+                    break;
+                }
+                posicao = cauda.get();
+            } else if (sequencia < posicao) {
+                return false;
+            } else {
+                posicao = cauda.get();
+            }
+        }
+        elementos[(int) posicao & mascara] = elemento;
+        sequencias.set((int) posicao & mascara, posicao + 1);
+        return true;
+    }
+
+    /** Move para {@code destino} ate {@code maximo} elementos publicados, em ordem. So o consumidor chama. */
+    @SuppressWarnings("unchecked")
+    int drenar(List<E> destino, int maximo) {
+        long posicao = cabeca;
+        int movidos = 0;
+        while (movidos < maximo) {
+            int i = (int) posicao & mascara;
+            if (sequencias.get(i) != posicao + 1) {
+                break;
+            }
+            destino.add((E) elementos[i]);
+            elementos[i] = null;
+            sequencias.lazySet(i, posicao + elementos.length);
+            posicao++;
+            movidos++;
+        }
+        cabeca = posicao;
+        return movidos;
+    }
+
+    boolean vazia() {
+        return sequencias.get((int) cabeca & mascara) != cabeca + 1;
+    }
+
+    int capacidade() {
+        return elementos.length;
+    }
+
+    int tamanho() {
+        return (int) Math.max(0, cauda.get() - cabeca);
+    }
+}
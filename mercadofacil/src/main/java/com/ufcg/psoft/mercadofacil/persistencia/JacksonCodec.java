@@ -0,0 +1,45 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec que grava a entidade como JSON usando o {@link ObjectMapper} da
+ * aplicacao.
+ */
+public class JacksonCodec<T> implements Codec<T> {
+
+    private final ObjectWriter writer;
+
+    private final ObjectReader reader;
+
+    public JacksonCodec(ObjectMapper objectMapper, Class<T> tipo) {
+        this.writer = objectMapper.writerFor(tipo);
+        this.reader = objectMapper.readerFor(tipo);
+    }
+
+    @Override
+    public void codificar(T valor, ByteBuffer destino) {
+        try {
+            destino.put(writer.writeValueAsBytes(valor));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T decodificar(ByteBuffer origem) {
+        try {
+            byte[] bytes = new byte[origem.remaining()];
+            origem.get(bytes);
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
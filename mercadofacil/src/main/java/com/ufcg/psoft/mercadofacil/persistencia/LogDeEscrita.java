@@ -0,0 +1,567 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log de escrita antecipada (write-ahead log) somente de acrescimo, com
+ * snapshots compactados.
+ *
+ * <p>Cada registro e gravado como {@code [comprimento][lsn][operacao][dados][crc32c]},
+ * onde o comprimento cobre lsn, operacao e dados. As alteracoes entram em uma
+ * {@link FilaCircular} limitada, sem travas; uma unica thread escritora tira
+ * dela tudo o que estiver pendente, grava o lote com uma escrita no
+ * {@link FileChannel} e faz um so {@code force} para todos (group commit); so
+ * entao os futuros do lote sao completados. Dentro de um lote so a ultima
+ * alteracao de cada id e gravada, e nada do que vem antes de um
+ * {@code limpar}: as demais sao cobertas por ela e completam junto com o lote.
+ *
+ * <p>Com a fila cheia quem grava espera a escritora abrir espaco, girando um
+ * pouco e depois dormindo em intervalos curtos; a memoria ocupada pelas
+ * alteracoes pendentes fica limitada a {@link Configuracao#capacidadeFila()}.
+ * O {@link #close()} grava tudo o que ja estava na fila antes de fechar e
+ * falha o futuro do que foi enfileirado durante o fechamento.
+ *
+ * <p>A cada {@link Configuracao#registrosPorSnapshot()} registros a thread
+ * escritora grava o estado atual inteiro em um snapshot, com o ultimo lsn ja
+ * gravado no cabecalho, e trunca o log. Na abertura o snapshot e carregado e
+ * so os registros do log com lsn maior que o dele sao reaplicados. Os arquivos
+ * sao lidos por {@link MappedByteBuffer}, em janelas, e a leitura do log para
+ * no primeiro registro incompleto ou com crc errado: o que vier dali em diante
+ * e uma escrita interrompida e e descartado.
+ *
+ * <p>Quem usa o log deve aplicar a alteracao na memoria e enfileira-la
+ * segurando a mesma trava do id, para que a ordem do log seja a ordem em que
+ * as alteracoes de um id foram aplicadas.
+ */
+public class LogDeEscrita<T> implements Closeable {
+
+    /**
+     * @param registrosPorSnapshot registros gravados no log que disparam um novo snapshot
+     * @param tamanhoMaximoLote    maximo de registros gravados por {@code force}
+     * @param fsync                se {@code false}, os lotes vao para o sistema operacional sem {@code force}
+     * @param capacidadeFila       alteracoes pendentes aceitas antes de quem grava passar a esperar
+     * @param escritaAdiada        se {@code true}, os repositorios respondem sem esperar o registro
+     *                             chegar ao disco e so os futuros acompanham a gravacao
+     */
+    public record Configuracao(long registrosPorSnapshot, int tamanhoMaximoLote, boolean fsync,
+                               int capacidadeFila, boolean escritaAdiada) {
+
+        public static final int CAPACIDADE_FILA_PADRAO = 1 << 16;
+
+        public Configuracao(long registrosPorSnapshot, int tamanhoMaximoLote, boolean fsync) {
+            this(registrosPorSnapshot, tamanhoMaximoLote, fsync, CAPACIDADE_FILA_PADRAO, false);
+        }
+    }
+
+    /** Recebe os registros lidos do snapshot e do log durante a abertura. */
+    public interface Aplicador<T> {
+
+        void gravar(T valor);
+
+        void remover(long id);
+
+        void limpar();
+    }
+
+    private static final int MAGICO_SNAPSHOT = 0x4D465331;
+
+    private static final byte GRAVAR = 1;
+
+    private static final byte REMOVER = 2;
+
+    private static final byte LIMPAR = 3;
+
+    /* lsn + operacao */
+    private static final int CABECALHO = Long.BYTES + 1;
+
+    private static final int MAXIMO_REGISTRO = 64 << 20;
+
+    private static final long JANELA_LEITURA = 1L << 30;
+
+    private static final int LIMITE_DESCARGA_SNAPSHOT = 1 << 20;
+
+    private static final long ESPERA_ESCRITORA = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long ESPERA_FILA_CHEIA = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final int GIROS = 64;
+
+    private record Pendencia<T>(byte operacao, T valor, long id, CompletableFuture<Void> concluida) {
+    }
+
+    private interface LeitorRegistro {
+        void ler(long lsn, byte operacao, ByteBuffer dados);
+    }
+
+    private final Path arquivoLog;
+
+    private final Path arquivoSnapshot;
+
+    private final Codec<T> codec;
+
+    private final Configuracao configuracao;
+
+    private final FilaCircular<Pendencia<T>> fila;
+
+    private final LongAdder esperasFilaCheia = new LongAdder();
+
+    /* Quem esta entre olhar se o log esta aberto e terminar de enfileirar; o close espera zerar. */
+    private final AtomicInteger enfileirando = new AtomicInteger();
+
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel canal;
+
+    private Supplier<Stream<T>> estadoAtual;
+
+    private Thread escritora;
+
+    private volatile boolean aberto;
+
+    private volatile IOException falha;
+
+    private volatile boolean escritoraDormindo;
+
+    private volatile long coalescidos;
+
+    /* Os campos abaixo so sao usados pela thread escritora depois da abertura. */
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+    private long ultimoLsn;
+
+    private long registrosDesdeSnapshot;
+
+    private final List<Pendencia<T>> aGravar = new ArrayList<>();
+
+    private final Set<Long> idsDoLote = new HashSet<>();
+
+    public LogDeEscrita(Path diretorio, String nome, Codec<T> codec, Configuracao configuracao) {
+        this.arquivoLog = diretorio.resolve(nome + ".log");
+        this.arquivoSnapshot = diretorio.resolve(nome + ".snapshot");
+        this.codec = codec;
+        this.configuracao = configuracao;
+        this.fila = new FilaCircular<>(configuracao.capacidadeFila());
+    }
+
+    /**
+     * Reconstroi o estado passando o snapshot e o log ao aplicador e inicia a
+     * thread escritora. {@code estadoAtual} fornece o estado em memoria na
+     * hora de gravar cada snapshot.
+     */
+    public void abrir(Aplicador<T> aplicador, Supplier<Stream<T>> estadoAtual) throws IOException {
+        Files.createDirectories(arquivoLog.toAbsolutePath().getParent());
+        this.estadoAtual = estadoAtual;
+        long lsnSnapshot = carregarSnapshot(aplicador);
+        ultimoLsn = lsnSnapshot;
+        canal = FileChannel.open(arquivoLog, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long fimValido = ler(canal, 0, false, (lsn, operacao, dados) -> {
+            if (lsn > lsnSnapshot) {
+                aplicar(aplicador, operacao, dados);
+            }
+            ultimoLsn = Math.max(ultimoLsn, lsn);
+        });
+        canal.truncate(fimValido);
+        canal.position(fimValido);
+        aberto = true;
+        escritora = new Thread(this::escrever, "log-de-escrita-" + arquivoLog.getFileName());
+        escritora.setDaemon(true);
+        escritora.start();
+    }
+
+    /** Registra o valor do id; gravacoes do mesmo id no mesmo lote sao coalescidas. */
+    public CompletableFuture<Void> gravar(long id, T valor) {
+        return enfileirar(new Pendencia<>(GRAVAR, valor, id, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> remover(long id) {
+        return enfileirar(new Pendencia<>(REMOVER, null, id, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> limpar() {
+        return enfileirar(new Pendencia<>(LIMPAR, null, 0, new CompletableFuture<>()));
+    }
+
+    /**
+     * Espera o registro chegar ao disco, relancando a falha de escrita como
+     * excecao nao verificada.
+     */
+    public static void aguardar(CompletableFuture<Void> gravacao) {
+        try {
+            gravacao.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (causa instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Termina uma escrita do repositorio: espera o registro chegar ao disco
+     * ou, com escrita adiada, so relanca a falha se a gravacao ja falhou, como
+     * quando o log esta fechado ou uma escrita anterior deu erro.
+     */
+    public void confirmar(CompletableFuture<Void> gravacao) {
+        if (!configuracao.escritaAdiada() || gravacao.isDone()) {
+            aguardar(gravacao);
+        }
+    }
+
+    /** Alteracoes que nao precisaram ser gravadas por terem sido cobertas por outra do mesmo lote. */
+    public long coalescidos() {
+        return coalescidos;
+    }
+
+    /** Vezes em que quem grava encontrou a fila cheia e teve que esperar. */
+    public long esperasFilaCheia() {
+        return esperasFilaCheia.sum();
+    }
+
+    /**
+     * Grava os registros pendentes, encerra a thread escritora e fecha o
+     * arquivo. Quem passou pela checagem de aberto antes do fechamento ainda
+     * termina de enfileirar; depois que a escritora sai, o que sobrou na fila
+     * tem o futuro falhado, entao nenhum {@link #aguardar} fica esperando.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!aberto) {
+            return;
+        }
+        aberto = false;
+        LockSupport.unpark(escritora);
+        while (enfileirando.get() > 0) {
+            LockSupport.parkNanos(ESPERA_FILA_CHEIA);
+        }
+        LockSupport.unpark(escritora);
+        try {
+            escritora.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pendencia<T>> restantes = new ArrayList<>();
+        fila.drenar(restantes, Integer.MAX_VALUE);
+        restantes.forEach(restante -> restante.concluida()
+                .completeExceptionally(new IllegalStateException("Log de escrita fechado!")));
+        canal.close();
+    }
+
+    /*
+     * O contador e incrementado antes de ler aberto e o close escreve aberto
+     * antes de ler o contador: ou quem enfileira ve o log fechado, ou o close
+     * espera a pendencia entrar na fila.
+     */
+    private CompletableFuture<Void> enfileirar(Pendencia<T> pendencia) {
+        enfileirando.incrementAndGet();
+        try {
+            oferecer(pendencia);
+        } finally {
+            enfileirando.decrementAndGet();
+        }
+        return pendencia.concluida();
+    }
+
+    private void oferecer(Pendencia<T> pendencia) {
+        if (!aberto) {
+            pendencia.concluida().completeExceptionally(new IllegalStateException("Log de escrita fechado!"));
+        } else if (falha != null) {
+            pendencia.concluida().completeExceptionally(falha);
+        } else if (fila.oferecer(pendencia)) {
+            if (escritoraDormindo) {
+                LockSupport.unpark(escritora);
+            }
+        } else {
+            esperarEspaco(pendencia);
+        }
+    }
+
+    private void esperarEspaco(Pendencia<T> pendencia) {
+        esperasFilaCheia.increment();
+        for (int giro = 0; !fila.oferecer(pendencia); giro++) {
+            if (!aberto) {
+                pendencia.concluida().completeExceptionally(new IllegalStateException("Log de escrita fechado!"));
+                return;
+            }
+            LockSupport.unpark(escritora);
+            if (giro < GIROS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(ESPERA_FILA_CHEIA);
+            }
+        }
+        if (escritoraDormindo) {
+            LockSupport.unpark(escritora);
+        }
+    }
+
+    /*
+     * A escritora marca que vai dormir e olha a fila de novo antes de
+     * estacionar; quem enfileira publica e so depois le a marca, entao um dos
+     * dois sempre ve o outro.
+     */
+    private void aguardarPendencias() {
+        for (int giro = 0; giro < GIROS && fila.vazia(); giro++) {
+            Thread.onSpinWait();
+        }
+        if (!fila.vazia()) {
+            return;
+        }
+        escritoraDormindo = true;
+        if (fila.vazia() && aberto) {
+            LockSupport.parkNanos(this, ESPERA_ESCRITORA);
+        }
+        escritoraDormindo = false;
+    }
+
+    private void escrever() {
+        List<Pendencia<T>> lote = new ArrayList<>(configuracao.tamanhoMaximoLote());
+        while (true) {
+            if (fila.drenar(lote, configuracao.tamanhoMaximoLote()) == 0) {
+                if (!aberto && fila.vazia()) {
+                    break;
+                }
+                aguardarPendencias();
+                continue;
+            }
+            persistir(lote);
+            lote.clear();
+            if (registrosDesdeSnapshot >= configuracao.registrosPorSnapshot()) {
+                try {
+                    gravarSnapshot();
+                } catch (IOException e) {
+                    falha = e;
+                }
+            }
+        }
+    }
+
+    /*
+     * Percorre o lote do fim para o inicio guardando so a ultima alteracao de
+     * cada id e parando no ultimo limpar, que apaga tudo o que veio antes.
+     */
+    private List<Pendencia<T>> coalescer(List<Pendencia<T>> lote) {
+        aGravar.clear();
+        idsDoLote.clear();
+        for (int i = lote.size() - 1; i >= 0; i--) {
+            Pendencia<T> pendencia = lote.get(i);
+            if (pendencia.operacao() == LIMPAR) {
+                aGravar.add(pendencia);
+                break;
+            }
+            if (idsDoLote.add(pendencia.id())) {
+                aGravar.add(pendencia);
+            }
+        }
+        Collections.reverse(aGravar);
+        coalescidos += lote.size() - aGravar.size();
+        return aGravar;
+    }
+
+    private void persistir(List<Pendencia<T>> lote) {
+        try {
+            if (falha != null) {
+                throw falha;
+            }
+            buffer.clear();
+            List<Pendencia<T>> registros = coalescer(lote);
+            for (Pendencia<T> pendencia : registros) {
+                adicionarRegistro(++ultimoLsn, pendencia.operacao(), pendencia.valor(), pendencia.id());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (configuracao.fsync()) {
+                canal.force(false);
+            }
+        } catch (IOException e) {
+            falha = e;
+            lote.forEach(pendencia -> pendencia.concluida().completeExceptionally(e));
+            return;
+        } catch (RuntimeException e) {
+            lote.forEach(pendencia -> pendencia.concluida().completeExceptionally(e));
+            return;
+        }
+        registrosDesdeSnapshot += aGravar.size();
+        lote.forEach(pendencia -> pendencia.concluida().complete(null));
+    }
+
+    /*
+     * Grava o estado atual em um arquivo temporario e o move por cima do
+     * snapshot anterior. O lsn do cabecalho e o do ultimo registro ja gravado:
+     * tudo ate ele ja esta aplicado na memoria, e o que estiver na fila recebe
+     * lsn maior e sera reaplicado por cima do snapshot.
+     */
+    private void gravarSnapshot() throws IOException {
+        Path temporario = arquivoSnapshot.resolveSibling(arquivoSnapshot.getFileName() + ".tmp");
+        try (FileChannel saida = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Stream<T> estado = estadoAtual.get()) {
+            buffer.clear();
+            buffer.putInt(MAGICO_SNAPSHOT);
+            buffer.putLong(ultimoLsn);
+            Iterator<T> valores = estado.iterator();
+            while (valores.hasNext()) {
+                adicionarRegistro(0, GRAVAR, valores.next(), 0);
+                if (buffer.position() >= LIMITE_DESCARGA_SNAPSHOT) {
+                    descarregar(saida);
+                }
+            }
+            descarregar(saida);
+            saida.force(true);
+        }
+        Files.move(temporario, arquivoSnapshot, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        canal.truncate(0);
+        canal.position(0);
+        canal.force(true);
+        registrosDesdeSnapshot = 0;
+    }
+
+    private void descarregar(FileChannel saida) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            saida.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void adicionarRegistro(long lsn, byte operacao, T valor, long id) {
+        int inicio = buffer.position();
+        while (true) {
+            try {
+                buffer.position(inicio + Integer.BYTES);
+                buffer.putLong(lsn);
+                buffer.put(operacao);
+                if (operacao == GRAVAR) {
+                    codec.codificar(valor, buffer);
+                } else if (operacao == REMOVER) {
+                    buffer.putLong(id);
+                }
+                int fim = buffer.position();
+                crc.reset();
+                crc.update(buffer.duplicate().position(inicio + Integer.BYTES).limit(fim));
+                buffer.putInt((int) crc.getValue());
+                buffer.putInt(inicio, fim - inicio - Integer.BYTES);
+                return;
+            } catch (BufferOverflowException e) {
+                ByteBuffer maior = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip().limit(inicio);
+                maior.put(buffer);
+                buffer = maior;
+            }
+        }
+    }
+
+    private long carregarSnapshot(Aplicador<T> aplicador) throws IOException {
+        if (!Files.exists(arquivoSnapshot)) {
+            return 0;
+        }
+        try (FileChannel entrada = FileChannel.open(arquivoSnapshot, StandardOpenOption.READ)) {
+            int tamanhoCabecalho = Integer.BYTES + Long.BYTES;
+            if (entrada.size() < tamanhoCabecalho) {
+                throw new IOException("Snapshot invalido: " + arquivoSnapshot);
+            }
+            MappedByteBuffer cabecalho = entrada.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoCabecalho);
+            if (cabecalho.getInt() != MAGICO_SNAPSHOT) {
+                throw new IOException("Snapshot invalido: " + arquivoSnapshot);
+            }
+            long lsn = cabecalho.getLong();
+            ler(entrada, tamanhoCabecalho, true, (lsnRegistro, operacao, dados) -> aplicar(aplicador, operacao, dados));
+            return lsn;
+        }
+    }
+
+    private void aplicar(Aplicador<T> aplicador, byte operacao, ByteBuffer dados) {
+        switch (operacao) {
+            case GRAVAR -> aplicador.gravar(codec.decodificar(dados));
+            case REMOVER -> aplicador.remover(dados.getLong());
+            case LIMPAR -> aplicador.limpar();
+            default -> throw new IllegalStateException("Operacao desconhecida no log: " + operacao);
+        }
+    }
+
+    /*
+     * Le os registros a partir de inicio, mapeando o arquivo em janelas, e
+     * devolve a posicao logo apos o ultimo registro valido. Um registro que
+     * cruza o fim da janela faz a proxima janela comecar nele.
+     */
+    private long ler(FileChannel entrada, long inicio, boolean exigirCompleto, LeitorRegistro leitor)
+            throws IOException {
+        long tamanho = entrada.size();
+        long posicao = inicio;
+        while (posicao < tamanho) {
+            long janela = Math.min(JANELA_LEITURA, tamanho - posicao);
+            MappedByteBuffer mapa = entrada.map(FileChannel.MapMode.READ_ONLY, posicao, janela);
+            int lido = 0;
+            int registro;
+            while ((registro = lerRegistro(mapa, lido, leitor)) > 0) {
+                lido += registro;
+            }
+            posicao += lido;
+            boolean cruzaJanela = registro == 0 && lido > 0 && posicao + (janela - lido) < tamanho;
+            if (!cruzaJanela) {
+                break;
+            }
+        }
+        if (exigirCompleto && posicao != tamanho) {
+            throw new IOException("Registro corrompido em " + posicao + ": " + arquivoSnapshot);
+        }
+        return posicao;
+    }
+
+    /* Devolve o tamanho do registro lido, 0 se ele nao cabe no que resta do mapa e -1 se esta corrompido. */
+    private int lerRegistro(ByteBuffer mapa, int posicao, LeitorRegistro leitor) {
+        if (mapa.limit() - posicao < Integer.BYTES) {
+            return 0;
+        }
+        int comprimento = mapa.getInt(posicao);
+        if (comprimento < CABECALHO || comprimento > MAXIMO_REGISTRO) {
+            return -1;
+        }
+        int total = Integer.BYTES + comprimento + Integer.BYTES;
+        if (mapa.limit() - posicao < total) {
+            return 0;
+        }
+        int corpo = posicao + Integer.BYTES;
+        crc.reset();
+        crc.update(mapa.duplicate().position(corpo).limit(corpo + comprimento));
+        if ((int) crc.getValue() != mapa.getInt(corpo + comprimento)) {
+            return -1;
+        }
+        ByteBuffer dados = mapa.duplicate().position(corpo + CABECALHO).limit(corpo + comprimento).slice();
+        leitor.ler(mapa.getLong(corpo), mapa.get(corpo + Long.BYTES), dados);
+        return total;
+    }
+}
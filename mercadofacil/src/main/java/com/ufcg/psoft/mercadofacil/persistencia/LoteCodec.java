@@ -0,0 +1,73 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongFunction;
+
+/**
+ * Codec binario de {@link Lote}. O produto e gravado so pelo id; na leitura
+ * ele e buscado pela funcao de resolucao, e se ela nao o encontrar o lote
+ * recebe um produto que tem apenas o id. Registros anteriores a versao sao
+ * lidos com a versao nula.
+ */
+public class LoteCodec implements Codec<Lote> {
+
+    private static final int ID = 1;
+
+    private static final int PRODUTO = 1 << 1;
+
+    private static final int VERSAO = 1 << 2;
+
+    private final LongFunction<Produto> resolverProduto;
+
+    public LoteCodec(LongFunction<Produto> resolverProduto) {
+        this.resolverProduto = resolverProduto;
+    }
+
+    /** Codec que devolve os lotes com produtos que tem apenas o id. */
+    public LoteCodec() {
+        this(id -> null);
+    }
+
+    @Override
+    public void codificar(Lote lote, ByteBuffer destino) {
+        Produto produto = lote.getProduto();
+        boolean comProduto = produto != null && produto.getId() != null;
+        int presenca = (lote.getId() != null ? ID : 0) | (comProduto ? PRODUTO : 0)
+                | (lote.getVersao() != null ? VERSAO : 0);
+        destino.put((byte) presenca);
+        if ((presenca & ID) != 0) {
+            destino.putLong(lote.getId());
+        }
+        if (comProduto) {
+            destino.putLong(produto.getId());
+        }
+        destino.putInt(lote.getNumeroDeItens());
+        if ((presenca & VERSAO) != 0) {
+            destino.putLong(lote.getVersao());
+        }
+    }
+
+    @Override
+    public Lote decodificar(ByteBuffer origem) {
+        int presenca = origem.get();
+        Long id = (presenca & ID) != 0 ? origem.getLong() : null;
+        Produto produto = null;
+        if ((presenca & PRODUTO) != 0) {
+            long idProduto = origem.getLong();
+            produto = resolverProduto.apply(idProduto);
+            if (produto == null) {
+                produto = Produto.builder().id(idProduto).build();
+            }
+        }
+        int numeroDeItens = origem.getInt();
+        return Lote.builder()
+                .id(id)
+                .produto(produto)
+                .numeroDeItens(numeroDeItens)
+                .versao((presenca & VERSAO) != 0 ? origem.getLong() : null)
+                .build();
+    }
+}
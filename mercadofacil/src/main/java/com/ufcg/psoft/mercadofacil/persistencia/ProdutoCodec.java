@@ -0,0 +1,81 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec binario de {@link Produto}: um byte de presenca dos campos seguido
+ * de id, versao, preco, codigo de barras, nome e fabricante. Um codigo de
+ * barras de 13 digitos e gravado como um {@code long}; qualquer outro, como
+ * string. Registros anteriores a versao sao lidos com a versao nula.
+ */
+public class ProdutoCodec implements Codec<Produto> {
+
+    private static final int ID = 1;
+
+    private static final int NOME = 1 << 1;
+
+    private static final int CODIGO_EAN = 1 << 2;
+
+    private static final int CODIGO_TEXTO = 1 << 3;
+
+    private static final int FABRICANTE = 1 << 4;
+
+    private static final int VERSAO = 1 << 5;
+
+    @Override
+    public void codificar(Produto produto, ByteBuffer destino) {
+        String codigoBarra = produto.getCodigoBarra();
+        int presenca = (produto.getId() != null ? ID : 0)
+                | (produto.getNome() != null ? NOME : 0)
+                | (produto.getFabricante() != null ? FABRICANTE : 0)
+                | (produto.getVersao() != null ? VERSAO : 0);
+        if (codigoBarra != null) {
+            presenca |= Binario.ehEan(codigoBarra) ? CODIGO_EAN : CODIGO_TEXTO;
+        }
+        destino.put((byte) presenca);
+        if ((presenca & ID) != 0) {
+            destino.putLong(produto.getId());
+        }
+        if ((presenca & VERSAO) != 0) {
+            destino.putLong(produto.getVersao());
+        }
+        destino.putDouble(produto.getPreco());
+        if ((presenca & CODIGO_EAN) != 0) {
+            destino.putLong(Binario.empacotarEan(codigoBarra));
+        } else if ((presenca & CODIGO_TEXTO) != 0) {
+            Binario.escreverString(codigoBarra, destino);
+        }
+        if ((presenca & NOME) != 0) {
+            Binario.escreverString(produto.getNome(), destino);
+        }
+        if ((presenca & FABRICANTE) != 0) {
+            Binario.escreverString(produto.getFabricante(), destino);
+        }
+    }
+
+    @Override
+    public Produto decodificar(ByteBuffer origem) {
+        int presenca = origem.get();
+        Long id = (presenca & ID) != 0 ? origem.getLong() : null;
+        Long versao = (presenca & VERSAO) != 0 ? origem.getLong() : null;
+        double preco = origem.getDouble();
+        String codigoBarra = null;
+        if ((presenca & CODIGO_EAN) != 0) {
+            codigoBarra = Binario.desempacotarEan(origem.getLong());
+        } else if ((presenca & CODIGO_TEXTO) != 0) {
+            codigoBarra = Binario.lerString(origem);
+        }
+        String nome = (presenca & NOME) != 0 ? Binario.lerString(origem) : null;
+        String fabricante = (presenca & FABRICANTE) != 0 ? Binario.lerString(origem) : null;
+        return Produto.builder()
+                .id(id)
+                .nome(nome)
+                .preco(preco)
+                .codigoBarra(codigoBarra)
+                .fabricante(fabricante)
+                .versao(versao)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.LogDeEscrita;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Um repositorio replicado: o codigo que identifica as suas alteracoes, o
+ * codec dos valores, o estado atual para os snapshots do primario e o
+ * aplicador das alteracoes recebidas pela replica. Nos snapshots os fluxos
+ * vao em ordem de codigo, entao quem e referenciado por outro fluxo deve ter
+ * o codigo menor.
+ */
+public record Fluxo<T>(byte codigo, Codec<T> codec, Supplier<Stream<T>> estado, Aplicador<T> aplicador) {
+
+    /**
+     * Aplicador da replica. Depois de um {@code LIMPAR} o estado pode ficar
+     * incompleto ate o fim do snapshot, que atravessa varios quadros parciais;
+     * {@link #concluir()} e chamado no fim de cada quadro que nao e parcial,
+     * quando o estado recebido volta a corresponder a um lsn do primario.
+     */
+    public interface Aplicador<T> extends LogDeEscrita.Aplicador<T> {
+
+        void concluir();
+    }
+}
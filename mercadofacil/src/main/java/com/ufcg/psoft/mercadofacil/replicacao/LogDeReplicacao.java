@@ -0,0 +1,111 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * As alteracoes mais recentes do primario, em ordem de lsn, num anel de
+ * tamanho fixo. Publicar reserva o lsn seguinte com um incremento atomico e
+ * grava a alteracao na posicao dele, sem trava e sem esperar replica
+ * nenhuma: uma replica atrasada demais encontra a sua posicao ja ocupada por
+ * um lsn maior e recomeca por um snapshot.
+ *
+ * <p>Quem publica deve aplicar a alteracao na memoria antes e segurar a
+ * trava do id durante as duas coisas, como no log de escrita: assim a ordem
+ * dos lsn de um id e a ordem em que as alteracoes dele foram aplicadas, e um
+ * snapshot lido depois de {@link #ultimoLsn()} ja contem tudo ate ele.
+ *
+ * <p>A geracao e sorteada a cada inicio do processo; uma replica que se
+ * reconecta com outra geracao seguiu um primario que ja nao existe. A
+ * geracao nunca e zero, que a replica usa para dizer que nao tem estado.
+ */
+public final class LogDeReplicacao {
+
+    public static final byte GRAVAR = 1;
+
+    public static final byte REMOVER = 2;
+
+    public static final byte LIMPAR = 3;
+
+    private static final long ESPERA_MAXIMA = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** Uma alteracao publicada; {@code momento} e o relogio do primario ao publica-la, em ms. */
+    public record Alteracao(long lsn, byte fluxo, byte operacao, long id, Object valor, long momento) {
+    }
+
+    private final AtomicReferenceArray<Alteracao> anel;
+
+    private final int mascara;
+
+    private final AtomicLong ultimoLsn = new AtomicLong();
+
+    private final long geracao = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+    private final List<Thread> aguardando = new CopyOnWriteArrayList<>();
+
+    public LogDeReplicacao(int retencaoMinima) {
+        int capacidade = Integer.highestOneBit(Math.max(2, retencaoMinima - 1)) << 1;
+        anel = new AtomicReferenceArray<>(capacidade);
+        mascara = capacidade - 1;
+    }
+
+    public long publicar(byte fluxo, byte operacao, long id, Object valor) {
+        long lsn = ultimoLsn.incrementAndGet();
+        Alteracao alteracao = new Alteracao(lsn, fluxo, operacao, id, valor, System.currentTimeMillis());
+        int i = (int) lsn & mascara;
+        /* Quem demorou mais de uma volta do anel nao sobrescreve o lsn maior que ja esta la. */
+        Alteracao anterior = anel.get(i);
+        while ((anterior == null || anterior.lsn() < lsn) && !anel.compareAndSet(i, anterior, alteracao)) {
+            anterior = anel.get(i);
+        }
+        if (!aguardando.isEmpty()) {
+            aguardando.forEach(LockSupport::unpark);
+        }
+        return lsn;
+    }
+
+    /**
+     * O que esta na posicao do lsn: a propria alteracao, uma anterior ou
+     * {@code null} se ela ainda nao foi publicada, ou uma de lsn maior se ela
+     * ja saiu do anel.
+     */
+    public Alteracao naPosicao(long lsn) {
+        return anel.get((int) lsn & mascara);
+    }
+
+    /** O maior lsn reservado; alteracoes ate ele podem ainda estar sendo gravadas no anel. */
+    public long ultimoLsn() {
+        return ultimoLsn.get();
+    }
+
+    public long geracao() {
+        return geracao;
+    }
+
+    public int capacidade() {
+        return mascara + 1;
+    }
+
+    /**
+     * Espera ate que o lsn seja publicado ou passe o tempo maximo. Quem
+     * espera se registra e confere de novo antes de estacionar; quem publica
+     * grava a alteracao e so depois olha os registrados.
+     */
+    void aguardar(long lsn, long nanos) {
+        Thread atual = Thread.currentThread();
+        aguardando.add(atual);
+        try {
+            Alteracao alteracao = naPosicao(lsn);
+            if (alteracao == null || alteracao.lsn() < lsn) {
+                LockSupport.parkNanos(this, Math.min(nanos, ESPERA_MAXIMA));
+            }
+        } finally {
+            aguardando.remove(atual);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.ufcg.psoft.mercadofacil.replicacao.LogDeReplicacao.Alteracao;
+
+/**
+ * Lado do primario: aceita replicas e mantem uma thread de envio para cada
+ * uma. Ao conectar, a replica informa a geracao e o ultimo lsn que aplicou;
+ * se as alteracoes seguintes ainda estiverem no {@link LogDeReplicacao}, o
+ * envio continua dali, senao comeca por um snapshot.
+ *
+ * <p>O snapshot guarda o ultimo lsn do log antes de ler o estado e manda,
+ * fluxo por fluxo, um {@code LIMPAR} e um {@code GRAVAR} por entidade, todos
+ * com esse lsn, marcando como parciais todos os quadros menos o ultimo;
+ * depois segue com as alteracoes de lsn maior. Uma entidade
+ * alterada durante a leitura pode chegar no snapshot ja com o valor novo, mas
+ * a alteracao dela vem de novo em seguida e a replica termina no mesmo
+ * estado, como na reabertura do log de escrita.
+ *
+ * <p>Cada quadro leva ate {@code alteracoesPorQuadro} alteracoes, todas as que
+ * estiverem prontas ate esse limite; sem nada para enviar por
+ * {@link #SINAL_DE_VIDA_MS} ms, vai um quadro vazio com o ultimo lsn. Os
+ * transportes desistem de uma conexao que passa {@link #PRAZO_MS} ms sem
+ * avancar, entao uma replica sumida nao prende a thread de envio e um
+ * primario sumido faz a replica reconectar.
+ */
+public final class Primario implements Closeable {
+
+    static final long SINAL_DE_VIDA_MS = 1000;
+
+    static final long PRAZO_MS = 3 * SINAL_DE_VIDA_MS;
+
+    private final Transporte transporte;
+
+    private final LogDeReplicacao log;
+
+    private final List<Fluxo<?>> fluxos;
+
+    private final int alteracoesPorQuadro;
+
+    private final Set<Transporte.Conexao> conexoes = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder alteracoesEnviadas = new LongAdder();
+
+    private final LongAdder bytesEnviados = new LongAdder();
+
+    private final LongAdder bytesOriginais = new LongAdder();
+
+    private final LongAdder snapshots = new LongAdder();
+
+    private Thread aceitacao;
+
+    private volatile boolean aberto;
+
+    /** Os fluxos devem vir em ordem de codigo. */
+    public Primario(Transporte transporte, LogDeReplicacao log, List<Fluxo<?>> fluxos, int alteracoesPorQuadro) {
+        this.transporte = transporte;
+        this.log = log;
+        this.fluxos = fluxos;
+        this.alteracoesPorQuadro = alteracoesPorQuadro;
+    }
+
+    public void iniciar() {
+        aberto = true;
+        aceitacao = new Thread(this::aceitar, "replicacao-primario");
+        aceitacao.setDaemon(true);
+        aceitacao.start();
+    }
+
+    public int replicasConectadas() {
+        return conexoes.size();
+    }
+
+    public long alteracoesEnviadas() {
+        return alteracoesEnviadas.sum();
+    }
+
+    /** Bytes dos quadros enviados, ja comprimidos. */
+    public long bytesEnviados() {
+        return bytesEnviados.sum();
+    }
+
+    /** Bytes dos corpos dos quadros antes da compressao. */
+    public long bytesOriginais() {
+        return bytesOriginais.sum();
+    }
+
+    public long snapshots() {
+        return snapshots.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        aberto = false;
+        transporte.close();
+        for (Transporte.Conexao conexao : conexoes) {
+            conexao.close();
+        }
+        if (aceitacao != null) {
+            try {
+                aceitacao.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void aceitar() {
+        while (aberto) {
+            Transporte.Conexao conexao;
+            try {
+                conexao = transporte.aceitar();
+            } catch (IOException e) {
+                if (aberto) {
+                    esperar(100);
+                }
+                continue;
+            }
+            conexoes.add(conexao);
+            Thread envio = new Thread(() -> enviar(conexao), "replicacao-envio");
+            envio.setDaemon(true);
+            envio.start();
+        }
+    }
+
+    private void enviar(Transporte.Conexao conexao) {
+        Quadro quadro = new Quadro();
+        try (conexao) {
+            ByteBuffer ola = conexao.receber();
+            if (ola.remaining() < 1 + Long.BYTES * 2 || ola.get() != Quadro.OLA) {
+                throw new IOException("Quadro de replicacao invalido!");
+            }
+            long geracao = ola.getLong();
+            long aplicado = ola.getLong();
+            long proximo = geracao == log.geracao() && disponivel(aplicado + 1)
+                    ? aplicado + 1 : enviarSnapshot(conexao, quadro) + 1;
+            long ultimoEnvio = System.currentTimeMillis();
+            while (aberto) {
+                quadro.comecar();
+                Alteracao alteracao;
+                while (quadro.quantidade() < alteracoesPorQuadro
+                        && (alteracao = log.naPosicao(proximo)) != null && alteracao.lsn() >= proximo) {
+                    if (alteracao.lsn() > proximo) {
+                        quadro.comecar();
+                        proximo = enviarSnapshot(conexao, quadro) + 1;
+                        continue;
+                    }
+                    quadro.adicionar(alteracao.lsn(), alteracao.fluxo(), alteracao.operacao(), alteracao.id(),
+                            alteracao.valor(), fluxo(alteracao.fluxo()).codec(), alteracao.momento());
+                    proximo++;
+                }
+                long agora = System.currentTimeMillis();
+                if (quadro.quantidade() > 0 || agora - ultimoEnvio >= SINAL_DE_VIDA_MS) {
+                    enviarQuadro(conexao, quadro, false);
+                    ultimoEnvio = agora;
+                } else {
+                    log.aguardar(proximo, TimeUnit.MILLISECONDS.toNanos(SINAL_DE_VIDA_MS));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            /* A replica caiu ou enviou lixo; ela reconecta e retoma do ultimo lsn que aplicou. */
+        } finally {
+            conexoes.remove(conexao);
+        }
+    }
+
+    /* Se o envio pode continuar do lsn: ele ainda esta no anel ou ainda nao foi publicado. */
+    private boolean disponivel(long lsn) {
+        if (lsn > log.ultimoLsn()) {
+            return lsn == log.ultimoLsn() + 1;
+        }
+        Alteracao alteracao = log.naPosicao(lsn);
+        return alteracao == null || alteracao.lsn() <= lsn;
+    }
+
+    /* Devolve o lsn do snapshot; as alteracoes seguintes vem do log. */
+    private long enviarSnapshot(Transporte.Conexao conexao, Quadro quadro) throws IOException {
+        snapshots.increment();
+        long lsn = log.ultimoLsn();
+        long momento = System.currentTimeMillis();
+        quadro.comecar();
+        for (Fluxo<?> fluxo : fluxos) {
+            quadro.adicionar(lsn, fluxo.codigo(), LogDeReplicacao.LIMPAR, 0, null, fluxo.codec(), momento);
+            try (Stream<?> estado = fluxo.estado().get()) {
+                Iterator<?> valores = estado.iterator();
+                while (valores.hasNext()) {
+                    if (quadro.quantidade() == alteracoesPorQuadro) {
+                        enviarQuadro(conexao, quadro, true);
+                        quadro.comecar();
+                    }
+                    quadro.adicionar(lsn, fluxo.codigo(), LogDeReplicacao.GRAVAR, 0, valores.next(), fluxo.codec(),
+                            momento);
+                }
+            }
+        }
+        enviarQuadro(conexao, quadro, false);
+        quadro.comecar();
+        return lsn;
+    }
+
+    private void enviarQuadro(Transporte.Conexao conexao, Quadro quadro, boolean parcial) throws IOException {
+        int quantidade = quadro.quantidade();
+        ByteBuffer bytes = quadro.fechar(log.geracao(), log.ultimoLsn(), parcial);
+        int tamanho = bytes.remaining();
+        conexao.enviar(bytes);
+        alteracoesEnviadas.add(quantidade);
+        bytesEnviados.add(tamanho);
+        bytesOriginais.add(quadro.tamanhoOriginal());
+    }
+
+    private Fluxo<?> fluxo(byte codigo) {
+        for (Fluxo<?> fluxo : fluxos) {
+            if (fluxo.codigo() == codigo) {
+                return fluxo;
+            }
+        }
+        throw new IllegalStateException("Fluxo de replicacao desconhecido: " + codigo);
+    }
+
+    private static void esperar(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
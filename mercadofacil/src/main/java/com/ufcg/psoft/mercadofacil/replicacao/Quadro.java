@@ -0,0 +1,203 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+
+/**
+ * Formato dos quadros trocados pela replicacao.
+ *
+ * <p>A replica abre a conexao com {@code [OLA][geracao][ultimo lsn aplicado]}.
+ * O primario responde so com quadros de alteracoes:
+ * {@code [ALTERACOES][geracao][ultimo lsn do primario][momento][quantidade][tamanho original][opcoes][corpo]},
+ * onde o corpo e uma sequencia de {@code [lsn][fluxo][operacao][id][tamanho][dados]}
+ * comprimida com Deflate quando passa de {@link #MINIMO_COMPRESSAO} bytes. O
+ * momento e o da alteracao mais antiga do quadro. Um quadro sem alteracoes
+ * serve de sinal de vida e leva o ultimo lsn do primario. As opcoes dizem se
+ * o corpo esta comprimido e se o quadro e parte de um snapshot que continua
+ * no quadro seguinte.
+ *
+ * <p>Cada conexao tem o seu {@code Quadro}, que reaproveita buffers, o
+ * {@link Deflater} e o {@link Inflater}; nao e seguro para varias threads.
+ */
+final class Quadro {
+
+    static final byte OLA = 1;
+
+    static final byte ALTERACOES = 2;
+
+    static final int MINIMO_COMPRESSAO = 512;
+
+    static final byte COMPRIMIDO = 1;
+
+    static final byte PARCIAL = 2;
+
+    /* tipo, geracao, ultimo lsn, momento, quantidade, tamanho original, opcoes */
+    static final int CABECALHO = 1 + Long.BYTES * 3 + Integer.BYTES * 2 + 1;
+
+    /* lsn, fluxo, operacao, id, tamanho */
+    private static final int CABECALHO_REGISTRO = Long.BYTES + 2 + Long.BYTES + Integer.BYTES;
+
+    private final Deflater compressor = new Deflater(Deflater.BEST_SPEED);
+
+    private final Inflater descompressor = new Inflater();
+
+    private ByteBuffer corpo = ByteBuffer.allocate(1 << 16);
+
+    private ByteBuffer saida = ByteBuffer.allocate(1 << 16);
+
+    private int quantidade;
+
+    private long momento;
+
+    /** Bytes do ultimo corpo montado ou lido, antes da compressao. */
+    private int tamanhoOriginal;
+
+    static ByteBuffer ola(long geracao, long lsn) {
+        return ByteBuffer.allocate(1 + Long.BYTES * 2).put(OLA).putLong(geracao).putLong(lsn).flip();
+    }
+
+    void comecar() {
+        corpo.clear();
+        quantidade = 0;
+        momento = 0;
+    }
+
+    int quantidade() {
+        return quantidade;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void adicionar(long lsn, byte fluxo, byte operacao, long id, Object valor, Codec<T> codec, long momentoAlteracao) {
+        int inicio = corpo.position();
+        while (true) {
+            try {
+                corpo.putLong(lsn).put(fluxo).put(operacao).putLong(id);
+                int tamanho = corpo.position();
+                corpo.putInt(0);
+                if (operacao == LogDeReplicacao.GRAVAR) {
+                    codec.codificar((T) valor, corpo);
+                }
+                corpo.putInt(tamanho, corpo.position() - tamanho - Integer.BYTES);
+                break;
+            } catch (BufferOverflowException e) {
+                ByteBuffer maior = ByteBuffer.allocate(corpo.capacity() * 2);
+                corpo.flip().limit(inicio);
+                maior.put(corpo);
+                corpo = maior;
+            }
+        }
+        if (quantidade++ == 0) {
+            momento = momentoAlteracao;
+        }
+    }
+
+    /**
+     * Fecha o quadro montado desde {@link #comecar()}; o buffer vale ate o
+     * proximo. {@code parcial} marca um quadro de snapshot que nao e o ultimo.
+     */
+    ByteBuffer fechar(long geracao, long ultimoLsn, boolean parcial) {
+        corpo.flip();
+        tamanhoOriginal = corpo.remaining();
+        boolean comprimir = tamanhoOriginal >= MINIMO_COMPRESSAO;
+        garantirSaida(CABECALHO + (comprimir ? tamanhoOriginal + tamanhoOriginal / 8 + 64 : tamanhoOriginal));
+        saida.clear();
+        saida.put(ALTERACOES).putLong(geracao).putLong(ultimoLsn).putLong(momento)
+                .putInt(quantidade).putInt(tamanhoOriginal)
+                .put((byte) ((comprimir ? COMPRIMIDO : 0) | (parcial ? PARCIAL : 0)));
+        if (comprimir) {
+            compressor.reset();
+            compressor.setInput(corpo);
+            compressor.finish();
+            while (!compressor.finished()) {
+                if (!saida.hasRemaining()) {
+                    ByteBuffer maior = ByteBuffer.allocate(saida.capacity() * 2);
+                    maior.put(saida.flip());
+                    saida = maior;
+                }
+                compressor.deflate(saida);
+            }
+        } else {
+            saida.put(corpo);
+        }
+        return saida.flip();
+    }
+
+    int tamanhoOriginal() {
+        return tamanhoOriginal;
+    }
+
+    /** Recebe cada registro de um quadro de alteracoes lido por {@link #ler}. */
+    interface LeitorRegistro {
+        void ler(long lsn, byte fluxo, byte operacao, long id, ByteBuffer dados);
+    }
+
+    /** O cabecalho de um quadro de alteracoes recebido. */
+    record Cabecalho(long geracao, long ultimoLsn, long momento, int quantidade, int tamanhoOriginal,
+            boolean parcial) {
+    }
+
+    /** Le o cabecalho e passa cada registro ao leitor, descomprimindo o corpo se preciso. */
+    Cabecalho ler(ByteBuffer quadro, LeitorRegistro leitor) throws IOException {
+        if (quadro.remaining() < CABECALHO || quadro.get() != ALTERACOES) {
+            throw new IOException("Quadro de replicacao invalido!");
+        }
+        long geracao = quadro.getLong();
+        long ultimoLsn = quadro.getLong();
+        long momentoQuadro = quadro.getLong();
+        int quantidadeQuadro = quadro.getInt();
+        int original = quadro.getInt();
+        byte opcoes = quadro.get();
+        Cabecalho cabecalho = new Cabecalho(geracao, ultimoLsn, momentoQuadro, quantidadeQuadro, original,
+                (opcoes & PARCIAL) != 0);
+        boolean comprimido = (opcoes & COMPRIMIDO) != 0;
+        ByteBuffer registros = quadro;
+        if (comprimido) {
+            if (corpo.capacity() < cabecalho.tamanhoOriginal()) {
+                corpo = ByteBuffer.allocate(cabecalho.tamanhoOriginal());
+            }
+            corpo.clear().limit(cabecalho.tamanhoOriginal());
+            descompressor.reset();
+            descompressor.setInput(quadro);
+            try {
+                while (corpo.hasRemaining() && !descompressor.finished()) {
+                    if (descompressor.inflate(corpo) == 0 && descompressor.needsInput()) {
+                        throw new IOException("Quadro de replicacao truncado!");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Quadro de replicacao invalido!", e);
+            }
+            registros = corpo.flip();
+        }
+        tamanhoOriginal = cabecalho.tamanhoOriginal();
+        for (int i = 0; i < cabecalho.quantidade(); i++) {
+            if (registros.remaining() < CABECALHO_REGISTRO) {
+                throw new IOException("Quadro de replicacao truncado!");
+            }
+            long lsn = registros.getLong();
+            byte fluxo = registros.get();
+            byte operacao = registros.get();
+            long id = registros.getLong();
+            int tamanho = registros.getInt();
+            if (tamanho < 0 || tamanho > registros.remaining()) {
+                throw new IOException("Quadro de replicacao truncado!");
+            }
+            ByteBuffer dados = registros.slice(registros.position(), tamanho);
+            registros.position(registros.position() + tamanho);
+            leitor.ler(lsn, fluxo, operacao, id, dados);
+        }
+        return cabecalho;
+    }
+
+    private void garantirSaida(int tamanho) {
+        if (saida.capacity() < tamanho) {
+            saida = ByteBuffer.allocate(Math.max(tamanho, saida.capacity() * 2));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lado da replica: conecta ao primario, informa a geracao e o ultimo lsn
+ * aplicado e aplica os quadros recebidos, em ordem, numa unica thread. Se a
+ * conexao cair, reconecta depois de {@link #ESPERA_RECONEXAO_MS} ms e retoma
+ * de onde parou; o primario decide se isso ainda cabe no log dele ou se
+ * manda um snapshot.
+ *
+ * <p>O lsn aplicado so avanca no fim de cada quadro, e num snapshot so no
+ * fim do ultimo quadro dele: se a conexao cair no meio do snapshot, a replica
+ * volta sem geracao e recebe outro. Reaplicar as alteracoes de um quadro
+ * interrompido deixa o mesmo estado, ja que cada uma leva o valor inteiro.
+ * Os aplicadores montam o snapshot a parte e so o trocam pelo estado
+ * visivel em {@link Fluxo.Aplicador#concluir()}, no fim do ultimo quadro,
+ * entao as leituras da replica nunca veem um estado pela metade.
+ *
+ * <p>O primario manda ao menos um sinal de vida a cada
+ * {@link Primario#SINAL_DE_VIDA_MS} ms; o transporte desiste da leitura
+ * depois de {@link Primario#PRAZO_MS} ms sem nada, e a replica reconecta
+ * como se a conexao tivesse caido.
+ *
+ * <p>O atraso e medido a cada quadro: em alteracoes, a diferenca entre o
+ * ultimo lsn do primario informado no quadro e o ultimo aplicado; em tempo,
+ * entre o fim da aplicacao e o momento da alteracao mais antiga do quadro,
+ * pelos relogios das duas maquinas.
+ *
+ * <p>O transporte continua de quem o criou: fechar a replica fecha so a
+ * conexao dela, ja que no {@link TransporteLocal} o mesmo transporte tambem
+ * serve ao primario.
+ */
+public final class Replica implements Closeable {
+
+    static final long ESPERA_RECONEXAO_MS = 500;
+
+    private final Transporte transporte;
+
+    private final List<Fluxo<?>> fluxos;
+
+    private final LongAdder alteracoesAplicadas = new LongAdder();
+
+    private final LongAdder bytesRecebidos = new LongAdder();
+
+    private final LongAdder snapshots = new LongAdder();
+
+    /* Zero enquanto o estado nao corresponde a nenhum lsn do primario, como no meio de um snapshot. */
+    private volatile long geracao;
+
+    /* Usado so pela thread de recepcao. */
+    private long ultimoDoQuadro;
+
+    private volatile long aplicado;
+
+    private volatile long ultimoLsnPrimario;
+
+    private volatile long atrasoMs;
+
+    private volatile Transporte.Conexao conexao;
+
+    private Thread recepcao;
+
+    private volatile boolean aberto;
+
+    public Replica(Transporte transporte, List<Fluxo<?>> fluxos) {
+        this.transporte = transporte;
+        this.fluxos = fluxos;
+    }
+
+    public void iniciar() {
+        aberto = true;
+        recepcao = new Thread(this::receber, "replicacao-replica");
+        recepcao.setDaemon(true);
+        recepcao.start();
+    }
+
+    public boolean conectada() {
+        return conexao != null;
+    }
+
+    /** O ultimo lsn do primario aplicado aqui. */
+    public long aplicado() {
+        return aplicado;
+    }
+
+    public long alteracoesAplicadas() {
+        return alteracoesAplicadas.sum();
+    }
+
+    public long bytesRecebidos() {
+        return bytesRecebidos.sum();
+    }
+
+    public long snapshots() {
+        return snapshots.sum();
+    }
+
+    /** Alteracoes que o primario ja tinha e esta replica ainda nao aplicou, segundo o ultimo quadro. */
+    public long atrasoAlteracoes() {
+        return Math.max(0, ultimoLsnPrimario - aplicado);
+    }
+
+    /** Zero quando a replica esta em dia com o ultimo quadro recebido. */
+    public long atrasoMs() {
+        return atrasoAlteracoes() == 0 ? 0 : atrasoMs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        aberto = false;
+        Transporte.Conexao atual = conexao;
+        if (atual != null) {
+            atual.close();
+        }
+        if (recepcao != null) {
+            try {
+                recepcao.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void receber() {
+        Quadro quadro = new Quadro();
+        while (aberto) {
+            try (Transporte.Conexao atual = transporte.conectar()) {
+                conexao = atual;
+                if (!aberto) {
+                    break;
+                }
+                atual.enviar(Quadro.ola(geracao, aplicado));
+                while (aberto) {
+                    aplicar(quadro, atual.receber());
+                }
+            } catch (IOException | RuntimeException e) {
+                conexao = null;
+                if (aberto) {
+                    esperar();
+                }
+            }
+        }
+        conexao = null;
+    }
+
+    private void aplicar(Quadro quadro, ByteBuffer bytes) throws IOException {
+        bytesRecebidos.add(bytes.remaining());
+        Quadro.Cabecalho cabecalho = quadro.ler(bytes, (lsn, fluxo, operacao, id, dados) -> {
+            if (operacao == LogDeReplicacao.LIMPAR) {
+                geracao = 0;
+                if (fluxo == fluxos.get(0).codigo()) {
+                    snapshots.increment();
+                }
+            }
+            aplicar(fluxo(fluxo), operacao, id, dados);
+            ultimoDoQuadro = lsn;
+        });
+        alteracoesAplicadas.add(cabecalho.quantidade());
+        ultimoLsnPrimario = cabecalho.ultimoLsn();
+        if (cabecalho.parcial()) {
+            return;
+        }
+        for (Fluxo<?> fluxo : fluxos) {
+            fluxo.aplicador().concluir();
+        }
+        geracao = cabecalho.geracao();
+        if (cabecalho.quantidade() > 0) {
+            aplicado = ultimoDoQuadro;
+            atrasoMs = Math.max(0, System.currentTimeMillis() - cabecalho.momento());
+        }
+    }
+
+    private static <T> void aplicar(Fluxo<T> fluxo, byte operacao, long id, ByteBuffer dados) {
+        Fluxo.Aplicador<T> aplicador = fluxo.aplicador();
+        switch (operacao) {
+            case LogDeReplicacao.GRAVAR -> aplicador.gravar(fluxo.codec().decodificar(dados));
+            case LogDeReplicacao.REMOVER -> aplicador.remover(id);
+            case LogDeReplicacao.LIMPAR -> aplicador.limpar();
+            default -> throw new IllegalStateException("Operacao desconhecida na replicacao: " + operacao);
+        }
+    }
+
+    private Fluxo<?> fluxo(byte codigo) {
+        for (Fluxo<?> fluxo : fluxos) {
+            if (fluxo.codigo() == codigo) {
+                return fluxo;
+            }
+        }
+        throw new IllegalStateException("Fluxo de replicacao desconhecido: " + codigo);
+    }
+
+    private static void esperar() {
+        try {
+            Thread.sleep(ESPERA_RECONEXAO_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
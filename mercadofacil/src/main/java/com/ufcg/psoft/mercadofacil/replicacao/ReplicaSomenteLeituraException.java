@@ -0,0 +1,14 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+/**
+ * Lancada quando uma escrita chega a uma replica. O estado da replica so
+ * muda pelo fluxo do primario, entao a escrita deve ser refeita contra ele.
+ */
+public class ReplicaSomenteLeituraException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReplicaSomenteLeituraException() {
+        super("Replica somente leitura!");
+    }
+}
@@ -0,0 +1,176 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Replicacao do estado dos repositorios entre processos, ativa no perfil
+ * {@code replicado}. No primario os repositorios publicam cada alteracao
+ * aplicada no {@link LogDeReplicacao}, e o {@link Primario} a envia para as
+ * replicas conectadas; numa replica a {@link Replica} recebe as alteracoes
+ * e os repositorios so aceitam leituras.
+ *
+ * <p>Os repositorios registram os seus fluxos na criacao; o envio e a
+ * recepcao comecam quando a aplicacao termina de subir, com todos os fluxos
+ * registrados.
+ */
+@Component
+@Profile("replicado")
+public class Replicacao implements Closeable {
+
+    public enum Papel {
+        PRIMARIO, REPLICA
+    }
+
+    public static final byte FLUXO_PRODUTOS = 1;
+
+    public static final byte FLUXO_LOTES = 2;
+
+    private final Papel papel;
+
+    private final Transporte transporte;
+
+    private final LogDeReplicacao log;
+
+    private final int alteracoesPorQuadro;
+
+    private final List<Fluxo<?>> fluxos = new CopyOnWriteArrayList<>();
+
+    private Primario primario;
+
+    private Replica replica;
+
+    @Autowired
+    public Replicacao(@Value("${mercadofacil.replicacao.papel:primario}") String papel,
+            @Value("${mercadofacil.replicacao.transporte:tcp}") String transporte,
+            @Value("${mercadofacil.replicacao.endereco:localhost:7070}") String endereco,
+            @Value("${mercadofacil.replicacao.retencao:1048576}") int retencao,
+            @Value("${mercadofacil.replicacao.alteracoes-por-quadro:4096}") int alteracoesPorQuadro) {
+        this(Papel.valueOf(papel.trim().toUpperCase(Locale.ROOT)), transporte(transporte, endereco), retencao,
+                alteracoesPorQuadro);
+    }
+
+    public Replicacao(Papel papel, Transporte transporte, int retencao, int alteracoesPorQuadro) {
+        if (alteracoesPorQuadro < 1) {
+            throw new RuntimeException("Alteracoes por quadro invalidas!");
+        }
+        this.papel = papel;
+        this.transporte = transporte;
+        this.log = papel == Papel.PRIMARIO ? new LogDeReplicacao(retencao) : null;
+        this.alteracoesPorQuadro = alteracoesPorQuadro;
+    }
+
+    private static Transporte transporte(String tipo, String endereco) {
+        return switch (tipo.trim().toLowerCase(Locale.ROOT)) {
+            case "tcp" -> TransporteTcp.em(endereco);
+            case "local" -> TransporteLocal.chamado(endereco);
+            default -> throw new RuntimeException("Transporte de replicacao invalido!");
+        };
+    }
+
+    public Papel getPapel() {
+        return papel;
+    }
+
+    public void registrar(Fluxo<?> fluxo) {
+        fluxos.add(fluxo);
+    }
+
+    /** Recusa escritas numa replica: o estado dela so muda pelo primario. */
+    public void exigirPrimario() {
+        if (papel != Papel.PRIMARIO) {
+            throw new ReplicaSomenteLeituraException();
+        }
+    }
+
+    /**
+     * Publica uma alteracao ja aplicada na memoria do primario. Quem publica
+     * deve segurar a trava do id desde a aplicacao.
+     */
+    public void publicar(byte fluxo, byte operacao, long id, Object valor) {
+        log.publicar(fluxo, operacao, id, valor);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void iniciar() {
+        if (primario != null || replica != null) {
+            return;
+        }
+        List<Fluxo<?>> ordenados = new ArrayList<>(fluxos);
+        ordenados.sort(Comparator.comparingInt(Fluxo::codigo));
+        if (papel == Papel.PRIMARIO) {
+            primario = new Primario(transporte, log, List.copyOf(ordenados), alteracoesPorQuadro);
+            primario.iniciar();
+        } else {
+            replica = new Replica(transporte, List.copyOf(ordenados));
+            replica.iniciar();
+        }
+    }
+
+    /** Alteracoes enviadas pelo primario, somadas entre as replicas, ou aplicadas pela replica. */
+    public long alteracoes() {
+        return primario != null ? primario.alteracoesEnviadas() : replica != null ? replica.alteracoesAplicadas() : 0;
+    }
+
+    /** Bytes enviados pelo primario ou recebidos pela replica, ja comprimidos. */
+    public long bytes() {
+        return primario != null ? primario.bytesEnviados() : replica != null ? replica.bytesRecebidos() : 0;
+    }
+
+    /** Bytes dos corpos enviados pelo primario antes da compressao. */
+    public long bytesOriginais() {
+        return primario != null ? primario.bytesOriginais() : 0;
+    }
+
+    /** Snapshots enviados pelo primario ou recebidos pela replica. */
+    public long snapshots() {
+        return primario != null ? primario.snapshots() : replica != null ? replica.snapshots() : 0;
+    }
+
+    public int replicasConectadas() {
+        return primario != null ? primario.replicasConectadas() : 0;
+    }
+
+    public boolean conectada() {
+        return replica != null && replica.conectada();
+    }
+
+    /** Na replica, o ultimo lsn do primario que ela aplicou; no primario, o ultimo publicado. */
+    public long lsn() {
+        return log != null ? log.ultimoLsn() : replica != null ? replica.aplicado() : 0;
+    }
+
+    public long atrasoAlteracoes() {
+        return replica != null ? replica.atrasoAlteracoes() : 0;
+    }
+
+    public long atrasoMs() {
+        return replica != null ? replica.atrasoMs() : 0;
+    }
+
+    @PreDestroy
+    @Override
+    public synchronized void close() throws IOException {
+        if (primario != null) {
+            primario.close();
+        }
+        if (replica != null) {
+            replica.close();
+        }
+        transporte.close();
+    }
+}
@@ -0,0 +1,32 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Canal entre o primario e as replicas, que troca quadros inteiros. O
+ * primario aceita conexoes e cada replica se conecta a ele; uma conexao
+ * entrega os quadros na ordem em que foram enviados. Fechar o transporte
+ * solta quem estiver esperando em {@link #aceitar()}.
+ */
+public interface Transporte extends Closeable {
+
+    /** Lado do primario: espera a proxima replica se conectar. */
+    Conexao aceitar() throws IOException;
+
+    /** Lado da replica: conecta ao primario. */
+    Conexao conectar() throws IOException;
+
+    interface Conexao extends Closeable {
+
+        /** Envia os bytes da posicao ao limite do quadro como um quadro so. */
+        void enviar(ByteBuffer quadro) throws IOException;
+
+        /**
+         * Espera o proximo quadro. O buffer devolvido so vale ate a proxima
+         * chamada; se a outra ponta fechou, lanca {@link java.io.EOFException}.
+         */
+        ByteBuffer receber() throws IOException;
+    }
+}
@@ -0,0 +1,159 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transporte dentro do mesmo processo, para testar primario e replicas em
+ * uma maquina so. Cada conexao e um par de filas limitadas de quadros, entao
+ * um primario mais rapido que a replica espera por ela como esperaria pelo
+ * TCP. Os quadros sao copiados no envio, ja que quem envia reaproveita o seu
+ * buffer. Como no {@link TransporteTcp}, o envio e o recebimento desistem
+ * depois de {@link Primario#PRAZO_MS} ms sem avancar.
+ */
+public class TransporteLocal implements Transporte {
+
+    static final int QUADROS_EM_TRANSITO = 64;
+
+    private static final long ESPERA_MS = 100;
+
+    private static final ConcurrentMap<String, TransporteLocal> NOMEADOS = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Conexao> pendentes = new LinkedBlockingQueue<>();
+
+    private final String nome;
+
+    private final long prazoNanos;
+
+    private volatile boolean fechado;
+
+    public TransporteLocal() {
+        this(null, Primario.PRAZO_MS);
+    }
+
+    TransporteLocal(String nome, long prazoMs) {
+        this.nome = nome;
+        this.prazoNanos = TimeUnit.MILLISECONDS.toNanos(prazoMs);
+    }
+
+    /** O transporte com esse nome neste processo, criado no primeiro uso e esquecido ao ser fechado. */
+    public static TransporteLocal chamado(String nome) {
+        return NOMEADOS.computeIfAbsent(nome, n -> new TransporteLocal(n, Primario.PRAZO_MS));
+    }
+
+    @Override
+    public Conexao aceitar() throws IOException {
+        try {
+            while (!fechado) {
+                Conexao conexao = pendentes.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+                if (conexao != null) {
+                    return conexao;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IOException("Transporte fechado!");
+    }
+
+    @Override
+    public Conexao conectar() throws IOException {
+        if (fechado) {
+            throw new IOException("Transporte fechado!");
+        }
+        BlockingQueue<ByteBuffer> ida = new ArrayBlockingQueue<>(QUADROS_EM_TRANSITO);
+        BlockingQueue<ByteBuffer> volta = new ArrayBlockingQueue<>(QUADROS_EM_TRANSITO);
+        Ponta replica = new Ponta(volta, ida, prazoNanos);
+        Ponta primario = new Ponta(ida, volta, prazoNanos);
+        replica.outra = primario;
+        primario.outra = replica;
+        pendentes.add(primario);
+        return replica;
+    }
+
+    @Override
+    public void close() {
+        fechado = true;
+        if (nome != null) {
+            NOMEADOS.remove(nome, this);
+        }
+    }
+
+    private static final class Ponta implements Conexao {
+
+        private final BlockingQueue<ByteBuffer> entrada;
+
+        private final BlockingQueue<ByteBuffer> saida;
+
+        private final long prazoNanos;
+
+        private Ponta outra;
+
+        private volatile boolean fechada;
+
+        Ponta(BlockingQueue<ByteBuffer> entrada, BlockingQueue<ByteBuffer> saida, long prazoNanos) {
+            this.entrada = entrada;
+            this.saida = saida;
+            this.prazoNanos = prazoNanos;
+        }
+
+        @Override
+        public void enviar(ByteBuffer quadro) throws IOException {
+            ByteBuffer copia = ByteBuffer.allocate(quadro.remaining()).put(quadro).flip();
+            long limite = System.nanoTime() + prazoNanos;
+            try {
+                while (!saida.offer(copia, ESPERA_MS, TimeUnit.MILLISECONDS)) {
+                    verificarAberta();
+                    verificarPrazo(limite, "Prazo de envio esgotado!");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Envio interrompido!");
+            }
+            verificarAberta();
+        }
+
+        @Override
+        public ByteBuffer receber() throws IOException {
+            long limite = System.nanoTime() + prazoNanos;
+            try {
+                while (true) {
+                    ByteBuffer quadro = entrada.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+                    if (quadro != null) {
+                        return quadro;
+                    }
+                    verificarAberta();
+                    verificarPrazo(limite, "Prazo de recebimento esgotado!");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Recebimento interrompido!");
+            }
+        }
+
+        @Override
+        public void close() {
+            fechada = true;
+        }
+
+        private void verificarAberta() throws IOException {
+            if (fechada || outra.fechada) {
+                throw new EOFException();
+            }
+        }
+
+        private static void verificarPrazo(long limite, String mensagem) throws SocketTimeoutException {
+            if (System.nanoTime() - limite >= 0) {
+                throw new SocketTimeoutException(mensagem);
+            }
+        }
+    }
+}
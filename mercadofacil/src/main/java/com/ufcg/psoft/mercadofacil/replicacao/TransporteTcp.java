@@ -0,0 +1,199 @@
+package com.ufcg.psoft.mercadofacil.replicacao;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transporte sobre TCP. Cada quadro vai precedido do seu comprimento em um
+ * {@code int}. O primario escuta no endereco configurado a partir da primeira
+ * chamada de {@link #aceitar()}; com a porta 0 o sistema escolhe uma, que
+ * {@link #porta()} informa. O Nagle fica desligado: os quadros ja chegam
+ * agrupados e esperar por mais so aumentaria o atraso.
+ *
+ * <p>Os canais ficam em modo nao bloqueante e cada conexao espera num
+ * seletor de leitura e num de escrita: se a outra ponta passa o prazo sem
+ * mandar nem aceitar um byte, a leitura ou o envio lancam
+ * {@link SocketTimeoutException}. O prazo conta a partir do ultimo avanco,
+ * entao um quadro grande num enlace lento nao estoura enquanto anda.
+ */
+public class TransporteTcp implements Transporte {
+
+    static final int MAXIMO_QUADRO = 64 << 20;
+
+    private final InetSocketAddress endereco;
+
+    private final long prazoNanos;
+
+    private ServerSocketChannel servidor;
+
+    private volatile boolean fechado;
+
+    public TransporteTcp(InetSocketAddress endereco) {
+        this(endereco, Primario.PRAZO_MS);
+    }
+
+    TransporteTcp(InetSocketAddress endereco, long prazoMs) {
+        this.endereco = endereco;
+        this.prazoNanos = TimeUnit.MILLISECONDS.toNanos(prazoMs);
+    }
+
+    /** Le um endereco no formato {@code host:porta}. */
+    public static TransporteTcp em(String endereco) {
+        int separador = endereco.lastIndexOf(':');
+        if (separador < 0) {
+            throw new RuntimeException("Endereco de replicacao invalido!");
+        }
+        return new TransporteTcp(new InetSocketAddress(endereco.substring(0, separador),
+                Integer.parseInt(endereco.substring(separador + 1))));
+    }
+
+    @Override
+    public Conexao aceitar() throws IOException {
+        return new ConexaoTcp(escutar().accept(), prazoNanos);
+    }
+
+    @Override
+    public Conexao conectar() throws IOException {
+        return new ConexaoTcp(SocketChannel.open(endereco), prazoNanos);
+    }
+
+    /** A porta em que o primario escuta, abrindo-a se preciso. */
+    public int porta() throws IOException {
+        return ((InetSocketAddress) escutar().getLocalAddress()).getPort();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        fechado = true;
+        if (servidor != null) {
+            servidor.close();
+        }
+    }
+
+    private synchronized ServerSocketChannel escutar() throws IOException {
+        if (fechado) {
+            throw new IOException("Transporte fechado!");
+        }
+        if (servidor == null) {
+            servidor = ServerSocketChannel.open().bind(endereco);
+        }
+        return servidor;
+    }
+
+    private static final class ConexaoTcp implements Conexao {
+
+        private final SocketChannel canal;
+
+        private final long prazoNanos;
+
+        private final Selector leitura;
+
+        private final Selector escrita;
+
+        private final ByteBuffer comprimento = ByteBuffer.allocate(Integer.BYTES);
+
+        private ByteBuffer recebido = ByteBuffer.allocate(1 << 16);
+
+        ConexaoTcp(SocketChannel canal, long prazoNanos) throws IOException {
+            this.canal = canal;
+            this.prazoNanos = prazoNanos;
+            try {
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                canal.configureBlocking(false);
+                leitura = Selector.open();
+                escrita = Selector.open();
+                canal.register(leitura, SelectionKey.OP_READ);
+                canal.register(escrita, SelectionKey.OP_WRITE);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public synchronized void enviar(ByteBuffer quadro) throws IOException {
+            ByteBuffer[] partes = {ByteBuffer.allocate(Integer.BYTES).putInt(0, quadro.remaining()), quadro};
+            long limite = System.nanoTime() + prazoNanos;
+            while (partes[1].hasRemaining() || partes[0].hasRemaining()) {
+                if (canal.write(partes) > 0) {
+                    limite = System.nanoTime() + prazoNanos;
+                } else {
+                    esperar(escrita, limite, "Prazo de envio esgotado!");
+                }
+            }
+        }
+
+        @Override
+        public ByteBuffer receber() throws IOException {
+            comprimento.clear();
+            lerTudo(comprimento);
+            int tamanho = comprimento.getInt(0);
+            if (tamanho < 0 || tamanho > MAXIMO_QUADRO) {
+                throw new IOException("Quadro de replicacao invalido!");
+            }
+            if (recebido.capacity() < tamanho) {
+                recebido = ByteBuffer.allocate(Math.max(tamanho, recebido.capacity() * 2));
+            }
+            recebido.clear().limit(tamanho);
+            lerTudo(recebido);
+            return recebido.flip();
+        }
+
+        /* Fechar os seletores acorda quem estiver esperando neles. */
+        @Override
+        public void close() throws IOException {
+            try {
+                canal.close();
+            } finally {
+                if (leitura != null) {
+                    leitura.close();
+                }
+                if (escrita != null) {
+                    escrita.close();
+                }
+            }
+        }
+
+        private void lerTudo(ByteBuffer destino) throws IOException {
+            long limite = System.nanoTime() + prazoNanos;
+            while (destino.hasRemaining()) {
+                int lidos = canal.read(destino);
+                if (lidos < 0) {
+                    throw new EOFException();
+                }
+                if (lidos > 0) {
+                    limite = System.nanoTime() + prazoNanos;
+                } else {
+                    esperar(leitura, limite, "Prazo de recebimento esgotado!");
+                }
+            }
+        }
+
+        private void esperar(Selector seletor, long limite, String mensagem) throws IOException {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0) {
+                throw new SocketTimeoutException(mensagem);
+            }
+            try {
+                seletor.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(restante)));
+                seletor.selectedKeys().clear();
+            } catch (ClosedSelectorException e) {
+                throw new ClosedChannelException();
+            }
+            if (!canal.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
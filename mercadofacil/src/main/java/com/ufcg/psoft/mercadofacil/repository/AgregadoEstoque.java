@@ -0,0 +1,234 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Totais de estoque mantidos a cada escrita de lote: itens e valor
+ * (preco * itens) no geral, por produto e por fabricante. Cada lote tem um
+ * {@link Saldo} imutavel; toda troca de saldo, seja por save, update, delete
+ * ou por uma reserva feita com compare-and-set, e aplicada aqui uma unica vez
+ * com a diferenca entre o saldo anterior e o novo, em {@link LongAdder}s que
+ * nao disputam uma mesma linha de cache entre threads. O saldo ja aponta para
+ * os totais do seu produto e do seu fabricante, entao uma reserva nao consulta
+ * mapa nenhum. Ler um total custa uma consulta ao mapa e a soma das celulas do
+ * adder, sem percorrer os lotes.
+ *
+ * <p>Os totais de um produto ou fabricante ficam no mapa enquanto algum lote
+ * somar a eles, mesmo com zero itens, e saem quando o ultimo lote e removido
+ * ou passa a outro produto; o resumo nao acumula produtos sem lote.
+ *
+ * <p>O valor e acumulado em centavos para que somas e subtracoes repetidas nao
+ * acumulem erro de arredondamento.
+ */
+final class AgregadoEstoque {
+
+    /**
+     * A quem um lote soma: o produto, o fabricante e o preco, ja ligados aos
+     * totais de cada um. Cada dono criado por {@link #saldo(Lote)} ou
+     * {@link #dono(Produto)} conta uma referencia nesses totais, devolvida
+     * quando o saldo dele deixa de ser o de um lote; os totais sem referencia
+     * saem dos mapas.
+     */
+    record Dono(Long produtoId, String fabricante, long precoCentavos, Totais doProduto, Totais doFabricante) {
+
+        boolean mesmosTotais(Dono outro) {
+            return precoCentavos == outro.precoCentavos
+                    && doProduto == outro.doProduto
+                    && doFabricante == outro.doFabricante;
+        }
+    }
+
+    /** O que um lote soma aos totais e a quem, junto com a versao do lote. */
+    record Saldo(int itens, long versao, Dono dono) {
+
+        /** O saldo seguinte, com outro numero de itens. */
+        Saldo comItens(int novosItens) {
+            return new Saldo(novosItens, versao + 1, dono);
+        }
+
+        Saldo comVersao(long novaVersao) {
+            return new Saldo(itens, novaVersao, dono);
+        }
+
+        /** O mesmo saldo, somado a outro dono. */
+        Saldo comDono(Dono novoDono) {
+            return new Saldo(itens, versao, novoDono);
+        }
+    }
+
+    static final class Totais {
+
+        final LongAdder itens = new LongAdder();
+
+        final LongAdder valorCentavos = new LongAdder();
+
+        /* Donos ligados a estes totais; so muda dentro do compute do mapa. */
+        int referencias;
+
+        void somar(long itensSomados, long precoCentavos) {
+            itens.add(itensSomados);
+            valorCentavos.add(itensSomados * precoCentavos);
+        }
+
+        TotalEstoque total() {
+            return TotalEstoque.builder()
+                    .itens(itens.sum())
+                    .valor(valorCentavos.sum() / 100.0)
+                    .build();
+        }
+    }
+
+    private static final Dono SEM_PRODUTO = new Dono(null, null, 0, null, null);
+
+    private static final TotalEstoque VAZIO = TotalEstoque.builder().build();
+
+    private final Totais geral = new Totais();
+
+    private final ConcurrentMap<Long, Totais> porProduto = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Totais> porFabricante = new ConcurrentHashMap<>();
+
+    /** Saldo do lote, com versao zero e um dono novo. */
+    Saldo saldo(Lote lote) {
+        return new Saldo(lote.getNumeroDeItens(), 0, dono(lote.getProduto()));
+    }
+
+    /** Um dono novo para o produto, com uma referencia nos totais dele e do seu fabricante. */
+    Dono dono(Produto produto) {
+        if (produto == null) {
+            return SEM_PRODUTO;
+        }
+        Long produtoId = produto.getId();
+        String fabricante = produto.getFabricante();
+        return new Dono(produtoId, fabricante, Math.round(produto.getPreco() * 100),
+                produtoId == null ? null : porProduto.compute(produtoId, (id, totais) -> referenciar(totais)),
+                fabricante == null ? null : porFabricante.compute(fabricante, (f, totais) -> referenciar(totais)));
+    }
+
+    /**
+     * Aplica a troca do saldo de um lote; {@code null} e lote inexistente. O
+     * dono do saldo anterior e devolvido se o novo tiver outro.
+     */
+    void trocar(Saldo anterior, Saldo novo) {
+        if (anterior != null && novo != null && anterior.dono().mesmosTotais(novo.dono())) {
+            somar(novo.dono(), novo.itens() - anterior.itens());
+        } else {
+            if (anterior != null) {
+                somar(anterior.dono(), -anterior.itens());
+            }
+            if (novo != null) {
+                somar(novo.dono(), novo.itens());
+            }
+        }
+        if (anterior != null && (novo == null || anterior.dono() != novo.dono())) {
+            descartar(anterior.dono());
+        }
+    }
+
+    /** Devolve as referencias de um dono que nao vai mais somar a nada. */
+    void descartar(Dono dono) {
+        if (dono.produtoId() != null) {
+            porProduto.computeIfPresent(dono.produtoId(), (id, totais) -> soltar(totais, dono.doProduto()));
+        }
+        if (dono.fabricante() != null) {
+            porFabricante.computeIfPresent(dono.fabricante(), (f, totais) -> soltar(totais, dono.doFabricante()));
+        }
+    }
+
+    void limpar() {
+        geral.itens.reset();
+        geral.valorCentavos.reset();
+        porProduto.clear();
+        porFabricante.clear();
+    }
+
+    TotalEstoque total() {
+        return geral.total();
+    }
+
+    TotalEstoque totalPorProduto(Long produtoId) {
+        Totais totais = porProduto.get(produtoId);
+        return totais == null ? VAZIO : totais.total();
+    }
+
+    TotalEstoque totalPorFabricante(String fabricante) {
+        Totais totais = porFabricante.get(fabricante);
+        return totais == null ? VAZIO : totais.total();
+    }
+
+    ResumoEstoque resumo() {
+        Map<Long, TotalEstoque> produtos = new HashMap<>();
+        porProduto.forEach((id, totais) -> produtos.put(id, totais.total()));
+        Map<String, TotalEstoque> fabricantes = new HashMap<>();
+        porFabricante.forEach((fabricante, totais) -> fabricantes.put(fabricante, totais.total()));
+        return ResumoEstoque.builder()
+                .geral(geral.total())
+                .porProduto(produtos)
+                .porFabricante(fabricantes)
+                .build();
+    }
+
+    /**
+     * Recalcula os totais do zero a partir dos saldos, em um stream paralelo.
+     * Serve para conferir os totais mantidos incrementalmente.
+     */
+    static ResumoEstoque recalcular(Collection<Saldo> saldos) {
+        Totais geral = new Totais();
+        ConcurrentMap<Long, Totais> produtos = new ConcurrentHashMap<>();
+        ConcurrentMap<String, Totais> fabricantes = new ConcurrentHashMap<>();
+        saldos.parallelStream().forEach(saldo -> {
+            Dono dono = saldo.dono();
+            geral.somar(saldo.itens(), dono.precoCentavos());
+            if (dono.produtoId() != null) {
+                produtos.computeIfAbsent(dono.produtoId(), id -> new Totais())
+                        .somar(saldo.itens(), dono.precoCentavos());
+            }
+            if (dono.fabricante() != null) {
+                fabricantes.computeIfAbsent(dono.fabricante(), fabricante -> new Totais())
+                        .somar(saldo.itens(), dono.precoCentavos());
+            }
+        });
+        return ResumoEstoque.builder()
+                .geral(geral.total())
+                .porProduto(produtos.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, entrada -> entrada.getValue().total())))
+                .porFabricante(fabricantes.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, entrada -> entrada.getValue().total())))
+                .build();
+    }
+
+    private void somar(Dono dono, long itens) {
+        if (itens == 0) {
+            return;
+        }
+        geral.somar(itens, dono.precoCentavos());
+        if (dono.doProduto() != null) {
+            dono.doProduto().somar(itens, dono.precoCentavos());
+        }
+        if (dono.doFabricante() != null) {
+            dono.doFabricante().somar(itens, dono.precoCentavos());
+        }
+    }
+
+    private static Totais referenciar(Totais totais) {
+        Totais referenciados = totais == null ? new Totais() : totais;
+        referenciados.referencias++;
+        return referenciados;
+    }
+
+    /* Depois de um limpar() o mapa pode ter outros totais para a mesma chave; esses nao sao tocados. */
+    private static Totais soltar(Totais totais, Totais doDono) {
+        return totais == doDono && --totais.referencias == 0 ? null : totais;
+    }
+}
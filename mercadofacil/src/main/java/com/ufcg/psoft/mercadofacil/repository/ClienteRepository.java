@@ -0,0 +1,19 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ClienteRepository<T, ID> {
+	   T save(T cliente);
+	   List<T> saveAll(List<T> clientes);
+	   T find(ID id);
+	   T find(long id);
+	   T findByCpf(long cpf);
+	   List<T> findAll();
+	   Stream<T> streamAll();
+	   List<T> findPage(ID afterId, int limit);
+	   T update(T cliente);
+	   void delete(T cliente);
+	   void deleteAll();
+	   long count();
+}
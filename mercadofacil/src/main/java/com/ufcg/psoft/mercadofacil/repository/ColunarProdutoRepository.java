@@ -0,0 +1,711 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import com.ufcg.psoft.mercadofacil.persistencia.ArenaDeTextos;
+import com.ufcg.psoft.mercadofacil.persistencia.Binario;
+import com.ufcg.psoft.mercadofacil.persistencia.Dicionario;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de produtos que guarda os registros fora do heap, em colunas.
+ * Cada produto ocupa uma posicao em segmentos de {@link #POSICOES_POR_SEGMENTO}
+ * posicoes alocados com {@link ByteBuffer#allocateDirect}; dentro do segmento
+ * id, versao, preco, codigo de barras e as referencias de nome e fabricante
+ * ficam cada um em sua coluna de {@code long}/{@code double}. O fabricante e
+ * guardado como o codigo de um {@link Dicionario} deste repositorio, os demais textos
+ * vao para uma {@link ArenaDeTextos}, e um codigo de barras EAN-13 e guardado
+ * empacotado na propria coluna. Os indices de id e de codigo de barras sao
+ * {@link TabelaForaDoHeap}s e as ordens por id e por preco ficam em vetores
+ * primitivos, entao o coletor de lixo nao percorre nenhum objeto por produto:
+ * objetos {@link Produto} so existem enquanto uma leitura os devolve.
+ *
+ * <p>Escritas sobre o mesmo id sao serializadas por travas particionadas.
+ * Cada posicao tem um selo de sequencia, impar durante uma escrita: a leitura
+ * copia as colunas entre duas leituras do selo e repete se ele mudou, sem
+ * bloquear escritores. Busca por fabricante e busca textual percorrem todas
+ * as posicoes, comparando o codigo do fabricante ou os termos de nome e
+ * fabricante.
+ *
+ * <p>Os segmentos, a arena de textos e o dicionario de fabricantes formam uma
+ * {@link Geracao}, publicada inteira: uma leitura pega a geracao uma vez e le
+ * colunas e textos dela, entao nunca segue uma referencia de uma geracao na
+ * arena ou no dicionario de outra. {@link #deleteAll()} publica uma geracao
+ * vazia. Cada posicao viva conta uma referencia no codigo do seu fabricante,
+ * solta depois que a posicao deixa de usa-lo; o codigo sem referencias pode
+ * voltar a ser usado por outro fabricante, entao a leitura resolve o codigo
+ * antes de conferir o selo. Os textos substituidos por
+ * updates e deletes sao contados como lixo na arena; quando o lixo passa de
+ * {@link #LIXO_MINIMO} bytes e da metade do que foi gravado, os textos vivos
+ * sao copiados para uma arena nova e uma geracao com colunas copiadas e
+ * referencias novas e publicada. As duas trocas tomam a trava exclusiva de
+ * {@code limpeza}, e as escritas a compartilhada; leituras nao tomam trava e
+ * terminam na geracao que pegaram. Ativo no perfil {@code colunar}, no lugar
+ * do {@link VolatilProdutoRepository}.
+ */
+@Repository
+@Profile("colunar & !duravel")
+@Qualifier("armazenamentoProduto")
+public class ColunarProdutoRepository implements ProdutoRepository<Produto, Long> {
+
+    static final int BITS_SEGMENTO = 16;
+
+    static final int POSICOES_POR_SEGMENTO = 1 << BITS_SEGMENTO;
+
+    private static final int MASCARA = POSICOES_POR_SEGMENTO - 1;
+
+    /* Inicio de cada coluna dentro do segmento. */
+    private static final int SELO = 0;
+
+    private static final int ID = SELO + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int VERSAO = ID + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int PRECO = VERSAO + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int CODIGO = PRECO + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int NOME = CODIGO + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int FABRICANTE = NOME + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int PRESENCA = FABRICANTE + 8 * POSICOES_POR_SEGMENTO;
+
+    private static final int BYTES_SEGMENTO = PRESENCA + POSICOES_POR_SEGMENTO;
+
+    /* Bits da coluna de presenca. */
+    private static final int VIVO = 1;
+
+    private static final int CODIGO_EAN = 1 << 1;
+
+    private static final int CODIGO_TEXTO = 1 << 2;
+
+    private static final int FABRICANTE_CODIFICADO = 1 << 3;
+
+    /* Lixo na arena a partir do qual vale copiar os textos vivos. */
+    static final long LIXO_MINIMO = 1 << 22;
+
+    private static final VarHandle SELOS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    final AtomicLong proximoId = new AtomicLong();
+
+    /* Segmentos de colunas e a arena e o dicionario onde estao os textos que eles referenciam. */
+    private record Geracao(ByteBuffer[] segmentos, ArenaDeTextos textos, Dicionario fabricantes) {
+    }
+
+    private volatile Geracao geracao = novaGeracao();
+
+    private final TabelaForaDoHeap posicaoPorId = new TabelaForaDoHeap();
+
+    private final TabelaForaDoHeap posicaoPorEan = new TabelaForaDoHeap();
+
+    /* Codigos de barras fora do formato EAN-13, raros, ficam em um mapa comum. */
+    private final ConcurrentMap<String, Long> porCodigoTexto = new ConcurrentHashMap<>();
+
+    private final IndiceOrdenado indiceOrdenado = new IndiceOrdenado();
+
+    private final TravasParticionadas travas = new TravasParticionadas(64);
+
+    /*
+     * Escritas tomam a trava de leitura; deleteAll e a compactacao tomam a de
+     * escrita, para trocar a geracao sem escrita nenhuma no meio.
+     */
+    private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+    private final Object alocacao = new Object();
+
+    private int[] livres = new int[1024];
+
+    private int quantidadeLivres;
+
+    private volatile int posicoesUsadas;
+
+    @Override
+    public Produto save(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            id = proximoId.incrementAndGet();
+        } else {
+            proximoId.accumulateAndGet(id, Math::max);
+        }
+        Produto copia;
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                long posicao = posicaoPorId.get(id);
+                Produto anterior = posicao == TabelaForaDoHeap.AUSENTE ? null : ler((int) posicao, id);
+                copia = produto.toBuilder().id(id).versao(proximaVersao(anterior)).build();
+                boolean armazenado;
+                if (anterior == null) {
+                    int nova = alocar();
+                    armazenado = armazenar(nova, null, copia);
+                    if (!armazenado) {
+                        liberar(nova);
+                    }
+                } else {
+                    armazenado = armazenar((int) posicao, anterior, copia);
+                }
+                if (!armazenado) {
+                    throw new RuntimeException(ResultadoAtualizacao.Falha.CODIGO_BARRA_DUPLICADO.getMensagem());
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        compactarSeNecessario();
+        return copia;
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        long posicao = posicaoPorId.get(id);
+        return posicao == TabelaForaDoHeap.AUSENTE ? null : ler((int) posicao, id);
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        int usadas = posicoesUsadas;
+        List<Produto> resultado = new ArrayList<>(posicaoPorId.tamanho());
+        for (int posicao = 0; posicao < usadas; posicao++) {
+            Produto produto = ler(posicao);
+            if (produto != null) {
+                resultado.add(produto);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return IntStream.range(0, posicoesUsadas).mapToObj(this::ler).filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        double precoCursor = afterId != null && sort == Ordenacao.PRECO ? precoDoCursor(afterId) : 0;
+        return indiceOrdenado.pagina(afterId, precoCursor, sort, limit, this::find);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        double precoCursor = afterId != null ? precoDoCursor(afterId) : 0;
+        return indiceOrdenado.faixaDePreco(minPreco, maxPreco, afterId, precoCursor, limit, this::find);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return indiceOrdenado.maisCaras(limit, this::find);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        return atualizar(produto).comoUpdate();
+    }
+
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> alterados) {
+        List<ResultadoAtualizacao<Produto>> resultado = new ArrayList<>(alterados.size());
+        for (Produto produto : alterados) {
+            resultado.add(atualizar(produto));
+        }
+        return resultado;
+    }
+
+    private ResultadoAtualizacao<Produto> atualizar(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+        }
+        Produto copia;
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                long posicao = posicaoPorId.get(id);
+                Produto anterior = posicao == TabelaForaDoHeap.AUSENTE ? null : ler((int) posicao, id);
+                if (anterior == null) {
+                    return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+                }
+                if (produto.getVersao() != null && !produto.getVersao().equals(anterior.getVersao())) {
+                    return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.VERSAO_DESATUALIZADA);
+                }
+                copia = produto.toBuilder().versao(proximaVersao(anterior)).build();
+                if (!armazenar((int) posicao, anterior, copia)) {
+                    return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.CODIGO_BARRA_DUPLICADO);
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        compactarSeNecessario();
+        return ResultadoAtualizacao.sucesso(copia);
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            return;
+        }
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                long posicao = posicaoPorId.get(id);
+                Produto removido = posicao == TabelaForaDoHeap.AUSENTE ? null : ler((int) posicao, id);
+                if (removido == null) {
+                    return;
+                }
+                posicaoPorId.remover(id, posicao);
+                remover((int) posicao);
+                desindexarCodigoBarra((int) posicao, removido);
+                indiceOrdenado.remover(id, removido.getPreco());
+                liberar((int) posicao);
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        compactarSeNecessario();
+    }
+
+    @Override
+    public void deleteAll() {
+        limpeza.writeLock().lock();
+        try {
+            synchronized (alocacao) {
+                posicaoPorId.limpar();
+                posicaoPorEan.limpar();
+                porCodigoTexto.clear();
+                indiceOrdenado.limpar();
+                geracao = novaGeracao();
+                quantidadeLivres = 0;
+                posicoesUsadas = 0;
+            }
+        } finally {
+            limpeza.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        Produto produto;
+        if (Binario.ehEan(codigoBarra)) {
+            long posicao = posicaoPorEan.get(Binario.empacotarEan(codigoBarra));
+            produto = posicao == TabelaForaDoHeap.AUSENTE ? null : ler((int) posicao);
+        } else {
+            Long id = porCodigoTexto.get(codigoBarra);
+            produto = id == null ? null : find(id);
+        }
+        return produto == null || !codigoBarra.equals(produto.getCodigoBarra()) ? null : produto;
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        Geracao atual = geracao;
+        int codigo = atual.fabricantes().codigoExistente(fabricante);
+        byte[] procurado = ArenaDeTextos.codificar(fabricante);
+        List<Produto> resultado = new ArrayList<>();
+        int usadas = posicoesUsadas;
+        for (int posicao = 0; posicao < usadas; posicao++) {
+            ByteBuffer segmento = segmento(atual.segmentos(), posicao);
+            if (segmento == null) {
+                break;
+            }
+            int i = posicao & MASCARA;
+            int presenca = segmento.get(PRESENCA + i);
+            if ((presenca & VIVO) == 0) {
+                continue;
+            }
+            long referencia = segmento.getLong(FABRICANTE + 8 * i);
+            boolean igual = (presenca & FABRICANTE_CODIFICADO) != 0
+                    ? referencia == codigo : atual.textos().igual(referencia, procurado);
+            if (igual) {
+                Produto produto = ler(posicao);
+                if (produto != null && fabricante.equals(produto.getFabricante())) {
+                    resultado.add(produto);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /*
+     * Percorre as posicoes em ordem e para no limite; uma consulta que casa com
+     * poucos produtos le nome e fabricante de todos.
+     */
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        String[] prefixos = IndiceTextual.termos(consulta);
+        List<Produto> resultado = new ArrayList<>(Math.min(limit, 1024));
+        if (prefixos.length == 0) {
+            return resultado;
+        }
+        int usadas = posicoesUsadas;
+        for (int posicao = 0; posicao < usadas && resultado.size() < limit; posicao++) {
+            Produto produto = ler(posicao);
+            if (produto != null && casa(produto, prefixos)) {
+                resultado.add(produto);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        Dicionario fabricantes = geracao.fabricantes();
+        try (Stream<Produto> produtos = streamAll()) {
+            return List.of(fabricantes.relatorio(produtos.map(Produto::getFabricante)));
+        }
+    }
+
+    /** Bytes reservados fora do heap: segmentos de colunas, textos e tabelas de indice. */
+    long bytesForaDoHeap() {
+        Geracao atual = geracao;
+        return (long) atual.segmentos().length * BYTES_SEGMENTO + atual.textos().capacidade()
+                + posicaoPorId.bytes() + posicaoPorEan.bytes();
+    }
+
+    private double precoDoCursor(Long afterId) {
+        Produto cursor = find(afterId);
+        if (cursor == null) {
+            throw new RuntimeException("Cursor de paginacao invalido!");
+        }
+        return cursor.getPreco();
+    }
+
+    /*
+     * Deve ser chamado com a trava do id do produto. Devolve false, sem
+     * alterar nada, se o codigo de barras pertence a outro produto.
+     */
+    private boolean armazenar(int posicao, Produto anterior, Produto novo) {
+        Long id = novo.getId();
+        if (!indexarCodigoBarra(posicao, novo)) {
+            return false;
+        }
+        Geracao atual = geracao;
+        ArenaDeTextos textos = atual.textos();
+        ByteBuffer segmento = atual.segmentos()[posicao >>> BITS_SEGMENTO];
+        int i = posicao & MASCARA;
+        String codigoBarra = novo.getCodigoBarra();
+        int presenca = VIVO;
+        long codigo = ArenaDeTextos.NULO;
+        if (codigoBarra != null && Binario.ehEan(codigoBarra)) {
+            presenca |= CODIGO_EAN;
+            codigo = Binario.empacotarEan(codigoBarra);
+        } else if (codigoBarra != null) {
+            presenca |= CODIGO_TEXTO;
+            codigo = anterior != null && codigoBarra.equals(anterior.getCodigoBarra())
+                    ? segmento.getLong(CODIGO + 8 * i) : textos.gravar(codigoBarra);
+        }
+        long nome = anterior != null && Objects.equals(anterior.getNome(), novo.getNome())
+                ? segmento.getLong(NOME + 8 * i) : textos.gravar(novo.getNome());
+        long fabricante = atual.fabricantes().adquirir(novo.getFabricante());
+        if (fabricante != Dicionario.SEM_CODIGO) {
+            presenca |= FABRICANTE_CODIFICADO;
+        } else if (anterior != null && Objects.equals(anterior.getFabricante(), novo.getFabricante())
+                && (segmento.get(PRESENCA + i) & FABRICANTE_CODIFICADO) == 0) {
+            fabricante = segmento.getLong(FABRICANTE + 8 * i);
+        } else {
+            fabricante = textos.gravar(novo.getFabricante());
+        }
+        descartarSubstituidos(textos, segmento, i, presenca, codigo, nome, fabricante);
+        int presencaAnterior = segmento.get(PRESENCA + i);
+        long fabricanteAnterior = segmento.getLong(FABRICANTE + 8 * i);
+
+        long selo = (long) SELOS.get(segmento, SELO + 8 * i);
+        SELOS.setOpaque(segmento, SELO + 8 * i, selo + 1);
+        VarHandle.storeStoreFence();
+        segmento.putLong(ID + 8 * i, id);
+        segmento.putLong(VERSAO + 8 * i, novo.getVersao());
+        segmento.putDouble(PRECO + 8 * i, novo.getPreco());
+        segmento.putLong(CODIGO + 8 * i, codigo);
+        segmento.putLong(NOME + 8 * i, nome);
+        segmento.putLong(FABRICANTE + 8 * i, fabricante);
+        segmento.put(PRESENCA + i, (byte) presenca);
+        SELOS.setRelease(segmento, SELO + 8 * i, selo + 2);
+        soltarFabricante(atual.fabricantes(), presencaAnterior, fabricanteAnterior);
+
+        if (anterior == null) {
+            posicaoPorId.put(id, posicao);
+            indiceOrdenado.adicionar(id, novo.getPreco());
+        } else {
+            indiceOrdenado.atualizar(id, anterior.getPreco(), novo.getPreco());
+            if (!Objects.equals(anterior.getCodigoBarra(), codigoBarra)) {
+                desindexarCodigoBarra(posicao, anterior);
+            }
+        }
+        return true;
+    }
+
+    /* Devolve false se o codigo de barras ja e de outro produto. */
+    private boolean indexarCodigoBarra(int posicao, Produto produto) {
+        String codigoBarra = produto.getCodigoBarra();
+        if (codigoBarra == null) {
+            return true;
+        }
+        boolean ocupado;
+        if (Binario.ehEan(codigoBarra)) {
+            long dono = posicaoPorEan.putSeAusente(Binario.empacotarEan(codigoBarra), posicao);
+            ocupado = dono != TabelaForaDoHeap.AUSENTE && dono != posicao;
+        } else {
+            Long dono = porCodigoTexto.putIfAbsent(codigoBarra, produto.getId());
+            ocupado = dono != null && !dono.equals(produto.getId());
+        }
+        return !ocupado;
+    }
+
+    private void desindexarCodigoBarra(int posicao, Produto produto) {
+        String codigoBarra = produto.getCodigoBarra();
+        if (codigoBarra == null) {
+            return;
+        }
+        if (Binario.ehEan(codigoBarra)) {
+            posicaoPorEan.remover(Binario.empacotarEan(codigoBarra), posicao);
+        } else {
+            porCodigoTexto.remove(codigoBarra, produto.getId());
+        }
+    }
+
+    /* O produto da posicao, se ela estiver ocupada pelo id informado. */
+    private Produto ler(int posicao, long id) {
+        Produto produto = ler(posicao);
+        return produto == null || produto.getId() != id ? null : produto;
+    }
+
+    /* O produto da posicao, ou null se ela estiver livre. */
+    private Produto ler(int posicao) {
+        Geracao atual = geracao;
+        ArenaDeTextos textos = atual.textos();
+        ByteBuffer segmento = segmento(atual.segmentos(), posicao);
+        if (segmento == null) {
+            return null;
+        }
+        int i = posicao & MASCARA;
+        while (true) {
+            long selo = (long) SELOS.getAcquire(segmento, SELO + 8 * i);
+            if ((selo & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int presenca = segmento.get(PRESENCA + i);
+            long id = segmento.getLong(ID + 8 * i);
+            long versao = segmento.getLong(VERSAO + 8 * i);
+            double preco = segmento.getDouble(PRECO + 8 * i);
+            long codigo = segmento.getLong(CODIGO + 8 * i);
+            long nome = segmento.getLong(NOME + 8 * i);
+            long fabricante = segmento.getLong(FABRICANTE + 8 * i);
+            String fabricanteCodificado = (presenca & FABRICANTE_CODIFICADO) != 0
+                    ? atual.fabricantes().texto((int) fabricante) : null;
+            VarHandle.loadLoadFence();
+            if ((long) SELOS.getOpaque(segmento, SELO + 8 * i) != selo) {
+                continue;
+            }
+            if ((presenca & VIVO) == 0) {
+                return null;
+            }
+            String codigoBarra = null;
+            if ((presenca & CODIGO_EAN) != 0) {
+                codigoBarra = Binario.desempacotarEan(codigo);
+            } else if ((presenca & CODIGO_TEXTO) != 0) {
+                codigoBarra = textos.ler(codigo);
+            }
+            return Produto.builder()
+                    .id(id)
+                    .versao(versao)
+                    .preco(preco)
+                    .codigoBarra(codigoBarra)
+                    .nome(textos.ler(nome))
+                    .fabricante((presenca & FABRICANTE_CODIFICADO) != 0 ? fabricanteCodificado : textos.ler(fabricante))
+                    .build();
+        }
+    }
+
+    private void remover(int posicao) {
+        Geracao atual = geracao;
+        ByteBuffer segmento = atual.segmentos()[posicao >>> BITS_SEGMENTO];
+        int i = posicao & MASCARA;
+        descartarSubstituidos(atual.textos(), segmento, i, 0, ArenaDeTextos.NULO, ArenaDeTextos.NULO,
+                ArenaDeTextos.NULO);
+        int presencaAnterior = segmento.get(PRESENCA + i);
+        long selo = (long) SELOS.get(segmento, SELO + 8 * i);
+        SELOS.setOpaque(segmento, SELO + 8 * i, selo + 1);
+        VarHandle.storeStoreFence();
+        segmento.put(PRESENCA + i, (byte) 0);
+        SELOS.setRelease(segmento, SELO + 8 * i, selo + 2);
+        soltarFabricante(atual.fabricantes(), presencaAnterior, segmento.getLong(FABRICANTE + 8 * i));
+    }
+
+    /*
+     * Solta o codigo do fabricante que um registro vivo usava. So e chamado
+     * depois que o selo da posicao mudou, entao uma leitura que resolveu o
+     * codigo antes de ele ser reusado descarta o que leu.
+     */
+    private static void soltarFabricante(Dicionario fabricantes, int presencaAnterior, long fabricanteAnterior) {
+        if ((presencaAnterior & (VIVO | FABRICANTE_CODIFICADO)) == (VIVO | FABRICANTE_CODIFICADO)) {
+            fabricantes.soltar((int) fabricanteAnterior);
+        }
+    }
+
+    /*
+     * Conta como lixo os textos do registro vivo da posicao que o novo
+     * registro, com a presenca e as referencias informadas, nao reaproveita.
+     */
+    private static void descartarSubstituidos(ArenaDeTextos textos, ByteBuffer segmento, int i, int presenca,
+            long codigo, long nome, long fabricante) {
+        int anterior = segmento.get(PRESENCA + i);
+        if ((anterior & VIVO) == 0) {
+            return;
+        }
+        long codigoAnterior = segmento.getLong(CODIGO + 8 * i);
+        if ((anterior & CODIGO_TEXTO) != 0 && ((presenca & CODIGO_TEXTO) == 0 || codigoAnterior != codigo)) {
+            textos.descartar(codigoAnterior);
+        }
+        long nomeAnterior = segmento.getLong(NOME + 8 * i);
+        if ((presenca & VIVO) == 0 || nomeAnterior != nome) {
+            textos.descartar(nomeAnterior);
+        }
+        long fabricanteAnterior = segmento.getLong(FABRICANTE + 8 * i);
+        if ((anterior & FABRICANTE_CODIFICADO) == 0 && ((presenca & (VIVO | FABRICANTE_CODIFICADO)) != VIVO
+                || fabricanteAnterior != fabricante)) {
+            textos.descartar(fabricanteAnterior);
+        }
+    }
+
+    private void compactarSeNecessario() {
+        if (!compensaCompactar(geracao.textos())) {
+            return;
+        }
+        limpeza.writeLock().lock();
+        try {
+            if (compensaCompactar(geracao.textos())) {
+                compactar();
+            }
+        } finally {
+            limpeza.writeLock().unlock();
+        }
+    }
+
+    private static boolean compensaCompactar(ArenaDeTextos textos) {
+        long lixo = textos.descartados();
+        return lixo >= LIXO_MINIMO && lixo * 2 >= textos.usados();
+    }
+
+    /*
+     * Com a trava exclusiva de limpeza. Copia as colunas e os textos vivos
+     * para uma geracao nova; posicoes livres ficam sem referencias.
+     */
+    private void compactar() {
+        Geracao atual = geracao;
+        ArenaDeTextos textos = new ArenaDeTextos();
+        ByteBuffer[] segmentos = new ByteBuffer[atual.segmentos().length];
+        int usadas = posicoesUsadas;
+        for (int s = 0; s < segmentos.length; s++) {
+            ByteBuffer segmento = novoSegmento();
+            segmento.put(0, atual.segmentos()[s], 0, BYTES_SEGMENTO);
+            for (int i = 0; i < POSICOES_POR_SEGMENTO && (s << BITS_SEGMENTO) + i < usadas; i++) {
+                int presenca = segmento.get(PRESENCA + i);
+                if ((presenca & VIVO) == 0) {
+                    segmento.putLong(CODIGO + 8 * i, ArenaDeTextos.NULO);
+                    segmento.putLong(NOME + 8 * i, ArenaDeTextos.NULO);
+                    segmento.putLong(FABRICANTE + 8 * i, ArenaDeTextos.NULO);
+                    continue;
+                }
+                if ((presenca & CODIGO_TEXTO) != 0) {
+                    copiarTexto(atual.textos(), textos, segmento, CODIGO + 8 * i);
+                }
+                copiarTexto(atual.textos(), textos, segmento, NOME + 8 * i);
+                if ((presenca & FABRICANTE_CODIFICADO) == 0) {
+                    copiarTexto(atual.textos(), textos, segmento, FABRICANTE + 8 * i);
+                }
+            }
+            segmentos[s] = segmento;
+        }
+        geracao = new Geracao(segmentos, textos, atual.fabricantes());
+    }
+
+    private static void copiarTexto(ArenaDeTextos origem, ArenaDeTextos destino, ByteBuffer segmento, int coluna) {
+        segmento.putLong(coluna, destino.gravar(origem.ler(segmento.getLong(coluna))));
+    }
+
+    private int alocar() {
+        synchronized (alocacao) {
+            if (quantidadeLivres > 0) {
+                return livres[--quantidadeLivres];
+            }
+            int posicao = posicoesUsadas;
+            Geracao atual = geracao;
+            ByteBuffer[] atuais = atual.segmentos();
+            if (posicao >>> BITS_SEGMENTO == atuais.length) {
+                ByteBuffer[] maiores = new ByteBuffer[atuais.length + 1];
+                System.arraycopy(atuais, 0, maiores, 0, atuais.length);
+                maiores[atuais.length] = novoSegmento();
+                geracao = new Geracao(maiores, atual.textos(), atual.fabricantes());
+            }
+            posicoesUsadas = posicao + 1;
+            return posicao;
+        }
+    }
+
+    private void liberar(int posicao) {
+        synchronized (alocacao) {
+            if (quantidadeLivres == livres.length) {
+                int[] maiores = new int[livres.length * 2];
+                System.arraycopy(livres, 0, maiores, 0, quantidadeLivres);
+                livres = maiores;
+            }
+            livres[quantidadeLivres++] = posicao;
+        }
+    }
+
+    private static ByteBuffer segmento(ByteBuffer[] segmentos, int posicao) {
+        int indice = posicao >>> BITS_SEGMENTO;
+        return indice < segmentos.length ? segmentos[indice] : null;
+    }
+
+    /* Cada prefixo deve iniciar algum termo do nome ou do fabricante. */
+    private static boolean casa(Produto produto, String[] prefixos) {
+        String[] termos = IndiceTextual.termos(produto.getNome(), produto.getFabricante());
+        for (String prefixo : prefixos) {
+            boolean achou = false;
+            for (int i = 0; i < termos.length && !achou; i++) {
+                achou = termos[i].startsWith(prefixo);
+            }
+            if (!achou) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long proximaVersao(Produto anterior) {
+        return anterior == null || anterior.getVersao() == null ? 1 : anterior.getVersao() + 1;
+    }
+
+    private static Geracao novaGeracao() {
+        return new Geracao(new ByteBuffer[] {novoSegmento()}, new ArenaDeTextos(), new Dicionario("fabricante"));
+    }
+
+    private static ByteBuffer novoSegmento() {
+        return ByteBuffer.allocateDirect(BYTES_SEGMENTO).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,15 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+/**
+ * Lancada quando uma atualizacao informa uma versao diferente da versao
+ * armazenada, ou seja, quando outro cliente alterou o registro depois que
+ * ele foi lido.
+ */
+public class ConflitoDeVersaoException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConflitoDeVersaoException() {
+        super("Versao desatualizada!");
+    }
+}
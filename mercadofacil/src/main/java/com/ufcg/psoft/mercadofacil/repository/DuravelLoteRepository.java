@@ -0,0 +1,279 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.ConfiguracaoPersistencia;
+import com.ufcg.psoft.mercadofacil.persistencia.LogDeEscrita;
+import com.ufcg.psoft.mercadofacil.persistencia.LoteCodec;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Repositorio de lotes que sobrevive a reinicios: o estado fica em um
+ * {@link VolatilLoteRepository} e cada escrita e registrada em um
+ * {@link LogDeEscrita} antes de retornar. O log guarda so o id do produto de
+ * cada lote; na recuperacao o produto e buscado no repositorio de produtos,
+ * entao um lote volta com a versao atual do seu produto. Ativo no perfil
+ * {@code duravel}. Com escrita adiada as escritas retornam sem esperar o disco.
+ *
+ * <p>Como no {@link DuravelProdutoRepository}, a memoria recebe cada escrita
+ * antes do log: se a gravacao falhar, o chamador recebe a excecao, mas o
+ * valor novo continua na memoria ate o proximo reinicio.
+ *
+ * <p>{@link #reservar} e {@link #liberar} tambem tomam a trava de leitura
+ * global de {@code limpeza}, alem da trava do id. E o preco de um
+ * {@link #deleteAll()} que nao deixa escrita pela metade: cada reserva paga
+ * a atualizacao do contador de leitores compartilhado, que sob muitos nucleos
+ * disputa a mesma linha de cache, e espera enquanto uma limpeza roda. Como
+ * deleteAll e raro, preferimos isso a uma epoca por faixa de travas, que
+ * tiraria o contador comum do caminho mas obrigaria a limpeza a percorrer e
+ * travar todas as faixas.
+ */
+@Repository
+@Profile("duravel")
+public class DuravelLoteRepository implements LoteRepository<Lote, Long>, Closeable {
+
+   final VolatilLoteRepository memoria = new VolatilLoteRepository();
+
+   private final TravasParticionadas travas = new TravasParticionadas(64);
+
+   /*
+    * Escritas pontuais tomam a trava de leitura; deleteAll toma a de escrita,
+    * para que nenhuma escrita aplicada antes da limpeza chegue ao log depois
+    * dela.
+    */
+   private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+   private final LogDeEscrita<Lote> log;
+
+   @Autowired
+   public DuravelLoteRepository(ConfiguracaoPersistencia configuracao,
+         @Qualifier("armazenamentoProduto") ProdutoRepository<Produto, Long> produtoRepository) throws IOException {
+      this(configuracao.getDiretorio(), new LoteCodec(produtoRepository::find), configuracao.getLog());
+   }
+
+   DuravelLoteRepository(Path diretorio, Codec<Lote> codec, LogDeEscrita.Configuracao configuracao)
+         throws IOException {
+      log = new LogDeEscrita<>(diretorio, "lotes", codec, configuracao);
+      log.abrir(new LogDeEscrita.Aplicador<>() {
+         @Override
+         public void gravar(Lote lote) {
+            memoria.restaurar(lote);
+         }
+
+         @Override
+         public void remover(long id) {
+            memoria.delete(Lote.builder().id(id).build());
+         }
+
+         @Override
+         public void limpar() {
+            memoria.deleteAll();
+         }
+      }, memoria::streamAll);
+   }
+
+   @Override
+   public Lote save(Lote lote) {
+      Long id = lote.getId() == null ? memoria.proximoId.incrementAndGet() : lote.getId();
+      Lote salvo;
+      CompletableFuture<Void> gravacao;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            salvo = memoria.save(lote.toBuilder().id(id).build());
+            gravacao = log.gravar(id, salvo);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      log.confirmar(gravacao);
+      return salvo.toBuilder().build();
+   }
+
+   @Override
+   public Lote find(Long id) {
+      return id == null ? null : find(id.longValue());
+   }
+
+   @Override
+   public Lote find(long id) {
+      return memoria.find(id);
+   }
+
+   @Override
+   public List<Lote> findAll() {
+      return memoria.findAll();
+   }
+
+   @Override
+   public Stream<Lote> streamAll() {
+      return memoria.streamAll();
+   }
+
+   @Override
+   public List<Lote> findPage(Long afterId, int limit, Ordenacao sort) {
+      return memoria.findPage(afterId, limit, sort);
+   }
+
+   @Override
+   public Lote update(Lote lote) {
+      Long id = lote.getId();
+      if (id == null) {
+         return null;
+      }
+      Lote atualizado;
+      CompletableFuture<Void> gravacao;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            atualizado = memoria.update(lote);
+            if (atualizado == null) {
+               return null;
+            }
+            gravacao = log.gravar(atualizado.getId(), atualizado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      log.confirmar(gravacao);
+      return atualizado.toBuilder().build();
+   }
+
+   @Override
+   public void delete(Lote lote) {
+      Long id = lote.getId();
+      if (id == null) {
+         return;
+      }
+      CompletableFuture<Void> gravacao = null;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            if (memoria.existe(id)) {
+               memoria.delete(lote);
+               gravacao = log.remover(id);
+            }
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      if (gravacao != null) {
+         log.confirmar(gravacao);
+      }
+   }
+
+   @Override
+   public void deleteAll() {
+      CompletableFuture<Void> gravacao;
+      limpeza.writeLock().lock();
+      try {
+         memoria.deleteAll();
+         gravacao = log.limpar();
+      } finally {
+         limpeza.writeLock().unlock();
+      }
+      log.confirmar(gravacao);
+   }
+
+   /*
+    * Nao vai para o log: ele guarda so o id do produto de cada lote, e na
+    * recuperacao os lotes ja voltam com o produto atual.
+    */
+   @Override
+   public void atualizarProduto(Produto produto) {
+      limpeza.readLock().lock();
+      try {
+         memoria.atualizarProduto(produto);
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
+
+   /*
+    * O saldo e alterado por compare-and-set como no repositorio em memoria,
+    * mas com a trava do id, para que o log receba os valores na mesma ordem.
+    */
+   @Override
+   public Lote reservar(Long id, int quantidade) {
+      Lote reservado;
+      CompletableFuture<Void> gravacao;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            reservado = memoria.reservar(id, quantidade);
+            gravacao = log.gravar(id, reservado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      log.confirmar(gravacao);
+      return reservado.toBuilder().build();
+   }
+
+   @Override
+   public Lote liberar(Long id, int quantidade) {
+      Lote liberado;
+      CompletableFuture<Void> gravacao;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            liberado = memoria.liberar(id, quantidade);
+            gravacao = log.gravar(id, liberado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      log.confirmar(gravacao);
+      return liberado.toBuilder().build();
+   }
+
+   @Override
+   public TotalEstoque totalEstoque() {
+      return memoria.totalEstoque();
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorProduto(Long produtoId) {
+      return memoria.totalEstoquePorProduto(produtoId);
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorFabricante(String fabricante) {
+      return memoria.totalEstoquePorFabricante(fabricante);
+   }
+
+   @Override
+   public ResumoEstoque resumoEstoque() {
+      return memoria.resumoEstoque();
+   }
+
+   @Override
+   public ResumoEstoque recalcularEstoque() {
+      return memoria.recalcularEstoque();
+   }
+
+   @PreDestroy
+   @Override
+   public void close() throws IOException {
+      log.close();
+   }
+
+}
@@ -0,0 +1,274 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.ConfiguracaoPersistencia;
+import com.ufcg.psoft.mercadofacil.persistencia.LogDeEscrita;
+import com.ufcg.psoft.mercadofacil.persistencia.ProdutoCodec;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de produtos que sobrevive a reinicios: o estado fica em um
+ * {@link VolatilProdutoRepository} e cada escrita e registrada em um
+ * {@link LogDeEscrita} antes de retornar. Na criacao o estado e reconstruido
+ * a partir do snapshot e do log. Ativo no perfil {@code duravel}.
+ *
+ * <p>Com {@link LogDeEscrita.Configuracao#escritaAdiada()} as escritas
+ * retornam assim que entram na fila do log (write-behind); quem precisa saber
+ * que a alteracao chegou ao disco usa {@link #updateAsync}.
+ *
+ * <p>Cada escrita e aplicada na memoria antes de ir para o log, com a trava
+ * do id, e so depois o chamador espera o disco. Se a gravacao falhar, a
+ * excecao (ou, em {@link #updateAll}, a falha do item) chega ao chamador,
+ * mas a memoria ja tem o valor novo: ele continua visivel ate o proximo
+ * reinicio, que reconstroi o estado so com o que esta no log.
+ */
+@Repository
+@Profile("duravel")
+@Qualifier("armazenamentoProduto")
+public class DuravelProdutoRepository implements ProdutoRepository<Produto, Long>, Closeable {
+
+    final VolatilProdutoRepository memoria = new VolatilProdutoRepository();
+
+    private final TravasParticionadas travas = new TravasParticionadas(64);
+
+    /*
+     * Escritas pontuais tomam a trava de leitura; deleteAll toma a de escrita,
+     * para que nenhuma escrita aplicada antes da limpeza chegue ao log depois
+     * dela.
+     */
+    private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+    private final LogDeEscrita<Produto> log;
+
+    @Autowired
+    public DuravelProdutoRepository(ConfiguracaoPersistencia configuracao) throws IOException {
+        this(configuracao.getDiretorio(), new ProdutoCodec(), configuracao.getLog());
+    }
+
+    DuravelProdutoRepository(Path diretorio, Codec<Produto> codec, LogDeEscrita.Configuracao configuracao)
+            throws IOException {
+        log = new LogDeEscrita<>(diretorio, "produtos", codec, configuracao);
+        log.abrir(new LogDeEscrita.Aplicador<>() {
+            @Override
+            public void gravar(Produto produto) {
+                memoria.restaurar(produto);
+            }
+
+            @Override
+            public void remover(long id) {
+                memoria.delete(Produto.builder().id(id).build());
+            }
+
+            @Override
+            public void limpar() {
+                memoria.deleteAll();
+            }
+        }, memoria::streamAll);
+    }
+
+    @Override
+    public Produto save(Produto produto) {
+        Long id = produto.getId() == null ? memoria.proximoId.incrementAndGet() : produto.getId();
+        Produto salvo;
+        CompletableFuture<Void> gravacao;
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                salvo = memoria.save(produto.toBuilder().id(id).build());
+                gravacao = log.gravar(id, salvo);
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        log.confirmar(gravacao);
+        return salvo.toBuilder().build();
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        return memoria.find(id);
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        return memoria.findAll();
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return memoria.streamAll();
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        return memoria.findPage(afterId, limit, sort);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        return memoria.findByPreco(minPreco, maxPreco, afterId, limit);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return memoria.findMaisCaros(limit);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        List<CompletableFuture<Void>> gravacoes = new ArrayList<>(1);
+        Produto atualizado = atualizar(produto, gravacoes).comoUpdate();
+        gravacoes.forEach(log::confirmar);
+        return atualizado;
+    }
+
+    /*
+     * O futuro e completado pela thread escritora do log; continuacoes
+     * demoradas devem usar as variantes *Async do CompletableFuture.
+     */
+    @Override
+    public CompletableFuture<Produto> updateAsync(Produto produto) {
+        List<CompletableFuture<Void>> gravacoes = new ArrayList<>(1);
+        Produto atualizado;
+        try {
+            atualizado = atualizar(produto, gravacoes).comoUpdate();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (gravacoes.isEmpty()) {
+            return CompletableFuture.completedFuture(atualizado);
+        }
+        return gravacoes.get(0).thenApply(gravado -> atualizado);
+    }
+
+    /*
+     * Todas as alteracoes entram na fila antes de esperar o disco, entao o
+     * lote inteiro costuma ser gravado com um unico force. Cada gravacao e
+     * confirmada por si: a que falha vira a falha do seu item, e as demais
+     * continuam valendo.
+     */
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> alterados) {
+        List<CompletableFuture<Void>> gravacoes = new ArrayList<>(alterados.size());
+        List<ResultadoAtualizacao<Produto>> resultado = new ArrayList<>(alterados.size());
+        int[] posicoes = new int[alterados.size()];
+        for (Produto produto : alterados) {
+            int gravadas = gravacoes.size();
+            resultado.add(atualizar(produto, gravacoes));
+            if (gravacoes.size() > gravadas) {
+                posicoes[gravadas] = resultado.size() - 1;
+            }
+        }
+        for (int i = 0; i < gravacoes.size(); i++) {
+            try {
+                log.confirmar(gravacoes.get(i));
+            } catch (RuntimeException e) {
+                resultado.set(posicoes[i], ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.GRAVACAO_FALHOU));
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            return;
+        }
+        CompletableFuture<Void> gravacao = null;
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                if (memoria.produtos.contem(id)) {
+                    memoria.delete(produto);
+                    gravacao = log.remover(id);
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        if (gravacao != null) {
+            log.confirmar(gravacao);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        CompletableFuture<Void> gravacao;
+        limpeza.writeLock().lock();
+        try {
+            memoria.deleteAll();
+            gravacao = log.limpar();
+        } finally {
+            limpeza.writeLock().unlock();
+        }
+        log.confirmar(gravacao);
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        return memoria.findByCodigoBarra(codigoBarra);
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        return memoria.findByFabricante(fabricante);
+    }
+
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        return memoria.search(consulta, limit);
+    }
+
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        return memoria.relatorioMemoria();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private ResultadoAtualizacao<Produto> atualizar(Produto produto, List<CompletableFuture<Void>> gravacoes) {
+        if (produto.getId() == null) {
+            return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+        }
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(produto.getId())) {
+                ResultadoAtualizacao<Produto> resultado = memoria.atualizar(produto);
+                if (!resultado.sucesso()) {
+                    return resultado;
+                }
+                Produto atualizado = resultado.atualizado();
+                gravacoes.add(log.gravar(atualizado.getId(), atualizado));
+                return ResultadoAtualizacao.sucesso(atualizado.toBuilder().build());
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Relogio de epocas para leituras de instantaneo sobre versoes encadeadas.
+ * Cada escrita carimba a versao que publica com a epoca corrente, lida entre
+ * {@link #entrar()} e {@link #sair(long)}; abrir um instantaneo avanca a
+ * epoca e devolve a anterior, e o instantaneo enxerga exatamente as versoes
+ * carimbadas ate ela.
+ *
+ * <p>Para que nenhuma escrita da epoca devolvida seja publicada depois de o
+ * instantaneo comecar a ler, {@link #abrir()} espera as escritas que ainda
+ * estao nela: escritores contam a entrada em um {@link LongAdder} por
+ * paridade de epoca e, se a epoca mudou entre ler e contar, desistem e
+ * entram na nova. A espera dura no maximo uma publicacao por escritor em
+ * andamento; escritores nunca esperam por leitores, e abrir um instantaneo
+ * nao copia nada.
+ *
+ * <p>Os instantaneos abertos sao contados por epoca, para que as escritas
+ * saibam ate onde ainda precisam guardar versoes antigas.
+ */
+final class Epocas {
+
+    /** Valor de {@link #maisAntigoAberto()} sem instantaneo aberto. */
+    static final long NENHUM = Long.MAX_VALUE;
+
+    private volatile long atual = 1;
+
+    private final LongAdder[] escritores = {new LongAdder(), new LongAdder()};
+
+    /* Guardado pelo monitor desta instancia. */
+    private final TreeMap<Long, Integer> abertos = new TreeMap<>();
+
+    private volatile long maisAntigoAberto = NENHUM;
+
+    /** Comeca uma escrita e devolve a epoca com que ela deve carimbar as versoes. */
+    long entrar() {
+        while (true) {
+            long epoca = atual;
+            LongAdder contador = escritores[(int) epoca & 1];
+            contador.increment();
+            if (atual == epoca) {
+                return epoca;
+            }
+            contador.decrement();
+        }
+    }
+
+    /** Termina a escrita comecada por {@link #entrar()}, depois da publicacao. */
+    void sair(long epoca) {
+        escritores[(int) epoca & 1].decrement();
+    }
+
+    /**
+     * Abre um instantaneo e devolve a sua epoca. O chamador deve fecha-lo
+     * com {@link #fechar(long)} para que as versoes antigas sejam soltas.
+     */
+    synchronized long abrir() {
+        long epoca = atual;
+        abertos.merge(epoca, 1, Integer::sum);
+        maisAntigoAberto = abertos.firstKey();
+        atual = epoca + 1;
+        LongAdder contador = escritores[(int) epoca & 1];
+        for (int voltas = 0; contador.sum() != 0; voltas++) {
+            if (voltas < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return epoca;
+    }
+
+    /** Fecha o instantaneo aberto por {@link #abrir()}. */
+    synchronized void fechar(long epoca) {
+        abertos.computeIfPresent(epoca, (e, n) -> n == 1 ? null : n - 1);
+        maisAntigoAberto = abertos.isEmpty() ? NENHUM : abertos.firstKey();
+    }
+
+    /** A epoca do instantaneo aberto mais antigo, ou {@link #NENHUM}. */
+    long maisAntigoAberto() {
+        return maisAntigoAberto;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Indice ordenado por id guardado em vetores primitivos, para a paginacao
+ * por chave: uma lista ordenada de blocos de ate {@link #TAMANHO_BLOCO} ids,
+ * cada um em um {@code long[]}. E o {@link IndicePreco} sem a coluna de
+ * precos, com as mesmas travas: a lista de blocos fica sob uma
+ * {@link StampedLock} e cada bloco sob o seu monitor, e so dividir, esvaziar
+ * ou trocar o primeiro id de um bloco toma a trava exclusiva.
+ */
+final class IndiceId {
+
+    static final int TAMANHO_BLOCO = 256;
+
+    private static final class Bloco {
+
+        final long[] ids = new long[TAMANHO_BLOCO];
+
+        int tamanho;
+    }
+
+    private final StampedLock trava = new StampedLock();
+
+    private Bloco[] blocos = {new Bloco()};
+
+    private int quantidadeBlocos = 1;
+
+    void adicionar(long id) {
+        long selo = trava.readLock();
+        try {
+            Bloco bloco = blocos[bloco(id)];
+            synchronized (bloco) {
+                int i = posicao(bloco, id);
+                if (i < bloco.tamanho && bloco.ids[i] == id) {
+                    return;
+                }
+                if (i > 0 && bloco.tamanho < TAMANHO_BLOCO) {
+                    inserir(bloco, i, id);
+                    return;
+                }
+            }
+        } finally {
+            trava.unlockRead(selo);
+        }
+        selo = trava.writeLock();
+        try {
+            int b = bloco(id);
+            Bloco bloco = blocos[b];
+            int i = posicao(bloco, id);
+            if (i < bloco.tamanho && bloco.ids[i] == id) {
+                return;
+            }
+            if (bloco.tamanho == TAMANHO_BLOCO) {
+                /* Ids crescentes sempre caem no fim do ultimo bloco; ai um bloco vazio e aberto. */
+                int meio = i == TAMANHO_BLOCO && b == quantidadeBlocos - 1 ? TAMANHO_BLOCO : TAMANHO_BLOCO / 2;
+                dividir(b, meio);
+                if (i > meio || i == TAMANHO_BLOCO) {
+                    bloco = blocos[b + 1];
+                    i -= meio;
+                }
+            }
+            inserir(bloco, i, id);
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    void remover(long id) {
+        long selo = trava.readLock();
+        try {
+            Bloco bloco = blocos[bloco(id)];
+            synchronized (bloco) {
+                int i = posicao(bloco, id);
+                if (i == bloco.tamanho || bloco.ids[i] != id) {
+                    return;
+                }
+                if (i > 0) {
+                    retirar(bloco, i);
+                    return;
+                }
+            }
+        } finally {
+            trava.unlockRead(selo);
+        }
+        selo = trava.writeLock();
+        try {
+            int b = bloco(id);
+            Bloco bloco = blocos[b];
+            int i = posicao(bloco, id);
+            if (i == bloco.tamanho || bloco.ids[i] != id) {
+                return;
+            }
+            retirar(bloco, i);
+            if (bloco.tamanho == 0 && quantidadeBlocos > 1) {
+                System.arraycopy(blocos, b + 1, blocos, b, quantidadeBlocos - b - 1);
+                blocos[--quantidadeBlocos] = null;
+            }
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    void limpar() {
+        long selo = trava.writeLock();
+        try {
+            blocos = new Bloco[] {new Bloco()};
+            quantidadeBlocos = 1;
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    /**
+     * Ate {@code limite} entidades com id maior que {@code depoisDe}, em ordem
+     * crescente, ou desde o inicio se ele for nulo. Ids cuja busca devolve
+     * {@code null} (removidos nesse meio tempo) sao ignorados.
+     */
+    <T> List<T> pagina(Long depoisDe, int limite, LongFunction<T> busca) {
+        List<T> resultado = new ArrayList<>(Math.min(limite, 1024));
+        long[] ids = new long[Math.min(limite, 1024)];
+        long id = depoisDe == null ? Long.MIN_VALUE : depoisDe;
+        while (resultado.size() < limite) {
+            int lidos = crescente(id, ids);
+            if (IndiceOrdenado.adicionarEncontrados(ids, lidos, limite, busca, resultado) || lidos < ids.length) {
+                break;
+            }
+            id = ids[lidos - 1];
+        }
+        return resultado;
+    }
+
+    /* Copia para ids os ids seguintes a depoisDe, em ordem crescente; devolve quantos foram copiados. */
+    private int crescente(long depoisDe, long[] ids) {
+        long selo = trava.readLock();
+        try {
+            int primeiro = bloco(depoisDe);
+            int n = 0;
+            for (int b = primeiro; b < quantidadeBlocos && n < ids.length; b++) {
+                Bloco bloco = blocos[b];
+                synchronized (bloco) {
+                    int i = 0;
+                    if (b == primeiro) {
+                        i = posicao(bloco, depoisDe);
+                        if (i < bloco.tamanho && bloco.ids[i] == depoisDe) {
+                            i++;
+                        }
+                    }
+                    for (; i < bloco.tamanho && n < ids.length; i++) {
+                        ids[n++] = bloco.ids[i];
+                    }
+                }
+            }
+            return n;
+        } finally {
+            trava.unlockRead(selo);
+        }
+    }
+
+    /* Ultimo bloco cujo primeiro id nao passa de id, ou o primeiro. */
+    private int bloco(long id) {
+        int baixo = 1, alto = quantidadeBlocos - 1, resultado = 0;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (blocos[meio].ids[0] <= id) {
+                resultado = meio;
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return resultado;
+    }
+
+    /* Primeira posicao do bloco com id maior ou igual ao dado. */
+    private static int posicao(Bloco bloco, long id) {
+        int baixo = 0, alto = bloco.tamanho;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (bloco.ids[meio] < id) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private static void inserir(Bloco bloco, int i, long id) {
+        System.arraycopy(bloco.ids, i, bloco.ids, i + 1, bloco.tamanho - i);
+        bloco.ids[i] = id;
+        bloco.tamanho++;
+    }
+
+    private static void retirar(Bloco bloco, int i) {
+        System.arraycopy(bloco.ids, i + 1, bloco.ids, i, bloco.tamanho - i - 1);
+        bloco.tamanho--;
+    }
+
+    private void dividir(int b, int meio) {
+        if (quantidadeBlocos == blocos.length) {
+            Bloco[] maiores = new Bloco[blocos.length * 2];
+            System.arraycopy(blocos, 0, maiores, 0, quantidadeBlocos);
+            blocos = maiores;
+        }
+        Bloco cheio = blocos[b];
+        Bloco metade = new Bloco();
+        System.arraycopy(cheio.ids, meio, metade.ids, 0, TAMANHO_BLOCO - meio);
+        metade.tamanho = TAMANHO_BLOCO - meio;
+        cheio.tamanho = meio;
+        System.arraycopy(blocos, b + 1, blocos, b + 2, quantidadeBlocos - b - 1);
+        blocos[b + 1] = metade;
+        quantidadeBlocos++;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Indices ordenados por id e por (preco, id) usados na paginacao por chave e
+ * nas consultas por faixa de preco. Cada pagina parte direto da ultima chave
+ * vista, entao o custo nao depende de quantas paginas ja foram lidas. Os dois
+ * indices guardam as chaves em vetores primitivos, sem um objeto por entrada:
+ * a ordem por id fica em um {@link IndiceId} e a por preco em um
+ * {@link IndicePreco}. Quem altera o indice deve segurar a trava do id
+ * envolvido.
+ */
+final class IndiceOrdenado {
+
+    private final IndiceId porId = new IndiceId();
+
+    private final IndicePreco porPreco = new IndicePreco();
+
+    void adicionar(long id, double preco) {
+        porId.adicionar(id);
+        porPreco.adicionar(id, preco);
+    }
+
+    void atualizar(long id, double precoAnterior, double preco) {
+        porPreco.atualizar(id, precoAnterior, preco);
+    }
+
+    void remover(long id, double preco) {
+        porId.remover(id);
+        porPreco.remover(id, preco);
+    }
+
+    void limpar() {
+        porId.limpar();
+        porPreco.limpar();
+    }
+
+    /**
+     * Ate {@code limite} entidades que seguem o cursor na ordem pedida. Com
+     * {@code depoisDe} nulo a pagina comeca do inicio; {@code precoDepoisDe}
+     * so e usado na ordem por preco e deve ser o preco do registro do cursor.
+     * Ids cuja busca devolve {@code null} (removidos nesse meio tempo) sao
+     * ignorados.
+     */
+    <T> List<T> pagina(Long depoisDe, double precoDepoisDe, Ordenacao ordenacao, int limite,
+                       LongFunction<T> busca) {
+        if (ordenacao == Ordenacao.PRECO) {
+            return faixaDePreco(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    depoisDe, precoDepoisDe, limite, busca);
+        }
+        return porId.pagina(depoisDe, limite, busca);
+    }
+
+    /**
+     * Ate {@code limite} entidades com preco entre {@code precoMinimo} e
+     * {@code precoMaximo} (inclusive), em ordem de (preco, id), depois do
+     * cursor se {@code depoisDe} nao for nulo.
+     */
+    <T> List<T> faixaDePreco(double precoMinimo, double precoMaximo, Long depoisDe, double precoDepoisDe,
+                             int limite, LongFunction<T> busca) {
+        if (depoisDe != null && Double.compare(precoDepoisDe, precoMinimo) >= 0) {
+            return crescente(porPreco, precoDepoisDe, depoisDe, precoMaximo, limite, busca);
+        }
+        return crescente(porPreco, precoMinimo, Long.MIN_VALUE, precoMaximo, limite, busca);
+    }
+
+    static <T> List<T> crescente(IndicePreco indice, double preco, long id, double precoMaximo,
+                                 int limite, LongFunction<T> busca) {
+        List<T> resultado = new ArrayList<>(Math.min(limite, 1024));
+        long[] ids = new long[Math.min(limite, 1024)];
+        double[] precos = new double[ids.length];
+        while (resultado.size() < limite) {
+            int lidos = indice.crescente(preco, id, precoMaximo, ids, precos);
+            if (adicionarEncontrados(ids, lidos, limite, busca, resultado) || lidos < ids.length) {
+                break;
+            }
+            preco = precos[lidos - 1];
+            id = ids[lidos - 1];
+        }
+        return resultado;
+    }
+
+    /** Ate {@code limite} entidades de maior preco, da mais cara para a mais barata. */
+    <T> List<T> maisCaras(int limite, LongFunction<T> busca) {
+        double preco = Double.POSITIVE_INFINITY;
+        long id = Long.MAX_VALUE;
+        List<T> resultado = new ArrayList<>(Math.min(limite, 1024));
+        long[] ids = new long[Math.min(limite, 1024)];
+        double[] precos = new double[ids.length];
+        while (resultado.size() < limite) {
+            int lidos = porPreco.decrescente(preco, id, Double.NEGATIVE_INFINITY, ids, precos);
+            if (adicionarEncontrados(ids, lidos, limite, busca, resultado) || lidos < ids.length) {
+                break;
+            }
+            preco = precos[lidos - 1];
+            id = ids[lidos - 1];
+        }
+        return resultado;
+    }
+
+    /* Devolve true quando o resultado completou o limite. */
+    static <T> boolean adicionarEncontrados(long[] ids, int lidos, int limite, LongFunction<T> busca,
+                                                    List<T> resultado) {
+        for (int i = 0; i < lidos; i++) {
+            T entidade = busca.apply(ids[i]);
+            if (entidade != null) {
+                resultado.add(entidade);
+                if (resultado.size() == limite) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,269 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Indice ordenado por (preco, id) guardado em vetores primitivos: uma lista
+ * ordenada de blocos de ate {@link #TAMANHO_BLOCO} entradas, cada um com um
+ * {@code double[]} de precos e um {@code long[]} de ids. Nao ha um objeto por
+ * entrada; inserir ou remover desloca no maximo um bloco, e um bloco cheio e
+ * dividido ao meio.
+ *
+ * <p>A lista de blocos e protegida por uma {@link StampedLock} e cada bloco
+ * pelo seu proprio monitor. Inserir ou remover uma chave que nao e a primeira
+ * do bloco, sem dividir nem esvaziar o bloco, toma a trava da lista em modo
+ * compartilhado e so o monitor do bloco: escritas em blocos diferentes correm
+ * em paralelo. Como a primeira chave de cada bloco so muda com a trava
+ * exclusiva, a busca do bloco nao precisa de monitor. Dividir um bloco,
+ * remover um bloco vazio ou trocar a primeira chave de um bloco toma a trava
+ * exclusiva; com chaves espalhadas, isso acontece em cerca de uma escrita a
+ * cada {@code TAMANHO_BLOCO / 2}. Leituras tomam a trava compartilhada e o
+ * monitor de cada bloco enquanto copiam as chaves dele para os vetores do
+ * chamador.
+ */
+final class IndicePreco {
+
+    static final int TAMANHO_BLOCO = 256;
+
+    private static final class Bloco {
+
+        final double[] precos = new double[TAMANHO_BLOCO];
+
+        final long[] ids = new long[TAMANHO_BLOCO];
+
+        int tamanho;
+    }
+
+    private final StampedLock trava = new StampedLock();
+
+    private Bloco[] blocos = {new Bloco()};
+
+    private int quantidadeBlocos = 1;
+
+    void adicionar(long id, double preco) {
+        long selo = trava.readLock();
+        try {
+            Bloco bloco = blocos[bloco(preco, id)];
+            synchronized (bloco) {
+                int i = posicao(bloco, preco, id);
+                if (i < bloco.tamanho && compara(bloco.precos[i], bloco.ids[i], preco, id) == 0) {
+                    return;
+                }
+                if (i > 0 && bloco.tamanho < TAMANHO_BLOCO) {
+                    inserir(bloco, i, id, preco);
+                    return;
+                }
+            }
+        } finally {
+            trava.unlockRead(selo);
+        }
+        selo = trava.writeLock();
+        try {
+            int b = bloco(preco, id);
+            Bloco bloco = blocos[b];
+            int i = posicao(bloco, preco, id);
+            if (i < bloco.tamanho && compara(bloco.precos[i], bloco.ids[i], preco, id) == 0) {
+                return;
+            }
+            if (bloco.tamanho == TAMANHO_BLOCO) {
+                /*
+                 * Chaves crescentes sempre caem no fim do ultimo bloco; ai um
+                 * bloco vazio e aberto em vez de deixar dois pela metade.
+                 */
+                int meio = i == TAMANHO_BLOCO && b == quantidadeBlocos - 1 ? TAMANHO_BLOCO : TAMANHO_BLOCO / 2;
+                dividir(b, meio);
+                if (i > meio || i == TAMANHO_BLOCO) {
+                    bloco = blocos[b + 1];
+                    i -= meio;
+                }
+            }
+            inserir(bloco, i, id, preco);
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    void remover(long id, double preco) {
+        long selo = trava.readLock();
+        try {
+            Bloco bloco = blocos[bloco(preco, id)];
+            synchronized (bloco) {
+                int i = posicao(bloco, preco, id);
+                if (i == bloco.tamanho || compara(bloco.precos[i], bloco.ids[i], preco, id) != 0) {
+                    return;
+                }
+                if (i > 0) {
+                    retirar(bloco, i);
+                    return;
+                }
+            }
+        } finally {
+            trava.unlockRead(selo);
+        }
+        selo = trava.writeLock();
+        try {
+            int b = bloco(preco, id);
+            Bloco bloco = blocos[b];
+            int i = posicao(bloco, preco, id);
+            if (i == bloco.tamanho || compara(bloco.precos[i], bloco.ids[i], preco, id) != 0) {
+                return;
+            }
+            retirar(bloco, i);
+            if (bloco.tamanho == 0 && quantidadeBlocos > 1) {
+                System.arraycopy(blocos, b + 1, blocos, b, quantidadeBlocos - b - 1);
+                blocos[--quantidadeBlocos] = null;
+            }
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    void atualizar(long id, double precoAnterior, double preco) {
+        if (Double.compare(precoAnterior, preco) != 0) {
+            remover(id, precoAnterior);
+            adicionar(id, preco);
+        }
+    }
+
+    void limpar() {
+        long selo = trava.writeLock();
+        try {
+            blocos = new Bloco[] {new Bloco()};
+            quantidadeBlocos = 1;
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    /**
+     * Copia para {@code ids} e {@code precos} as entradas seguintes a
+     * (precoDepoisDe, idDepoisDe), em ordem crescente, enquanto o preco nao
+     * passar de {@code precoMaximo}. Devolve quantas foram copiadas, no maximo
+     * o tamanho dos vetores.
+     */
+    int crescente(double precoDepoisDe, long idDepoisDe, double precoMaximo, long[] ids, double[] precos) {
+        long selo = trava.readLock();
+        try {
+            int primeiro = bloco(precoDepoisDe, idDepoisDe);
+            int n = 0;
+            for (int b = primeiro; b < quantidadeBlocos && n < ids.length; b++) {
+                Bloco bloco = blocos[b];
+                synchronized (bloco) {
+                    int i = 0;
+                    if (b == primeiro) {
+                        i = posicao(bloco, precoDepoisDe, idDepoisDe);
+                        if (i < bloco.tamanho
+                                && compara(bloco.precos[i], bloco.ids[i], precoDepoisDe, idDepoisDe) == 0) {
+                            i++;
+                        }
+                    }
+                    for (; i < bloco.tamanho && n < ids.length; i++) {
+                        if (Double.compare(bloco.precos[i], precoMaximo) > 0) {
+                            return n;
+                        }
+                        ids[n] = bloco.ids[i];
+                        precos[n++] = bloco.precos[i];
+                    }
+                }
+            }
+            return n;
+        } finally {
+            trava.unlockRead(selo);
+        }
+    }
+
+    /**
+     * Como {@link #crescente}, mas em ordem decrescente a partir das entradas
+     * anteriores a (precoAntesDe, idAntesDe), enquanto o preco nao ficar
+     * abaixo de {@code precoMinimo}.
+     */
+    int decrescente(double precoAntesDe, long idAntesDe, double precoMinimo, long[] ids, double[] precos) {
+        long selo = trava.readLock();
+        try {
+            int primeiro = bloco(precoAntesDe, idAntesDe);
+            int n = 0;
+            for (int b = primeiro; b >= 0 && n < ids.length; b--) {
+                Bloco bloco = blocos[b];
+                synchronized (bloco) {
+                    int i = (b == primeiro ? posicao(bloco, precoAntesDe, idAntesDe) : bloco.tamanho) - 1;
+                    for (; i >= 0 && n < ids.length; i--) {
+                        if (Double.compare(bloco.precos[i], precoMinimo) < 0) {
+                            return n;
+                        }
+                        ids[n] = bloco.ids[i];
+                        precos[n++] = bloco.precos[i];
+                    }
+                }
+            }
+            return n;
+        } finally {
+            trava.unlockRead(selo);
+        }
+    }
+
+    /* Ultimo bloco cuja primeira chave nao passa de (preco, id), ou o primeiro. */
+    private int bloco(double preco, long id) {
+        int baixo = 1, alto = quantidadeBlocos - 1, resultado = 0;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            Bloco bloco = blocos[meio];
+            if (compara(bloco.precos[0], bloco.ids[0], preco, id) <= 0) {
+                resultado = meio;
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return resultado;
+    }
+
+    /* Primeira posicao do bloco com chave maior ou igual a (preco, id). */
+    private static int posicao(Bloco bloco, double preco, long id) {
+        int baixo = 0, alto = bloco.tamanho;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (compara(bloco.precos[meio], bloco.ids[meio], preco, id) < 0) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private static void inserir(Bloco bloco, int i, long id, double preco) {
+        System.arraycopy(bloco.precos, i, bloco.precos, i + 1, bloco.tamanho - i);
+        System.arraycopy(bloco.ids, i, bloco.ids, i + 1, bloco.tamanho - i);
+        bloco.precos[i] = preco;
+        bloco.ids[i] = id;
+        bloco.tamanho++;
+    }
+
+    private static void retirar(Bloco bloco, int i) {
+        System.arraycopy(bloco.precos, i + 1, bloco.precos, i, bloco.tamanho - i - 1);
+        System.arraycopy(bloco.ids, i + 1, bloco.ids, i, bloco.tamanho - i - 1);
+        bloco.tamanho--;
+    }
+
+    private void dividir(int b, int meio) {
+        if (quantidadeBlocos == blocos.length) {
+            Bloco[] maiores = new Bloco[blocos.length * 2];
+            System.arraycopy(blocos, 0, maiores, 0, quantidadeBlocos);
+            blocos = maiores;
+        }
+        Bloco cheio = blocos[b];
+        Bloco metade = new Bloco();
+        System.arraycopy(cheio.precos, meio, metade.precos, 0, TAMANHO_BLOCO - meio);
+        System.arraycopy(cheio.ids, meio, metade.ids, 0, TAMANHO_BLOCO - meio);
+        metade.tamanho = TAMANHO_BLOCO - meio;
+        cheio.tamanho = meio;
+        System.arraycopy(blocos, b + 1, blocos, b + 2, quantidadeBlocos - b - 1);
+        blocos[b + 1] = metade;
+        quantidadeBlocos++;
+    }
+
+    private static int compara(double preco, long id, double outroPreco, long outroId) {
+        int comparacao = Double.compare(preco, outroPreco);
+        return comparacao != 0 ? comparacao : Long.compare(id, outroId);
+    }
+}
@@ -0,0 +1,233 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongFunction;
+
+/**
+ * Indice invertido dos termos de nome e fabricante, usado na busca por
+ * prefixo. Os termos sao normalizados (minusculas, sem acentos) e ficam em
+ * um mapa ordenado, onde os termos que comecam com um prefixo formam um
+ * intervalo contiguo. Cada termo aponta para os ids que o contem, e cada
+ * postagem traz junto todos os termos do id em uma unica String, cada um
+ * precedido de {@link #SEPARADOR}: os demais prefixos da consulta sao
+ * conferidos ali mesmo, com uma busca sequencial, sem consultar outro mapa
+ * nem visitar um objeto por termo.
+ *
+ * <p>Quem indexa ou remove um id deve segurar a trava desse id; as postagens
+ * de um termo sao alteradas sob uma trava do proprio termo. Buscas nao
+ * bloqueiam.
+ */
+final class IndiceTextual {
+
+    private static final String[] NENHUM = new String[0];
+
+    static final char SEPARADOR = '\0';
+
+    private final ConcurrentNavigableMap<String, ConcurrentMap<Long, String>> porTermo = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<Long, String> termosPorId = new ConcurrentHashMap<>();
+
+    private final TravasParticionadas travasTermo = new TravasParticionadas(64);
+
+    void indexar(long id, String nome, String fabricante) {
+        String[] termos = termos(nome, fabricante);
+        String juntos = juntar(termos);
+        String anteriores = termosPorId.put(id, juntos);
+        if (juntos.equals(anteriores)) {
+            return;
+        }
+        for (String termo : separar(anteriores)) {
+            if (!contem(termos, termo)) {
+                removerPostagem(termo, id);
+            }
+        }
+        for (String termo : termos) {
+            adicionarPostagem(termo, id, juntos);
+        }
+    }
+
+    void remover(long id) {
+        for (String termo : separar(termosPorId.remove(id))) {
+            removerPostagem(termo, id);
+        }
+    }
+
+    void limpar() {
+        porTermo.clear();
+        termosPorId.clear();
+    }
+
+    /**
+     * Ate {@code limite} entidades cujos termos comecam com cada palavra da
+     * consulta. Percorre as postagens da palavra mais seletiva, em ordem
+     * alfabetica dos termos, e confere as demais palavras nos termos de cada
+     * id. Ids cuja busca devolve {@code null} sao ignorados.
+     */
+    <T> List<T> buscar(String consulta, int limite, LongFunction<T> busca) {
+        String[] prefixos = termos(consulta);
+        List<T> resultado = new ArrayList<>(Math.min(limite, 1024));
+        if (prefixos.length == 0) {
+            return resultado;
+        }
+        /* Prefixos longos costumam ser mais seletivos e limitam cedo a contagem dos demais. */
+        Arrays.sort(prefixos, Comparator.comparingInt(String::length).reversed());
+        Collection<ConcurrentMap<Long, String>> guia = null;
+        long menor = Long.MAX_VALUE;
+        for (String prefixo : prefixos) {
+            Collection<ConcurrentMap<Long, String>> postagens = comPrefixo(prefixo).values();
+            long tamanho = 0;
+            for (ConcurrentMap<Long, String> ids : postagens) {
+                tamanho += ids.size();
+                if (tamanho >= menor) {
+                    break;
+                }
+            }
+            if (tamanho < menor) {
+                menor = tamanho;
+                guia = postagens;
+            }
+        }
+        String[] marcados = new String[prefixos.length];
+        for (int i = 0; i < prefixos.length; i++) {
+            marcados[i] = SEPARADOR + prefixos[i];
+        }
+        /* Um id aparece em mais de uma postagem se tiver mais de um termo com o prefixo guia. */
+        Set<Long> vistos = null;
+        Iterator<ConcurrentMap<Long, String>> postagens = guia.iterator();
+        while (postagens.hasNext()) {
+            ConcurrentMap<Long, String> postagem = postagens.next();
+            if (vistos == null && postagens.hasNext()) {
+                vistos = new HashSet<>();
+            }
+            for (Map.Entry<Long, String> entrada : postagem.entrySet()) {
+                if (resultado.size() == limite) {
+                    return resultado;
+                }
+                Long id = entrada.getKey();
+                if (casa(entrada.getValue(), marcados) && (vistos == null || vistos.add(id))) {
+                    T entidade = busca.apply(id);
+                    if (entidade != null) {
+                        resultado.add(entidade);
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Termos distintos dos textos: minusculas, sem acentos e separados por
+     * qualquer caractere que nao seja letra ou digito.
+     */
+    static String[] termos(String... textos) {
+        List<String> termos = new ArrayList<>();
+        for (String texto : textos) {
+            if (texto == null) {
+                continue;
+            }
+            String normalizado = normalizar(texto);
+            int inicio = -1;
+            for (int i = 0; i <= normalizado.length(); i++) {
+                boolean letra = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+                if (letra && inicio < 0) {
+                    inicio = i;
+                } else if (!letra && inicio >= 0) {
+                    String termo = normalizado.substring(inicio, i);
+                    if (!termos.contains(termo)) {
+                        termos.add(termo);
+                    }
+                    inicio = -1;
+                }
+            }
+        }
+        return termos.toArray(NENHUM);
+    }
+
+    static String normalizar(String texto) {
+        String minusculo = texto.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < minusculo.length(); i++) {
+            if (minusculo.charAt(i) > 0x7F) {
+                return semAcentos(minusculo);
+            }
+        }
+        return minusculo;
+    }
+
+    private static String semAcentos(String texto) {
+        String decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder resultado = new StringBuilder(decomposto.length());
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+
+    private ConcurrentNavigableMap<String, ConcurrentMap<Long, String>> comPrefixo(String prefixo) {
+        return porTermo.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false);
+    }
+
+    private void adicionarPostagem(String termo, long id, String juntos) {
+        synchronized (travasTermo.para(termo.hashCode())) {
+            porTermo.computeIfAbsent(termo, t -> new ConcurrentHashMap<>()).put(id, juntos);
+        }
+    }
+
+    private void removerPostagem(String termo, long id) {
+        synchronized (travasTermo.para(termo.hashCode())) {
+            ConcurrentMap<Long, String> ids = porTermo.get(termo);
+            if (ids != null && ids.remove(id) != null && ids.isEmpty()) {
+                porTermo.remove(termo);
+            }
+        }
+    }
+
+    private static boolean casa(String termos, String[] marcados) {
+        for (String marcado : marcados) {
+            if (!termos.contains(marcado)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String juntar(String[] termos) {
+        StringBuilder juntos = new StringBuilder();
+        for (String termo : termos) {
+            juntos.append(SEPARADOR).append(termo);
+        }
+        return juntos.toString();
+    }
+
+    private static String[] separar(String juntos) {
+        if (juntos == null || juntos.isEmpty()) {
+            return NENHUM;
+        }
+        return juntos.substring(1).split(String.valueOf(SEPARADOR));
+    }
+
+    private static boolean contem(String[] termos, String termo) {
+        for (String existente : termos) {
+            if (existente.equals(termo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
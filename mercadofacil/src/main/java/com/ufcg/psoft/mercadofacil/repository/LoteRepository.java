@@ -1,12 +1,28 @@
 package com.ufcg.psoft.mercadofacil.repository;
 
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface LoteRepository<T, ID> {
 	   T save(T lote);
 	   T find(ID id);
+	   T find(long id);
 	   List<T> findAll();
+	   Stream<T> streamAll();
+	   List<T> findPage(ID afterId, int limit, Ordenacao sort);
 	   T update(T lote);
 	   void delete(T lote);
+	   T reservar(ID id, int quantidade);
+	   T liberar(ID id, int quantidade);
 	   void deleteAll();
+	   void atualizarProduto(Produto produto);
+	   TotalEstoque totalEstoque();
+	   TotalEstoque totalEstoquePorProduto(ID produtoId);
+	   TotalEstoque totalEstoquePorFabricante(String fabricante);
+	   ResumoEstoque resumoEstoque();
+	   ResumoEstoque recalcularEstoque();
 }
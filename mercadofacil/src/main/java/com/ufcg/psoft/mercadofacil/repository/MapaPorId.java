@@ -0,0 +1,259 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * Mapa concorrente de id {@code long} para entidade, com enderecamento
+ * aberto e sondagem linear em um {@code long[]} de chaves e um
+ * {@code Object[]} de valores. Nao ha {@code Long} nem no por entrada: cada
+ * entrada ocupa 12 bytes do par de vetores, cerca de 25 com a folga da
+ * tabela, contra cerca de 64 de um {@code ConcurrentHashMap<Long, T>}, e a
+ * busca nao encaixota o id.
+ *
+ * <p>As chaves sao repartidas em segmentos pelos bits altos do espalhamento,
+ * cada um com a sua tabela e a sua {@link StampedLock}, como a
+ * {@link TabelaForaDoHeap}: escritas em segmentos diferentes nao disputam
+ * trava, e leituras tentam primeiro uma leitura otimista e so pegam a trava
+ * de leitura se uma escrita do segmento as atravessou. Cada tabela dobra
+ * quando passa de metade ocupada.
+ */
+final class MapaPorId<V> {
+
+    private static final Object REMOVIDO = new Object();
+
+    private static final int BITS_SEGMENTO = 6;
+
+    private static final int SEGMENTOS = 1 << BITS_SEGMENTO;
+
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    private static final class Tabela {
+
+        final long[] chaves;
+
+        final Object[] valores;
+
+        Tabela(int capacidade) {
+            chaves = new long[capacidade];
+            valores = new Object[capacidade];
+        }
+    }
+
+    private static final class Segmento {
+
+        final StampedLock trava = new StampedLock();
+
+        Tabela tabela = new Tabela(CAPACIDADE_INICIAL);
+
+        /* Posicoes com valor ou marcadas como removidas. */
+        int ocupadas;
+
+        volatile int tamanho;
+    }
+
+    private final Segmento[] segmentos = new Segmento[SEGMENTOS];
+
+    MapaPorId() {
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento();
+        }
+    }
+
+    V get(long chave) {
+        long h = espalhar(chave);
+        Segmento segmento = segmento(h);
+        long selo = segmento.trava.tryOptimisticRead();
+        Object valor = procurar(segmento.tabela, chave, h);
+        if (!segmento.trava.validate(selo)) {
+            selo = segmento.trava.readLock();
+            try {
+                valor = procurar(segmento.tabela, chave, h);
+            } finally {
+                segmento.trava.unlockRead(selo);
+            }
+        }
+        return valor(valor);
+    }
+
+    boolean contem(long chave) {
+        return get(chave) != null;
+    }
+
+    /** Grava o valor da chave e devolve o anterior, ou {@code null}. */
+    V put(long chave, V valor) {
+        return gravar(chave, valor, true);
+    }
+
+    /** Grava so se a chave nao existir; devolve o valor que ja estava, ou {@code null}. */
+    V putSeAusente(long chave, V valor) {
+        return gravar(chave, valor, false);
+    }
+
+    /** Remove a chave e devolve o valor que ela tinha, ou {@code null}. */
+    V remover(long chave) {
+        long h = espalhar(chave);
+        Segmento segmento = segmento(h);
+        long selo = segmento.trava.writeLock();
+        try {
+            Tabela tabela = segmento.tabela;
+            int i = posicao(tabela, chave, h);
+            if (i < 0) {
+                return null;
+            }
+            Object anterior = tabela.valores[i];
+            tabela.valores[i] = REMOVIDO;
+            segmento.tamanho--;
+            return valor(anterior);
+        } finally {
+            segmento.trava.unlockWrite(selo);
+        }
+    }
+
+    void limpar() {
+        for (Segmento segmento : segmentos) {
+            long selo = segmento.trava.writeLock();
+            try {
+                segmento.tabela = new Tabela(CAPACIDADE_INICIAL);
+                segmento.ocupadas = 0;
+                segmento.tamanho = 0;
+            } finally {
+                segmento.trava.unlockWrite(selo);
+            }
+        }
+    }
+
+    int tamanho() {
+        int tamanho = 0;
+        for (Segmento segmento : segmentos) {
+            tamanho += segmento.tamanho;
+        }
+        return tamanho;
+    }
+
+    /**
+     * Os valores, um segmento por vez: cada segmento e copiado sob a sua trava
+     * de leitura quando o fluxo chega nele, entao escritas concorrentes podem
+     * ou nao aparecer, mas nenhuma entrada aparece duas vezes.
+     */
+    Stream<V> valores() {
+        return Arrays.stream(segmentos).flatMap(segmento -> copiar(segmento).stream());
+    }
+
+    private List<V> copiar(Segmento segmento) {
+        long selo = segmento.trava.readLock();
+        try {
+            List<V> valores = new ArrayList<>(segmento.tamanho);
+            for (Object valor : segmento.tabela.valores) {
+                if (valor != null && valor != REMOVIDO) {
+                    valores.add(valor(valor));
+                }
+            }
+            return valores;
+        } finally {
+            segmento.trava.unlockRead(selo);
+        }
+    }
+
+    private V gravar(long chave, V valor, boolean substituir) {
+        if (valor == null) {
+            throw new NullPointerException();
+        }
+        long h = espalhar(chave);
+        Segmento segmento = segmento(h);
+        long selo = segmento.trava.writeLock();
+        try {
+            Tabela tabela = segmento.tabela;
+            int i = posicao(tabela, chave, h);
+            if (i >= 0) {
+                Object anterior = tabela.valores[i];
+                if (substituir) {
+                    tabela.valores[i] = valor;
+                }
+                return valor(anterior);
+            }
+            if ((segmento.ocupadas + 1) * 2 > tabela.chaves.length) {
+                tabela = redimensionar(segmento);
+            }
+            int mascara = tabela.chaves.length - 1;
+            int j = (int) h & mascara;
+            while (tabela.valores[j] != null && tabela.valores[j] != REMOVIDO) {
+                j = (j + 1) & mascara;
+            }
+            if (tabela.valores[j] == null) {
+                segmento.ocupadas++;
+            }
+            tabela.chaves[j] = chave;
+            tabela.valores[j] = valor;
+            segmento.tamanho++;
+            return null;
+        } finally {
+            segmento.trava.unlockWrite(selo);
+        }
+    }
+
+    /* Dobra a tabela, ou so a reconstroi sem as removidas se elas forem a maior parte. */
+    private static Tabela redimensionar(Segmento segmento) {
+        Tabela antiga = segmento.tabela;
+        int capacidade = antiga.chaves.length;
+        Tabela nova = new Tabela((segmento.tamanho + 1) * 4 > capacidade ? capacidade * 2 : capacidade);
+        int mascara = nova.chaves.length - 1;
+        for (int i = 0; i < capacidade; i++) {
+            Object valor = antiga.valores[i];
+            if (valor != null && valor != REMOVIDO) {
+                long chave = antiga.chaves[i];
+                int j = (int) espalhar(chave) & mascara;
+                while (nova.valores[j] != null) {
+                    j = (j + 1) & mascara;
+                }
+                nova.chaves[j] = chave;
+                nova.valores[j] = valor;
+            }
+        }
+        segmento.tabela = nova;
+        segmento.ocupadas = segmento.tamanho;
+        return nova;
+    }
+
+    /*
+     * Posicao da chave na tabela, ou -1 se ela nao estiver la. Os dois
+     * vetores vem da mesma tabela, para que uma leitura otimista nunca saia
+     * dos limites.
+     */
+    private static int posicao(Tabela tabela, long chave, long h) {
+        int mascara = tabela.chaves.length - 1;
+        for (int i = (int) h & mascara, n = 0; n <= mascara; i = (i + 1) & mascara, n++) {
+            Object valor = tabela.valores[i];
+            if (valor == null) {
+                return -1;
+            }
+            if (valor != REMOVIDO && tabela.chaves[i] == chave) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object procurar(Tabela tabela, long chave, long h) {
+        int i = posicao(tabela, chave, h);
+        return i < 0 ? null : tabela.valores[i];
+    }
+
+    private Segmento segmento(long h) {
+        return segmentos[(int) (h >>> (64 - BITS_SEGMENTO))];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valor(Object valor) {
+        return valor == REMOVIDO ? null : (V) valor;
+    }
+
+    /* Os bits altos escolhem o segmento e os baixos a posicao na tabela. */
+    private static long espalhar(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
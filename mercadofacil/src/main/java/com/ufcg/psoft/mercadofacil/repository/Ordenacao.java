@@ -0,0 +1,23 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+/**
+ * Ordens suportadas pela paginacao por chave ({@code findPage}). Empates de
+ * preco sao desfeitos pelo id.
+ */
+public enum Ordenacao {
+    ID,
+    PRECO;
+
+    /**
+     * A ordem com o nome informado, sem diferenciar maiusculas, ou
+     * {@code null} se o nome nao corresponde a nenhuma.
+     */
+    public static Ordenacao de(String nome) {
+        for (Ordenacao ordenacao : values()) {
+            if (ordenacao.name().equalsIgnoreCase(nome)) {
+                return ordenacao;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import com.ufcg.psoft.mercadofacil.repository.AgregadoEstoque.Saldo;
+
+/**
+ * Repositorio de lotes repartido pelo id em varios
+ * {@link VolatilLoteRepository} independentes, cada um com o seu mapa, os
+ * seus indices, os seus totais de estoque e as suas travas. Escritas e
+ * leituras de um lote vao so para a particao dele; listagens, paginas e
+ * totais sao consultados em todas as particoes em paralelo e reunidos.
+ *
+ * <p>Ids novos saem de um contador unico, para que continuem crescentes como
+ * no repositorio sem particoes. As paginas sao intercaladas pela mesma ordem
+ * dos indices, entao o cursor funciona igual. As particoes dividem um unico
+ * relogio de {@link Epocas}: {@link #findAll()}, {@link #streamAll()},
+ * {@link #findPage} e {@link #recalcularEstoque()} abrem um instantaneo so e
+ * leem todas as particoes nele, entao sao consistentes entre particoes. Ao
+ * fechar o instantaneo as remocoes pendentes de todas as particoes sao
+ * varridas.
+ */
+@Repository
+@Profile("particionado & !duravel & !replicado")
+public class ParticionadoLoteRepository implements LoteRepository<Lote, Long>, Closeable {
+
+   private static final Comparator<Lote> POR_ID = Comparator.comparing(Lote::getId);
+
+   private static final Comparator<Lote> POR_PRECO =
+         Comparator.comparingDouble(VolatilLoteRepository::preco).thenComparing(Lote::getId);
+
+   final Particoes<VolatilLoteRepository> particoes;
+
+   private final AtomicLong proximoId = new AtomicLong();
+
+   private final Epocas epocas = new Epocas();
+
+   @Autowired
+   public ParticionadoLoteRepository(@Value("${mercadofacil.particionado.particoes:16}") int particoes) {
+      this.particoes = new Particoes<>(particoes, i -> new VolatilLoteRepository(epocas));
+   }
+
+   @Override
+   public Lote save(Lote lote) {
+      Long id = lote.getId();
+      if (id == null) {
+         lote = lote.toBuilder().id(proximoId.incrementAndGet()).build();
+      } else {
+         proximoId.accumulateAndGet(id, Math::max);
+      }
+      return particoes.de(lote.getId()).save(lote);
+   }
+
+   @Override
+   public Lote find(Long id) {
+      return id == null ? null : find(id.longValue());
+   }
+
+   @Override
+   public Lote find(long id) {
+      return particoes.de(id).find(id);
+   }
+
+   @Override
+   public List<Lote> findAll() {
+      long epoca = epocas.abrir();
+      try {
+         List<List<Lote>> partes = particoes.emTodas(particao -> particao.findAll(epoca));
+         List<Lote> resultado = new ArrayList<>(partes.stream().mapToInt(List::size).sum());
+         partes.forEach(resultado::addAll);
+         return resultado;
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   /* Percorre as particoes uma apos a outra, todas no instantaneo aberto aqui. */
+   @Override
+   public Stream<Lote> streamAll() {
+      long epoca = epocas.abrir();
+      return VolatilLoteRepository.instantaneo(
+            particoes.todas().stream().flatMap(particao -> particao.lotes.valores()).iterator(),
+            epoca, () -> fechar(epoca));
+   }
+
+   @Override
+   public List<Lote> findPage(Long afterId, int limit, Ordenacao sort) {
+      double precoCursor = 0;
+      if (afterId != null && sort == Ordenacao.PRECO) {
+         Lote cursor = find(afterId);
+         if (cursor == null) {
+            throw new RuntimeException("Cursor de paginacao invalido!");
+         }
+         precoCursor = VolatilLoteRepository.preco(cursor);
+      }
+      double preco = precoCursor;
+      long epoca = epocas.abrir();
+      try {
+         List<List<Lote>> paginas =
+               particoes.emTodas(particao -> particao.findPage(afterId, preco, limit, sort, epoca));
+         return Particoes.intercalar(paginas, sort == Ordenacao.PRECO ? POR_PRECO : POR_ID, limit);
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   @Override
+   public Lote update(Lote lote) {
+      return lote.getId() == null ? null : particoes.de(lote.getId()).update(lote);
+   }
+
+   @Override
+   public void delete(Lote lote) {
+      if (lote.getId() != null) {
+         particoes.de(lote.getId()).delete(lote);
+      }
+   }
+
+   @Override
+   public Lote reservar(Long id, int quantidade) {
+      return particoes.de(id).reservar(id, quantidade);
+   }
+
+   @Override
+   public Lote liberar(Long id, int quantidade) {
+      return particoes.de(id).liberar(id, quantidade);
+   }
+
+   /*
+    * Cada particao se limpa com a sua trava de limpeza, e toda escrita vai so
+    * para a particao do id, entao fica inteira antes ou depois da limpeza.
+    */
+   @Override
+   public void deleteAll() {
+      particoes.emTodas(particao -> {
+         particao.deleteAll();
+         return null;
+      });
+   }
+
+   /* Os lotes de um produto podem estar em qualquer particao. */
+   @Override
+   public void atualizarProduto(Produto produto) {
+      particoes.emTodas(particao -> {
+         particao.atualizarProduto(produto);
+         return null;
+      });
+   }
+
+   @Override
+   public TotalEstoque totalEstoque() {
+      return somar(particoes.emTodas(VolatilLoteRepository::totalEstoque));
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorProduto(Long produtoId) {
+      return somar(particoes.emTodas(particao -> particao.totalEstoquePorProduto(produtoId)));
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorFabricante(String fabricante) {
+      return somar(particoes.emTodas(particao -> particao.totalEstoquePorFabricante(fabricante)));
+   }
+
+   @Override
+   public ResumoEstoque resumoEstoque() {
+      return juntar(particoes.emTodas(VolatilLoteRepository::resumoEstoque));
+   }
+
+   @Override
+   public ResumoEstoque recalcularEstoque() {
+      long epoca = epocas.abrir();
+      try {
+         List<List<Saldo>> partes = particoes.emTodas(particao -> {
+            List<Saldo> saldos = new ArrayList<>();
+            particao.saldos(epoca, saldos);
+            return saldos;
+         });
+         List<Saldo> saldos = new ArrayList<>(partes.stream().mapToInt(List::size).sum());
+         partes.forEach(saldos::addAll);
+         return AgregadoEstoque.recalcular(saldos);
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   private void fechar(long epoca) {
+      epocas.fechar(epoca);
+      particoes.todas().forEach(VolatilLoteRepository::varrerRemovidos);
+   }
+
+   /* Soma em centavos, como os totais de cada particao, para nao acumular arredondamento. */
+   private static TotalEstoque somar(List<TotalEstoque> totais) {
+      long itens = 0;
+      long centavos = 0;
+      for (TotalEstoque total : totais) {
+         itens += total.getItens();
+         centavos += Math.round(total.getValor() * 100);
+      }
+      return TotalEstoque.builder().itens(itens).valor(centavos / 100.0).build();
+   }
+
+   private static ResumoEstoque juntar(List<ResumoEstoque> resumos) {
+      Map<Long, List<TotalEstoque>> produtos = new HashMap<>();
+      Map<String, List<TotalEstoque>> fabricantes = new HashMap<>();
+      List<TotalEstoque> geral = new ArrayList<>(resumos.size());
+      for (ResumoEstoque resumo : resumos) {
+         geral.add(resumo.getGeral());
+         resumo.getPorProduto().forEach((id, total) -> produtos.computeIfAbsent(id, k -> new ArrayList<>()).add(total));
+         resumo.getPorFabricante().forEach((fabricante, total) ->
+               fabricantes.computeIfAbsent(fabricante, k -> new ArrayList<>()).add(total));
+      }
+      Map<Long, TotalEstoque> porProduto = new HashMap<>();
+      produtos.forEach((id, totais) -> porProduto.put(id, somar(totais)));
+      Map<String, TotalEstoque> porFabricante = new HashMap<>();
+      fabricantes.forEach((fabricante, totais) -> porFabricante.put(fabricante, somar(totais)));
+      return ResumoEstoque.builder()
+            .geral(somar(geral))
+            .porProduto(porProduto)
+            .porFabricante(porFabricante)
+            .build();
+   }
+
+   @PreDestroy
+   @Override
+   public void close() {
+      particoes.close();
+   }
+}
@@ -0,0 +1,201 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento de produtos repartido pelo id em varios
+ * {@link VolatilProdutoRepository} independentes, como o
+ * {@link ParticionadoLoteRepository} faz com os lotes. O indice de codigo de
+ * barras e o unico dividido entre as particoes, para que a unicidade do
+ * codigo valha no repositorio inteiro; ele ja e um mapa concorrente por
+ * chave, entao nao vira uma trava comum.
+ *
+ * <p>Paginas, faixas de preco e os mais caros sao intercalados pela ordem
+ * dos indices. A busca textual junta os resultados das particoes sem uma
+ * ordem entre elas.
+ */
+@Repository
+@Profile("particionado & !duravel & !colunar & !replicado")
+@Qualifier("armazenamentoProduto")
+public class ParticionadoProdutoRepository implements ProdutoRepository<Produto, Long>, Closeable {
+
+    private static final Comparator<Produto> POR_ID = Comparator.comparing(Produto::getId);
+
+    private static final Comparator<Produto> POR_PRECO =
+            Comparator.comparingDouble(Produto::getPreco).thenComparing(Produto::getId);
+
+    final Particoes<VolatilProdutoRepository> particoes;
+
+    private final ConcurrentMap<String, Long> porCodigoBarra = new ConcurrentHashMap<>();
+
+    private final AtomicLong proximoId = new AtomicLong();
+
+    @Autowired
+    public ParticionadoProdutoRepository(@Value("${mercadofacil.particionado.particoes:16}") int particoes) {
+        this.particoes = new Particoes<>(particoes, i -> new VolatilProdutoRepository(porCodigoBarra));
+    }
+
+    @Override
+    public Produto save(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            produto = produto.toBuilder().id(proximoId.incrementAndGet()).build();
+        } else {
+            proximoId.accumulateAndGet(id, Math::max);
+        }
+        return particoes.de(produto.getId()).save(produto);
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        return particoes.de(id).find(id);
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        return juntar(particoes.emTodas(VolatilProdutoRepository::findAll), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return particoes.todas().stream().flatMap(VolatilProdutoRepository::streamAll);
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        double precoCursor = afterId != null && sort == Ordenacao.PRECO ? precoDoCursor(afterId) : 0;
+        List<List<Produto>> paginas = particoes.emTodas(particao -> particao.findPage(afterId, precoCursor, limit, sort));
+        return Particoes.intercalar(paginas, sort == Ordenacao.PRECO ? POR_PRECO : POR_ID, limit);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        double precoCursor = afterId != null ? precoDoCursor(afterId) : 0;
+        List<List<Produto>> faixas = particoes.emTodas(
+                particao -> particao.findByPreco(minPreco, maxPreco, afterId, precoCursor, limit));
+        return Particoes.intercalar(faixas, POR_PRECO, limit);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return Particoes.intercalar(particoes.emTodas(particao -> particao.findMaisCaros(limit)),
+                POR_PRECO.reversed(), limit);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        return produto.getId() == null ? null : particoes.de(produto.getId()).update(produto);
+    }
+
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> alterados) {
+        List<ResultadoAtualizacao<Produto>> resultado = new ArrayList<>(alterados.size());
+        for (Produto produto : alterados) {
+            resultado.add(produto.getId() == null
+                    ? ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO)
+                    : particoes.de(produto.getId()).atualizar(produto));
+        }
+        return resultado;
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        if (produto.getId() != null) {
+            particoes.de(produto.getId()).delete(produto);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        particoes.emTodas(particao -> {
+            particao.deleteAll();
+            return null;
+        });
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        Long id = porCodigoBarra.get(codigoBarra);
+        return id == null ? null : particoes.de(id).findByCodigoBarra(codigoBarra);
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        return juntar(particoes.emTodas(particao -> particao.findByFabricante(fabricante)), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        return juntar(particoes.emTodas(particao -> particao.search(consulta, limit)), limit);
+    }
+
+    /* Cada particao tem o seu dicionario; os relatorios sao somados por campo. */
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        Map<String, RelatorioDicionario> porCampo = new LinkedHashMap<>();
+        for (List<RelatorioDicionario> relatorios : particoes.emTodas(VolatilProdutoRepository::relatorioMemoria)) {
+            for (RelatorioDicionario relatorio : relatorios) {
+                porCampo.merge(relatorio.getCampo(), relatorio, (a, b) -> RelatorioDicionario.builder()
+                        .campo(a.getCampo())
+                        .entradas(a.getEntradas() + b.getEntradas())
+                        .bytesDicionario(a.getBytesDicionario() + b.getBytesDicionario())
+                        .referencias(a.getReferencias() + b.getReferencias())
+                        .bytesSemDicionario(a.getBytesSemDicionario() + b.getBytesSemDicionario())
+                        .bytesEconomizados(a.getBytesEconomizados() + b.getBytesEconomizados())
+                        .copiasDescartadas(a.getCopiasDescartadas() + b.getCopiasDescartadas())
+                        .build());
+            }
+        }
+        return new ArrayList<>(porCampo.values());
+    }
+
+    private double precoDoCursor(Long afterId) {
+        Produto cursor = find(afterId);
+        if (cursor == null) {
+            throw new RuntimeException("Cursor de paginacao invalido!");
+        }
+        return cursor.getPreco();
+    }
+
+    private static List<Produto> juntar(List<List<Produto>> partes, int limite) {
+        List<Produto> resultado = new ArrayList<>(Math.min(limite, partes.stream().mapToInt(List::size).sum()));
+        for (List<Produto> parte : partes) {
+            for (Produto produto : parte) {
+                if (resultado.size() == limite) {
+                    return resultado;
+                }
+                resultado.add(produto);
+            }
+        }
+        return resultado;
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        particoes.close();
+    }
+}
@@ -0,0 +1,137 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Particoes independentes de um repositorio, escolhidas pelo id. Operacoes
+ * sobre um id vao so para a particao dele, na thread de quem chamou; as que
+ * precisam de todas as particoes sao espalhadas em um pool de fork-join
+ * proprio e reunidas na ordem das particoes. O pool nao e o comum para que
+ * uma consulta nao espere atras de tarefas longas de outras partes da
+ * aplicacao, como a importacao em lote de clientes. Ele pertence a estas
+ * particoes e termina em {@link #close()}, chamado pelo repositorio dono
+ * quando o contexto fecha.
+ *
+ * <p>A particao vem de uma mistura do id diferente da usada por
+ * {@link MapaPorId}, para que as chaves de uma particao continuem espalhadas
+ * pelos segmentos do mapa dela.
+ */
+final class Particoes<R> implements AutoCloseable {
+
+    private final List<R> particoes;
+
+    /* Nulo com uma particao so, que e consultada na thread de quem chamou. */
+    private final ForkJoinPool pool;
+
+    Particoes(int quantidade, IntFunction<R> criar) {
+        if (quantidade < 1) {
+            throw new RuntimeException("Quantidade de particoes invalida!");
+        }
+        particoes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            particoes.add(criar.apply(i));
+        }
+        /* A primeira particao e consultada por quem chamou; as demais dividem o pool. */
+        pool = quantidade == 1 ? null : new ForkJoinPool(
+                Math.min(quantidade - 1, Runtime.getRuntime().availableProcessors()),
+                fj -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fj);
+                    thread.setName("particoes-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false);
+    }
+
+    int quantidade() {
+        return particoes.size();
+    }
+
+    R de(long id) {
+        long h = id;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return particoes.get((int) ((h >>> 1) % particoes.size()));
+    }
+
+    List<R> todas() {
+        return particoes;
+    }
+
+    /**
+     * Aplica a consulta em todas as particoes ao mesmo tempo: a primeira na
+     * thread de quem chamou e as demais no pool das particoes. Um erro em qualquer
+     * particao e relancado depois que todas terminarem.
+     */
+    <T> List<T> emTodas(Function<R, T> consulta) {
+        int n = particoes.size();
+        if (n == 1) {
+            return List.of(consulta.apply(particoes.get(0)));
+        }
+        List<ForkJoinTask<T>> tarefas = new ArrayList<>(n - 1);
+        for (int i = 1; i < n; i++) {
+            R particao = particoes.get(i);
+            tarefas.add(pool.submit(() -> consulta.apply(particao)));
+        }
+        List<T> resultados = new ArrayList<>(n);
+        RuntimeException erro = null;
+        try {
+            resultados.add(consulta.apply(particoes.get(0)));
+        } catch (RuntimeException e) {
+            erro = e;
+        }
+        for (ForkJoinTask<T> tarefa : tarefas) {
+            try {
+                resultados.add(tarefa.join());
+            } catch (RuntimeException e) {
+                erro = erro == null ? e : erro;
+            }
+        }
+        if (erro != null) {
+            throw erro;
+        }
+        return resultados;
+    }
+
+    /** Termina o pool; consultas em andamento terminam antes das threads. */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Intercala listas ja ordenadas pela ordem dada e devolve os
+     * {@code limite} primeiros elementos.
+     */
+    static <T> List<T> intercalar(List<List<T>> listas, Comparator<? super T> ordem, int limite) {
+        record Cabeca<T>(T elemento, int lista, int posicao) {
+        }
+        PriorityQueue<Cabeca<T>> fila = new PriorityQueue<>(Math.max(1, listas.size()),
+                (a, b) -> ordem.compare(a.elemento(), b.elemento()));
+        for (int i = 0; i < listas.size(); i++) {
+            if (!listas.get(i).isEmpty()) {
+                fila.add(new Cabeca<>(listas.get(i).get(0), i, 0));
+            }
+        }
+        List<T> resultado = new ArrayList<>(Math.min(limite, 1024));
+        while (resultado.size() < limite && !fila.isEmpty()) {
+            Cabeca<T> cabeca = fila.poll();
+            resultado.add(cabeca.elemento());
+            List<T> lista = listas.get(cabeca.lista());
+            int proxima = cabeca.posicao() + 1;
+            if (proxima < lista.size()) {
+                fila.add(new Cabeca<>(lista.get(proxima), cabeca.lista(), proxima));
+            }
+        }
+        return resultado;
+    }
+}
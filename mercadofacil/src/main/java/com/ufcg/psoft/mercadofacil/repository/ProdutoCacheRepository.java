@@ -0,0 +1,214 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Cache de leitura (W-TinyLFU, via Caffeine) na frente do repositorio de
+ * produtos que estiver configurado como armazenamento. Apenas {@link #find}
+ * passa pelo cache; as demais consultas vao direto ao armazenamento.
+ *
+ * <p>Toda escrita grava primeiro no armazenamento e depois invalida o id. O
+ * carregamento de uma ausencia acontece dentro do compute do mapa do cache,
+ * entao a invalidacao espera um carregamento em andamento do mesmo id
+ * terminar e o remove em seguida: um valor antigo nunca sobrevive a escrita.
+ *
+ * <p>Numa replica as alteracoes nao passam por aqui: sobre um
+ * {@link ReplicadoProdutoRepository}, o cache ouve as alteracoes aplicadas
+ * pela replicacao e invalida o id, ou tudo quando um snapshot substitui o
+ * estado.
+ */
+@Repository
+@Primary
+public class ProdutoCacheRepository implements ProdutoRepository<Produto, Long> {
+
+    @Autowired
+    @Qualifier("armazenamentoProduto")
+    ProdutoRepository<Produto, Long> armazenamento;
+
+    private final Cache<Long, Produto> cache;
+
+    @Autowired
+    public ProdutoCacheRepository(
+            @Value("${mercadofacil.cache.produto.tamanho-maximo:10000}") long tamanhoMaximo,
+            @Value("${mercadofacil.cache.produto.ttl:10m}") Duration ttl) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    ProdutoCacheRepository(ProdutoRepository<Produto, Long> armazenamento, long tamanhoMaximo, Duration ttl) {
+        this(tamanhoMaximo, ttl);
+        this.armazenamento = armazenamento;
+        ouvirReplicacao();
+    }
+
+    @PostConstruct
+    void ouvirReplicacao() {
+        if (armazenamento instanceof ReplicadoProdutoRepository replicado) {
+            replicado.ouvir(new ReplicadoProdutoRepository.Ouvinte() {
+                @Override
+                public void alterado(long id) {
+                    cache.invalidate(id);
+                }
+
+                @Override
+                public void limpo() {
+                    cache.invalidateAll();
+                }
+            });
+        }
+    }
+
+    @Override
+    public Produto save(Produto produto) {
+        Produto salvo = armazenamento.save(produto);
+        cache.invalidate(salvo.getId());
+        return salvo;
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        Produto produto = cache.get(id, armazenamento::find);
+        return produto == null ? null : produto.toBuilder().build();
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        return armazenamento.findAll();
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return armazenamento.streamAll();
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        return armazenamento.findPage(afterId, limit, sort);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        return armazenamento.findByPreco(minPreco, maxPreco, afterId, limit);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return armazenamento.findMaisCaros(limit);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        try {
+            return armazenamento.update(produto);
+        } finally {
+            invalidar(produto);
+        }
+    }
+
+    /* A alteracao ja esta na memoria do armazenamento quando o futuro volta, entao a invalidacao nao espera o disco. */
+    @Override
+    public CompletableFuture<Produto> updateAsync(Produto produto) {
+        try {
+            return armazenamento.updateAsync(produto);
+        } finally {
+            invalidar(produto);
+        }
+    }
+
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> produtos) {
+        try {
+            return armazenamento.updateAll(produtos);
+        } finally {
+            produtos.forEach(this::invalidar);
+        }
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        try {
+            armazenamento.delete(produto);
+        } finally {
+            invalidar(produto);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        try {
+            armazenamento.deleteAll();
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        return armazenamento.findByCodigoBarra(codigoBarra);
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        return armazenamento.findByFabricante(fabricante);
+    }
+
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        return armazenamento.search(consulta, limit);
+    }
+
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        return armazenamento.relatorioMemoria();
+    }
+
+    /** Acertos, faltas e remocoes por tamanho/TTL desde a criacao do cache. */
+    public CacheStats estatisticas() {
+        return cache.stats();
+    }
+
+    public long tamanho() {
+        return cache.estimatedSize();
+    }
+
+    /** Publica acertos, faltas, remocoes e tamanho do cache com a tag {@code cache=nome}. */
+    public void registrarMetricas(MeterRegistry registry, String nome) {
+        CaffeineCacheMetrics.monitor(registry, cache, nome);
+    }
+
+    /* Executa agora as remocoes pendentes, que o Caffeine faz de forma assincrona. */
+    void manutencao() {
+        cache.cleanUp();
+    }
+
+    private void invalidar(Produto produto) {
+        if (produto.getId() != null) {
+            cache.invalidate(produto.getId());
+        }
+    }
+}
@@ -1,15 +1,82 @@
 package com.ufcg.psoft.mercadofacil.repository;
 
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface ProdutoRepository<T, ID> {
     T save(T lote);
     T find(ID id);
 
+    /** Busca pelo id primitivo, sem encaixota-lo. */
+    T find(long id);
+
     List<T> findAll();
+
+    /**
+     * Percorre todos os produtos sem materializar a colecao. O stream deve ser
+     * fechado pelo chamador.
+     */
+    Stream<T> streamAll();
+
+    /**
+     * Pagina por chave: ate {@code limit} produtos que vem depois de
+     * {@code afterId} na ordem {@code sort}, ou do inicio se for nulo.
+     */
+    List<T> findPage(ID afterId, int limit, Ordenacao sort);
+
+    /**
+     * Pagina por chave dentro de uma faixa de preco: ate {@code limit}
+     * produtos com preco entre {@code minPreco} e {@code maxPreco}
+     * (inclusive), em ordem de preco e id, depois de {@code afterId} se nao
+     * for nulo.
+     */
+    List<T> findByPreco(double minPreco, double maxPreco, ID afterId, int limit);
+
+    /** Os {@code limit} produtos mais caros, do mais caro para o mais barato. */
+    List<T> findMaisCaros(int limit);
     T update(T lote);
 
+    /**
+     * Como {@link #update}, mas o futuro so completa quando a alteracao
+     * estiver duravel, e falha com o erro que o update lancaria. Um
+     * repositorio sem armazenamento duravel ja devolve o futuro completo.
+     */
+    default CompletableFuture<T> updateAsync(T lote) {
+        try {
+            return CompletableFuture.completedFuture(update(lote));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Atualiza todos os produtos em uma unica chamada. A lista devolvida segue
+     * a ordem da entrada e traz, para cada produto, o valor atualizado ou o
+     * motivo da falha; uma falha nao interrompe os demais.
+     */
+    List<ResultadoAtualizacao<T>> updateAll(List<T> lotes);
+
     void delete(T lote);
 
     void deleteAll();
+
+    T findByCodigoBarra(String codigoBarra);
+
+    List<T> findByFabricante(String fabricante);
+
+    /**
+     * Ate {@code limit} produtos em que cada palavra da consulta e prefixo de
+     * alguma palavra do nome ou do fabricante, sem diferenciar maiusculas nem
+     * acentos.
+     */
+    List<T> search(String consulta, int limit);
+
+    /**
+     * Memoria de cada campo guardado com dicionario, comparada a guardar uma
+     * {@link String} por produto.
+     */
+    List<RelatorioDicionario> relatorioMemoria();
 }
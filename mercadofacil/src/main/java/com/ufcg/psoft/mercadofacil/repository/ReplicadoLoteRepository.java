@@ -0,0 +1,274 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.LoteCodec;
+import com.ufcg.psoft.mercadofacil.replicacao.Fluxo;
+import com.ufcg.psoft.mercadofacil.replicacao.LogDeReplicacao;
+import com.ufcg.psoft.mercadofacil.replicacao.Replicacao;
+
+/**
+ * Repositorio de lotes replicado entre processos: o estado fica em um
+ * {@link VolatilLoteRepository} e, no primario, cada escrita e publicada na
+ * {@link Replicacao} depois de aplicada, com a trava do id, como o
+ * {@link DuravelLoteRepository} faz com o log de escrita. Numa replica as
+ * escritas sao recusadas e o estado so muda pelas alteracoes recebidas. Como
+ * no log de escrita, a replicacao leva so o id do produto de cada lote.
+ * Como no {@link ReplicadoProdutoRepository}, o snapshot recebido e montado
+ * num repositorio novo e so substitui o atual no fim do ultimo quadro.
+ * Ativo no perfil {@code replicado}.
+ */
+@Repository
+@Profile("replicado & !duravel")
+public class ReplicadoLoteRepository implements LoteRepository<Lote, Long> {
+
+   volatile VolatilLoteRepository memoria = new VolatilLoteRepository();
+
+   /* O snapshot em montagem na replica; usado so pela thread da replicacao. */
+   private VolatilLoteRepository recebendo;
+
+   private final TravasParticionadas travas = new TravasParticionadas(64);
+
+   /*
+    * Escritas pontuais tomam a trava de leitura; deleteAll toma a de escrita,
+    * para que nenhuma escrita aplicada antes da limpeza seja publicada depois
+    * dela.
+    */
+   private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+   private final Replicacao replicacao;
+
+   @Autowired
+   public ReplicadoLoteRepository(Replicacao replicacao,
+         @Qualifier("armazenamentoProduto") ProdutoRepository<Produto, Long> produtoRepository) {
+      this(replicacao, new LoteCodec(resolverProduto(produtoRepository)));
+   }
+
+   ReplicadoLoteRepository(Replicacao replicacao, Codec<Lote> codec) {
+      this.replicacao = replicacao;
+      replicacao.registrar(new Fluxo<>(Replicacao.FLUXO_LOTES, codec, () -> memoria.streamAll(),
+            new Fluxo.Aplicador<>() {
+               @Override
+               public void gravar(Lote lote) {
+                  (recebendo != null ? recebendo : memoria).restaurar(lote);
+               }
+
+               @Override
+               public void remover(long id) {
+                  (recebendo != null ? recebendo : memoria).delete(Lote.builder().id(id).build());
+               }
+
+               @Override
+               public void limpar() {
+                  recebendo = new VolatilLoteRepository();
+               }
+
+               @Override
+               public void concluir() {
+                  if (recebendo != null) {
+                     memoria = recebendo;
+                     recebendo = null;
+                  }
+               }
+            }));
+   }
+
+   /* Lotes recebidos num snapshot referenciam produtos do snapshot que ainda esta sendo montado. */
+   private static LongFunction<Produto> resolverProduto(ProdutoRepository<Produto, Long> produtoRepository) {
+      if (produtoRepository instanceof ReplicadoProdutoRepository replicado) {
+         return replicado::findRecebido;
+      }
+      return produtoRepository::find;
+   }
+
+   @Override
+   public Lote save(Lote lote) {
+      replicacao.exigirPrimario();
+      Long id = lote.getId() == null ? memoria.proximoId.incrementAndGet() : lote.getId();
+      Lote salvo;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            salvo = memoria.save(lote.toBuilder().id(id).build());
+            replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.GRAVAR, id, salvo);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return salvo.toBuilder().build();
+   }
+
+   @Override
+   public Lote find(Long id) {
+      return id == null ? null : find(id.longValue());
+   }
+
+   @Override
+   public Lote find(long id) {
+      return memoria.find(id);
+   }
+
+   @Override
+   public List<Lote> findAll() {
+      return memoria.findAll();
+   }
+
+   @Override
+   public Stream<Lote> streamAll() {
+      return memoria.streamAll();
+   }
+
+   @Override
+   public List<Lote> findPage(Long afterId, int limit, Ordenacao sort) {
+      return memoria.findPage(afterId, limit, sort);
+   }
+
+   @Override
+   public Lote update(Lote lote) {
+      replicacao.exigirPrimario();
+      Long id = lote.getId();
+      if (id == null) {
+         return null;
+      }
+      Lote atualizado;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            atualizado = memoria.update(lote);
+            if (atualizado == null) {
+               return null;
+            }
+            replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.GRAVAR, id, atualizado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return atualizado.toBuilder().build();
+   }
+
+   @Override
+   public void delete(Lote lote) {
+      replicacao.exigirPrimario();
+      Long id = lote.getId();
+      if (id == null) {
+         return;
+      }
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            if (memoria.existe(id)) {
+               memoria.delete(lote);
+               replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.REMOVER, id, null);
+            }
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
+
+   @Override
+   public void deleteAll() {
+      replicacao.exigirPrimario();
+      limpeza.writeLock().lock();
+      try {
+         memoria.deleteAll();
+         replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.LIMPAR, 0, null);
+      } finally {
+         limpeza.writeLock().unlock();
+      }
+   }
+
+   /*
+    * Cada lote trocado e publicado de novo: a replica o decodifica com o
+    * produto que ja recebeu, ja que a alteracao do produto foi publicada antes.
+    */
+   @Override
+   public void atualizarProduto(Produto produto) {
+      replicacao.exigirPrimario();
+      limpeza.readLock().lock();
+      try {
+         for (Long id : memoria.lotesDoProduto(produto.getId())) {
+            synchronized (travas.para(id)) {
+               Lote trocado = memoria.trocarProduto(id, produto);
+               if (trocado != null) {
+                  replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.GRAVAR, id, trocado);
+               }
+            }
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
+
+   @Override
+   public Lote reservar(Long id, int quantidade) {
+      replicacao.exigirPrimario();
+      Lote reservado;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            reservado = memoria.reservar(id, quantidade);
+            replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.GRAVAR, id, reservado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return reservado.toBuilder().build();
+   }
+
+   @Override
+   public Lote liberar(Long id, int quantidade) {
+      replicacao.exigirPrimario();
+      Lote liberado;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            liberado = memoria.liberar(id, quantidade);
+            replicacao.publicar(Replicacao.FLUXO_LOTES, LogDeReplicacao.GRAVAR, id, liberado);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return liberado.toBuilder().build();
+   }
+
+   @Override
+   public TotalEstoque totalEstoque() {
+      return memoria.totalEstoque();
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorProduto(Long produtoId) {
+      return memoria.totalEstoquePorProduto(produtoId);
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorFabricante(String fabricante) {
+      return memoria.totalEstoquePorFabricante(fabricante);
+   }
+
+   @Override
+   public ResumoEstoque resumoEstoque() {
+      return memoria.resumoEstoque();
+   }
+
+   @Override
+   public ResumoEstoque recalcularEstoque() {
+      return memoria.recalcularEstoque();
+   }
+
+}
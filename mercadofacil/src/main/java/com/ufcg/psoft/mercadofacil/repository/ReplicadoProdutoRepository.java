@@ -0,0 +1,262 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import com.ufcg.psoft.mercadofacil.persistencia.Codec;
+import com.ufcg.psoft.mercadofacil.persistencia.ProdutoCodec;
+import com.ufcg.psoft.mercadofacil.replicacao.Fluxo;
+import com.ufcg.psoft.mercadofacil.replicacao.LogDeReplicacao;
+import com.ufcg.psoft.mercadofacil.replicacao.Replicacao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de produtos replicado entre processos: o estado fica em um
+ * {@link VolatilProdutoRepository} e, no primario, cada escrita e publicada
+ * na {@link Replicacao} depois de aplicada, com a trava do id. Numa replica
+ * as escritas sao recusadas.
+ *
+ * <p>Na replica, um {@code LIMPAR} recebido comeca um repositorio novo, que
+ * recebe as alteracoes seguintes e so substitui o atual no fim do quadro que
+ * completa o snapshot. Quem guarda produtos lidos daqui, como o
+ * {@link ProdutoCacheRepository}, se registra com {@link #ouvir(Ouvinte)}
+ * para saber das alteracoes aplicadas. Ativo no perfil {@code replicado}.
+ */
+@Repository
+@Profile("replicado & !duravel & !colunar")
+@Qualifier("armazenamentoProduto")
+public class ReplicadoProdutoRepository implements ProdutoRepository<Produto, Long> {
+
+    /** Avisado, na thread da replicacao, depois que uma alteracao recebida fica visivel. */
+    public interface Ouvinte {
+
+        void alterado(long id);
+
+        void limpo();
+    }
+
+    volatile VolatilProdutoRepository memoria = new VolatilProdutoRepository();
+
+    /* O snapshot em montagem na replica; usado so pela thread da replicacao. */
+    private VolatilProdutoRepository recebendo;
+
+    private final TravasParticionadas travas = new TravasParticionadas(64);
+
+    /*
+     * Escritas pontuais tomam a trava de leitura; deleteAll toma a de escrita,
+     * para que nenhuma escrita aplicada antes da limpeza seja publicada depois
+     * dela.
+     */
+    private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+    private final List<Ouvinte> ouvintes = new CopyOnWriteArrayList<>();
+
+    private final Replicacao replicacao;
+
+    @Autowired
+    public ReplicadoProdutoRepository(Replicacao replicacao) {
+        this(replicacao, new ProdutoCodec());
+    }
+
+    ReplicadoProdutoRepository(Replicacao replicacao, Codec<Produto> codec) {
+        this.replicacao = replicacao;
+        replicacao.registrar(new Fluxo<>(Replicacao.FLUXO_PRODUTOS, codec, () -> memoria.streamAll(),
+                new Fluxo.Aplicador<>() {
+                    @Override
+                    public void gravar(Produto produto) {
+                        if (recebendo != null) {
+                            recebendo.restaurar(produto);
+                            return;
+                        }
+                        memoria.restaurar(produto);
+                        ouvintes.forEach(ouvinte -> ouvinte.alterado(produto.getId()));
+                    }
+
+                    @Override
+                    public void remover(long id) {
+                        if (recebendo != null) {
+                            recebendo.delete(Produto.builder().id(id).build());
+                            return;
+                        }
+                        memoria.delete(Produto.builder().id(id).build());
+                        ouvintes.forEach(ouvinte -> ouvinte.alterado(id));
+                    }
+
+                    @Override
+                    public void limpar() {
+                        recebendo = new VolatilProdutoRepository();
+                    }
+
+                    @Override
+                    public void concluir() {
+                        if (recebendo != null) {
+                            memoria = recebendo;
+                            recebendo = null;
+                            ouvintes.forEach(Ouvinte::limpo);
+                        }
+                    }
+                }));
+    }
+
+    public void ouvir(Ouvinte ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /*
+     * Busca usada ao decodificar lotes recebidos: enxerga o snapshot em
+     * montagem, que ja traz os produtos dos lotes que vem depois dele.
+     */
+    Produto findRecebido(long id) {
+        VolatilProdutoRepository atual = recebendo;
+        return atual != null ? atual.find(id) : memoria.find(id);
+    }
+
+    @Override
+    public Produto save(Produto produto) {
+        replicacao.exigirPrimario();
+        Long id = produto.getId() == null ? memoria.proximoId.incrementAndGet() : produto.getId();
+        Produto salvo;
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                salvo = memoria.save(produto.toBuilder().id(id).build());
+                replicacao.publicar(Replicacao.FLUXO_PRODUTOS, LogDeReplicacao.GRAVAR, id, salvo);
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        return salvo.toBuilder().build();
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        return memoria.find(id);
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        return memoria.findAll();
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return memoria.streamAll();
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        return memoria.findPage(afterId, limit, sort);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        return memoria.findByPreco(minPreco, maxPreco, afterId, limit);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return memoria.findMaisCaros(limit);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        replicacao.exigirPrimario();
+        return atualizar(produto).comoUpdate();
+    }
+
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> alterados) {
+        replicacao.exigirPrimario();
+        List<ResultadoAtualizacao<Produto>> resultado = new ArrayList<>(alterados.size());
+        for (Produto produto : alterados) {
+            resultado.add(atualizar(produto));
+        }
+        return resultado;
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        replicacao.exigirPrimario();
+        Long id = produto.getId();
+        if (id == null) {
+            return;
+        }
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                if (memoria.produtos.contem(id)) {
+                    memoria.delete(produto);
+                    replicacao.publicar(Replicacao.FLUXO_PRODUTOS, LogDeReplicacao.REMOVER, id, null);
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        replicacao.exigirPrimario();
+        limpeza.writeLock().lock();
+        try {
+            memoria.deleteAll();
+            replicacao.publicar(Replicacao.FLUXO_PRODUTOS, LogDeReplicacao.LIMPAR, 0, null);
+        } finally {
+            limpeza.writeLock().unlock();
+        }
+    }
+
+    private ResultadoAtualizacao<Produto> atualizar(Produto produto) {
+        if (produto.getId() == null) {
+            return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+        }
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(produto.getId())) {
+                ResultadoAtualizacao<Produto> resultado = memoria.atualizar(produto);
+                if (!resultado.sucesso()) {
+                    return resultado;
+                }
+                Produto atualizado = resultado.atualizado();
+                replicacao.publicar(Replicacao.FLUXO_PRODUTOS, LogDeReplicacao.GRAVAR, atualizado.getId(), atualizado);
+                return ResultadoAtualizacao.sucesso(atualizado.toBuilder().build());
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        return memoria.findByCodigoBarra(codigoBarra);
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        return memoria.findByFabricante(fabricante);
+    }
+
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        return memoria.search(consulta, limit);
+    }
+
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        return memoria.relatorioMemoria();
+    }
+}
@@ -0,0 +1,59 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+/**
+ * Resultado de cada item de {@link ProdutoRepository#updateAll}: o valor
+ * atualizado ou o motivo de nao ter sido atualizado. As falhas sao
+ * devolvidas em vez de lancadas, e cada motivo tem uma instancia unica, entao
+ * um item rejeitado nao cria excecao nem objeto.
+ */
+public record ResultadoAtualizacao<T>(T atualizado, Falha falha) {
+
+    public enum Falha {
+
+        NAO_ENCONTRADO("Produto nao encontrado!"),
+        VERSAO_DESATUALIZADA("Versao desatualizada!"),
+        CODIGO_BARRA_DUPLICADO("Codigo de barra ja cadastrado!"),
+        GRAVACAO_FALHOU("Falha ao gravar o produto!");
+
+        private final String mensagem;
+
+        private final ResultadoAtualizacao<?> resultado = new ResultadoAtualizacao<>(null, this);
+
+        Falha(String mensagem) {
+            this.mensagem = mensagem;
+        }
+
+        public String getMensagem() {
+            return mensagem;
+        }
+    }
+
+    public static <T> ResultadoAtualizacao<T> sucesso(T atualizado) {
+        return new ResultadoAtualizacao<>(atualizado, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ResultadoAtualizacao<T> falha(Falha falha) {
+        return (ResultadoAtualizacao<T>) falha.resultado;
+    }
+
+    public boolean sucesso() {
+        return falha == null;
+    }
+
+    /**
+     * O que {@link ProdutoRepository#update} devolve para este resultado:
+     * o valor atualizado, {@code null} se o registro nao existe, ou a excecao
+     * da falha.
+     */
+    public T comoUpdate() {
+        if (falha == null) {
+            return atualizado;
+        }
+        return switch (falha) {
+            case NAO_ENCONTRADO -> null;
+            case VERSAO_DESATUALIZADA -> throw new ConflitoDeVersaoException();
+            case CODIGO_BARRA_DUPLICADO, GRAVACAO_FALHOU -> throw new RuntimeException(falha.getMensagem());
+        };
+    }
+}
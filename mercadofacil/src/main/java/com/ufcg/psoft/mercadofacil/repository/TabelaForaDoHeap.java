@@ -0,0 +1,194 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Tabela de espalhamento de chave {@code long} para valor {@code long} nao
+ * negativo, com enderecamento aberto e sondagem linear em um
+ * {@link ByteBuffer} direto: cada entrada ocupa 16 bytes fora do heap e nao
+ * ha objeto por entrada. A tabela dobra quando passa de metade ocupada.
+ *
+ * <p>Escritas sao serializadas pela trava de escrita; leituras tentam primeiro
+ * uma leitura otimista e so pegam a trava de leitura se uma escrita as
+ * atravessou.
+ */
+final class TabelaForaDoHeap {
+
+    static final long AUSENTE = -1;
+
+    private static final long VAZIO = -1;
+
+    private static final long REMOVIDO = -2;
+
+    private static final int CAPACIDADE_INICIAL = 1 << 10;
+
+    private final StampedLock trava = new StampedLock();
+
+    private ByteBuffer entradas = nova(CAPACIDADE_INICIAL);
+
+    private int ocupadas;
+
+    private int tamanho;
+
+    long get(long chave) {
+        long selo = trava.tryOptimisticRead();
+        long valor = procurar(entradas, chave);
+        if (!trava.validate(selo)) {
+            selo = trava.readLock();
+            try {
+                valor = procurar(entradas, chave);
+            } finally {
+                trava.unlockRead(selo);
+            }
+        }
+        return valor;
+    }
+
+    /** Grava o valor da chave e devolve o anterior, ou {@link #AUSENTE}. */
+    long put(long chave, long valor) {
+        long selo = trava.writeLock();
+        try {
+            return gravar(chave, valor, true);
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    /** Grava so se a chave nao existir; devolve o valor que ja estava, ou {@link #AUSENTE}. */
+    long putSeAusente(long chave, long valor) {
+        long selo = trava.writeLock();
+        try {
+            return gravar(chave, valor, false);
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    /** Remove a chave se ela tiver o valor informado. */
+    boolean remover(long chave, long valor) {
+        long selo = trava.writeLock();
+        try {
+            int capacidade = entradas.capacity() / 16;
+            for (int i = posicao(chave, capacidade), n = 0; n < capacidade; i = (i + 1) & (capacidade - 1), n++) {
+                long atual = entradas.getLong(i * 16 + 8);
+                if (atual == VAZIO) {
+                    return false;
+                }
+                if (atual != REMOVIDO && entradas.getLong(i * 16) == chave) {
+                    if (atual != valor) {
+                        return false;
+                    }
+                    entradas.putLong(i * 16 + 8, REMOVIDO);
+                    tamanho--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    void limpar() {
+        long selo = trava.writeLock();
+        try {
+            entradas = nova(CAPACIDADE_INICIAL);
+            ocupadas = 0;
+            tamanho = 0;
+        } finally {
+            trava.unlockWrite(selo);
+        }
+    }
+
+    int tamanho() {
+        return tamanho;
+    }
+
+    long bytes() {
+        return entradas.capacity();
+    }
+
+    private long gravar(long chave, long valor, boolean substituir) {
+        if (2 * (ocupadas + 1) > entradas.capacity() / 16) {
+            redimensionar();
+        }
+        int capacidade = entradas.capacity() / 16;
+        int livre = -1;
+        for (int i = posicao(chave, capacidade); ; i = (i + 1) & (capacidade - 1)) {
+            long atual = entradas.getLong(i * 16 + 8);
+            if (atual == VAZIO) {
+                if (livre < 0) {
+                    livre = i;
+                    ocupadas++;
+                }
+                break;
+            }
+            if (atual == REMOVIDO) {
+                if (livre < 0) {
+                    livre = i;
+                }
+            } else if (entradas.getLong(i * 16) == chave) {
+                if (substituir) {
+                    entradas.putLong(i * 16 + 8, valor);
+                }
+                return atual;
+            }
+        }
+        entradas.putLong(livre * 16, chave);
+        entradas.putLong(livre * 16 + 8, valor);
+        tamanho++;
+        return AUSENTE;
+    }
+
+    /* Dobra a tabela, ou so descarta as remocoes se elas forem a maior parte da ocupacao. */
+    private void redimensionar() {
+        ByteBuffer antigas = entradas;
+        int capacidadeAntiga = antigas.capacity() / 16;
+        int capacidade = 4 * tamanho >= capacidadeAntiga ? capacidadeAntiga * 2 : capacidadeAntiga;
+        ByteBuffer novas = nova(capacidade);
+        for (int i = 0; i < capacidadeAntiga; i++) {
+            long valor = antigas.getLong(i * 16 + 8);
+            if (valor >= 0) {
+                long chave = antigas.getLong(i * 16);
+                int j = posicao(chave, capacidade);
+                while (novas.getLong(j * 16 + 8) != VAZIO) {
+                    j = (j + 1) & (capacidade - 1);
+                }
+                novas.putLong(j * 16, chave);
+                novas.putLong(j * 16 + 8, valor);
+            }
+        }
+        entradas = novas;
+        ocupadas = tamanho;
+    }
+
+    /* A capacidade vem do proprio buffer, para que uma leitura otimista nunca saia dos limites. */
+    private static long procurar(ByteBuffer entradas, long chave) {
+        int capacidade = entradas.capacity() / 16;
+        for (int i = posicao(chave, capacidade), n = 0; n < capacidade; i = (i + 1) & (capacidade - 1), n++) {
+            long valor = entradas.getLong(i * 16 + 8);
+            if (valor == VAZIO) {
+                return AUSENTE;
+            }
+            if (valor != REMOVIDO && entradas.getLong(i * 16) == chave) {
+                return valor;
+            }
+        }
+        return AUSENTE;
+    }
+
+    private static int posicao(long chave, int capacidade) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacidade - 1);
+    }
+
+    private static ByteBuffer nova(int capacidade) {
+        ByteBuffer entradas = ByteBuffer.allocateDirect(capacidade * 16).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < capacidade; i++) {
+            entradas.putLong(i * 16 + 8, VAZIO);
+        }
+        return entradas;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+/**
+ * Conjunto fixo de travas escolhidas pelo id da entidade. Escritas sobre ids
+ * diferentes raramente disputam a mesma trava, enquanto escritas sobre o
+ * mesmo id sao sempre serializadas.
+ */
+final class TravasParticionadas {
+
+    private final Object[] travas;
+
+    private final int mascara;
+
+    TravasParticionadas(int quantidade) {
+        int tamanho = Integer.highestOneBit(Math.max(1, quantidade - 1)) << 1;
+        travas = new Object[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            travas[i] = new Object();
+        }
+        mascara = tamanho - 1;
+    }
+
+    Object para(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return travas[(int) (h ^ (h >>> 32)) & mascara];
+    }
+}
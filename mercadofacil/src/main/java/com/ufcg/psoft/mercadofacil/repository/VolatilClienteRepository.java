@@ -0,0 +1,234 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio em memoria de clientes, indexado pelo id e pelo CPF (unico).
+ * O indice de CPF e uma {@link TabelaForaDoHeap} de {@code long} para
+ * {@code long}: o CPF cabe em um {@code long}, entao nao ha {@code Long}
+ * nem no de mapa por cliente. A ordem por id para a paginacao fica em um
+ * {@link IndiceId}.
+ *
+ * <p>Os clientes sao armazenados como copias e as escritas sobre um mesmo id
+ * sao serializadas por travas particionadas; a unicidade do CPF entre ids
+ * diferentes vem do {@code putSeAusente} atomico da tabela. As escritas
+ * tomam a trava de leitura de um {@link ReadWriteLock} e
+ * {@link #deleteAll()} a de escrita, para que nenhuma fique pela metade
+ * entre o mapa e os indices.
+ */
+@Repository
+public class VolatilClienteRepository implements ClienteRepository<Cliente, Long> {
+
+    final MapaPorId<Cliente> clientes = new MapaPorId<>();
+
+    final AtomicLong proximoId = new AtomicLong();
+
+    private final TabelaForaDoHeap porCpf = new TabelaForaDoHeap();
+
+    private final IndiceId porId = new IndiceId();
+
+    private final TravasParticionadas travas = new TravasParticionadas(64);
+
+    private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+    @Override
+    public Cliente save(Cliente cliente) {
+        Cliente salvo = salvar(cliente, id(cliente));
+        if (salvo == null) {
+            throw new RuntimeException("CPF ja cadastrado!");
+        }
+        return salvo;
+    }
+
+    /**
+     * Salva cada cliente como em {@link #save(Cliente)}, reservando de uma vez
+     * os ids dos que chegam sem id. A lista devolvida segue a ordem da
+     * recebida, com {@code null} no lugar dos clientes cujo CPF ja pertence a
+     * outro id.
+     */
+    @Override
+    public List<Cliente> saveAll(List<Cliente> novos) {
+        long semId = 0;
+        for (Cliente cliente : novos) {
+            if (cliente.getId() == null) {
+                semId++;
+            } else {
+                proximoId.accumulateAndGet(cliente.getId(), Math::max);
+            }
+        }
+        long proximo = proximoId.getAndAdd(semId) + 1;
+        List<Cliente> resultado = new ArrayList<>(novos.size());
+        for (Cliente cliente : novos) {
+            resultado.add(salvar(cliente, cliente.getId() == null ? proximo++ : cliente.getId()));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Cliente find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Cliente find(long id) {
+        Cliente cliente = clientes.get(id);
+        return cliente == null ? null : cliente.toBuilder().build();
+    }
+
+    @Override
+    public Cliente findByCpf(long cpf) {
+        long id = porCpf.get(cpf);
+        return id == TabelaForaDoHeap.AUSENTE ? null : find(id);
+    }
+
+    @Override
+    public List<Cliente> findAll() {
+        List<Cliente> resultado = new ArrayList<>(clientes.tamanho());
+        clientes.valores().forEach(cliente -> resultado.add(cliente.toBuilder().build()));
+        return resultado;
+    }
+
+    @Override
+    public Stream<Cliente> streamAll() {
+        return clientes.valores().map(cliente -> cliente.toBuilder().build());
+    }
+
+    @Override
+    public List<Cliente> findPage(Long afterId, int limit) {
+        return porId.pagina(afterId, limit, this::find);
+    }
+
+    @Override
+    public Cliente update(Cliente cliente) {
+        Long id = cliente.getId();
+        if (id == null) {
+            return null;
+        }
+        Cliente copia = copiaParaGuardar(cliente, id);
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                Cliente anterior = clientes.get(id);
+                if (anterior == null) {
+                    return null;
+                }
+                if (!indexarCpf(id, anterior, copia)) {
+                    throw new RuntimeException("CPF ja cadastrado!");
+                }
+                clientes.put(id, copia);
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        return copia.toBuilder().build();
+    }
+
+    @Override
+    public void delete(Cliente cliente) {
+        Long id = cliente.getId();
+        if (id == null) {
+            return;
+        }
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                Cliente removido = clientes.remover(id);
+                if (removido != null) {
+                    porId.remover(id);
+                    if (removido.getCpf() != null) {
+                        porCpf.remover(removido.getCpf(), id);
+                    }
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        limpeza.writeLock().lock();
+        try {
+            clientes.limpar();
+            porCpf.limpar();
+            porId.limpar();
+        } finally {
+            limpeza.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return clientes.tamanho();
+    }
+
+    /** Bytes reservados fora do heap pelo indice de CPF. */
+    public long bytesForaDoHeap() {
+        return porCpf.bytes();
+    }
+
+    private long id(Cliente cliente) {
+        Long id = cliente.getId();
+        if (id == null) {
+            return proximoId.incrementAndGet();
+        }
+        proximoId.accumulateAndGet(id, Math::max);
+        return id;
+    }
+
+    /* Devolve null, sem gravar nada, se o CPF ja pertencer a outro id. */
+    private Cliente salvar(Cliente cliente, long id) {
+        Cliente copia = copiaParaGuardar(cliente, id);
+        limpeza.readLock().lock();
+        try {
+            synchronized (travas.para(id)) {
+                Cliente anterior = clientes.get(id);
+                if (!indexarCpf(id, anterior, copia)) {
+                    return null;
+                }
+                clientes.put(id, copia);
+                if (anterior == null) {
+                    porId.adicionar(id);
+                }
+            }
+        } finally {
+            limpeza.readLock().unlock();
+        }
+        return copia.toBuilder().build();
+    }
+
+    /*
+     * Deve ser chamado com a trava do id. Reserva o CPF novo antes de soltar
+     * o anterior, entao falha sem alterar o indice se o novo for de outro id.
+     */
+    private boolean indexarCpf(long id, Cliente anterior, Cliente novo) {
+        Long cpfAnterior = anterior == null ? null : anterior.getCpf();
+        Long cpf = novo.getCpf();
+        if (Objects.equals(cpfAnterior, cpf)) {
+            return true;
+        }
+        if (cpf != null) {
+            long dono = porCpf.putSeAusente(cpf, id);
+            if (dono != TabelaForaDoHeap.AUSENTE && dono != id) {
+                return false;
+            }
+        }
+        if (cpfAnterior != null) {
+            porCpf.remover(cpfAnterior, id);
+        }
+        return true;
+    }
+
+    private static Cliente copiaParaGuardar(Cliente cliente, long id) {
+        return cliente.toBuilder().id(id).build();
+    }
+}
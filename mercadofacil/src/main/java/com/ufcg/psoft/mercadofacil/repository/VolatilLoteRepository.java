@@ -1,49 +1,697 @@
 package com.ufcg.psoft.mercadofacil.repository;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
 import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import com.ufcg.psoft.mercadofacil.model.TotalEstoque;
+import com.ufcg.psoft.mercadofacil.repository.AgregadoEstoque.Saldo;
 
+/**
+ * Repositorio em memoria de lotes, indexado pelo id e seguro para acesso
+ * concorrente. Os lotes sao armazenados como copias, de modo que alteracoes
+ * feitas pelo chamador so chegam ao repositorio via {@link #update(Lote)}.
+ * Escritas sobre o mesmo id sao serializadas por travas particionadas para
+ * manter o mapa e os indices de paginacao em acordo.
+ *
+ * <p>O numero de itens de cada lote fica em um saldo proprio, fora da
+ * copia armazenada, e e o valor que as leituras devolvem. Reservas e
+ * liberacoes trocam apenas esse saldo, por compare-and-set e sem trava;
+ * save e update o sobrescrevem com o numero de itens recebido. Cada troca de
+ * saldo e repassada aos totais de estoque em {@link AgregadoEstoque}.
+ *
+ * <p>O saldo tambem guarda a versao do lote, incrementada a cada escrita,
+ * inclusive reservas e liberacoes. Um update que informa a versao troca o
+ * saldo por compare-and-set a partir do saldo dessa versao, entao falha com
+ * {@link ConflitoDeVersaoException} se qualquer escrita tiver acontecido
+ * depois da leitura do cliente.
+ *
+ * <p>A copia armazenada e o saldo formam uma {@link Versao} imutavel,
+ * publicada inteira por um unico compare-and-set, e cada versao e carimbada
+ * com a epoca de {@link Epocas} em que foi escrita. {@link #findAll()},
+ * {@link #streamAll()}, {@link #findPage} e {@link #recalcularEstoque()} leem
+ * um instantaneo: abrem uma epoca, o que custa O(1) e nao copia nem trava
+ * lote nenhum, e de cada lote leem a versao mais nova carimbada ate ela, de
+ * modo que escritas concorrentes ficam todas de fora e a soma dos itens lidos
+ * e a de um mesmo instante. Enquanto houver instantaneo aberto, as escritas
+ * encadeiam a versao substituida na nova e um delete deixa uma versao de
+ * remocao no lugar do lote; a cada instantaneo fechado, as remocoes que todos
+ * os ainda abertos enxergam saem do mapa. Sem instantaneo aberto nada e
+ * encadeado.
+ *
+ * <p>A ordem da paginacao continua vindo dos indices atuais: a pagina traz
+ * os lotes como estavam em um mesmo instante, mas lotes removidos ou com
+ * preco alterado nesse meio tempo podem faltar ou mudar de posicao.
+ * {@link #deleteAll()} nao e versionado: ele limpa o mapa e os indices sob a
+ * trava de escrita de um {@link ReadWriteLock}, e todas as escritas, inclusive
+ * reservas e liberacoes, tomam a de leitura, para que nenhuma fique aplicada
+ * pela metade nos indices ou nos totais de estoque. Reservas e liberacoes
+ * continuam sem trava de id; a trava de leitura e o custo de um
+ * {@code deleteAll} seguro.
+ *
+ * <p>Cada lote guarda uma copia do seu produto. {@link #atualizarProduto}
+ * troca essa copia nos lotes do produto, achados por um indice de produto
+ * para lotes, e move os totais de estoque para o novo preco e fabricante.
+ */
 @Repository
+@Profile("!duravel & !particionado & !replicado")
 public class VolatilLoteRepository implements LoteRepository<Lote, Long> {
 
-   List<Lote> lotes = new ArrayList<>();
+   /*
+    * Uma versao de um lote: a copia armazenada e o saldo, com a epoca em que
+    * foi publicada. Lote nulo marca a remocao. anterior so aponta para
+    * versoes que algum instantaneo aberto ainda pode ler.
+    */
+   static final class Versao {
+
+      final Lote lote;
+
+      final Saldo saldo;
+
+      final long epoca;
+
+      volatile Versao anterior;
+
+      Versao(Lote lote, Saldo saldo, long epoca, Versao anterior) {
+         this.lote = lote;
+         this.saldo = saldo;
+         this.epoca = epoca;
+         this.anterior = anterior;
+      }
+
+      boolean removida() {
+         return lote == null;
+      }
+
+      /** A versao mais nova carimbada ate a epoca, ou {@code null} se o lote nao existia. */
+      Versao naEpoca(long epocaLida) {
+         Versao versao = this;
+         while (versao != null && versao.epoca > epocaLida) {
+            versao = versao.anterior;
+         }
+         return versao;
+      }
+   }
+
+   final MapaPorId<AtomicReference<Versao>> lotes = new MapaPorId<>();
+
+   final AtomicLong proximoId = new AtomicLong();
+
+   private final Epocas epocas;
+
+   /* Ids removidos enquanto havia instantaneo aberto, a tirar do mapa quando nenhum aberto precisar da versao anterior. */
+   private final Queue<Long> removidos = new ConcurrentLinkedQueue<>();
+
+   private final IndiceOrdenado indiceOrdenado = new IndiceOrdenado();
+
+   private final AgregadoEstoque agregado = new AgregadoEstoque();
+
+   /* Ids dos lotes de cada produto; so muda com a trava do id do lote. */
+   private final ConcurrentMap<Long, Set<Long>> lotesPorProduto = new ConcurrentHashMap<>();
+
+   private final TravasParticionadas travas = new TravasParticionadas(64);
+
+   private final ReadWriteLock limpeza = new ReentrantReadWriteLock();
+
+   public VolatilLoteRepository() {
+      this(new Epocas());
+   }
+
+   /*
+    * As particoes de um ParticionadoLoteRepository dividem o relogio de
+    * epocas, para que um instantaneo aberto uma vez valha para todas.
+    */
+   VolatilLoteRepository(Epocas epocas) {
+      this.epocas = epocas;
+   }
 
    @Override
    public Lote save(Lote lote) {
-       lotes.add(lote);
-       return lotes.stream().findFirst().get();
+      return salvar(lote, false);
+   }
+
+   /*
+    * Grava o lote como veio durante a reconstrucao do estado a partir de um
+    * log, mantendo a versao registrada.
+    */
+   public void restaurar(Lote lote) {
+      salvar(lote, true);
+   }
+
+   private Lote salvar(Lote lote, boolean manterVersao) {
+      Long id = lote.getId();
+      if (id == null) {
+         id = proximoId.incrementAndGet();
+      } else {
+         proximoId.accumulateAndGet(id, Math::max);
+      }
+      Lote copia = lote.toBuilder().id(id).build();
+      Versao anterior, nova;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            AtomicReference<Versao> versao = lotes.get(id);
+            if (versao == null) {
+               versao = new AtomicReference<>();
+               lotes.put(id, versao);
+            }
+            anterior = versao.get();
+            nova = publicar(versao, copia, null, manterVersao ? copia.getVersao() : null);
+            if (anterior == null || anterior.removida()) {
+               indiceOrdenado.adicionar(id, preco(copia));
+               indexarProduto(id, null, copia);
+            } else {
+               indiceOrdenado.atualizar(id, preco(anterior.lote), preco(copia));
+               indexarProduto(id, anterior.lote, copia);
+            }
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return comSaldo(nova);
    }
 
    @Override
    public Lote find(Long id) {
-	   return lotes.get(Integer.parseInt("" + id));
+      return id == null ? null : find(id.longValue());
+   }
+
+   @Override
+   public Lote find(long id) {
+      Versao versao = atual(lotes.get(id));
+      return versao == null ? null : comSaldo(versao);
+   }
+
+   /** Se o lote existe agora, sem copia-lo. */
+   boolean existe(long id) {
+      return atual(lotes.get(id)) != null;
    }
 
    @Override
    public List<Lote> findAll() {
-	   return lotes;
+      long epoca = epocas.abrir();
+      try {
+         return findAll(epoca);
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   /* Os lotes no instantaneo ja aberto por quem chama. */
+   List<Lote> findAll(long epoca) {
+      List<Lote> resultado = new ArrayList<>(lotes.tamanho());
+      lotes.valores().forEach(versao -> {
+         Lote lote = ler(versao, epoca);
+         if (lote != null) {
+            resultado.add(lote);
+         }
+      });
+      return resultado;
+   }
+
+   /**
+    * Os lotes de um instantaneo aberto aqui. O instantaneo fecha quando o
+    * fluxo chega ao fim ou e fechado; um fluxo abandonado no meio sem
+    * {@code close} segura as versoes antigas de todos os lotes escritos
+    * depois dele.
+    */
+   @Override
+   public Stream<Lote> streamAll() {
+      long epoca = epocas.abrir();
+      return instantaneo(lotes.valores().iterator(), epoca, () -> fechar(epoca));
+   }
+
+   /*
+    * Fluxo dos lotes das versoes na epoca de um instantaneo ja aberto, que e
+    * fechado uma unica vez, ao chegar ao fim ou no close do fluxo.
+    */
+   static Stream<Lote> instantaneo(Iterator<AtomicReference<Versao>> versoes, long epoca, Runnable fechar) {
+      Instantaneo instantaneo = new Instantaneo(versoes, epoca, fechar);
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(instantaneo,
+            Spliterator.NONNULL | Spliterator.DISTINCT), false).onClose(instantaneo::fechar);
+   }
+
+   @Override
+   public List<Lote> findPage(Long afterId, int limit, Ordenacao sort) {
+      double precoCursor = 0;
+      if (afterId != null && sort == Ordenacao.PRECO) {
+         Versao cursor = atual(lotes.get(afterId));
+         if (cursor == null) {
+            throw new RuntimeException("Cursor de paginacao invalido!");
+         }
+         precoCursor = preco(cursor.lote);
+      }
+      long epoca = epocas.abrir();
+      try {
+         return findPage(afterId, precoCursor, limit, sort, epoca);
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   /* Com o preco do cursor ja conhecido, que pode estar em outra particao, e o instantaneo ja aberto. */
+   List<Lote> findPage(Long afterId, double precoCursor, int limit, Ordenacao sort, long epoca) {
+      return indiceOrdenado.pagina(afterId, precoCursor, sort, limit, id -> ler(lotes.get(id), epoca));
    }
-   
+
    @Override
    public Lote update(Lote lote) {
-      lotes.clear();
-      lotes.add(lote);
-      return lotes.stream().findFirst().orElse(null);
+      Long id = lote.getId();
+      if (id == null) {
+         return null;
+      }
+      Lote copia = lote.toBuilder().build();
+      Versao anterior, nova;
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            AtomicReference<Versao> versao = lotes.get(id);
+            anterior = atual(versao);
+            if (anterior == null) {
+               return null;
+            }
+            nova = publicar(versao, copia, copia.getVersao(), null);
+            indiceOrdenado.atualizar(id, preco(anterior.lote), preco(copia));
+            indexarProduto(id, anterior.lote, copia);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+      return comSaldo(nova);
    }
 
    @Override
    public void delete(Lote lote) {
-      lotes.clear();
+      Long id = lote.getId();
+      if (id == null) {
+         return;
+      }
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            AtomicReference<Versao> versao = lotes.get(id);
+            if (atual(versao) == null) {
+               return;
+            }
+            long epoca = epocas.entrar();
+            Versao atual;
+            try {
+               Versao remocao;
+               /* Uma reserva em andamento sobre esta referencia falha no compare-and-set e ve o lote removido. */
+               do {
+                  atual = versao.get();
+                  remocao = new Versao(null, null, epoca, anteriorLegivel(atual));
+               } while (!versao.compareAndSet(atual, remocao));
+               if (remocao.anterior == null) {
+                  lotes.remover(id);
+               } else {
+                  removidos.add(id);
+               }
+            } finally {
+               epocas.sair(epoca);
+            }
+            agregado.trocar(atual.saldo, null);
+            indiceOrdenado.remover(id, preco(atual.lote));
+            indexarProduto(id, atual.lote, null);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
    }
 
    @Override
    public void deleteAll() {
-      lotes.clear();
+      limpeza.writeLock().lock();
+      try {
+         lotes.limpar();
+         removidos.clear();
+         indiceOrdenado.limpar();
+         lotesPorProduto.clear();
+         agregado.limpar();
+      } finally {
+         limpeza.writeLock().unlock();
+      }
    }
 
-}
+   /**
+    * Troca a copia do produto guardada em cada lote dele pela informada e
+    * move os totais de estoque desses lotes para o novo preco e fabricante.
+    * A versao dos lotes nao muda, ja que os lotes em si nao foram alterados.
+    * Um produto com versao mais antiga que a ja guardada no lote e ignorado,
+    * para que atualizacoes concorrentes do mesmo produto terminem na mais nova.
+    */
+   @Override
+   public void atualizarProduto(Produto produto) {
+      for (Long id : lotesDoProduto(produto.getId())) {
+         trocarProduto(id, produto);
+      }
+   }
+
+   /** Os ids dos lotes do produto agora, copiados. */
+   List<Long> lotesDoProduto(Long produtoId) {
+      Set<Long> ids = produtoId == null ? null : lotesPorProduto.get(produtoId);
+      return ids == null ? List.of() : List.copyOf(ids);
+   }
+
+   /*
+    * Troca o produto de um lote com a trava do id; devolve o lote trocado,
+    * ou null se ele nao existe ou ja tem esse produto ou um mais novo.
+    */
+   Lote trocarProduto(long id, Produto produto) {
+      limpeza.readLock().lock();
+      try {
+         synchronized (travas.para(id)) {
+            AtomicReference<Versao> versao = lotes.get(id);
+            Versao atual = atual(versao);
+            if (atual == null || !desatualizado(atual.lote.getProduto(), produto)) {
+               return null;
+            }
+            Lote copia = atual.lote.toBuilder().produto(produto.toBuilder().build()).build();
+            AgregadoEstoque.Dono dono = agregado.dono(copia.getProduto());
+            long epoca = epocas.entrar();
+            Versao nova;
+            try {
+               /* Reservas nao tomam a trava: o saldo e relido a cada tentativa. */
+               do {
+                  atual = versao.get();
+                  nova = new Versao(copia, atual.saldo.comDono(dono), epoca, anteriorLegivel(atual));
+               } while (!versao.compareAndSet(atual, nova));
+            } finally {
+               epocas.sair(epoca);
+            }
+            agregado.trocar(atual.saldo, nova.saldo);
+            indiceOrdenado.atualizar(id, preco(atual.lote), preco(copia));
+            return comSaldo(nova);
+         }
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
+
+   @Override
+   public Lote reservar(Long id, int quantidade) {
+      limpeza.readLock().lock();
+      try {
+         AtomicReference<Versao> versao = lotes.get(id);
+         long epoca = epocas.entrar();
+         Versao atual, nova;
+         try {
+            do {
+               atual = existente(versao);
+               if (atual.saldo.itens() < quantidade) {
+                  throw new RuntimeException("Estoque insuficiente!");
+               }
+               nova = new Versao(atual.lote, atual.saldo.comItens(atual.saldo.itens() - quantidade), epoca,
+                     anteriorLegivel(atual));
+            } while (!versao.compareAndSet(atual, nova));
+         } finally {
+            epocas.sair(epoca);
+         }
+         agregado.trocar(atual.saldo, nova.saldo);
+         return comSaldo(nova);
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
+
+   @Override
+   public Lote liberar(Long id, int quantidade) {
+      limpeza.readLock().lock();
+      try {
+         AtomicReference<Versao> versao = lotes.get(id);
+         long epoca = epocas.entrar();
+         Versao atual, nova;
+         try {
+            do {
+               atual = existente(versao);
+               if (atual.saldo.itens() > Integer.MAX_VALUE - quantidade) {
+                  throw new RuntimeException("Quantidade invalida!");
+               }
+               nova = new Versao(atual.lote, atual.saldo.comItens(atual.saldo.itens() + quantidade), epoca,
+                     anteriorLegivel(atual));
+            } while (!versao.compareAndSet(atual, nova));
+         } finally {
+            epocas.sair(epoca);
+         }
+         agregado.trocar(atual.saldo, nova.saldo);
+         return comSaldo(nova);
+      } finally {
+         limpeza.readLock().unlock();
+      }
+   }
 
+   @Override
+   public TotalEstoque totalEstoque() {
+      return agregado.total();
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorProduto(Long produtoId) {
+      return agregado.totalPorProduto(produtoId);
+   }
+
+   @Override
+   public TotalEstoque totalEstoquePorFabricante(String fabricante) {
+      return agregado.totalPorFabricante(fabricante);
+   }
+
+   @Override
+   public ResumoEstoque resumoEstoque() {
+      return agregado.resumo();
+   }
+
+   /* Recalculado sobre um instantaneo, entao os totais sao os de um mesmo instante. */
+   @Override
+   public ResumoEstoque recalcularEstoque() {
+      long epoca = epocas.abrir();
+      try {
+         List<Saldo> saldos = new ArrayList<>(lotes.tamanho());
+         saldos(epoca, saldos);
+         return AgregadoEstoque.recalcular(saldos);
+      } finally {
+         fechar(epoca);
+      }
+   }
+
+   /* Acrescenta a saldos os saldos dos lotes no instantaneo ja aberto por quem chama. */
+   void saldos(long epoca, List<Saldo> saldos) {
+      lotes.valores().forEach(versao -> {
+         Versao lida = naEpoca(versao, epoca);
+         if (lida != null && !lida.removida()) {
+            saldos.add(lida.saldo);
+         }
+      });
+   }
+
+   /*
+    * Deve ser chamado com a trava do id do lote. Com versaoEsperada, o lote
+    * so e trocado se o saldo ainda estiver nessa versao; com versaoFixada, o
+    * novo saldo recebe essa versao em vez da seguinte.
+    */
+   private Versao publicar(AtomicReference<Versao> versao, Lote lote, Long versaoEsperada, Long versaoFixada) {
+      Saldo base = agregado.saldo(lote);
+      long epoca = epocas.entrar();
+      Versao atual, nova;
+      try {
+         do {
+            atual = versao.get();
+            Saldo saldo = atual == null ? null : atual.saldo;
+            if (versaoEsperada != null && saldo != null && saldo.versao() != versaoEsperada) {
+               agregado.descartar(base.dono());
+               throw new ConflitoDeVersaoException();
+            }
+            long numero = versaoFixada != null ? versaoFixada : saldo == null ? 1 : saldo.versao() + 1;
+            nova = new Versao(lote, base.comVersao(numero), epoca, anteriorLegivel(atual));
+         } while (!versao.compareAndSet(atual, nova));
+      } finally {
+         epocas.sair(epoca);
+      }
+      agregado.trocar(atual == null ? null : atual.saldo, nova.saldo);
+      return nova;
+   }
+
+   /*
+    * A versao a encadear na que vai substituir atual. Chamado depois de
+    * entrar na epoca da escrita: todo instantaneo aberto depois disso
+    * enxerga a nova versao, entao so os ja abertos contam. A cadeia e
+    * cortada na primeira versao que o instantaneo mais antigo ja enxerga.
+    */
+   private Versao anteriorLegivel(Versao atual) {
+      long maisAntigo = epocas.maisAntigoAberto();
+      if (atual == null || maisAntigo == Epocas.NENHUM) {
+         return null;
+      }
+      for (Versao versao = atual; versao != null; versao = versao.anterior) {
+         if (versao.epoca <= maisAntigo) {
+            versao.anterior = null;
+            break;
+         }
+      }
+      return atual;
+   }
+
+   /*
+    * A cada instantaneo fechado tira do mapa os lotes cuja remocao todos os
+    * instantaneos ainda abertos ja enxergam; as remocoes mais novas que o
+    * instantaneo mais antigo voltam para a fila.
+    */
+   private void fechar(long epoca) {
+      epocas.fechar(epoca);
+      varrerRemovidos();
+   }
+
+   /* Com o relogio de epocas dividido, quem fecha o instantaneo varre todas as particoes. */
+   void varrerRemovidos() {
+      long maisAntigo = epocas.maisAntigoAberto();
+      List<Long> jovens = new ArrayList<>();
+      Long id;
+      while ((id = removidos.poll()) != null) {
+         synchronized (travas.para(id)) {
+            AtomicReference<Versao> versao = lotes.get(id);
+            Versao marcador = versao == null ? null : versao.get();
+            if (marcador == null || !marcador.removida()) {
+               continue;
+            }
+            if (marcador.epoca < maisAntigo) {
+               lotes.remover(id);
+            } else {
+               jovens.add(id);
+            }
+         }
+      }
+      removidos.addAll(jovens);
+   }
+
+   /* Deve ser chamado com a trava do id do lote. */
+   private void indexarProduto(long id, Lote anterior, Lote novo) {
+      Long produtoAnterior = produtoId(anterior);
+      Long produtoNovo = produtoId(novo);
+      if (Objects.equals(produtoAnterior, produtoNovo)) {
+         return;
+      }
+      if (produtoAnterior != null) {
+         lotesPorProduto.computeIfPresent(produtoAnterior, (produto, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+         });
+      }
+      if (produtoNovo != null) {
+         lotesPorProduto.computeIfAbsent(produtoNovo, produto -> ConcurrentHashMap.newKeySet()).add(id);
+      }
+   }
+
+   private static Long produtoId(Lote lote) {
+      return lote == null || lote.getProduto() == null ? null : lote.getProduto().getId();
+   }
+
+   private static boolean desatualizado(Produto guardado, Produto produto) {
+      if (guardado == null || !Objects.equals(guardado.getId(), produto.getId()) || guardado.equals(produto)) {
+         return false;
+      }
+      return guardado.getVersao() == null || produto.getVersao() == null
+            || guardado.getVersao() <= produto.getVersao();
+   }
+
+   private static Versao atual(AtomicReference<Versao> versao) {
+      Versao atual = versao == null ? null : versao.get();
+      return atual == null || atual.removida() ? null : atual;
+   }
+
+   private static Versao existente(AtomicReference<Versao> versao) {
+      Versao atual = atual(versao);
+      if (atual == null) {
+         throw new RuntimeException("Lote nao encontrado!");
+      }
+      return atual;
+   }
+
+   /* A referencia de um lote novo entra no mapa vazia, antes da primeira versao. */
+   private static Versao naEpoca(AtomicReference<Versao> versao, long epoca) {
+      Versao cabeca = versao == null ? null : versao.get();
+      return cabeca == null ? null : cabeca.naEpoca(epoca);
+   }
+
+   /* O lote como estava na epoca, ou null se nao existia. */
+   private static Lote ler(AtomicReference<Versao> versao, long epoca) {
+      Versao lida = naEpoca(versao, epoca);
+      return lida == null || lida.removida() ? null : comSaldo(lida);
+   }
+
+   private static Lote comSaldo(Versao versao) {
+      return versao.lote.toBuilder().numeroDeItens(versao.saldo.itens()).versao(versao.saldo.versao()).build();
+   }
+
+   static double preco(Lote lote) {
+      return lote.getProduto() == null ? 0 : lote.getProduto().getPreco();
+   }
+
+   /* Percorre as versoes lendo cada lote na epoca ja aberta; fecha-se ao chegar ao fim. */
+   private static final class Instantaneo implements Iterator<Lote> {
+
+      private final Iterator<AtomicReference<Versao>> versoes;
+
+      private final long epoca;
+
+      private final Runnable fecharInstantaneo;
+
+      private boolean fechado;
+
+      private Lote proximo;
+
+      Instantaneo(Iterator<AtomicReference<Versao>> versoes, long epoca, Runnable fecharInstantaneo) {
+         this.versoes = versoes;
+         this.epoca = epoca;
+         this.fecharInstantaneo = fecharInstantaneo;
+      }
+
+      @Override
+      public boolean hasNext() {
+         while (proximo == null && !fechado && versoes.hasNext()) {
+            proximo = ler(versoes.next(), epoca);
+         }
+         if (proximo == null) {
+            fechar();
+         }
+         return proximo != null;
+      }
+
+      @Override
+      public Lote next() {
+         if (!hasNext()) {
+            throw new NoSuchElementException();
+         }
+         Lote lote = proximo;
+         proximo = null;
+         return lote;
+      }
+
+      synchronized void fechar() {
+         if (!fechado) {
+            fechado = true;
+            fecharInstantaneo.run();
+         }
+      }
+   }
+
+}
@@ -0,0 +1,325 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import com.ufcg.psoft.mercadofacil.persistencia.Dicionario;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio em memoria de produtos com indice primario pelo id, indices
+ * secundarios por codigo de barras (unico) e por fabricante e um indice
+ * textual de nome e fabricante para a busca por prefixo. As escritas sobre
+ * um mesmo id sao serializadas por travas particionadas, e os indices
+ * secundarios sao atualizados com operacoes atomicas por chave, o que mantem
+ * os tres mapas consistentes sem uma trava global. Leituras nao bloqueiam.
+ * O fabricante guardado e a instancia canonica do {@link Dicionario} deste
+ * repositorio, que solta o texto quando nenhum produto guardado o usa mais.
+ *
+ * <p>Cada escrita incrementa a versao do produto. Um update que informa a
+ * versao so e aplicado se ela ainda for a armazenada; do contrario lanca
+ * {@link ConflitoDeVersaoException}. Sem versao, o update sobrescreve.
+ */
+@Repository
+@Profile("!duravel & !colunar & !particionado & !replicado")
+@Qualifier("armazenamentoProduto")
+public class VolatilProdutoRepository implements ProdutoRepository<Produto, Long> {
+
+    final MapaPorId<Produto> produtos = new MapaPorId<>();
+
+    final ConcurrentMap<String, Long> porCodigoBarra;
+
+    final ConcurrentMap<String, Set<Long>> porFabricante = new ConcurrentHashMap<>();
+
+    final AtomicLong proximoId = new AtomicLong();
+
+    private final IndiceOrdenado indiceOrdenado = new IndiceOrdenado();
+
+    private final IndiceTextual indiceTextual = new IndiceTextual();
+
+    private final TravasParticionadas travas = new TravasParticionadas(64);
+
+    private final Dicionario fabricantes = new Dicionario("fabricante");
+
+    public VolatilProdutoRepository() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    /*
+     * As particoes de um ParticionadoProdutoRepository dividem o indice de
+     * codigo de barras, para que a unicidade valha entre elas.
+     */
+    VolatilProdutoRepository(ConcurrentMap<String, Long> porCodigoBarra) {
+        this.porCodigoBarra = porCodigoBarra;
+    }
+
+    @Override
+    public Produto save(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            id = proximoId.incrementAndGet();
+        } else {
+            proximoId.accumulateAndGet(id, Math::max);
+        }
+        Produto copia;
+        synchronized (travas.para(id)) {
+            Produto anterior = produtos.get(id);
+            copia = produto.toBuilder().id(id).versao(proximaVersao(anterior)).build();
+            if (!armazenar(anterior, copia, false)) {
+                throw new RuntimeException(ResultadoAtualizacao.Falha.CODIGO_BARRA_DUPLICADO.getMensagem());
+            }
+        }
+        return copia.toBuilder().build();
+    }
+
+    /**
+     * Grava o produto como veio, inserindo ou substituindo, durante a
+     * reconstrucao do estado a partir de um log. O codigo de barras e tomado
+     * de quem o tiver: no meio da reproducao dois produtos podem reivindica-lo,
+     * e os registros seguintes do log devolvem os indices ao estado final.
+     * Registros sem versao, gravados antes dela existir, recebem a seguinte.
+     */
+    public void restaurar(Produto produto) {
+        Long id = produto.getId();
+        proximoId.accumulateAndGet(id, Math::max);
+        synchronized (travas.para(id)) {
+            Produto anterior = produtos.get(id);
+            Produto copia = produto.getVersao() != null ? produto.toBuilder().build()
+                    : produto.toBuilder().versao(proximaVersao(anterior)).build();
+            armazenar(anterior, copia, true);
+        }
+    }
+
+    @Override
+    public Produto find(Long id) {
+        return id == null ? null : find(id.longValue());
+    }
+
+    @Override
+    public Produto find(long id) {
+        Produto produto = produtos.get(id);
+        return produto == null ? null : produto.toBuilder().build();
+    }
+
+    @Override
+    public List<Produto> findAll() {
+        List<Produto> resultado = new ArrayList<>(produtos.tamanho());
+        produtos.valores().forEach(produto -> resultado.add(produto.toBuilder().build()));
+        return resultado;
+    }
+
+    @Override
+    public Stream<Produto> streamAll() {
+        return produtos.valores().map(produto -> produto.toBuilder().build());
+    }
+
+    @Override
+    public List<Produto> findPage(Long afterId, int limit, Ordenacao sort) {
+        double precoCursor = afterId != null && sort == Ordenacao.PRECO ? precoDoCursor(afterId) : 0;
+        return findPage(afterId, precoCursor, limit, sort);
+    }
+
+    /* Com o preco do cursor ja conhecido, que pode estar em outra particao. */
+    List<Produto> findPage(Long afterId, double precoCursor, int limit, Ordenacao sort) {
+        return indiceOrdenado.pagina(afterId, precoCursor, sort, limit, this::find);
+    }
+
+    @Override
+    public List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, int limit) {
+        double precoCursor = afterId != null ? precoDoCursor(afterId) : 0;
+        return findByPreco(minPreco, maxPreco, afterId, precoCursor, limit);
+    }
+
+    List<Produto> findByPreco(double minPreco, double maxPreco, Long afterId, double precoCursor, int limit) {
+        return indiceOrdenado.faixaDePreco(minPreco, maxPreco, afterId, precoCursor, limit, this::find);
+    }
+
+    @Override
+    public List<Produto> findMaisCaros(int limit) {
+        return indiceOrdenado.maisCaras(limit, this::find);
+    }
+
+    @Override
+    public Produto update(Produto produto) {
+        return atualizar(produto).comoUpdate();
+    }
+
+    @Override
+    public List<ResultadoAtualizacao<Produto>> updateAll(List<Produto> alterados) {
+        List<ResultadoAtualizacao<Produto>> resultado = new ArrayList<>(alterados.size());
+        for (Produto produto : alterados) {
+            resultado.add(atualizar(produto));
+        }
+        return resultado;
+    }
+
+    /* Como update, mas devolve a falha em vez de lancar. */
+    ResultadoAtualizacao<Produto> atualizar(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+        }
+        Produto copia;
+        synchronized (travas.para(id)) {
+            Produto anterior = produtos.get(id);
+            if (anterior == null) {
+                return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.NAO_ENCONTRADO);
+            }
+            if (produto.getVersao() != null && !produto.getVersao().equals(anterior.getVersao())) {
+                return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.VERSAO_DESATUALIZADA);
+            }
+            copia = produto.toBuilder().versao(proximaVersao(anterior)).build();
+            if (!armazenar(anterior, copia, false)) {
+                return ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.CODIGO_BARRA_DUPLICADO);
+            }
+        }
+        return ResultadoAtualizacao.sucesso(copia.toBuilder().build());
+    }
+
+    @Override
+    public void delete(Produto produto) {
+        Long id = produto.getId();
+        if (id == null) {
+            return;
+        }
+        synchronized (travas.para(id)) {
+            Produto removido = produtos.remover(id);
+            if (removido != null) {
+                desindexarCodigoBarra(removido);
+                desindexarFabricante(removido);
+                fabricantes.soltar(removido.getFabricante());
+                indiceOrdenado.remover(id, removido.getPreco());
+                indiceTextual.remover(id);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        produtos.limpar();
+        porCodigoBarra.clear();
+        porFabricante.clear();
+        indiceOrdenado.limpar();
+        indiceTextual.limpar();
+        fabricantes.limpar();
+    }
+
+    @Override
+    public Produto findByCodigoBarra(String codigoBarra) {
+        Long id = porCodigoBarra.get(codigoBarra);
+        if (id == null) {
+            return null;
+        }
+        Produto produto = produtos.get(id);
+        if (produto == null || !codigoBarra.equals(produto.getCodigoBarra())) {
+            return null;
+        }
+        return produto.toBuilder().build();
+    }
+
+    @Override
+    public List<Produto> findByFabricante(String fabricante) {
+        Set<Long> ids = porFabricante.get(fabricante);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<Produto> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Produto produto = produtos.get(id);
+            if (produto != null && fabricante.equals(produto.getFabricante())) {
+                resultado.add(produto.toBuilder().build());
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<Produto> search(String consulta, int limit) {
+        return indiceTextual.buscar(consulta, limit, this::find);
+    }
+
+    @Override
+    public List<RelatorioDicionario> relatorioMemoria() {
+        return List.of(fabricantes.relatorio(produtos.valores().map(Produto::getFabricante)));
+    }
+
+    private double precoDoCursor(Long afterId) {
+        Produto cursor = produtos.get(afterId);
+        if (cursor == null) {
+            throw new RuntimeException("Cursor de paginacao invalido!");
+        }
+        return cursor.getPreco();
+    }
+
+    private static long proximaVersao(Produto anterior) {
+        return anterior == null || anterior.getVersao() == null ? 1 : anterior.getVersao() + 1;
+    }
+
+    /*
+     * Deve ser chamado com a trava do id do produto. Devolve false, sem
+     * alterar nada, se o codigo de barras pertence a outro produto.
+     */
+    private boolean armazenar(Produto anterior, Produto novo, boolean forcarCodigoBarra) {
+        Long id = novo.getId();
+        String codigoBarra = novo.getCodigoBarra();
+        if (codigoBarra != null && forcarCodigoBarra) {
+            porCodigoBarra.put(codigoBarra, id);
+        } else if (codigoBarra != null) {
+            Long dono = porCodigoBarra.putIfAbsent(codigoBarra, id);
+            if (dono != null && !dono.equals(id)) {
+                return false;
+            }
+        }
+        novo.setFabricante(fabricantes.canonico(novo.getFabricante()));
+        produtos.put(id, novo);
+        if (anterior == null || !Objects.equals(anterior.getNome(), novo.getNome())
+                || !Objects.equals(anterior.getFabricante(), novo.getFabricante())) {
+            indiceTextual.indexar(id, novo.getNome(), novo.getFabricante());
+        }
+        if (anterior == null) {
+            indiceOrdenado.adicionar(id, novo.getPreco());
+        } else {
+            indiceOrdenado.atualizar(id, anterior.getPreco(), novo.getPreco());
+            if (!Objects.equals(anterior.getCodigoBarra(), codigoBarra)) {
+                desindexarCodigoBarra(anterior);
+            }
+            if (!Objects.equals(anterior.getFabricante(), novo.getFabricante())) {
+                desindexarFabricante(anterior);
+            }
+            fabricantes.soltar(anterior.getFabricante());
+        }
+        if (novo.getFabricante() != null) {
+            porFabricante.compute(novo.getFabricante(), (fabricante, ids) -> {
+                Set<Long> resultado = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                resultado.add(id);
+                return resultado;
+            });
+        }
+        return true;
+    }
+
+    private void desindexarCodigoBarra(Produto produto) {
+        if (produto.getCodigoBarra() != null) {
+            porCodigoBarra.remove(produto.getCodigoBarra(), produto.getId());
+        }
+    }
+
+    private void desindexarFabricante(Produto produto) {
+        if (produto.getFabricante() != null) {
+            porFabricante.computeIfPresent(produto.getFabricante(), (fabricante, ids) -> {
+                ids.remove(produto.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import com.ufcg.psoft.mercadofacil.model.ErroImportacao;
+import com.ufcg.psoft.mercadofacil.model.ResultadoImportacao;
+import com.ufcg.psoft.mercadofacil.repository.ClienteRepository;
+import com.ufcg.psoft.mercadofacil.validator.CpfResultado;
+import com.ufcg.psoft.mercadofacil.validator.CpfValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+@Service
+public class ClienteCadastroImplService implements ClienteCadastroService {
+    static final int TAMANHO_LOTE_IMPORTACAO = 10_000;
+    static final int MAXIMO_ERROS = 100;
+
+    @Autowired
+    ClienteRepository<Cliente, Long> clienteRepository;
+    @Autowired
+    CpfValidator cpfValidator;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Override
+    public Cliente cadastrar(Cliente cliente) {
+        String erro = validar(cliente);
+        if (erro != null) {
+            throw new RuntimeException(erro);
+        }
+        return clienteRepository.save(cliente);
+    }
+
+    /*
+     * A thread da requisicao so le e separa as linhas; a cada
+     * TAMANHO_LOTE_IMPORTACAO linhas o lote vai para o pool comum, onde e
+     * interpretado, validado e gravado com saveAll. Ficam em andamento no
+     * maximo um lote por thread do pool mais um: com o limite atingido, a
+     * leitura espera o lote mais antigo, o que segura a memoria ocupada por
+     * linhas ainda nao gravadas. Os lotes sao somados na ordem em que foram
+     * lidos, entao os erros saem em ordem de linha.
+     *
+     * Se um lote falha, ou a leitura da entrada, os lotes ainda em andamento
+     * sao esperados antes de a excecao sair, para que nenhuma gravacao
+     * continue depois da resposta; a falha de um lote sai como
+     * ImportacaoInterrompidaException com o que ja foi gravado.
+     */
+    @Override
+    public ResultadoImportacao importar(InputStream entrada, FormatoImportacao formato) throws IOException {
+        long inicio = System.nanoTime();
+        BufferedReader leitor = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 1 << 16);
+        long numero = 0;
+        Interpretador interpretador;
+        if (formato == FormatoImportacao.CSV) {
+            interpretador = new InterpretadorCsv(leitor.readLine(), cpfValidator);
+            numero++;
+        } else {
+            interpretador = new InterpretadorNdjson(objectMapper.readerFor(Cliente.ClienteBuilder.class));
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int maximoEmAndamento = pool.getParallelism() + 1;
+        ArrayDeque<ForkJoinTask<Importados>> emAndamento = new ArrayDeque<>();
+        Importados total = new Importados();
+        List<String> linhas = new ArrayList<>(TAMANHO_LOTE_IMPORTACAO);
+        long primeiraDoLote = numero + 1;
+        String linha;
+        try {
+            while ((linha = leitor.readLine()) != null) {
+                numero++;
+                linhas.add(linha);
+                if (linhas.size() == TAMANHO_LOTE_IMPORTACAO) {
+                    if (emAndamento.size() == maximoEmAndamento) {
+                        total.somar(emAndamento.poll().join());
+                    }
+                    emAndamento.add(pool.submit(importarLote(linhas, primeiraDoLote, interpretador)));
+                    linhas = new ArrayList<>(TAMANHO_LOTE_IMPORTACAO);
+                    primeiraDoLote = numero + 1;
+                }
+            }
+            if (!linhas.isEmpty()) {
+                emAndamento.add(pool.submit(importarLote(linhas, primeiraDoLote, interpretador)));
+            }
+            while (!emAndamento.isEmpty()) {
+                total.somar(emAndamento.poll().join());
+            }
+        } catch (IOException e) {
+            esperar(emAndamento, total);
+            throw e;
+        } catch (RuntimeException e) {
+            esperar(emAndamento, total);
+            throw new ImportacaoInterrompidaException(resultado(total, inicio), e);
+        }
+        return resultado(total, inicio);
+    }
+
+    /*
+     * Espera os lotes restantes sem interromper os que ja estao gravando e
+     * soma os que terminaram bem. ForkJoinTask.cancel nao para um lote em
+     * execucao, so o marca, entao esperar e o unico jeito de saber o que foi
+     * gravado.
+     */
+    private static void esperar(ArrayDeque<ForkJoinTask<Importados>> emAndamento, Importados total) {
+        ForkJoinTask<Importados> lote;
+        while ((lote = emAndamento.poll()) != null) {
+            lote.quietlyJoin();
+            if (lote.isCompletedNormally()) {
+                total.somar(lote.getRawResult());
+            }
+        }
+    }
+
+    private static ResultadoImportacao resultado(Importados total, long inicio) {
+        long duracao = System.nanoTime() - inicio;
+        return ResultadoImportacao.builder()
+                .linhas(total.linhas)
+                .importados(total.importados)
+                .rejeitados(total.linhas - total.importados)
+                .erros(total.erros)
+                .duracaoMs(duracao / 1_000_000)
+                .linhasPorSegundo(duracao == 0 ? 0 : total.linhas * 1_000_000_000L / duracao)
+                .build();
+    }
+
+    /* Linhas em branco sao ignoradas e nao contam como linhas importadas ou rejeitadas. */
+    private Callable<Importados> importarLote(List<String> linhas, long primeira, Interpretador interpretador) {
+        return () -> {
+            Importados lote = new Importados();
+            List<Cliente> validos = new ArrayList<>(linhas.size());
+            long[] numeros = new long[linhas.size()];
+            for (int i = 0; i < linhas.size(); i++) {
+                String linha = linhas.get(i);
+                if (linha.isBlank()) {
+                    continue;
+                }
+                lote.linhas++;
+                Cliente cliente;
+                String erro;
+                try {
+                    cliente = interpretador.cliente(linha);
+                    erro = validar(cliente);
+                } catch (RuntimeException e) {
+                    cliente = null;
+                    erro = e.getMessage();
+                }
+                if (erro == null) {
+                    numeros[validos.size()] = primeira + i;
+                    validos.add(cliente);
+                } else {
+                    lote.erro(primeira + i, erro);
+                }
+            }
+            List<Cliente> salvos = validos.isEmpty() ? validos : clienteRepository.saveAll(validos);
+            for (int j = 0; j < salvos.size(); j++) {
+                if (salvos.get(j) != null) {
+                    lote.importados++;
+                } else {
+                    lote.erro(numeros[j], "CPF ja cadastrado!");
+                }
+            }
+            lote.erros.sort(Comparator.comparingLong(ErroImportacao::getLinha));
+            return lote;
+        };
+    }
+
+    private String validar(Cliente cliente) {
+        if (cliente.getCpf() == null || cliente.getNome() == null || cliente.getNome().isBlank()) {
+            return "Atributos faltando!";
+        }
+        CpfResultado resultado = cpfValidator.validar(cliente.getCpf());
+        if (resultado != CpfResultado.VALIDO) {
+            return resultado.getMensagem();
+        }
+        if (cliente.getIdade() != null && cliente.getIdade() < 0) {
+            return "Idade invalida!";
+        }
+        return null;
+    }
+
+    private static final class Importados {
+
+        long linhas;
+
+        long importados;
+
+        final List<ErroImportacao> erros = new ArrayList<>();
+
+        /* Os erros de um lote sao todos guardados e ordenados; o limite vale na soma. */
+        void erro(long linha, String erro) {
+            erros.add(ErroImportacao.builder().linha(linha).erro(erro).build());
+        }
+
+        void somar(Importados lote) {
+            linhas += lote.linhas;
+            importados += lote.importados;
+            for (ErroImportacao erro : lote.erros) {
+                if (erros.size() == MAXIMO_ERROS) {
+                    break;
+                }
+                erros.add(erro);
+            }
+        }
+    }
+
+    /** Converte uma linha nao vazia em cliente; lanca RuntimeException com a mensagem de erro da linha. */
+    private interface Interpretador {
+        Cliente cliente(String linha);
+    }
+
+    private record InterpretadorNdjson(ObjectReader leitor) implements Interpretador {
+
+        @Override
+        public Cliente cliente(String linha) {
+            try {
+                return leitor.<Cliente.ClienteBuilder>readValue(linha).build();
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("JSON invalido!");
+            }
+        }
+    }
+
+    /*
+     * Colunas localizadas pelo nome no cabecalho, em qualquer ordem; colunas
+     * desconhecidas sao ignoradas. Campos podem vir entre aspas, com aspas
+     * internas dobradas, mas nao podem quebrar linha. O CPF e aceito com ou
+     * sem pontuacao e o endereco vazio fica nulo.
+     */
+    static final class InterpretadorCsv implements Interpretador {
+
+        private final int colunas;
+
+        private final int cpf, nome, idade, endereco;
+
+        private final CpfValidator cpfValidator;
+
+        InterpretadorCsv(String cabecalho, CpfValidator cpfValidator) {
+            if (cabecalho == null) {
+                throw new RuntimeException("Cabecalho CSV invalido!");
+            }
+            String[] nomes = campos(cabecalho, -1);
+            int cpf = -1, nome = -1, idade = -1, endereco = -1;
+            for (int i = 0; i < nomes.length; i++) {
+                switch (nomes[i].strip().toLowerCase(Locale.ROOT)) {
+                    case "cpf" -> cpf = i;
+                    case "nome" -> nome = i;
+                    case "idade" -> idade = i;
+                    case "endereco" -> endereco = i;
+                    default -> { }
+                }
+            }
+            if (cpf < 0 || nome < 0) {
+                throw new RuntimeException("Cabecalho CSV invalido!");
+            }
+            this.colunas = nomes.length;
+            this.cpf = cpf;
+            this.nome = nome;
+            this.idade = idade;
+            this.endereco = endereco;
+            this.cpfValidator = cpfValidator;
+        }
+
+        @Override
+        public Cliente cliente(String linha) {
+            String[] campos = campos(linha, colunas);
+            long numero = CpfValidator.numero(campos[cpf]);
+            if (numero < 0) {
+                throw new RuntimeException(campos[cpf] == null ? "Atributos faltando!"
+                        : cpfValidator.validar(campos[cpf]).getMensagem());
+            }
+            Integer anos = null;
+            if (idade >= 0 && campos[idade] != null) {
+                try {
+                    anos = Integer.valueOf(campos[idade].strip());
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException("Idade invalida!");
+                }
+            }
+            return Cliente.builder()
+                    .cpf(numero)
+                    .nome(campos[nome])
+                    .idade(anos)
+                    .endereco(endereco >= 0 ? campos[endereco] : null)
+                    .build();
+        }
+
+        /*
+         * Separa a linha em campos; com quantidade >= 0 devolve exatamente
+         * essa quantidade, com null nos campos vazios ou ausentes.
+         */
+        static String[] campos(String linha, int quantidade) {
+            List<String> lidos = quantidade < 0 ? new ArrayList<>() : null;
+            String[] campos = quantidade < 0 ? null : new String[quantidade];
+            StringBuilder campo = new StringBuilder();
+            int n = 0, i = 0;
+            while (i <= linha.length()) {
+                campo.setLength(0);
+                if (i < linha.length() && linha.charAt(i) == '"') {
+                    i++;
+                    while (i < linha.length()) {
+                        char c = linha.charAt(i++);
+                        if (c == '"') {
+                            if (i < linha.length() && linha.charAt(i) == '"') {
+                                campo.append('"');
+                                i++;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            campo.append(c);
+                        }
+                    }
+                    while (i < linha.length() && linha.charAt(i) != ',') {
+                        i++;
+                    }
+                } else {
+                    int fim = linha.indexOf(',', i);
+                    fim = fim < 0 ? linha.length() : fim;
+                    campo.append(linha, i, fim);
+                    i = fim;
+                }
+                i++;
+                String valor = campo.isEmpty() ? null : campo.toString();
+                if (lidos != null) {
+                    lidos.add(valor == null ? "" : valor);
+                } else if (n < campos.length) {
+                    campos[n] = valor;
+                }
+                n++;
+            }
+            return lidos != null ? lidos.toArray(new String[0]) : campos;
+        }
+    }
+}
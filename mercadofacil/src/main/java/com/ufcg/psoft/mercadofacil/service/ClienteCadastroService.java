@@ -0,0 +1,12 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import com.ufcg.psoft.mercadofacil.model.ResultadoImportacao;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ClienteCadastroService {
+    Cliente cadastrar(Cliente cliente);
+    ResultadoImportacao importar(InputStream entrada, FormatoImportacao formato) throws IOException;
+}
@@ -0,0 +1,11 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+/**
+ * Formatos aceitos na importacao de clientes. Em ambos cada cliente ocupa
+ * uma linha: no CSV a primeira linha e o cabecalho com os nomes das colunas;
+ * no NDJSON cada linha e um objeto JSON.
+ */
+public enum FormatoImportacao {
+    CSV,
+    NDJSON
+}
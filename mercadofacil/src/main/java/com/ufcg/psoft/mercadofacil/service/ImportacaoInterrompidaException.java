@@ -0,0 +1,25 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.model.ResultadoImportacao;
+
+/**
+ * Lancada quando a gravacao de um lote da importacao falha. Os lotes ainda
+ * em andamento sao esperados antes do lancamento, entao o resultado parcial
+ * conta exatamente os lotes gravados ate o fim; o lote que falhou e os
+ * cancelados ficam de fora.
+ */
+public class ImportacaoInterrompidaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ResultadoImportacao parcial;
+
+    public ImportacaoInterrompidaException(ResultadoImportacao parcial, Throwable causa) {
+        super("Importacao interrompida!", causa);
+        this.parcial = parcial;
+    }
+
+    public ResultadoImportacao getParcial() {
+        return parcial;
+    }
+}
@@ -0,0 +1,30 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.repository.LoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class LoteEstoqueImplService implements LoteEstoqueService {
+    @Autowired
+    LoteRepository<Lote, Long> loteRepository;
+
+    @Override
+    public Lote reservar(Long loteId, int quantidade) {
+        validar(quantidade);
+        return loteRepository.reservar(loteId, quantidade);
+    }
+
+    @Override
+    public Lote liberar(Long loteId, int quantidade) {
+        validar(quantidade);
+        return loteRepository.liberar(loteId, quantidade);
+    }
+
+    private static void validar(int quantidade) {
+        if (quantidade <= 0) {
+            throw new RuntimeException("Quantidade invalida!");
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+
+public interface LoteEstoqueService {
+    Lote reservar(Long loteId, int quantidade);
+    Lote liberar(Long loteId, int quantidade);
+}
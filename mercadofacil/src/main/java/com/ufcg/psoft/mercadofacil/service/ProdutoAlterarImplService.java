@@ -1,63 +1,129 @@
 package com.ufcg.psoft.mercadofacil.service;
 
+import com.ufcg.psoft.mercadofacil.metricas.MetricasValidacao;
+import com.ufcg.psoft.mercadofacil.model.Lote;
 import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResultadoAlteracao;
+import com.ufcg.psoft.mercadofacil.repository.LoteRepository;
 import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import com.ufcg.psoft.mercadofacil.repository.ResultadoAtualizacao;
+import com.ufcg.psoft.mercadofacil.validator.Ean13Resultado;
+import com.ufcg.psoft.mercadofacil.validator.Ean13Validator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class ProdutoAlterarImplService implements ProdutoAlterarService {
     @Autowired
     ProdutoRepository<Produto, Long> produtoRepository;
+    @Autowired
+    LoteRepository<Lote, Long> loteRepository;
+    @Autowired
+    Ean13Validator ean13Validator;
+    @Autowired
+    MetricasValidacao metricasValidacao;
     @Override
     public Produto alterar(Produto produtoAlterado) {
 
-        if(produtoAlterado.getNome() == null || produtoAlterado.getCodigoBarra() == null
-                || produtoAlterado.getFabricante() == null) {
-            throw new RuntimeException("Atributos faltando!");
+        String erro = validar(produtoAlterado);
+        if (erro != null) {
+            throw new RuntimeException(erro);
         }
 
-        if(produtoAlterado.getPreco()<=0) {
-            throw new RuntimeException("Preco invalido!");
+        Produto alterado = produtoRepository.update(produtoAlterado);
+        if (alterado != null) {
+            loteRepository.atualizarProduto(alterado);
         }
+        return alterado;
+    }
 
-        String codigoBarra = produtoAlterado.getCodigoBarra();
-        if (codigoBarra.length() != 13) {
-            throw new RuntimeException("Codigo de barra não possui 13 numeros!");
+    /*
+     * Devolve assim que a alteracao esta na memoria; o futuro completa quando
+     * ela estiver duravel ou falha com o erro de validacao ou de gravacao. Os
+     * lotes recebem o produto com que o repositorio completa o futuro, fora
+     * da thread que o completou: uma gravacao que falha nunca chega aos
+     * lotes, e um produto mais antigo que o ja guardado no lote e ignorado.
+     */
+    @Override
+    public CompletableFuture<Produto> alterarAssincrono(Produto produtoAlterado) {
+        String erro = validar(produtoAlterado);
+        if (erro != null) {
+            return CompletableFuture.failedFuture(new RuntimeException(erro));
         }
-        Integer[] sequencia = {7, 8, 9, 9, 1, 3, 7, 5};
-        for (int i = 0; i < 8; i++) {
-            if (sequencia[i] != Integer.parseInt(String.valueOf(codigoBarra.charAt(i)))) {
-                if (i < 3) {
-                    throw new RuntimeException("Codigo de barra com país errado");
-                } else {
-                    throw new RuntimeException("Codigo de barra com empresa errada!");
-                }
+        return produtoRepository.updateAsync(produtoAlterado).thenApplyAsync(alterado -> {
+            if (alterado != null) {
+                loteRepository.atualizarProduto(alterado);
             }
-        }
+            return alterado;
+        });
+    }
+
+    @Override
+    public List<ResultadoAlteracao> alterarTodos(List<Produto> produtosAlterados) {
+        ResultadoAlteracao[] resultados = new ResultadoAlteracao[produtosAlterados.size()];
+        List<Produto> validos = new ArrayList<>(produtosAlterados.size());
+        int[] posicoes = new int[produtosAlterados.size()];
 
-        int impar = 0, par = 0;
+        for (int i = 0; i < produtosAlterados.size(); i++) {
+            Produto produto = produtosAlterados.get(i);
+            String erro = validar(produto);
+            if (erro == null) {
+                posicoes[validos.size()] = i;
+                validos.add(produto);
+            } else {
+                resultados[i] = falha(produto.getId(), erro);
+            }
+        }
 
-        for (int i = 0; i < 12; i++) {
-            if (i % 2 == 0) {
-                impar += Integer.parseInt(String.valueOf(codigoBarra.charAt(i)));
+        List<ResultadoAtualizacao<Produto>> atualizados = validos.isEmpty() ? List.of()
+                : produtoRepository.updateAll(validos);
+        for (int j = 0; j < validos.size(); j++) {
+            ResultadoAtualizacao<Produto> atualizado = atualizados.get(j);
+            Long id = validos.get(j).getId();
+            if (atualizado.sucesso()) {
+                loteRepository.atualizarProduto(atualizado.atualizado());
+                resultados[posicoes[j]] = ResultadoAlteracao.builder()
+                        .id(id)
+                        .sucesso(true)
+                        .produto(atualizado.atualizado())
+                        .build();
             } else {
-                par += Integer.parseInt(String.valueOf(codigoBarra.charAt(i)));
+                resultados[posicoes[j]] = falha(id, atualizado.falha().getMensagem());
             }
         }
+        return List.of(resultados);
+    }
 
-        int verificador = 0;
-        int calculo = (par * 3) + impar;
+    private String validar(Produto produto) {
+        if(produto.getNome() == null || produto.getCodigoBarra() == null
+                || produto.getFabricante() == null) {
+            metricasValidacao.contarFalha(MetricasValidacao.ATRIBUTOS_FALTANDO);
+            return "Atributos faltando!";
+        }
 
-        while ((calculo + verificador) % 10 != 0) {
-            verificador++;
+        if(produto.getPreco()<=0) {
+            metricasValidacao.contarFalha(MetricasValidacao.PRECO_INVALIDO);
+            return "Preco invalido!";
         }
-        if (verificador != Integer.parseInt(String.valueOf(codigoBarra.charAt(12)))) {
-            throw new RuntimeException("Codigo de barra com digito verificador incorreto!");
+
+        Ean13Resultado resultado = ean13Validator.validar(produto.getCodigoBarra());
+        if (resultado != Ean13Resultado.VALIDO) {
+            metricasValidacao.contarFalha(resultado.name());
+            return resultado.getMensagem();
         }
+        return null;
+    }
 
-        return produtoRepository.update(produtoAlterado);
+    private static ResultadoAlteracao falha(Long id, String erro) {
+        return ResultadoAlteracao.builder()
+                .id(id)
+                .sucesso(false)
+                .erro(erro)
+                .build();
     }
 
 }
-
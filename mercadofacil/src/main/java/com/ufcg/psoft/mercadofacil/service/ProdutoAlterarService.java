@@ -1,7 +1,13 @@
 package com.ufcg.psoft.mercadofacil.service;
 
 import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResultadoAlteracao;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ProdutoAlterarService {
     Produto alterar(Produto produtoAlterado);
+    CompletableFuture<Produto> alterarAssincrono(Produto produtoAlterado);
+    List<ResultadoAlteracao> alterarTodos(List<Produto> produtosAlterados);
 }
@@ -0,0 +1,24 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+/**
+ * Resultado da validacao de um CPF. Como em {@link Ean13Resultado}, as
+ * constantes sao reaproveitadas e a validacao nao aloca objetos.
+ */
+public enum CpfResultado {
+
+    VALIDO(null),
+    TAMANHO_INVALIDO("CPF não possui 11 numeros!"),
+    CARACTERE_INVALIDO("CPF possui caracteres que nao sao numeros!"),
+    DIGITOS_REPETIDOS("CPF com todos os digitos iguais!"),
+    DIGITO_VERIFICADOR_INVALIDO("CPF com digito verificador incorreto!");
+
+    private final String mensagem;
+
+    CpfResultado(String mensagem) {
+        this.mensagem = mensagem;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+}
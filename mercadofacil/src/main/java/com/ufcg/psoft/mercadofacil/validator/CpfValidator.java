@@ -0,0 +1,114 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Valida os dois digitos verificadores de um CPF, informado como texto (so
+ * os 11 numeros ou no formato {@code 000.000.000-00}) ou como numero. Os
+ * digitos sao percorridos uma unica vez, acumulando as duas somas ponderadas,
+ * e nada e alocado durante a validacao.
+ */
+@Component
+public class CpfValidator {
+
+    public static final int TAMANHO = 11;
+
+    public static final int TAMANHO_FORMATADO = 14;
+
+    public static final long MAXIMO = 99_999_999_999L;
+
+    public CpfResultado validar(CharSequence cpf) {
+        if (cpf == null || (cpf.length() != TAMANHO && cpf.length() != TAMANHO_FORMATADO)) {
+            return CpfResultado.TAMANHO_INVALIDO;
+        }
+        boolean formatado = cpf.length() == TAMANHO_FORMATADO;
+        int primeiraSoma = 0, segundaSoma = 0, primeiroDigito = 0, informado1 = 0;
+        boolean repetidos = true;
+        for (int i = 0, d = 0; i < cpf.length(); i++) {
+            char caractere = cpf.charAt(i);
+            if (formatado && (i == 3 || i == 7 || i == 11)) {
+                if (caractere != (i == 11 ? '-' : '.')) {
+                    return CpfResultado.CARACTERE_INVALIDO;
+                }
+                continue;
+            }
+            int digito = caractere - '0';
+            if (digito < 0 || digito > 9) {
+                return CpfResultado.CARACTERE_INVALIDO;
+            }
+            if (d == 0) {
+                primeiroDigito = digito;
+            } else if (digito != primeiroDigito) {
+                repetidos = false;
+            }
+            if (d < 9) {
+                primeiraSoma += digito * (10 - d);
+            }
+            if (d < 10) {
+                segundaSoma += digito * (11 - d);
+            }
+            if (d == 9) {
+                informado1 = digito;
+            }
+            if (d == 10) {
+                return resultado(repetidos, primeiraSoma, segundaSoma, informado1, digito);
+            }
+            d++;
+        }
+        return CpfResultado.TAMANHO_INVALIDO;
+    }
+
+    /** Valida o CPF guardado como numero; os zeros a esquerda estao implicitos. */
+    public CpfResultado validar(long cpf) {
+        if (cpf < 0 || cpf > MAXIMO) {
+            return CpfResultado.TAMANHO_INVALIDO;
+        }
+        int informado2 = (int) (cpf % 10);
+        int informado1 = (int) (cpf / 10 % 10);
+        int primeiraSoma = 0, segundaSoma = informado1 * 2;
+        boolean repetidos = informado1 == informado2;
+        long resto = cpf / 100;
+        for (int d = 8; d >= 0; d--, resto /= 10) {
+            int digito = (int) (resto % 10);
+            repetidos &= digito == informado2;
+            primeiraSoma += digito * (10 - d);
+            segundaSoma += digito * (11 - d);
+        }
+        return resultado(repetidos, primeiraSoma, segundaSoma, informado1, informado2);
+    }
+
+    /**
+     * Os 11 digitos do CPF como numero, aceitando os mesmos formatos de
+     * {@link #validar(CharSequence)}; -1 se o texto nao estiver em um deles.
+     * Nao confere os digitos verificadores.
+     */
+    public static long numero(CharSequence cpf) {
+        if (cpf == null || (cpf.length() != TAMANHO && cpf.length() != TAMANHO_FORMATADO)) {
+            return -1;
+        }
+        boolean formatado = cpf.length() == TAMANHO_FORMATADO;
+        long numero = 0;
+        for (int i = 0; i < cpf.length(); i++) {
+            if (formatado && (i == 3 || i == 7 || i == 11)) {
+                continue;
+            }
+            int digito = cpf.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            numero = numero * 10 + digito;
+        }
+        return numero;
+    }
+
+    private static CpfResultado resultado(boolean repetidos, int primeiraSoma, int segundaSoma,
+                                          int informado1, int informado2) {
+        if (repetidos) {
+            return CpfResultado.DIGITOS_REPETIDOS;
+        }
+        int verificador1 = primeiraSoma % 11 < 2 ? 0 : 11 - primeiraSoma % 11;
+        int verificador2 = segundaSoma % 11 < 2 ? 0 : 11 - segundaSoma % 11;
+        return verificador1 == informado1 && verificador2 == informado2
+                ? CpfResultado.VALIDO : CpfResultado.DIGITO_VERIFICADOR_INVALIDO;
+    }
+}
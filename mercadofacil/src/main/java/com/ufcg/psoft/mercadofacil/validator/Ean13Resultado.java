@@ -0,0 +1,25 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+/**
+ * Resultado da validacao de um codigo de barras EAN-13. As constantes sao
+ * reaproveitadas a cada chamada, entao a validacao nao aloca objetos.
+ */
+public enum Ean13Resultado {
+
+    VALIDO(null),
+    TAMANHO_INVALIDO("Codigo de barra não possui 13 numeros!"),
+    CARACTERE_INVALIDO("Codigo de barra possui caracteres que nao sao numeros!"),
+    PAIS_INVALIDO("Codigo de barra com país errado"),
+    EMPRESA_INVALIDA("Codigo de barra com empresa errada!"),
+    DIGITO_VERIFICADOR_INVALIDO("Codigo de barra com digito verificador incorreto!");
+
+    private final String mensagem;
+
+    Ean13Resultado(String mensagem) {
+        this.mensagem = mensagem;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+}
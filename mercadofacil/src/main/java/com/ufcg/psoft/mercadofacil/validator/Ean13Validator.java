@@ -0,0 +1,63 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Valida codigos de barras EAN-13 contra o prefixo GS1 (pais + empresa)
+ * configurado em {@code mercadofacil.codigo-barra.prefixo}. O codigo e
+ * percorrido uma unica vez e nada e alocado durante a validacao.
+ */
+@Component
+public class Ean13Validator {
+
+    public static final int TAMANHO = 13;
+
+    private final int[] prefixo;
+
+    private final int digitosPais;
+
+    public Ean13Validator(
+            @Value("${mercadofacil.codigo-barra.prefixo:78991375}") String prefixo,
+            @Value("${mercadofacil.codigo-barra.digitos-pais:3}") int digitosPais) {
+        if (prefixo.length() >= TAMANHO || digitosPais < 0 || digitosPais > prefixo.length()) {
+            throw new IllegalArgumentException("Prefixo de codigo de barra invalido: " + prefixo);
+        }
+        this.prefixo = new int[prefixo.length()];
+        for (int i = 0; i < prefixo.length(); i++) {
+            int digito = prefixo.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                throw new IllegalArgumentException("Prefixo de codigo de barra invalido: " + prefixo);
+            }
+            this.prefixo[i] = digito;
+        }
+        this.digitosPais = digitosPais;
+    }
+
+    public Ean13Resultado validar(CharSequence codigoBarra) {
+        if (codigoBarra == null || codigoBarra.length() != TAMANHO) {
+            return Ean13Resultado.TAMANHO_INVALIDO;
+        }
+        int impar = 0, par = 0;
+        for (int i = 0; i < TAMANHO - 1; i++) {
+            int digito = codigoBarra.charAt(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return Ean13Resultado.CARACTERE_INVALIDO;
+            }
+            if (i < prefixo.length && digito != prefixo[i]) {
+                return i < digitosPais ? Ean13Resultado.PAIS_INVALIDO : Ean13Resultado.EMPRESA_INVALIDA;
+            }
+            if ((i & 1) == 0) {
+                impar += digito;
+            } else {
+                par += digito;
+            }
+        }
+        int informado = codigoBarra.charAt(TAMANHO - 1) - '0';
+        if (informado < 0 || informado > 9) {
+            return Ean13Resultado.CARACTERE_INVALIDO;
+        }
+        int verificador = (10 - (par * 3 + impar) % 10) % 10;
+        return verificador == informado ? Ean13Resultado.VALIDO : Ean13Resultado.DIGITO_VERIFICADOR_INVALIDO;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ufcg.psoft.mercadofacil.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "mercadofacil.threads.virtuais=true"
+)
+@DisplayName("Testes do modo de threads virtuais")
+class ThreadsVirtuaisConfigTest {
+
+    @Autowired
+    ServletWebServerApplicationContext contexto;
+
+    @Test
+    @DisplayName("O Tomcat executa as requisicoes em threads virtuais")
+    void tomcatUsaThreadsVirtuais() throws Exception {
+        TomcatWebServer servidor = (TomcatWebServer) contexto.getWebServer();
+        Executor executor = servidor.getTomcat().getConnector().getProtocolHandler().getExecutor();
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+
+        executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+
+        assertTrue(virtual.get());
+    }
+}
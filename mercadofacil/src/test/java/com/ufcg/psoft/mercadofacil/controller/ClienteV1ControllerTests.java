@@ -0,0 +1,178 @@
+package com.ufcg.psoft.mercadofacil.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import com.ufcg.psoft.mercadofacil.repository.ClienteRepository;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("Testes do controlador de Clientes")
+public class ClienteV1ControllerTests {
+    @Autowired
+    MockMvc driver;
+
+    @Autowired
+    ClienteRepository<Cliente, Long> clienteRepository;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    Cliente cliente;
+
+    @BeforeEach
+    void setup() {
+        cliente = clienteRepository.save(Cliente.builder()
+                .cpf(52998224725L)
+                .nome("Cliente Base")
+                .idade(30)
+                .endereco("Rua Base, 10")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cliente = null;
+        clienteRepository.deleteAll();
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de cadastro e busca de clientes")
+    class ClienteCadastro {
+
+        @Test
+        @DisplayName("Quando cadastramos um cliente com CPF valido")
+        void cadastrarClienteValido() throws Exception {
+            // Arrange
+            String json = "{\"cpf\":11144477735,\"nome\":\"Cliente Novo\",\"idade\":25,\"endereco\":\"Rua Nova, 1\"}";
+
+            // Act
+            String responseJsonString = driver.perform(post("/v1/clientes")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            Cliente resultado = objectMapper.readValue(responseJsonString, Cliente.ClienteBuilder.class).build();
+
+            // Assert
+            assertEquals("Cliente Novo", resultado.getNome());
+            assertEquals(resultado.getId(), clienteRepository.findByCpf(11144477735L).getId());
+        }
+
+        @Test
+        @DisplayName("Quando cadastramos um cliente com digito verificador errado")
+        void cadastrarClienteCpfInvalido() {
+            // Arrange
+            String json = "{\"cpf\":11144477736,\"nome\":\"Cliente Novo\"}";
+
+            // Act
+            ServletException thrown = assertThrows(
+                    ServletException.class,
+                    () -> driver.perform(post("/v1/clientes")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+            );
+
+            // Assert
+            assertEquals("Request processing failed: java.lang.RuntimeException: CPF com digito verificador incorreto!",
+                    thrown.getMessage());
+            assertEquals(1, clienteRepository.count());
+        }
+
+        @Test
+        @DisplayName("Quando buscamos o cliente pelo CPF formatado")
+        void buscarPorCpfFormatado() throws Exception {
+            // Act
+            String responseJsonString = driver.perform(get("/v1/clientes/cpf/529.982.247-25"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            Cliente resultado = objectMapper.readValue(responseJsonString, Cliente.ClienteBuilder.class).build();
+
+            // Assert
+            assertEquals(cliente.getId(), resultado.getId());
+            driver.perform(get("/v1/clientes/cpf/11144477735")).andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de importacao de clientes")
+    class ClienteImportacao {
+
+        @Test
+        @DisplayName("Quando importamos um CSV com linhas validas e invalidas")
+        void importarCsv() throws Exception {
+            // Arrange
+            String csv = "nome,cpf,idade,endereco\n"
+                    + "\"Silva, Ana\",111.444.777-35,40,\"Rua \"\"A\"\", 1\"\n"
+                    + "Joao,12345678909,,\n"
+                    + "\n"
+                    + "Duplicado,52998224725,20,Rua B\n"
+                    + "Errado,12345678900,20,Rua C\n"
+                    + "Idade,01234567890,x,Rua D\n";
+
+            // Act
+            String responseJsonString = driver.perform(post("/v1/clientes/importar")
+                            .contentType("text/csv")
+                            .content(csv))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode resultado = objectMapper.readTree(responseJsonString);
+
+            // Assert
+            assertEquals(5, resultado.get("linhas").asLong());
+            assertEquals(2, resultado.get("importados").asLong());
+            assertEquals(3, resultado.get("rejeitados").asLong());
+            assertEquals(5, resultado.get("erros").get(0).get("linha").asLong());
+            assertEquals("CPF ja cadastrado!", resultado.get("erros").get(0).get("erro").asText());
+            assertEquals(6, resultado.get("erros").get(1).get("linha").asLong());
+            assertEquals("CPF com digito verificador incorreto!", resultado.get("erros").get(1).get("erro").asText());
+            assertEquals(7, resultado.get("erros").get(2).get("linha").asLong());
+            assertEquals("Idade invalida!", resultado.get("erros").get(2).get("erro").asText());
+            Cliente importado = clienteRepository.findByCpf(11144477735L);
+            assertEquals("Silva, Ana", importado.getNome());
+            assertEquals("Rua \"A\", 1", importado.getEndereco());
+            assertEquals(40, importado.getIdade());
+        }
+
+        @Test
+        @DisplayName("Quando importamos NDJSON com uma linha malformada")
+        void importarNdjson() throws Exception {
+            // Arrange
+            String ndjson = "{\"cpf\":11144477735,\"nome\":\"Ana\",\"idade\":40}\n"
+                    + "{\"cpf\":12345678909,\"nome\":\n"
+                    + "{\"cpf\":12345678909,\"nome\":\"Joao\",\"endereco\":\"Rua E\"}\n";
+
+            // Act
+            String responseJsonString = driver.perform(post("/v1/clientes/importar")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content(ndjson))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode resultado = objectMapper.readTree(responseJsonString);
+
+            // Assert
+            assertEquals(3, resultado.get("linhas").asLong());
+            assertEquals(2, resultado.get("importados").asLong());
+            assertEquals(2, resultado.get("erros").get(0).get("linha").asLong());
+            assertEquals("JSON invalido!", resultado.get("erros").get(0).get("erro").asText());
+            assertEquals("Joao", clienteRepository.findByCpf(12345678909L).getNome());
+            assertEquals(3, clienteRepository.count());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.ufcg.psoft.mercadofacil.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.replicacao.ReplicaSomenteLeituraException;
+import com.ufcg.psoft.mercadofacil.repository.LoteRepository;
+import com.ufcg.psoft.mercadofacil.service.LoteEstoqueService;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("Testes do controlador de Lotes")
+public class LoteV1ControllerTests {
+    @Autowired
+    MockMvc driver;
+
+    @Autowired
+    LoteRepository<Lote, Long> loteRepository;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    Lote lote;
+
+    @BeforeEach
+    void setup() {
+        Produto produto = Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build();
+        lote = loteRepository.save(Lote.builder()
+                .id(1L)
+                .numeroDeItens(100)
+                .produto(produto)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        lote = null;
+        loteRepository.deleteAll();
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de paginação de lotes")
+    class LotePaginacao {
+
+        @Test
+        @DisplayName("Quando listo os lotes ordenados por preço")
+        void listarLotesPorPreco() throws Exception {
+            //Act
+            String responseString = driver.perform(get("/v1/lotes")
+                            .param("sort", "PRECO"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode resultado = objectMapper.readTree(responseString);
+            //Assert
+            assertEquals(1, resultado.size());
+            assertEquals(1L, resultado.get(0).get("id").asLong());
+        }
+
+        @Test
+        @DisplayName("Quando listo os lotes com uma ordenação desconhecida")
+        void listarLotesComOrdenacaoInvalida() throws Exception {
+            //Act
+            //Assert
+            driver.perform(get("/v1/lotes")
+                            .param("sort", "nome"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de exportação de lotes")
+    class LoteExportacao {
+
+        @Test
+        @DisplayName("Quando exporto todos os lotes em NDJSON")
+        void exportarLotes() throws Exception {
+            //Arrange
+            loteRepository.save(lote.toBuilder().id(2L).numeroDeItens(50).build());
+            //Act
+            String responseString = driver.perform(get("/v1/lotes/exportar"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                    .andReturn().getResponse().getContentAsString();
+
+            String[] linhas = responseString.split("\\n");
+            //Assert
+            assertEquals(2, linhas.length);
+            int total = 0;
+            for (String linha : linhas) {
+                JsonNode resultado = objectMapper.readTree(linha);
+                assertEquals(10L, resultado.get("produto").get("id").asLong());
+                total += resultado.get("numeroDeItens").asInt();
+            }
+            assertEquals(150, total);
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de reserva de itens de lotes")
+    class LoteReserva {
+
+        @Test
+        @DisplayName("Quando reservo e libero itens de um lote")
+        void reservarELiberarItens() throws Exception {
+            //Act
+            String reservaString = driver.perform(post("/v1/lotes/1/reserva").param("quantidade", "30"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            String liberacaoString = driver.perform(post("/v1/lotes/1/liberacao").param("quantidade", "5"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            //Assert
+            assertEquals(70, objectMapper.readTree(reservaString).get("numeroDeItens").asInt());
+            assertEquals(75, objectMapper.readTree(liberacaoString).get("numeroDeItens").asInt());
+            assertEquals(75, loteRepository.find(1L).getNumeroDeItens());
+        }
+
+        @Test
+        @DisplayName("Quando reservo mais itens do que o lote possui")
+        void reservarAlemDoEstoque() {
+            //Act
+            ServletException thrown = assertThrows(
+                    ServletException.class,
+                    () -> driver.perform(post("/v1/lotes/1/reserva").param("quantidade", "101"))
+            );
+            //Assert
+            assertEquals("Request processing failed: java.lang.RuntimeException: Estoque insuficiente!", thrown.getMessage());
+            assertEquals(100, loteRepository.find(1L).getNumeroDeItens());
+        }
+
+        @Test
+        @DisplayName("Quando reservo uma quantidade nao positiva")
+        void reservarQuantidadeInvalida() {
+            //Act
+            ServletException thrown = assertThrows(
+                    ServletException.class,
+                    () -> driver.perform(post("/v1/lotes/1/reserva").param("quantidade", "0"))
+            );
+            //Assert
+            assertEquals("Request processing failed: java.lang.RuntimeException: Quantidade invalida!", thrown.getMessage());
+        }
+
+        @Test
+        @DisplayName("Quando reservo itens em uma replica")
+        void reservarEmReplica() throws Exception {
+            //Arrange
+            LoteV1Controller controlador = new LoteV1Controller();
+            controlador.loteEstoqueService = Mockito.mock(LoteEstoqueService.class);
+            Mockito.when(controlador.loteEstoqueService.reservar(1L, 30))
+                    .thenThrow(new ReplicaSomenteLeituraException());
+            MockMvc replica = MockMvcBuilders.standaloneSetup(controlador).build();
+
+            //Act
+            //Assert
+            replica.perform(post("/v1/lotes/1/reserva").param("quantidade", "30"))
+                    .andExpect(status().isServiceUnavailable());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de totais de estoque")
+    class LoteTotaisEstoque {
+
+        @Test
+        @DisplayName("Quando consulto os totais de estoque apos uma reserva")
+        void consultarTotaisDeEstoque() throws Exception {
+            //Arrange
+            loteRepository.save(lote.toBuilder().id(2L).numeroDeItens(50).build());
+            driver.perform(post("/v1/lotes/1/reserva").param("quantidade", "30"))
+                    .andExpect(status().isOk());
+            //Act
+            String geralString = driver.perform(get("/v1/lotes/estoque"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            String fabricanteString = driver.perform(get("/v1/lotes/estoque/fabricantes/Empresa Dez"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            String recalculoString = driver.perform(get("/v1/lotes/estoque/resumo").param("recalcular", "true"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            //Assert
+            JsonNode geral = objectMapper.readTree(geralString);
+            assertEquals(120, geral.get("itens").asLong());
+            assertEquals(54000.00, geral.get("valor").asDouble(), 0.001);
+            assertEquals(geral, objectMapper.readTree(fabricanteString));
+            JsonNode recalculo = objectMapper.readTree(recalculoString);
+            assertEquals(geral, recalculo.get("geral"));
+            assertEquals(geral, recalculo.get("porProduto").get("10"));
+        }
+    }
+}
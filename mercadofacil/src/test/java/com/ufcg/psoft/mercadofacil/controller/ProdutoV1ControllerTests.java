@@ -1,6 +1,7 @@
 package com.ufcg.psoft.mercadofacil.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.ufcg.psoft.mercadofacil.model.Produto;
 import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
 import jakarta.servlet.ServletException;
@@ -10,11 +11,20 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -33,12 +43,19 @@ public class ProdutoV1ControllerTests {
 
     @BeforeEach
     void setup() {
-        produto = produtoRepository.find(10L);
+        produto = produtoRepository.save(Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build());
     }
 
     @AfterEach
     void tearDown() {
         produto = null;
+        produtoRepository.deleteAll();
     }
 
     @Nested
@@ -62,7 +79,7 @@ public class ProdutoV1ControllerTests {
             Produto resultado = objectMapper.readValue(responseJsonString, Produto.ProdutoBuilder.class).build();
 
             // Assert
-            assertEquals(resultado.getNome(), "Nome Produto Alterado");
+            assertEquals(resultado.getNome(), "Produto Dez Alterado");
         }
 
         @Test
@@ -247,4 +264,262 @@ public class ProdutoV1ControllerTests {
         }
     }
 
+    @Nested
+    @DisplayName("Conjunto de casos de alteração de produtos em lote")
+    class ProdutoAlteracaoEmLote {
+
+        @Test
+        @DisplayName("Quando altero varios produtos de uma vez")
+        void alterarProdutosEmLote() throws Exception {
+            //Arrange
+            Produto outro = produtoRepository.save(Produto.builder()
+                    .id(11L)
+                    .codigoBarra("7899137500117")
+                    .nome("Produto Onze")
+                    .fabricante("Empresa Onze")
+                    .preco(100.00)
+                    .build());
+            produto.setPreco(475.00);
+            outro.setNome("Produto Onze Alterado");
+            Produto invalido = outro.toBuilder().id(12L).codigoBarra("7899137500104").build();
+            Produto inexistente = outro.toBuilder().id(13L).codigoBarra("7899137500124").build();
+            //Act
+            String responseJsonString = driver.perform(put("/v1/produtos")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(produto, outro, invalido, inexistente))))
+                    .andExpect(status().isOk())
+                    .andDo(print())
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Map<String, Object>> resultado = objectMapper.readValue(responseJsonString, new TypeReference<>() {});
+            //Assert
+            assertEquals(4, resultado.size());
+            assertEquals(true, resultado.get(0).get("sucesso"));
+            assertEquals(true, resultado.get(1).get("sucesso"));
+            assertEquals("Codigo de barra com digito verificador incorreto!", resultado.get(2).get("erro"));
+            assertEquals("Produto nao encontrado!", resultado.get(3).get("erro"));
+            assertEquals(475.00, produtoRepository.find(10L).getPreco());
+            assertEquals("Produto Onze Alterado", produtoRepository.find(11L).getNome());
+        }
+
+        @Test
+        @DisplayName("Quando um elemento do lote esta malformado nenhum produto e alterado")
+        void alterarProdutosEmLoteMalformado() throws Exception {
+            //Arrange
+            produto.setPreco(475.00);
+            String corpo = "[" + objectMapper.writeValueAsString(produto) + ", {\"preco\": \"caro\"}]";
+            //Act
+            driver.perform(put("/v1/produtos")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(corpo))
+                    .andExpect(status().isBadRequest());
+            //Assert
+            assertEquals(450.00, produtoRepository.find(10L).getPreco());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de exportação de produtos")
+    class ProdutoExportacao {
+
+        @Test
+        @DisplayName("Quando exporto todos os produtos em NDJSON")
+        void exportarProdutos() throws Exception {
+            //Arrange
+            produtoRepository.save(produto.toBuilder().id(11L).codigoBarra("7899137500117").build());
+            //Act
+            String responseString = driver.perform(get("/v1/produtos/exportar"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                    .andReturn().getResponse().getContentAsString();
+
+            String[] linhas = responseString.split("\n");
+            //Assert
+            assertEquals(2, linhas.length);
+            for (String linha : linhas) {
+                Produto resultado = objectMapper.readValue(linha, Produto.ProdutoBuilder.class).build();
+                assertEquals("Produto Dez", resultado.getNome());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de paginação de produtos")
+    class ProdutoPaginacao {
+
+        @Test
+        @DisplayName("Quando listo os produtos ordenados por preço a partir de um cursor")
+        void listarProdutosPorPreco() throws Exception {
+            //Arrange
+            produtoRepository.save(produto.toBuilder().id(11L).codigoBarra("7899137500117").preco(100.00).build());
+            produtoRepository.save(produto.toBuilder().id(12L).codigoBarra("7899137500124").preco(900.00).build());
+            //Act
+            String responseJsonString = driver.perform(get("/v1/produtos")
+                            .param("after", "11")
+                            .param("limit", "1")
+                            .param("sort", "preco"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Map<String, Object>> resultado = objectMapper.readValue(responseJsonString, new TypeReference<>() {});
+            //Assert
+            assertEquals(1, resultado.size());
+            assertEquals(10, resultado.get(0).get("id"));
+        }
+
+        @Test
+        @DisplayName("Quando listo os produtos de uma faixa de preço")
+        void listarProdutosPorFaixaDePreco() throws Exception {
+            //Arrange
+            produtoRepository.save(produto.toBuilder().id(11L).codigoBarra("7899137500117").preco(100.00).build());
+            produtoRepository.save(produto.toBuilder().id(12L).codigoBarra("7899137500124").preco(900.00).build());
+            //Act
+            String responseJsonString = driver.perform(get("/v1/produtos")
+                            .param("minPreco", "100")
+                            .param("maxPreco", "500"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Map<String, Object>> resultado = objectMapper.readValue(responseJsonString, new TypeReference<>() {});
+            //Assert
+            assertEquals(2, resultado.size());
+            assertEquals(11, resultado.get(0).get("id"));
+            assertEquals(10, resultado.get(1).get("id"));
+        }
+
+        @Test
+        @DisplayName("Quando a faixa de preço é invertida")
+        void listarProdutosComFaixaInvalida() throws Exception {
+            //Act
+            //Assert
+            driver.perform(get("/v1/produtos")
+                            .param("minPreco", "500")
+                            .param("maxPreco", "100"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(status().reason("Faixa de preco invalida!"));
+        }
+
+        @Test
+        @DisplayName("Quando listo os produtos com uma ordenação desconhecida")
+        void listarProdutosComOrdenacaoInvalida() throws Exception {
+            //Act
+            //Assert
+            driver.perform(get("/v1/produtos")
+                            .param("sort", "nome"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de busca de produtos")
+    class ProdutoBusca {
+
+        @Test
+        @DisplayName("Quando busco produtos por prefixo do nome e do fabricante")
+        void buscarProdutos() throws Exception {
+            //Arrange
+            produtoRepository.save(produto.toBuilder().id(11L).codigoBarra("7899137500117")
+                    .nome("Feijão Carioca").fabricante("Camil").build());
+            //Act
+            String responseJsonString = driver.perform(get("/v1/produtos/search")
+                            .param("q", "feijao cam"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Map<String, Object>> resultado = objectMapper.readValue(responseJsonString, new TypeReference<>() {});
+            //Assert
+            assertEquals(1, resultado.size());
+            assertEquals(11, resultado.get(0).get("id"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos de controle de versao")
+    class ProdutoVersao {
+
+        @Test
+        @DisplayName("Quando altero o produto com If-Match da ETag lida")
+        void alterarComIfMatch() throws Exception {
+            //Arrange
+            String etag = driver.perform(get("/v1/produtos/" + produto.getId()))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader("ETag");
+            produto.setNome("Produto Dez Alterado");
+            //Act
+            String novaEtag = driver.perform(put("/v1/produtos/" + produto.getId())
+                            .header("If-Match", etag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(produto)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader("ETag");
+            //Assert
+            assertEquals("\"1\"", etag);
+            assertEquals("\"2\"", novaEtag);
+            driver.perform(get("/v1/produtos/" + produto.getId()).header("If-None-Match", novaEtag))
+                    .andExpect(status().isNotModified());
+        }
+
+        @Test
+        @DisplayName("Quando altero o produto pedindo resposta assincrona")
+        void alterarAssincrono() throws Exception {
+            //Arrange
+            produto.setNome("Produto Dez Alterado");
+            MvcResult iniciado = driver.perform(put("/v1/produtos/" + produto.getId())
+                            .header("Prefer", "respond-async")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(produto)))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            //Act
+            String novaEtag = driver.perform(asyncDispatch(iniciado))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader("ETag");
+            //Assert
+            assertEquals("\"2\"", novaEtag);
+            assertEquals("Produto Dez Alterado", produtoRepository.find(10L).getNome());
+        }
+
+        @Test
+        @DisplayName("Quando altero o produto com If-Match de uma versao antiga")
+        void alterarComIfMatchDesatualizado() throws Exception {
+            //Arrange
+            produtoRepository.update(produto.toBuilder().nome("Alterado Por Outro").build());
+            produto.setNome("Produto Dez Alterado");
+            //Act
+            driver.perform(put("/v1/produtos/" + produto.getId())
+                            .header("If-Match", "\"1\"")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(produto)))
+                    .andExpect(status().isPreconditionFailed());
+            //Assert
+            assertEquals("Alterado Por Outro", produtoRepository.find(produto.getId()).getNome());
+        }
+    }
+
+    @Nested
+    @DisplayName("Conjunto de casos do relatorio de memoria")
+    class ProdutoMemoria {
+
+        @Test
+        @DisplayName("Quando consulto a memoria economizada no fabricante")
+        void relatorioDoFabricante() throws Exception {
+            //Arrange
+            for (long id = 11; id <= 13; id++) {
+                produtoRepository.save(produto.toBuilder().id(id).codigoBarra("cb-" + id)
+                        .fabricante(new String("Empresa Dez")).build());
+            }
+            //Act
+            String responseJsonString = driver.perform(get("/v1/produtos/memoria"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            List<Map<String, Object>> resultado = objectMapper.readValue(responseJsonString, new TypeReference<>() {});
+            //Assert
+            assertEquals(1, resultado.size());
+            assertEquals("fabricante", resultado.get(0).get("campo"));
+            assertEquals(4, resultado.get(0).get("referencias"));
+            assertEquals(1, resultado.get(0).get("entradas"));
+            assertSame(produtoRepository.find(10L).getFabricante(), produtoRepository.find(13L).getFabricante());
+        }
+    }
 }
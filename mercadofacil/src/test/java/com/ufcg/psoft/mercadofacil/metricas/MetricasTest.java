@@ -0,0 +1,151 @@
+package com.ufcg.psoft.mercadofacil.metricas;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import com.ufcg.psoft.mercadofacil.service.ProdutoAlterarService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@DisplayName("Testes das metricas")
+class MetricasTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    ProdutoAlterarService produtoAlterarService;
+
+    @Autowired
+    ProdutoRepository<Produto, Long> produtoRepository;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        produto = produtoRepository.save(Produto.builder()
+                .id(10L)
+                .codigoBarra("7899137500100")
+                .nome("Produto Dez")
+                .fabricante("Empresa Dez")
+                .preco(450.00)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        produtoRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Cada motivo de rejeicao tem seu proprio contador")
+    void contarFalhasPorMotivo() {
+        //Arrange
+        double precoAntes = falhas(MetricasValidacao.PRECO_INVALIDO);
+        double digitoAntes = falhas("DIGITO_VERIFICADOR_INVALIDO");
+
+        //Act
+        assertThrows(RuntimeException.class,
+                () -> produtoAlterarService.alterar(produto.toBuilder().preco(0).build()));
+        assertThrows(RuntimeException.class,
+                () -> produtoAlterarService.alterar(produto.toBuilder().codigoBarra("7899137500104").build()));
+        assertThrows(RuntimeException.class,
+                () -> produtoAlterarService.alterar(produto.toBuilder().codigoBarra("7899137500105").build()));
+
+        //Assert
+        assertEquals(precoAntes + 1, falhas(MetricasValidacao.PRECO_INVALIDO));
+        assertEquals(digitoAntes + 2, falhas("DIGITO_VERIFICADOR_INVALIDO"));
+    }
+
+    @Test
+    @DisplayName("Metodos do servico e do repositorio sao medidos")
+    void medirServicoERepositorio() {
+        //Arrange
+        double servicoAntes = chamadas(MetricasConfig.SERVICO, "ProdutoAlterarImplService", "alterar");
+        double repositorioAntes = chamadas(MetricasConfig.REPOSITORIO, "ProdutoCacheRepository", "update");
+
+        //Act
+        produtoAlterarService.alterar(produto.toBuilder().nome("Produto Alterado").build());
+
+        //Assert
+        assertEquals(servicoAntes + 1, chamadas(MetricasConfig.SERVICO, "ProdutoAlterarImplService", "alterar"));
+        assertEquals(repositorioAntes + 1, chamadas(MetricasConfig.REPOSITORIO, "ProdutoCacheRepository", "update"));
+    }
+
+    @Test
+    @DisplayName("O armazenamento por tras do cache nao e medido")
+    void armazenamentoNaoMedido() {
+        //Act
+        produtoRepository.find(10L);
+
+        //Assert
+        assertNull(registry.find(MetricasConfig.REPOSITORIO + ".chamadas")
+                .tag("classe", "VolatilProdutoRepository").functionCounter());
+    }
+
+    @Test
+    @DisplayName("Acertos e faltas do cache de produtos sao publicados")
+    void medirCacheDeProdutos() {
+        //Arrange
+        double acertosAntes = cache("hit");
+        double faltasAntes = cache("miss");
+
+        //Act
+        produtoRepository.find(10L);
+        produtoRepository.find(10L);
+
+        //Assert
+        assertEquals(faltasAntes + 1, cache("miss"));
+        assertEquals(acertosAntes + 1, cache("hit"));
+    }
+
+    @Test
+    @DisplayName("O endpoint do Prometheus expoe as metricas com histogramas")
+    void endpointPrometheus() throws Exception {
+        //Arrange
+        mockMvc.perform(get("/v1/produtos")).andExpect(status().isOk());
+
+        //Act
+        String resposta = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        assertTrue(resposta.contains("mercadofacil_produto_validacao_falhas_total{motivo=\"PRECO_INVALIDO\""));
+        assertTrue(resposta.contains("mercadofacil_repositorio_seconds_bucket{"));
+        assertTrue(resposta.contains("http_server_requests_seconds_bucket{"));
+    }
+
+    private double falhas(String motivo) {
+        return registry.get(MetricasValidacao.FALHAS).tag("motivo", motivo).counter().count();
+    }
+
+    private double chamadas(String nome, String classe, String metodo) {
+        var contador = registry.find(nome + ".chamadas").tag("classe", classe).tag("metodo", metodo).functionCounter();
+        return contador == null ? 0 : contador.count();
+    }
+
+    private double cache(String resultado) {
+        return registry.get("cache.gets").tag("cache", "produtos").tag("result", resultado).functionCounter().count();
+    }
+}
@@ -0,0 +1,153 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes dos codecs binarios de Produto e Lote")
+class CodecBinarioTest {
+
+    static final int CASOS = 10_000;
+
+    static final String[] PEDACOS = {"a", "Z", "9", " ", "ç", "ã", "€", "日本", "😀", "\u0000", "-"};
+
+    ProdutoCodec produtoCodec = new ProdutoCodec();
+
+    LoteCodec loteCodec = new LoteCodec();
+
+    @Test
+    @DisplayName("Produtos aleatorios voltam iguais apos codificar e decodificar")
+    void produtoIdaEVolta() {
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < CASOS; i++) {
+            Produto produto = produtoAleatorio(aleatorio);
+            for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)}) {
+                produtoCodec.codificar(produto, buffer);
+                buffer.flip();
+
+                assertEquals(produto, produtoCodec.decodificar(buffer));
+                assertFalse(buffer.hasRemaining());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Lotes aleatorios voltam iguais, com o produto apenas pelo id")
+    void loteIdaEVolta() {
+        Random aleatorio = new Random(7);
+        for (int i = 0; i < CASOS; i++) {
+            Lote lote = Lote.builder()
+                    .id(aleatorio.nextBoolean() ? aleatorio.nextLong() : null)
+                    .produto(aleatorio.nextBoolean() ? produtoAleatorio(aleatorio).toBuilder()
+                            .id(aleatorio.nextLong()).build() : null)
+                    .numeroDeItens(aleatorio.nextInt())
+                    .versao(aleatorio.nextBoolean() ? aleatorio.nextLong() : null)
+                    .build();
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            loteCodec.codificar(lote, buffer);
+            buffer.flip();
+
+            Lote decodificado = loteCodec.decodificar(buffer);
+
+            assertEquals(lote.getId(), decodificado.getId());
+            assertEquals(lote.getNumeroDeItens(), decodificado.getNumeroDeItens());
+            assertEquals(lote.getVersao(), decodificado.getVersao());
+            if (lote.getProduto() == null) {
+                assertNull(decodificado.getProduto());
+            } else {
+                assertEquals(Produto.builder().id(lote.getProduto().getId()).build(), decodificado.getProduto());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Lote decodificado recebe o produto da funcao de resolucao")
+    void loteResolveProduto() {
+        Produto produto = Produto.builder().id(10L).nome("Produto Dez").build();
+        LoteCodec codec = new LoteCodec(id -> id == 10L ? produto : null);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.codificar(Lote.builder().id(1L).produto(Produto.builder().id(10L).build()).numeroDeItens(5).build(),
+                buffer);
+        buffer.flip();
+
+        assertEquals("Produto Dez", codec.decodificar(buffer).getProduto().getNome());
+    }
+
+    @Test
+    @DisplayName("Codigo EAN-13 com zeros a esquerda ocupa 8 bytes e volta igual")
+    void eanEmpacotado() {
+        Produto produto = Produto.builder().codigoBarra("0000000000017").build();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        produtoCodec.codificar(produto, buffer);
+        buffer.flip();
+
+        assertEquals(1 + Double.BYTES + Long.BYTES, buffer.remaining());
+        assertEquals("0000000000017", produtoCodec.decodificar(buffer).getCodigoBarra());
+    }
+
+    @Test
+    @DisplayName("Strings sao gravadas em UTF-8 com o tamanho em bytes")
+    void stringUtf8() {
+        for (String texto : new String[] {"", "abc", "Açúcar € 😀", "x".repeat(300)}) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            Binario.escreverString(texto, buffer);
+            buffer.flip();
+            int tamanho = Binario.lerVarInt(buffer.duplicate());
+            byte[] esperado = texto.getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(esperado.length, tamanho);
+            assertEquals(texto, Binario.lerString(buffer));
+        }
+    }
+
+    @Test
+    @DisplayName("Buffer sem espaco lanca BufferOverflowException")
+    void bufferSemEspaco() {
+        Produto produto = Produto.builder().nome("Nome longo demais para o buffer").build();
+
+        assertThrows(BufferOverflowException.class, () -> produtoCodec.codificar(produto, ByteBuffer.allocate(16)));
+    }
+
+    static Produto produtoAleatorio(Random aleatorio) {
+        return Produto.builder()
+                .id(aleatorio.nextBoolean() ? aleatorio.nextLong() : null)
+                .nome(textoAleatorio(aleatorio))
+                .preco(aleatorio.nextInt(10) == 0 ? Double.NaN : aleatorio.nextDouble() * 1000)
+                .codigoBarra(codigoAleatorio(aleatorio))
+                .fabricante(textoAleatorio(aleatorio))
+                .versao(aleatorio.nextBoolean() ? aleatorio.nextLong() : null)
+                .build();
+    }
+
+    static String codigoAleatorio(Random aleatorio) {
+        switch (aleatorio.nextInt(3)) {
+            case 0:
+                return null;
+            case 1:
+                return String.format("%013d", (long) (aleatorio.nextDouble() * 1e13));
+            default:
+                return textoAleatorio(aleatorio);
+        }
+    }
+
+    static String textoAleatorio(Random aleatorio) {
+        if (aleatorio.nextInt(8) == 0) {
+            return null;
+        }
+        StringBuilder texto = new StringBuilder();
+        int pedacos = aleatorio.nextInt(40);
+        for (int i = 0; i < pedacos; i++) {
+            texto.append(PEDACOS[aleatorio.nextInt(PEDACOS.length)]);
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ufcg.psoft.mercadofacil.persistencia;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.RelatorioDicionario;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do dicionario de textos repetidos")
+class DicionarioTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Textos iguais recebem o mesmo codigo e a mesma instancia")
+    void codigoEInstanciaCanonica() {
+        Dicionario dicionario = new Dicionario("teste", 10);
+        String primeiro = new String("Fabricante Base");
+        String copia = new String("Fabricante Base");
+
+        int codigo = dicionario.adquirir(primeiro);
+
+        assertEquals(codigo, dicionario.adquirir(copia));
+        assertEquals(codigo, dicionario.codigoExistente(copia));
+        assertSame(primeiro, dicionario.canonico(copia));
+        assertSame(primeiro, dicionario.texto(codigo));
+        assertEquals(Dicionario.SEM_CODIGO, dicionario.codigoExistente("Outro"));
+        assertEquals(Dicionario.SEM_CODIGO, dicionario.adquirir(null));
+        assertNull(dicionario.canonico(null));
+    }
+
+    @Test
+    @DisplayName("Dicionario cheio devolve o proprio texto sem codigo")
+    void dicionarioCheio() {
+        Dicionario dicionario = new Dicionario("teste", 2);
+        dicionario.adquirir("a");
+        dicionario.adquirir("b");
+        String novo = new String("c");
+
+        assertEquals(Dicionario.SEM_CODIGO, dicionario.adquirir(novo));
+        assertSame(novo, dicionario.canonico(novo));
+        assertEquals(1, dicionario.adquirir("b"));
+    }
+
+    @Test
+    @DisplayName("Relatorio compara uma String por referencia com as entradas do dicionario")
+    void relatorio() {
+        Dicionario dicionario = new Dicionario("teste", 10);
+        for (int i = 0; i < 100; i++) {
+            dicionario.canonico(new String("Fabricante " + (i % 2)));
+        }
+
+        RelatorioDicionario relatorio = dicionario.relatorio(
+                Stream.of("Fabricante 0", "Fabricante 1", "Fabricante 0", null));
+
+        assertEquals(2, relatorio.getEntradas());
+        assertEquals(3, relatorio.getReferencias());
+        assertEquals(3 * Dicionario.bytesDaString("Fabricante 0"), relatorio.getBytesSemDicionario());
+        assertEquals(relatorio.getBytesSemDicionario() - relatorio.getBytesDicionario(),
+                relatorio.getBytesEconomizados());
+        assertEquals(98, relatorio.getCopiasDescartadas());
+    }
+
+    @Test
+    @DisplayName("Texto sem referencias sai do dicionario e o codigo volta a ser usado")
+    void soltarRemoveEntrada() {
+        Dicionario dicionario = new Dicionario("teste", 10);
+        String canonico = dicionario.canonico(new String("Fabricante Base"));
+        dicionario.canonico(new String("Fabricante Base"));
+        int codigo = dicionario.codigoExistente("Fabricante Base");
+
+        dicionario.soltar(canonico);
+        dicionario.soltar(new String("Fabricante Base"));
+
+        assertEquals(codigo, dicionario.codigoExistente("Fabricante Base"));
+
+        dicionario.soltar(codigo);
+
+        assertEquals(Dicionario.SEM_CODIGO, dicionario.codigoExistente("Fabricante Base"));
+        assertNull(dicionario.texto(codigo));
+        assertEquals(0, dicionario.relatorio(Stream.empty()).getEntradas());
+        assertEquals(0, dicionario.relatorio(Stream.empty()).getBytesDicionario());
+        assertEquals(codigo, dicionario.adquirir("Fabricante Novo"));
+    }
+
+    @Test
+    @DisplayName("Limpar esquece todas as entradas")
+    void limpar() {
+        Dicionario dicionario = new Dicionario("teste", 2);
+        dicionario.adquirir("a");
+        dicionario.adquirir("b");
+
+        dicionario.limpar();
+
+        assertEquals(Dicionario.SEM_CODIGO, dicionario.codigoExistente("a"));
+        assertEquals(0, dicionario.relatorio(Stream.empty()).getEntradas());
+        assertNotEquals(Dicionario.SEM_CODIGO, dicionario.adquirir("c"));
+    }
+
+    @Test
+    @DisplayName("Desserializar JSON nao passa pelo dicionario")
+    void desserializacaoNaoRegistra() throws Exception {
+        String produtoJson = "{\"id\":1,\"nome\":\"Produto\",\"fabricante\":\"Fabricante Json\",\"preco\":2.5}";
+
+        Produto primeiro = objectMapper.readValue(produtoJson, Produto.ProdutoBuilder.class).build();
+        Produto segundo = objectMapper.readValue(produtoJson, Produto.ProdutoBuilder.class).build();
+
+        assertEquals("Fabricante Json", primeiro.getFabricante());
+        assertNotSame(primeiro.getFabricante(), segundo.getFabricante());
+    }
+}
@@ -0,0 +1,282 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do repositorio colunar de Produtos")
+class ColunarProdutoRepositoryTest {
+
+    ColunarProdutoRepository driver;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        driver = new ColunarProdutoRepository();
+        produto = Produto.builder()
+                .id(1L)
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Salvar e buscar Produto guardado fora do heap")
+    void salvarEBuscar() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("cb-2").nome("Café Pilão").fabricante(null).build());
+
+        Produto lido = driver.find(1L);
+        Produto semFabricante = driver.find(2L);
+
+        assertEquals(produto.toBuilder().versao(1L).build(), lido);
+        assertEquals("cb-2", semFabricante.getCodigoBarra());
+        assertEquals("Café Pilão", semFabricante.getNome());
+        assertNull(semFabricante.getFabricante());
+        assertNull(driver.find(3L));
+    }
+
+    @Test
+    @DisplayName("Update e delete mantem os indices secundarios consistentes")
+    void updateEDeleteAtualizamIndices() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("cb-2").build());
+
+        driver.update(produto.toBuilder().codigoBarra("7899137500117").fabricante("Fabricante Novo").build());
+        driver.delete(produto.toBuilder().id(2L).build());
+
+        assertNull(driver.findByCodigoBarra("7899137500100"));
+        assertNull(driver.findByCodigoBarra("cb-2"));
+        assertEquals(1L, driver.findByCodigoBarra("7899137500117").getId());
+        assertTrue(driver.findByFabricante("Fabricante Base").isEmpty());
+        assertEquals(1, driver.findByFabricante("Fabricante Novo").size());
+        assertEquals(List.of(1L), ids(driver.findAll()));
+    }
+
+    @Test
+    @DisplayName("Codigo de barras repetido em outro Produto")
+    void codigoBarraRepetido() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("cb-2").build());
+
+        RuntimeException ean = assertThrows(
+                RuntimeException.class,
+                () -> driver.save(produto.toBuilder().id(3L).build())
+        );
+        RuntimeException texto = assertThrows(
+                RuntimeException.class,
+                () -> driver.save(produto.toBuilder().id(4L).codigoBarra("cb-2").build())
+        );
+
+        assertEquals("Codigo de barra ja cadastrado!", ean.getMessage());
+        assertEquals("Codigo de barra ja cadastrado!", texto.getMessage());
+        assertNull(driver.find(3L));
+        assertNull(driver.find(4L));
+        assertEquals(2, driver.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Update com versao desatualizada e rejeitado e nao altera o Produto")
+    void updateComVersaoDesatualizada() {
+        Produto lido = driver.save(produto);
+        Produto atualizado = driver.update(lido.toBuilder().nome("Primeira Alteracao").build());
+
+        assertThrows(
+                ConflitoDeVersaoException.class,
+                () -> driver.update(lido.toBuilder().nome("Segunda Alteracao").build())
+        );
+
+        assertEquals(2L, atualizado.getVersao());
+        assertEquals("Primeira Alteracao", driver.find(1L).getNome());
+    }
+
+    @Test
+    @DisplayName("Buscar por prefixo, faixa de preco e paginar atravessando segmentos")
+    void consultasAtravessandoSegmentos() {
+        int total = ColunarProdutoRepository.POSICOES_POR_SEGMENTO + 10;
+        for (long id = 1; id <= total; id++) {
+            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(id % 100).build());
+        }
+        driver.update(produto.toBuilder().id((long) total).codigoBarra("cb-" + total)
+                .nome("Açúcar Refinado").fabricante("União").preco(99.5).build());
+
+        assertEquals(List.of((long) total), ids(driver.search("acucar uni", 20)));
+        assertEquals(List.of((long) total), ids(driver.findMaisCaros(1)));
+        assertEquals(List.of(total - 1L), ids(driver.findPage(total - 2L, 20, Ordenacao.ID)).subList(0, 1));
+        assertEquals(20, driver.findByPreco(10, 10, null, 20).size());
+        assertEquals(total, driver.streamAll().count());
+    }
+
+    @Test
+    @DisplayName("Posicao de Produto removido e reaproveitada sem afetar o antigo id")
+    void reaproveitaPosicao() {
+        driver.save(produto);
+        long bytes = driver.bytesForaDoHeap();
+
+        driver.delete(produto);
+        driver.save(produto.toBuilder().id(2L).build());
+
+        assertNull(driver.find(1L));
+        assertEquals(2L, driver.findByCodigoBarra("7899137500100").getId());
+        assertEquals(bytes, driver.bytesForaDoHeap());
+    }
+
+    @Test
+    @DisplayName("Leituras concorrentes com escritas nunca veem um Produto pela metade")
+    void leiturasConcorrentes() throws Exception {
+        driver.save(produto.toBuilder().nome("Produto 0").preco(0).build());
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> leitores = new ArrayList<>();
+        try {
+            for (int t = 0; t < 3; t++) {
+                leitores.add(executor.submit(() -> {
+                    while (escrevendo.get()) {
+                        Produto lido = driver.find(1L);
+                        assertEquals("Produto " + (long) lido.getPreco(), lido.getNome());
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                driver.update(produto.toBuilder().nome("Produto " + i).preco(i).build());
+            }
+            escrevendo.set(false);
+            for (Future<?> leitor : leitores) {
+                leitor.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(20_001L, driver.find(1L).getVersao());
+    }
+
+    @Test
+    @DisplayName("Fabricante sem Produto sai do dicionario e deleteAll o esvazia")
+    void dicionarioAcompanhaProdutos() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("cb-2").build());
+
+        driver.update(produto.toBuilder().fabricante("Fabricante Novo").build());
+        assertEquals(2, driver.relatorioMemoria().get(0).getEntradas());
+
+        driver.delete(produto.toBuilder().id(2L).build());
+        assertEquals(1, driver.relatorioMemoria().get(0).getEntradas());
+        assertEquals(1, driver.relatorioMemoria().get(0).getReferencias());
+        assertEquals(1, driver.findByFabricante("Fabricante Novo").size());
+
+        driver.deleteAll();
+        assertEquals(0, driver.relatorioMemoria().get(0).getEntradas());
+    }
+
+    @Test
+    @DisplayName("Leituras concorrentes nunca veem o fabricante de um codigo reaproveitado")
+    void leiturasComCodigoReaproveitado() throws Exception {
+        driver.save(produto.toBuilder().fabricante("Fabricante 0").preco(0).build());
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> leitores = new ArrayList<>();
+        try {
+            for (int t = 0; t < 3; t++) {
+                leitores.add(executor.submit(() -> {
+                    while (escrevendo.get()) {
+                        Produto lido = driver.find(1L);
+                        assertEquals("Fabricante " + (long) lido.getPreco(), lido.getFabricante());
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 1; i <= 20_000; i++) {
+                driver.update(produto.toBuilder().fabricante("Fabricante " + i).preco(i).build());
+            }
+            escrevendo.set(false);
+            for (Future<?> leitor : leitores) {
+                leitor.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, driver.relatorioMemoria().get(0).getEntradas());
+    }
+
+    @Test
+    @DisplayName("Textos substituidos por updates sao compactados e nao esgotam a arena")
+    void compactaTextosSubstituidos() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("cb-2").nome("Produto Dois").build());
+        driver.save(produto.toBuilder().id(3L).codigoBarra("cb-3").build());
+        driver.delete(produto.toBuilder().id(3L).build());
+        long antes = driver.bytesForaDoHeap();
+
+        for (int i = 0; i < 300_000; i++) {
+            driver.update(produto.toBuilder().nome("Produto com um nome bem comprido numero " + i).build());
+        }
+
+        assertTrue(driver.bytesForaDoHeap() - antes <= ColunarProdutoRepository.LIXO_MINIMO);
+        assertEquals("Produto com um nome bem comprido numero 299999", driver.find(1L).getNome());
+        assertEquals("Produto Dois", driver.findByCodigoBarra("cb-2").getNome());
+        assertEquals(List.of(1L, 2L), ids(driver.findByFabricante("Fabricante Base")));
+        assertNull(driver.find(3L));
+    }
+
+    @Test
+    @DisplayName("deleteAll concorrente com leituras nunca mistura textos de outra geracao")
+    void deleteAllConcorrenteComLeituras() throws Exception {
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> leitores = new ArrayList<>();
+        try {
+            for (int t = 0; t < 3; t++) {
+                leitores.add(executor.submit(() -> {
+                    while (escrevendo.get()) {
+                        for (Produto lido : driver.findAll()) {
+                            assertEquals("Produto " + lido.getId(), lido.getNome());
+                        }
+                        Produto lido = driver.find(7L);
+                        assertTrue(lido == null || "Produto 7".equals(lido.getNome()));
+                    }
+                    return null;
+                }));
+            }
+            for (int rodada = 0; rodada < 500; rodada++) {
+                for (long id = 1; id <= 20; id++) {
+                    driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).nome("Produto " + id).build());
+                }
+                driver.deleteAll();
+            }
+            escrevendo.set(false);
+            for (Future<?> leitor : leitores) {
+                leitor.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(driver.findAll().isEmpty());
+    }
+
+    private static List<Long> ids(List<Produto> produtos) {
+        return produtos.stream().map(Produto::getId).toList();
+    }
+}
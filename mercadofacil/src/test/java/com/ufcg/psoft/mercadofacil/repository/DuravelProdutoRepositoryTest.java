@@ -0,0 +1,343 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.persistencia.LogDeEscrita;
+import com.ufcg.psoft.mercadofacil.persistencia.ProdutoCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do repositorio duravel de Produtos")
+class DuravelProdutoRepositoryTest {
+
+    @TempDir
+    Path diretorio;
+
+    DuravelProdutoRepository driver;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() throws IOException {
+        driver = abrir(1000);
+        produto = Produto.builder()
+                .id(1L)
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        driver.close();
+    }
+
+    DuravelProdutoRepository abrir(long registrosPorSnapshot) throws IOException {
+        return new DuravelProdutoRepository(diretorio, new ProdutoCodec(),
+                new LogDeEscrita.Configuracao(registrosPorSnapshot, 4096, true));
+    }
+
+    DuravelProdutoRepository reiniciar(long registrosPorSnapshot) throws IOException {
+        driver.close();
+        driver = abrir(registrosPorSnapshot);
+        return driver;
+    }
+
+    @Test
+    @DisplayName("Save, update e delete sobrevivem ao reinicio")
+    void escritasSobrevivemAoReinicio() throws IOException {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").build());
+        driver.update(produto.toBuilder().nome("Produto Alterado").preco(10).build());
+        driver.delete(Produto.builder().id(2L).build());
+
+        reiniciar(1000);
+
+        assertEquals("Produto Alterado", driver.find(1L).getNome());
+        assertEquals(10, driver.find(1L).getPreco());
+        assertNull(driver.find(2L));
+        assertEquals(1L, driver.findByCodigoBarra("7899137500100").getId());
+        assertNull(driver.findByCodigoBarra("7899137500117"));
+    }
+
+    @Test
+    @DisplayName("Ids gerados continuam depois do maior id recuperado")
+    void idsContinuamAposReinicio() throws IOException {
+        driver.save(produto.toBuilder().id(null).build());
+        driver.save(produto.toBuilder().id(null).codigoBarra("7899137500117").build());
+
+        reiniciar(1000);
+        Produto novo = driver.save(produto.toBuilder().id(null).codigoBarra("7899137500124").build());
+
+        assertEquals(3L, novo.getId());
+    }
+
+    @Test
+    @DisplayName("DeleteAll tambem e registrado no log")
+    void deleteAllSobreviveAoReinicio() throws IOException {
+        driver.save(produto);
+        driver.deleteAll();
+        driver.save(produto.toBuilder().id(2L).build());
+
+        reiniciar(1000);
+
+        assertNull(driver.find(1L));
+        assertEquals(1, driver.findAll().size());
+        assertEquals(2L, driver.findByCodigoBarra("7899137500100").getId());
+    }
+
+    @Test
+    @DisplayName("Snapshot compacta o log e o estado e recuperado a partir dele")
+    void snapshotCompactaOLog() throws IOException {
+        reiniciar(10);
+        for (long id = 1; id <= 25; id++) {
+            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).build());
+        }
+        for (long id = 1; id <= 25; id++) {
+            driver.update(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(id).build());
+        }
+
+        reiniciar(10);
+
+        assertTrue(Files.exists(diretorio.resolve("produtos.snapshot")));
+        assertTrue(Files.size(diretorio.resolve("produtos.log")) < 10 * 200);
+        assertEquals(25, driver.findAll().size());
+        for (long id = 1; id <= 25; id++) {
+            assertEquals(id, driver.find(id).getPreco());
+        }
+    }
+
+    @Test
+    @DisplayName("Codigo de barras trocado entre produtos e reconstruido apos snapshot")
+    void trocaDeCodigoBarraAposSnapshot() throws IOException {
+        reiniciar(3);
+        driver.save(produto);
+        driver.update(produto.toBuilder().codigoBarra("7899137500117").build());
+        driver.save(produto.toBuilder().id(2L).build());
+        driver.update(produto.toBuilder().id(2L).nome("Produto Dois").build());
+
+        reiniciar(3);
+
+        assertEquals(1L, driver.findByCodigoBarra("7899137500117").getId());
+        assertEquals(2L, driver.findByCodigoBarra("7899137500100").getId());
+    }
+
+    @Test
+    @DisplayName("Registro incompleto no fim do log e descartado na recuperacao")
+    void registroIncompletoDescartado() throws IOException {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").build());
+        driver.close();
+        Path log = diretorio.resolve("produtos.log");
+        long tamanho = Files.size(log);
+        try (FileChannel canal = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            canal.truncate(tamanho - 3);
+            canal.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2}), canal.size());
+        }
+
+        driver = abrir(1000);
+        driver.save(produto.toBuilder().id(3L).codigoBarra("7899137500124").build());
+        reiniciar(1000);
+
+        assertNotNull(driver.find(1L));
+        assertNull(driver.find(2L));
+        assertNotNull(driver.find(3L));
+    }
+
+    @Test
+    @DisplayName("Escritas concorrentes sao todas recuperadas")
+    void escritasConcorrentesRecuperadas() throws Exception {
+        reiniciar(500);
+        int threads = 16;
+        int rodadas = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long id = t + 1;
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < rodadas; i++) {
+                        driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(i).build());
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        reiniciar(500);
+
+        assertEquals(threads, driver.findAll().size());
+        for (long id = 1; id <= threads; id++) {
+            assertEquals(rodadas - 1, driver.find(id).getPreco());
+        }
+    }
+
+    @Test
+    @DisplayName("DeleteAll concorrente com escritas recupera o mesmo estado da memoria")
+    void deleteAllConcorrenteComEscritas() throws Exception {
+        int threads = 8;
+        int rodadas = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long primeiro = t * rodadas + 1L;
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (long id = primeiro; id < primeiro + rodadas; id++) {
+                        driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).build());
+                    }
+                    return null;
+                }));
+            }
+            tarefas.add(executor.submit(() -> {
+                largada.await();
+                for (int i = 0; i < 50; i++) {
+                    driver.deleteAll();
+                    Thread.yield();
+                }
+                return null;
+            }));
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        List<Long> antes = driver.findAll().stream().map(Produto::getId).sorted().toList();
+
+        reiniciar(1000);
+
+        assertEquals(antes, driver.findAll().stream().map(Produto::getId).sorted().toList());
+    }
+
+    @Test
+    @DisplayName("Escrita adiada com fila pequena grava tudo ate o close")
+    void escritaAdiadaGravaAteOClose() throws Exception {
+        driver.close();
+        driver = new DuravelProdutoRepository(diretorio, new ProdutoCodec(),
+                new LogDeEscrita.Configuracao(1000, 4096, true, 4, true));
+        int threads = 8;
+        int rodadas = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long id = t + 1;
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < rodadas; i++) {
+                        driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(i).build());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Produto duravel = driver.updateAsync(driver.find(1L).toBuilder().nome("Produto Duravel").build())
+                .get(10, TimeUnit.SECONDS);
+
+        reiniciar(1000);
+
+        assertEquals("Produto Duravel", duravel.getNome());
+        assertEquals("Produto Duravel", driver.find(1L).getNome());
+        for (long id = 1; id <= threads; id++) {
+            assertEquals(rodadas - 1, driver.find(id).getPreco());
+        }
+    }
+
+    @Test
+    @DisplayName("Close concorrente com escritas nao deixa nenhuma esperando para sempre")
+    void closeConcorrenteComEscritas() throws Exception {
+        int threads = 8;
+        CountDownLatch escrevendo = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long id = t + 1;
+                tarefas.add(executor.submit(() -> {
+                    escrevendo.countDown();
+                    try {
+                        for (int i = 0; ; i++) {
+                            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(i).build());
+                        }
+                    } catch (IllegalStateException e) {
+                        assertEquals("Log de escrita fechado!", e.getMessage());
+                    }
+                    return null;
+                }));
+            }
+            escrevendo.await();
+            driver.close();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("UpdateAsync com versao desatualizada devolve futuro com falha")
+    void updateAsyncComConflito() {
+        Produto salvo = driver.save(produto);
+        driver.update(salvo);
+
+        CompletableFuture<Produto> futuro = driver.updateAsync(salvo.toBuilder().nome("Outro Nome").build());
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, futuro::get);
+        assertInstanceOf(ConflitoDeVersaoException.class, thrown.getCause());
+        assertEquals("Produto Base", driver.find(1L).getNome());
+    }
+
+    @Test
+    @DisplayName("UpdateAll devolve a falha de gravacao de cada item em vez de lancar")
+    void updateAllComFalhaDeGravacao() throws IOException {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").build());
+        driver.close();
+
+        List<ResultadoAtualizacao<Produto>> resultado = driver.updateAll(List.of(
+                produto.toBuilder().nome("Outro Nome").build(),
+                produto.toBuilder().id(3L).build()));
+
+        assertEquals(ResultadoAtualizacao.Falha.GRAVACAO_FALHOU, resultado.get(0).falha());
+        assertEquals(ResultadoAtualizacao.Falha.NAO_ENCONTRADO, resultado.get(1).falha());
+    }
+}
@@ -0,0 +1,73 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do mapa de id primitivo para entidade")
+class MapaPorIdTest {
+
+    MapaPorId<String> driver = new MapaPorId<>();
+
+    @Test
+    @DisplayName("Gravar, substituir e remover sobrevivem ao crescimento e as posicoes removidas")
+    void gravarSubstituirRemover() {
+        for (long id = -50_000; id < 50_000; id++) {
+            assertNull(driver.put(id, "v" + id));
+        }
+        for (long id = -50_000; id < 50_000; id += 2) {
+            assertEquals("v" + id, driver.remover(id));
+        }
+        for (long id = -50_000; id < 50_000; id += 4) {
+            assertNull(driver.putSeAusente(id, "n" + id));
+            assertEquals("n" + id, driver.putSeAusente(id, "x"));
+        }
+
+        assertEquals(75_000, driver.tamanho());
+        assertEquals(75_000, driver.valores().count());
+        assertEquals("v-49999", driver.get(-49_999));
+        assertEquals("n-49996", driver.get(-49_996));
+        assertNull(driver.get(-49_998));
+        assertNull(driver.remover(-49_998));
+        assertEquals("v1", driver.put(1, "w1"));
+        assertEquals("w1", driver.get(1));
+        assertFalse(driver.contem(Long.MIN_VALUE));
+
+        driver.limpar();
+
+        assertEquals(0, driver.tamanho());
+        assertNull(driver.get(1));
+    }
+
+    @Test
+    @DisplayName("Leituras durante gravacoes concorrentes sempre encontram as chaves ja gravadas")
+    void leiturasConcorrentes() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> futuros = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            long base = t * 1_000_000L;
+            futuros.add(executor.submit(() -> {
+                for (long id = base; id < base + 100_000; id++) {
+                    driver.put(id, "v" + id);
+                    if (!("v" + id).equals(driver.get(id)) || !("v" + base).equals(driver.get(base))) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> futuro : futuros) {
+            assertTrue(futuro.get());
+        }
+        executor.shutdown();
+
+        assertEquals(200_000, driver.tamanho());
+    }
+}
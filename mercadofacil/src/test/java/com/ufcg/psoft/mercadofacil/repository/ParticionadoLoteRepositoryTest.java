@@ -0,0 +1,174 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do repositorio particionado de Lotes")
+class ParticionadoLoteRepositoryTest {
+
+   ParticionadoLoteRepository driver;
+
+   VolatilLoteRepository referencia;
+
+   Lote lote;
+
+   @BeforeEach
+   void setup() {
+       driver = new ParticionadoLoteRepository(8);
+       referencia = new VolatilLoteRepository();
+       lote = Lote.builder()
+               .numeroDeItens(100)
+               .produto(Produto.builder().id(1L).fabricante("Fabricante Base").preco(125.36).build())
+               .build();
+   }
+
+   @AfterEach
+   void tearDown() {
+       driver.close();
+   }
+
+   @Test
+   @DisplayName("Lotes sao gravados na particao do id e encontrados por ela")
+   void operacoesPontuaisVaoParaAParticaoDoId() {
+       //Arrange
+       List<Lote> salvos = new ArrayList<>();
+       for (int i = 0; i < 200; i++) {
+           salvos.add(driver.save(lote));
+       }
+
+       //Act
+       driver.reservar(7L, 30);
+       driver.update(driver.find(8L).toBuilder().numeroDeItens(5).build());
+       driver.delete(salvos.get(8));
+
+       //Assert
+       assertEquals(1L, salvos.get(0).getId());
+       assertEquals(200L, salvos.get(199).getId());
+       assertEquals(70, driver.find(7L).getNumeroDeItens());
+       assertEquals(5, driver.find(8L).getNumeroDeItens());
+       assertNull(driver.find(9L));
+       assertEquals(199, driver.findAll().size());
+       try (Stream<Lote> todos = driver.streamAll()) {
+           assertEquals(199 * 100 - 30 - 95, todos.mapToLong(Lote::getNumeroDeItens).sum());
+       }
+       for (VolatilLoteRepository particao : driver.particoes.todas()) {
+           assertTrue(particao.findAll().size() > 0);
+           particao.findAll().forEach(l -> assertSame(particao, driver.particoes.de(l.getId())));
+       }
+   }
+
+   @Test
+   @DisplayName("Paginas intercaladas das particoes seguem a ordem do repositorio sem particoes")
+   void paginasIguaisAsDoRepositorioSemParticoes() {
+       //Arrange
+       for (int i = 0; i < 300; i++) {
+           Lote novo = lote.toBuilder()
+                   .produto(lote.getProduto().toBuilder().preco(i % 17 * 1.5).build())
+                   .build();
+           driver.save(novo);
+           referencia.save(novo);
+       }
+
+       for (Ordenacao ordenacao : Ordenacao.values()) {
+           //Act
+           List<Long> particionado = new ArrayList<>();
+           List<Long> esperado = new ArrayList<>();
+           Long cursor = null;
+           List<Lote> pagina;
+           while (!(pagina = driver.findPage(cursor, 23, ordenacao)).isEmpty()) {
+               pagina.forEach(l -> particionado.add(l.getId()));
+               cursor = pagina.get(pagina.size() - 1).getId();
+           }
+           cursor = null;
+           while (!(pagina = referencia.findPage(cursor, 23, ordenacao)).isEmpty()) {
+               pagina.forEach(l -> esperado.add(l.getId()));
+               cursor = pagina.get(pagina.size() - 1).getId();
+           }
+
+           //Assert
+           assertEquals(esperado, particionado, ordenacao.name());
+       }
+   }
+
+   @Test
+   @DisplayName("Totais de estoque somados das particoes coincidem com os do repositorio sem particoes")
+   void totaisSomadosDasParticoes() {
+       //Arrange
+       Produto outro = Produto.builder().id(2L).fabricante("Fabricante Extra").preco(3.10).build();
+       for (int i = 0; i < 100; i++) {
+           Lote novo = lote.toBuilder().numeroDeItens(i).produto(i % 3 == 0 ? outro : lote.getProduto()).build();
+           driver.save(novo);
+           referencia.save(novo);
+       }
+
+       //Act
+       ResumoEstoque mantido = driver.resumoEstoque();
+       ResumoEstoque recalculado = driver.recalcularEstoque();
+
+       //Assert
+       assertEquals(referencia.resumoEstoque(), mantido);
+       assertEquals(referencia.recalcularEstoque(), recalculado);
+       assertEquals(referencia.totalEstoquePorProduto(2L), driver.totalEstoquePorProduto(2L));
+       assertEquals(referencia.totalEstoquePorFabricante("Fabricante Base"),
+               driver.totalEstoquePorFabricante("Fabricante Base"));
+   }
+
+   @Test
+   @DisplayName("Instantaneo unico ve a soma de um mesmo instante entre particoes")
+   void instantaneoConsistenteEntreParticoes() throws Exception {
+       //Arrange
+       int total = 1_000;
+       long outroId = 2L;
+       while (driver.particoes.de(outroId) == driver.particoes.de(1L)) {
+           outroId++;
+       }
+       long[] ids = {1L, outroId};
+       driver.save(lote.toBuilder().id(ids[0]).numeroDeItens(total).build());
+       driver.save(lote.toBuilder().id(ids[1]).numeroDeItens(0).build());
+       AtomicBoolean parar = new AtomicBoolean();
+       ExecutorService executor = Executors.newSingleThreadExecutor();
+       Future<?> transferencias = executor.submit(() -> {
+           for (long i = 0; !parar.get(); i++) {
+               int origem = (int) (i / total % 2);
+               driver.reservar(ids[origem], 1);
+               driver.liberar(ids[1 - origem], 1);
+           }
+       });
+
+       //Act
+       Set<Long> somas = new HashSet<>();
+       try {
+           for (int leitura = 0; leitura < 5_000; leitura++) {
+               somas.add(driver.findAll().stream().mapToLong(Lote::getNumeroDeItens).sum());
+               try (Stream<Lote> lotes = driver.streamAll()) {
+                   somas.add(lotes.mapToLong(Lote::getNumeroDeItens).sum());
+               }
+               somas.add(driver.recalcularEstoque().getGeral().getItens());
+           }
+       } finally {
+           parar.set(true);
+           transferencias.get();
+           executor.shutdown();
+       }
+
+       //Assert
+       assertTrue(Set.of((long) total, total - 1L).containsAll(somas), somas.toString());
+   }
+}
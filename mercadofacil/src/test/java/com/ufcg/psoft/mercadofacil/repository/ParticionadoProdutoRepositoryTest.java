@@ -0,0 +1,87 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do repositorio particionado de Produtos")
+class ParticionadoProdutoRepositoryTest {
+
+    ParticionadoProdutoRepository driver;
+
+    VolatilProdutoRepository referencia;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        driver = new ParticionadoProdutoRepository(8);
+        referencia = new VolatilProdutoRepository();
+        produto = Produto.builder()
+                .nome("Produto Base")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    @DisplayName("Codigo de barras continua unico entre particoes")
+    void codigoDeBarrasUnicoEntreParticoes() {
+        //Arrange
+        for (int i = 0; i < 50; i++) {
+            driver.save(produto.toBuilder().codigoBarra("cb-" + i).build());
+        }
+        Long dono = driver.findByCodigoBarra("cb-10").getId();
+        Long outraParticao = driver.findAll().stream()
+                .map(Produto::getId)
+                .filter(id -> driver.particoes.de(id) != driver.particoes.de(dono))
+                .findFirst()
+                .orElseThrow();
+
+        //Act
+        RuntimeException erro = assertThrows(RuntimeException.class,
+                () -> driver.update(driver.find(outraParticao).toBuilder().codigoBarra("cb-10").build()));
+        driver.delete(driver.find(dono));
+        driver.update(driver.find(outraParticao).toBuilder().codigoBarra("cb-10").build());
+
+        //Assert
+        assertEquals("Codigo de barra ja cadastrado!", erro.getMessage());
+        assertEquals(outraParticao, driver.findByCodigoBarra("cb-10").getId());
+        assertEquals(49, driver.findByFabricante("Fabricante Base").size());
+    }
+
+    @Test
+    @DisplayName("Faixas de preco e mais caros intercalados seguem a ordem do repositorio sem particoes")
+    void consultasPorPrecoIguaisAsDoRepositorioSemParticoes() {
+        //Arrange
+        for (int i = 0; i < 200; i++) {
+            Produto novo = produto.toBuilder().preco(i % 13 * 2.5).codigoBarra("cb-" + i).build();
+            driver.save(novo);
+            referencia.save(novo);
+        }
+
+        //Act
+        List<Produto> faixa = driver.findByPreco(5, 20, 40L, 30);
+        List<Produto> maisCaros = driver.findMaisCaros(25);
+
+        //Assert
+        assertEquals(ids(referencia.findByPreco(5, 20, 40L, 30)), ids(faixa));
+        assertEquals(ids(referencia.findMaisCaros(25)), ids(maisCaros));
+        assertEquals(ids(referencia.findPage(150L, 40, Ordenacao.ID)), ids(driver.findPage(150L, 40, Ordenacao.ID)));
+    }
+
+    private static List<Long> ids(List<Produto> produtos) {
+        return produtos.stream().map(Produto::getId).toList();
+    }
+}
@@ -0,0 +1,121 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do cache de leitura de Produtos")
+class ProdutoCacheRepositoryTest {
+
+    VolatilProdutoRepository armazenamento;
+
+    ProdutoCacheRepository driver;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        armazenamento = new VolatilProdutoRepository();
+        driver = new ProdutoCacheRepository(armazenamento, 10, Duration.ofMinutes(10));
+        produto = driver.save(Produto.builder()
+                .id(1L)
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build());
+    }
+
+    @Test
+    @DisplayName("Buscar o mesmo Produto duas vezes conta uma falta e um acerto")
+    void contaAcertosEFaltas() {
+        driver.find(1L);
+        driver.find(1L);
+
+        assertEquals(1, driver.estatisticas().missCount());
+        assertEquals(1, driver.estatisticas().hitCount());
+    }
+
+    @Test
+    @DisplayName("Update invalida o Produto no cache")
+    void updateInvalida() {
+        driver.find(1L);
+
+        driver.update(produto.toBuilder().nome("Produto Alterado").build());
+
+        assertEquals("Produto Alterado", driver.find(1L).getNome());
+    }
+
+    @Test
+    @DisplayName("Delete invalida o Produto no cache")
+    void deleteInvalida() {
+        driver.find(1L);
+
+        driver.delete(produto);
+
+        assertNull(driver.find(1L));
+    }
+
+    @Test
+    @DisplayName("O cache respeita o tamanho maximo")
+    void respeitaTamanhoMaximo() {
+        for (long id = 2; id <= 100; id++) {
+            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).build());
+            driver.find(id);
+        }
+        driver.manutencao();
+
+        assertTrue(driver.tamanho() <= 10);
+        assertTrue(driver.estatisticas().evictionCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Update e find concorrentes do mesmo id nao deixam valor antigo no cache")
+    void updateEFindConcorrentes() throws Exception {
+        int leitores = 8;
+        int atualizacoes = 2000;
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(leitores + 1);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < leitores; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    while (escrevendo.get()) {
+                        assertNotNull(driver.find(1L));
+                    }
+                    return null;
+                }));
+            }
+            tarefas.add(executor.submit(() -> {
+                largada.await();
+                for (int i = 1; i <= atualizacoes; i++) {
+                    driver.update(produto.toBuilder().preco(i).versao(null).build());
+                }
+                escrevendo.set(false);
+                return null;
+            }));
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(atualizacoes, driver.find(1L).getPreco());
+    }
+}
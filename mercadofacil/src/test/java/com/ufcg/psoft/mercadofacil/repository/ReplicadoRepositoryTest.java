@@ -0,0 +1,294 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Lote;
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.persistencia.LoteCodec;
+import com.ufcg.psoft.mercadofacil.persistencia.ProdutoCodec;
+import com.ufcg.psoft.mercadofacil.replicacao.ReplicaSomenteLeituraException;
+import com.ufcg.psoft.mercadofacil.replicacao.Replicacao;
+import com.ufcg.psoft.mercadofacil.replicacao.Transporte;
+import com.ufcg.psoft.mercadofacil.replicacao.TransporteLocal;
+import com.ufcg.psoft.mercadofacil.replicacao.TransporteTcp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes dos repositorios replicados")
+class ReplicadoRepositoryTest {
+
+    List<Replicacao> abertas = new ArrayList<>();
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        produto = Produto.builder()
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Replicacao replicacao : abertas) {
+            replicacao.close();
+        }
+    }
+
+    Replicacao abrir(Replicacao.Papel papel, Transporte transporte, int retencao) {
+        Replicacao replicacao = new Replicacao(papel, transporte, retencao, 8);
+        abertas.add(replicacao);
+        return replicacao;
+    }
+
+    static void aguardar(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condicao.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "A replica nao alcancou o primario");
+            Thread.sleep(10);
+        }
+    }
+
+    /* Como no log de escrita, o lote replicado traz a versao atual do produto, entao so o proprio lote e comparado. */
+    static List<String> resumir(LoteRepository<Lote, Long> lotes) {
+        return lotes.findAll().stream()
+                .sorted(Comparator.comparing(Lote::getId))
+                .map(lote -> lote.getId() + ":" + lote.getNumeroDeItens() + ":" + lote.getVersao())
+                .toList();
+    }
+
+    @Test
+    @DisplayName("Replica comeca pelo snapshot, segue o log pelo TCP e termina igual ao primario")
+    void replicaAlcancaOPrimario() throws Exception {
+        //Arrange
+        TransporteTcp servidor = new TransporteTcp(new InetSocketAddress("localhost", 0));
+        Replicacao primario = abrir(Replicacao.Papel.PRIMARIO, servidor, 1024);
+        Replicacao replica = abrir(Replicacao.Papel.REPLICA,
+                new TransporteTcp(new InetSocketAddress("localhost", servidor.porta())), 1024);
+        ReplicadoProdutoRepository produtos = new ReplicadoProdutoRepository(primario);
+        ReplicadoLoteRepository lotes = new ReplicadoLoteRepository(primario, produtos);
+        ReplicadoProdutoRepository produtosReplica = new ReplicadoProdutoRepository(replica);
+        ReplicadoLoteRepository lotesReplica = new ReplicadoLoteRepository(replica, produtosReplica);
+        for (int i = 0; i < 50; i++) {
+            Produto salvo = produtos.save(produto.toBuilder().codigoBarra("78991375" + (10000 + i)).build());
+            lotes.save(Lote.builder().produto(salvo).numeroDeItens(100).build());
+        }
+        primario.iniciar();
+        replica.iniciar();
+
+        //Act
+        for (long id = 1; id <= 50; id++) {
+            lotes.reservar(id, 10);
+        }
+        produtos.update(produtos.find(3L).toBuilder().preco(99.9).build());
+        lotes.delete(lotes.find(7L));
+        produtos.delete(produtos.find(50L));
+        aguardar(() -> replica.lsn() == primario.lsn());
+
+        //Assert
+        assertEquals(1, replica.snapshots());
+        assertEquals(0, replica.atrasoAlteracoes());
+        assertEquals(0, replica.atrasoMs());
+        assertEquals(1, primario.replicasConectadas());
+        assertTrue(replica.conectada());
+        assertTrue(primario.bytes() > 0);
+        assertEquals(primario.bytes(), replica.bytes());
+        assertEquals(resumir(lotes), resumir(lotesReplica));
+        assertEquals(49, lotesReplica.findAll().size());
+        assertEquals(lotes.totalEstoque().getItens(), lotesReplica.totalEstoque().getItens());
+        assertEquals(99.9, produtosReplica.find(3L).getPreco());
+        assertEquals(produtos.find(3L).getVersao(), produtosReplica.find(3L).getVersao());
+        assertNull(produtosReplica.find(50L));
+        assertNotNull(produtosReplica.findByCodigoBarra("7899137510001"));
+    }
+
+    @Test
+    @DisplayName("Replica que fica para tras alem da retencao recebe um novo snapshot")
+    void replicaAtrasadaRecebeSnapshot() throws Exception {
+        //Arrange
+        Transporte transporte = TransporteLocal.chamado("replicacao-" + UUID.randomUUID());
+        Replicacao primario = abrir(Replicacao.Papel.PRIMARIO, transporte, 16);
+        Replicacao replica = abrir(Replicacao.Papel.REPLICA, transporte, 16);
+        ReplicadoProdutoRepository produtos = new ReplicadoProdutoRepository(primario);
+        CountDownLatch recebendo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ReplicadoProdutoRepository produtosReplica = new ReplicadoProdutoRepository(replica, new ProdutoCodec() {
+            @Override
+            public Produto decodificar(ByteBuffer origem) {
+                recebendo.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.decodificar(origem);
+            }
+        });
+        Produto salvo = produtos.save(produto);
+        primario.iniciar();
+        replica.iniciar();
+        assertTrue(recebendo.await(20, TimeUnit.SECONDS));
+
+        //Act
+        for (int i = 1; i <= 2000; i++) {
+            salvo = produtos.update(salvo.toBuilder().preco(i).build());
+        }
+        liberar.countDown();
+        aguardar(() -> replica.lsn() == primario.lsn());
+
+        //Assert
+        assertTrue(replica.snapshots() >= 2);
+        assertEquals(2000.0, produtosReplica.find(1L).getPreco());
+        assertEquals(salvo.getVersao(), produtosReplica.find(1L).getVersao());
+        assertEquals(1, produtosReplica.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Leituras na replica veem o estado anterior ate o snapshot terminar")
+    void snapshotSoApareceInteiro() throws Exception {
+        //Arrange
+        Transporte transporte = TransporteLocal.chamado("replicacao-" + UUID.randomUUID());
+        Replicacao primario = abrir(Replicacao.Papel.PRIMARIO, transporte, 16);
+        Replicacao replica = abrir(Replicacao.Papel.REPLICA, transporte, 16);
+        ReplicadoProdutoRepository produtos = new ReplicadoProdutoRepository(primario);
+        AtomicBoolean atrasar = new AtomicBoolean();
+        CountDownLatch noLog = new CountDownLatch(1);
+        CountDownLatch liberarLog = new CountDownLatch(1);
+        CountDownLatch noSnapshot = new CountDownLatch(1);
+        CountDownLatch liberarSnapshot = new CountDownLatch(1);
+        ReplicadoProdutoRepository produtosReplica = new ReplicadoProdutoRepository(replica, new ProdutoCodec() {
+            @Override
+            public Produto decodificar(ByteBuffer origem) {
+                try {
+                    if (atrasar.get() && replica.snapshots() == 1 && noLog.getCount() > 0) {
+                        noLog.countDown();
+                        liberarLog.await();
+                    } else if (replica.snapshots() == 2 && noSnapshot.getCount() > 0) {
+                        noSnapshot.countDown();
+                        liberarSnapshot.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.decodificar(origem);
+            }
+        });
+        Produto salvo = produtos.save(produto);
+        produtos.save(produto.toBuilder().codigoBarra("7899137500117").build());
+        primario.iniciar();
+        replica.iniciar();
+        aguardar(() -> replica.lsn() == primario.lsn());
+        atrasar.set(true);
+        salvo = produtos.update(salvo.toBuilder().preco(1).build());
+        assertTrue(noLog.await(20, TimeUnit.SECONDS));
+        for (int i = 2; i <= 2000; i++) {
+            salvo = produtos.update(salvo.toBuilder().preco(i).build());
+        }
+        liberarLog.countDown();
+
+        //Act
+        assertTrue(noSnapshot.await(20, TimeUnit.SECONDS));
+        List<Produto> duranteSnapshot = produtosReplica.findAll();
+        liberarSnapshot.countDown();
+        aguardar(() -> replica.lsn() == primario.lsn());
+
+        //Assert
+        assertEquals(2, duranteSnapshot.size());
+        assertEquals(2000.0, produtosReplica.find(1L).getPreco());
+        assertEquals(salvo.getVersao(), produtosReplica.find(1L).getVersao());
+        assertEquals(2, produtosReplica.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Cache de produtos da replica acompanha as alteracoes recebidas")
+    void cacheDaReplicaAcompanhaAlteracoes() throws Exception {
+        //Arrange
+        Transporte transporte = TransporteLocal.chamado("replicacao-" + UUID.randomUUID());
+        Replicacao primario = abrir(Replicacao.Papel.PRIMARIO, transporte, 1024);
+        Replicacao replica = abrir(Replicacao.Papel.REPLICA, transporte, 1024);
+        ReplicadoProdutoRepository produtos = new ReplicadoProdutoRepository(primario);
+        ProdutoCacheRepository cache = new ProdutoCacheRepository(
+                new ReplicadoProdutoRepository(replica), 100, Duration.ofMinutes(10));
+        Produto salvo = produtos.save(produto);
+        primario.iniciar();
+        replica.iniciar();
+        aguardar(() -> replica.lsn() == primario.lsn());
+        assertEquals(125.36, cache.find(1L).getPreco());
+
+        //Act
+        produtos.update(salvo.toBuilder().preco(99.9).build());
+        aguardar(() -> replica.lsn() == primario.lsn());
+        double aposUpdate = cache.find(1L).getPreco();
+        produtos.deleteAll();
+        aguardar(() -> replica.lsn() == primario.lsn());
+
+        //Assert
+        assertEquals(99.9, aposUpdate);
+        assertNull(cache.find(1L));
+    }
+
+    @Test
+    @DisplayName("Replica reconecta quando o primario fica mudo alem do prazo")
+    void replicaDesisteDePrimarioMudo() throws Exception {
+        //Arrange
+        try (ServerSocketChannel mudo = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0))) {
+            Replicacao replica = abrir(Replicacao.Papel.REPLICA,
+                    new TransporteTcp((InetSocketAddress) mudo.getLocalAddress()), 16);
+
+            //Act
+            replica.iniciar();
+            boolean reconectou = assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                try (SocketChannel primeira = mudo.accept(); SocketChannel segunda = mudo.accept()) {
+                    ByteBuffer descartado = ByteBuffer.allocate(1 << 10);
+                    while (primeira.read(descartado.clear()) >= 0) {
+                        /* So o ola da replica chega; passado o prazo, ela fecha a conexao. */
+                    }
+                    return segunda.isConnected();
+                }
+            });
+
+            //Assert
+            assertTrue(reconectou);
+            assertEquals(0, replica.snapshots());
+        }
+    }
+
+    @Test
+    @DisplayName("Replica recusa escritas")
+    void replicaSomenteLeitura() {
+        //Arrange
+        Replicacao replica = abrir(Replicacao.Papel.REPLICA,
+                TransporteLocal.chamado("replicacao-" + UUID.randomUUID()), 16);
+        ReplicadoProdutoRepository produtos = new ReplicadoProdutoRepository(replica);
+        ReplicadoLoteRepository lotes = new ReplicadoLoteRepository(replica, new LoteCodec(produtos::find));
+
+        //Act
+        RuntimeException salvar = assertThrows(ReplicaSomenteLeituraException.class, () -> produtos.save(produto));
+        RuntimeException reservar = assertThrows(ReplicaSomenteLeituraException.class, () -> lotes.reservar(1L, 1));
+
+        //Assert
+        assertEquals("Replica somente leitura!", salvar.getMessage());
+        assertEquals("Replica somente leitura!", reservar.getMessage());
+        assertTrue(produtos.findAll().isEmpty());
+    }
+}
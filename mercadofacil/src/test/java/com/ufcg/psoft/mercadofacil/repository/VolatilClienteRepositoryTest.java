@@ -0,0 +1,195 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Testes do repositorio volatil de Clientes")
+class VolatilClienteRepositoryTest {
+
+    VolatilClienteRepository driver;
+
+    Cliente cliente;
+
+    @BeforeEach
+    void setup() {
+        driver = new VolatilClienteRepository();
+        cliente = Cliente.builder()
+                .cpf(52998224725L)
+                .nome("Cliente Base")
+                .idade(30)
+                .endereco("Rua Base, 10")
+                .build();
+    }
+
+    @Test
+    @DisplayName("Salvar Cliente gera id e indexa o CPF")
+    void salvarEBuscarPorCpf() {
+        Cliente salvo = driver.save(cliente);
+
+        assertEquals(1L, salvo.getId());
+        assertEquals(salvo, driver.find(1L));
+        assertEquals(salvo, driver.findByCpf(52998224725L));
+        assertNull(driver.findByCpf(11144477735L));
+    }
+
+    @Test
+    @DisplayName("CPF de outro cliente e rejeitado sem alterar o repositorio")
+    void cpfDuplicado() {
+        driver.save(cliente);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> driver.save(cliente.toBuilder().nome("Outro").build()));
+
+        assertEquals("CPF ja cadastrado!", thrown.getMessage());
+        assertEquals(1, driver.count());
+        assertEquals("Cliente Base", driver.findByCpf(52998224725L).getNome());
+    }
+
+    @Test
+    @DisplayName("Alterar o CPF move o indice e apagar libera o CPF")
+    void alterarEApagar() {
+        Cliente salvo = driver.save(cliente);
+
+        driver.update(salvo.toBuilder().cpf(11144477735L).build());
+
+        assertNull(driver.findByCpf(52998224725L));
+        assertEquals(salvo.getId(), driver.findByCpf(11144477735L).getId());
+        assertNull(driver.update(salvo.toBuilder().id(99L).build()));
+
+        driver.delete(salvo);
+
+        assertNull(driver.findByCpf(11144477735L));
+        assertEquals(0, driver.count());
+        assertNotNull(driver.save(cliente.toBuilder().cpf(11144477735L).build()));
+    }
+
+    @Test
+    @DisplayName("Salvar em lote devolve null para os CPFs ja cadastrados")
+    void salvarEmLote() {
+        driver.save(cliente);
+
+        List<Cliente> salvos = driver.saveAll(List.of(
+                cliente.toBuilder().cpf(11144477735L).build(),
+                cliente.toBuilder().build(),
+                cliente.toBuilder().cpf(12345678909L).build(),
+                cliente.toBuilder().cpf(12345678909L).build()));
+
+        assertEquals(2L, salvos.get(0).getId());
+        assertNull(salvos.get(1));
+        assertNotNull(salvos.get(2));
+        assertNull(salvos.get(3));
+        assertEquals(3, driver.count());
+    }
+
+    @Test
+    @DisplayName("Paginar Clientes pelo id")
+    void paginar() {
+        for (long cpf = 1; cpf <= 600; cpf++) {
+            driver.save(cliente.toBuilder().cpf(cpf).build());
+        }
+
+        List<Cliente> pagina = driver.findPage(null, 300);
+        List<Cliente> seguinte = driver.findPage(pagina.get(299).getId(), 400);
+
+        assertEquals(300, pagina.size());
+        assertEquals(1L, pagina.get(0).getId());
+        assertEquals(300, seguinte.size());
+        assertEquals(301L, seguinte.get(0).getId());
+        assertEquals(600L, seguinte.get(299).getId());
+    }
+
+    @Test
+    @DisplayName("Paginar Clientes depois de apagar blocos inteiros do indice")
+    void paginarDepoisDeApagar() {
+        for (long cpf = 1; cpf <= 1000; cpf++) {
+            driver.save(cliente.toBuilder().cpf(cpf).build());
+        }
+        for (long id = 1; id <= 1000; id++) {
+            if (id % 3 != 0 || (id > 200 && id <= 700)) {
+                driver.delete(driver.find(id));
+            }
+        }
+
+        List<Cliente> pagina = driver.findPage(null, 1000);
+
+        assertEquals(driver.count(), pagina.size());
+        assertEquals(3L, pagina.get(0).getId());
+        assertEquals(198L, pagina.get(65).getId());
+        assertEquals(702L, pagina.get(66).getId());
+        assertEquals(999L, pagina.get(pagina.size() - 1).getId());
+    }
+
+    @Test
+    @DisplayName("deleteAll concorrente com escritas nao deixa cliente fora do indice")
+    void deleteAllConcorrenteComEscritas() throws Exception {
+        int threads = 8;
+        AtomicBoolean escrevendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long proprio = t + 1;
+                tarefas.add(executor.submit(() -> {
+                    while (escrevendo.get()) {
+                        Cliente salvo = driver.save(cliente.toBuilder().cpf(proprio).build());
+                        driver.delete(salvo);
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 2000; i++) {
+                driver.deleteAll();
+            }
+            escrevendo.set(false);
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (long cpf = 1; cpf <= threads; cpf++) {
+            driver.save(cliente.toBuilder().cpf(cpf).build());
+        }
+
+        assertEquals(threads, driver.count());
+        assertEquals(threads, driver.findPage(null, 100).size());
+    }
+
+    @Test
+    @DisplayName("Gravacoes concorrentes do mesmo CPF deixam um unico dono")
+    void cpfUnicoSobConcorrencia() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Cliente>>> futuros = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futuros.add(executor.submit(() -> {
+                List<Cliente> lote = new ArrayList<>();
+                for (long cpf = 1; cpf <= 1000; cpf++) {
+                    lote.add(cliente.toBuilder().cpf(cpf).build());
+                }
+                return driver.saveAll(lote);
+            }));
+        }
+        long salvos = 0;
+        for (Future<List<Cliente>> futuro : futuros) {
+            salvos += futuro.get().stream().filter(c -> c != null).count();
+        }
+        executor.shutdown();
+
+        assertEquals(1000, salvos);
+        assertEquals(1000, driver.count());
+        for (long cpf = 1; cpf <= 1000; cpf++) {
+            assertEquals(cpf, driver.findByCpf(cpf).getCpf());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.ufcg.psoft.mercadofacil.repository;
 
 import com.ufcg.psoft.mercadofacil.model.Lote;
 import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResumoEstoque;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,6 +11,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -148,8 +162,9 @@ class VolatilLoteRepositoryTest {
        resultado = driver.update(loteExtra);
        
        assertEquals(driver.findAll().size(),2);
-       assertEquals(resultado.getId().longValue(), lote.getId().longValue());
-       assertEquals(resultado.getProduto(), produto);
+       assertEquals(resultado.getId().longValue(), loteExtra.getId().longValue());
+       assertEquals(resultado.getProduto(), produtoExtra);
+       assertEquals(driver.find(lote.getId()).getProduto(), produto);
 
 
    }
@@ -192,5 +207,514 @@ class VolatilLoteRepositoryTest {
    
 
 
-}
+   @Test
+   @DisplayName("Update de um Lote inexistente no repositorio de dados")
+   void updateLoteInexistente() {
+       driver.save(lote);
+       Lote loteInexistente = Lote.builder()
+               .id(99L)
+               .numeroDeItens(10)
+               .produto(produto)
+               .build();
+
+       resultado = driver.update(loteInexistente);
+
+       assertNull(resultado);
+       assertEquals(driver.findAll().size(), 1);
+   }
+
+   @Test
+   @DisplayName("Salvar Lote sem id gera um id novo")
+   void salvarLoteSemId() {
+       driver.save(lote);
+       Lote loteSemId = Lote.builder()
+               .numeroDeItens(10)
+               .produto(produto)
+               .build();
+
+       resultado = driver.save(loteSemId);
+
+       assertNotNull(resultado.getId());
+       assertNotEquals(lote.getId(), resultado.getId());
+       assertEquals(driver.findAll().size(), 2);
+   }
+
+   @Test
+   @DisplayName("Salvar Lotes concorrentemente com 64 threads nao perde escritas")
+   void salvarConcorrente() throws Exception {
+       int threads = 64;
+       int lotesPorThread = 1000;
+       ExecutorService executor = Executors.newFixedThreadPool(threads);
+       CountDownLatch largada = new CountDownLatch(1);
+       Set<Long> ids = ConcurrentHashMap.newKeySet();
+       List<Future<?>> tarefas = new ArrayList<>();
+       try {
+           for (int t = 0; t < threads; t++) {
+               tarefas.add(executor.submit(() -> {
+                   largada.await();
+                   for (int i = 0; i < lotesPorThread; i++) {
+                       Lote novo = Lote.builder()
+                               .numeroDeItens(i)
+                               .produto(produto)
+                               .build();
+                       ids.add(driver.save(novo).getId());
+                   }
+                   return null;
+               }));
+           }
+           largada.countDown();
+           for (Future<?> tarefa : tarefas) {
+               tarefa.get();
+           }
+       } finally {
+           executor.shutdown();
+       }
+
+       assertEquals(threads * lotesPorThread, ids.size());
+       assertEquals(threads * lotesPorThread, driver.findAll().size());
+   }
+
+   @Test
+   @DisplayName("Update e delete concorrentes com 64 threads afetam apenas o proprio Lote")
+   void updateDeleteConcorrente() throws Exception {
+       int threads = 64;
+       int atualizacoes = 500;
+       for (long id = 1; id <= threads * 2; id++) {
+           driver.save(lote.toBuilder().id(id).numeroDeItens(0).build());
+       }
+       ExecutorService executor = Executors.newFixedThreadPool(threads);
+       CountDownLatch largada = new CountDownLatch(1);
+       List<Future<?>> tarefas = new ArrayList<>();
+       try {
+           for (int t = 0; t < threads; t++) {
+               long idAtualizado = t + 1;
+               long idRemovido = threads + t + 1;
+               tarefas.add(executor.submit(() -> {
+                   largada.await();
+                   for (int i = 1; i <= atualizacoes; i++) {
+                       driver.update(lote.toBuilder().id(idAtualizado).numeroDeItens(i).build());
+                   }
+                   driver.delete(lote.toBuilder().id(idRemovido).build());
+                   return null;
+               }));
+           }
+           largada.countDown();
+           for (Future<?> tarefa : tarefas) {
+               tarefa.get();
+           }
+       } finally {
+           executor.shutdown();
+       }
+
+       assertEquals(threads, driver.findAll().size());
+       for (long id = 1; id <= threads; id++) {
+           assertEquals(atualizacoes, driver.find(id).getNumeroDeItens());
+       }
+       for (long id = threads + 1; id <= threads * 2; id++) {
+           assertNull(driver.find(id));
+       }
+   }
+
+   @Test
+   @DisplayName("Reservar e liberar itens alteram o numero de itens do Lote")
+   void reservarELiberar() {
+       driver.save(lote);
+
+       assertEquals(70, driver.reservar(1L, 30).getNumeroDeItens());
+       assertEquals(80, driver.liberar(1L, 10).getNumeroDeItens());
+       assertEquals(80, driver.find(1L).getNumeroDeItens());
+   }
+
+   @Test
+   @DisplayName("Update com a versao lida antes de uma reserva e rejeitado")
+   void updateAposReserva() {
+       Lote lido = driver.save(lote);
+       driver.reservar(1L, 30);
+
+       ConflitoDeVersaoException thrown = assertThrows(
+               ConflitoDeVersaoException.class,
+               () -> driver.update(lido.toBuilder().numeroDeItens(500).build())
+       );
+
+       assertEquals("Versao desatualizada!", thrown.getMessage());
+       assertEquals(70, driver.find(1L).getNumeroDeItens());
+       Lote atual = driver.find(1L);
+       assertEquals(3L, driver.update(atual.toBuilder().numeroDeItens(500).build()).getVersao());
+       assertEquals(500, driver.totalEstoquePorProduto(1L).getItens());
+   }
+
+   @Test
+   @DisplayName("Reservar mais itens do que o Lote possui")
+   void reservarAlemDoEstoque() {
+       driver.save(lote);
+
+       RuntimeException thrown = assertThrows(
+               RuntimeException.class,
+               () -> driver.reservar(1L, 101)
+       );
+
+       assertEquals("Estoque insuficiente!", thrown.getMessage());
+       assertEquals(100, driver.find(1L).getNumeroDeItens());
+   }
+
+   @Test
+   @DisplayName("Reservar itens de um Lote inexistente")
+   void reservarLoteInexistente() {
+       RuntimeException thrown = assertThrows(
+               RuntimeException.class,
+               () -> driver.reservar(99L, 1)
+       );
+
+       assertEquals("Lote nao encontrado!", thrown.getMessage());
+   }
+
+   @Test
+   @DisplayName("Reservas concorrentes com 64 threads nunca vendem alem do estoque")
+   void reservarConcorrente() throws Exception {
+       int threads = 64;
+       int tentativas = 100;
+       driver.save(lote.toBuilder().numeroDeItens(1000).build());
+       ExecutorService executor = Executors.newFixedThreadPool(threads);
+       CountDownLatch largada = new CountDownLatch(1);
+       List<Future<Integer>> tarefas = new ArrayList<>();
+       try {
+           for (int t = 0; t < threads; t++) {
+               tarefas.add(executor.submit(() -> {
+                   largada.await();
+                   int reservados = 0;
+                   for (int i = 0; i < tentativas; i++) {
+                       try {
+                           driver.reservar(1L, 1);
+                           reservados++;
+                       } catch (RuntimeException e) {
+                           assertEquals("Estoque insuficiente!", e.getMessage());
+                       }
+                   }
+                   return reservados;
+               }));
+           }
+           largada.countDown();
+           int total = 0;
+           for (Future<Integer> tarefa : tarefas) {
+               total += tarefa.get();
+           }
+
+           assertEquals(1000, total);
+       } finally {
+           executor.shutdown();
+       }
+
+       assertEquals(0, driver.find(1L).getNumeroDeItens());
+   }
 
+   @Test
+   @DisplayName("Totais de estoque acompanham save, update, reserva e delete")
+   void totaisDeEstoque() {
+       Produto produtoExtra = produto.toBuilder()
+               .id(2L)
+               .fabricante("Fabricante Extra")
+               .preco(10.00)
+               .build();
+       driver.save(lote);
+       driver.save(lote.toBuilder().id(2L).numeroDeItens(50).build());
+       driver.reservar(1L, 30);
+
+       assertEquals(120, driver.totalEstoque().getItens());
+       assertEquals(120 * 125.36, driver.totalEstoque().getValor(), 0.001);
+       assertEquals(120, driver.totalEstoquePorProduto(1L).getItens());
+
+       driver.update(lote.toBuilder().id(2L).numeroDeItens(40).produto(produtoExtra).build());
+
+       assertEquals(70, driver.totalEstoquePorProduto(1L).getItens());
+       assertEquals(40, driver.totalEstoquePorProduto(2L).getItens());
+       assertEquals(400.00, driver.totalEstoquePorFabricante("Fabricante Extra").getValor(), 0.001);
+       assertEquals(70 * 125.36 + 400.00, driver.totalEstoque().getValor(), 0.001);
+
+       driver.delete(lote);
+
+       assertEquals(0, driver.totalEstoquePorProduto(1L).getItens());
+       assertEquals(0, driver.totalEstoquePorFabricante("Fabricante Base").getItens());
+       assertEquals(40, driver.totalEstoque().getItens());
+       assertEquals(0, driver.totalEstoquePorProduto(99L).getItens());
+   }
+
+   @Test
+   @DisplayName("Totais de estoque acompanham a alteracao do produto dos lotes")
+   void totaisAcompanhamProdutoAlterado() {
+       driver.save(lote);
+       driver.save(lote.toBuilder().id(2L).numeroDeItens(50).build());
+       Produto produtoExtra = produto.toBuilder().id(3L).fabricante("Fabricante Extra").preco(50.00).build();
+       driver.save(lote.toBuilder().id(3L).numeroDeItens(0).produto(produtoExtra).build());
+       driver.reservar(1L, 30);
+       long versao = driver.find(1L).getVersao();
+       Produto alterado = produto.toBuilder().fabricante("Fabricante Novo").preco(10.00).versao(2L).build();
+
+       driver.atualizarProduto(alterado);
+
+       assertEquals(alterado, driver.find(1L).getProduto());
+       assertEquals(versao, driver.find(1L).getVersao());
+       assertEquals(70, driver.find(1L).getNumeroDeItens());
+       assertEquals(1200.00, driver.totalEstoquePorProduto(1L).getValor(), 0.001);
+       assertEquals(1200.00, driver.totalEstoquePorFabricante("Fabricante Novo").getValor(), 0.001);
+       assertEquals(1200.00, driver.totalEstoque().getValor(), 0.001);
+       assertEquals(alterado, driver.find(2L).getProduto());
+       assertEquals(List.of(1L, 2L, 3L), driver.findPage(null, 3, Ordenacao.PRECO).stream().map(Lote::getId).toList());
+       ResumoEstoque resumo = driver.resumoEstoque();
+       assertFalse(resumo.getPorFabricante().containsKey("Fabricante Base"));
+       assertEquals(driver.recalcularEstoque(), resumo);
+
+       driver.atualizarProduto(produto.toBuilder().versao(1L).build());
+
+       assertEquals(alterado, driver.find(1L).getProduto());
+   }
+
+   @Test
+   @DisplayName("Produtos e fabricantes sem lote saem do resumo de estoque")
+   void resumoSemProdutosSemLote() {
+       Produto produtoExtra = produto.toBuilder().id(2L).fabricante("Fabricante Extra").build();
+       driver.save(lote);
+       driver.save(lote.toBuilder().id(2L).produto(produtoExtra).build());
+       driver.reservar(2L, 100);
+
+       assertEquals(0, driver.resumoEstoque().getPorProduto().get(2L).getItens());
+
+       driver.update(lote.toBuilder().id(2L).build());
+       driver.delete(lote);
+
+       assertEquals(Set.of(1L), driver.resumoEstoque().getPorProduto().keySet());
+       assertEquals(Set.of("Fabricante Base"), driver.resumoEstoque().getPorFabricante().keySet());
+
+       driver.delete(lote.toBuilder().id(2L).build());
+
+       assertTrue(driver.resumoEstoque().getPorProduto().isEmpty());
+       assertTrue(driver.resumoEstoque().getPorFabricante().isEmpty());
+   }
+
+   @Test
+   @DisplayName("Alterar o produto durante reservas concorrentes mantem os totais iguais ao recalculo")
+   void atualizarProdutoDuranteReservas() throws Exception {
+       int threads = 8;
+       for (long id = 1; id <= threads; id++) {
+           driver.save(lote.toBuilder().id(id).numeroDeItens(100000).build());
+       }
+       ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+       CountDownLatch largada = new CountDownLatch(1);
+       List<Future<?>> tarefas = new ArrayList<>();
+       try {
+           for (long id = 1; id <= threads; id++) {
+               long proprio = id;
+               tarefas.add(executor.submit(() -> {
+                   largada.await();
+                   for (int i = 0; i < 2000; i++) {
+                       driver.reservar(proprio, 1);
+                   }
+                   return null;
+               }));
+           }
+           tarefas.add(executor.submit(() -> {
+               largada.await();
+               for (int i = 1; i <= 200; i++) {
+                   driver.atualizarProduto(produto.toBuilder()
+                           .fabricante("Fabricante " + i % 3)
+                           .preco(i)
+                           .versao((long) i)
+                           .build());
+               }
+               return null;
+           }));
+           largada.countDown();
+           for (Future<?> tarefa : tarefas) {
+               tarefa.get();
+           }
+       } finally {
+           executor.shutdown();
+       }
+
+       ResumoEstoque mantido = driver.resumoEstoque();
+
+       assertEquals(threads * 98000L, mantido.getGeral().getItens());
+       assertEquals(threads * 98000L * 200.0, mantido.getGeral().getValor(), 0.001);
+       assertEquals(driver.recalcularEstoque(), mantido);
+       assertEquals(Set.of("Fabricante 2"), mantido.getPorFabricante().keySet());
+   }
+
+   @Test
+   @DisplayName("Totais de estoque mantidos com 64 threads coincidem com o recalculo")
+   void totaisDeEstoqueConcorrentes() throws Exception {
+       int threads = 64;
+       int operacoes = 500;
+       Produto produtoExtra = produto.toBuilder().id(2L).fabricante("Fabricante Extra").preco(3.10).build();
+       for (long id = 1; id <= threads; id++) {
+           driver.save(lote.toBuilder().id(id).numeroDeItens(1000).build());
+       }
+       ExecutorService executor = Executors.newFixedThreadPool(threads);
+       CountDownLatch largada = new CountDownLatch(1);
+       List<Future<?>> tarefas = new ArrayList<>();
+       try {
+           for (int t = 0; t < threads; t++) {
+               long proprio = t + 1;
+               long vizinho = t % threads + 1 == threads ? 1 : t + 2;
+               tarefas.add(executor.submit(() -> {
+                   largada.await();
+                   for (int i = 0; i < operacoes; i++) {
+                       driver.reservar(vizinho, 1);
+                       driver.liberar(proprio, 2);
+                       if (i % 50 == 0) {
+                           driver.update(lote.toBuilder().id(proprio).numeroDeItens(1000 + i)
+                                   .produto(i % 100 == 0 ? produtoExtra : produto).build());
+                       }
+                   }
+                   return null;
+               }));
+           }
+           largada.countDown();
+           for (Future<?> tarefa : tarefas) {
+               tarefa.get();
+           }
+       } finally {
+           executor.shutdown();
+       }
+       driver.delete(lote.toBuilder().id(1L).build());
+
+       ResumoEstoque mantido = driver.resumoEstoque();
+       ResumoEstoque recalculado = driver.recalcularEstoque();
+       long itens = driver.streamAll().mapToLong(Lote::getNumeroDeItens).sum();
+
+       assertEquals(itens, mantido.getGeral().getItens());
+       assertEquals(recalculado.getGeral(), mantido.getGeral());
+       for (Long id : recalculado.getPorProduto().keySet()) {
+           assertEquals(recalculado.getPorProduto().get(id), mantido.getPorProduto().get(id));
+       }
+       for (String fabricante : recalculado.getPorFabricante().keySet()) {
+           assertEquals(recalculado.getPorFabricante().get(fabricante), mantido.getPorFabricante().get(fabricante));
+       }
+   }
+
+   @Test
+   @DisplayName("deleteAll concorrente com escritas nao deixa totais sem lote")
+   void deleteAllConcorrenteComEscritas() throws Exception {
+       int threads = 8;
+       AtomicBoolean escrevendo = new AtomicBoolean(true);
+       ExecutorService executor = Executors.newFixedThreadPool(threads);
+       List<Future<?>> tarefas = new ArrayList<>();
+       try {
+           for (int t = 0; t < threads; t++) {
+               long proprio = t + 1;
+               tarefas.add(executor.submit(() -> {
+                   while (escrevendo.get()) {
+                       driver.save(lote.toBuilder().id(proprio).numeroDeItens(100).build());
+                       try {
+                           driver.reservar(proprio, 1);
+                           driver.liberar(proprio, 2);
+                       } catch (RuntimeException e) {
+                           /* O lote pode ter saido num deleteAll entre o save e a reserva. */
+                       }
+                   }
+                   return null;
+               }));
+           }
+           for (int i = 0; i < 2000; i++) {
+               driver.deleteAll();
+           }
+           escrevendo.set(false);
+           for (Future<?> tarefa : tarefas) {
+               tarefa.get();
+           }
+       } finally {
+           executor.shutdown();
+       }
+
+       ResumoEstoque mantido = driver.resumoEstoque();
+       ResumoEstoque recalculado = driver.recalcularEstoque();
+
+       assertEquals(recalculado.getGeral(), mantido.getGeral());
+       assertEquals(driver.findAll().size(), driver.findPage(null, 100, Ordenacao.ID).size());
+   }
+
+   @Test
+   @DisplayName("streamAll devolve os lotes do instante em que foi chamado")
+   void streamAllLeInstantaneo() {
+       //Arrange
+       driver.save(lote);
+       driver.save(lote.toBuilder().id(2L).numeroDeItens(50).build());
+       Stream<Lote> instantaneo = driver.streamAll();
+
+       //Act
+       driver.reservar(1L, 30);
+       driver.delete(lote.toBuilder().id(2L).build());
+       driver.save(lote.toBuilder().id(3L).numeroDeItens(7).build());
+       List<Lote> lidos;
+       try (instantaneo) {
+           lidos = instantaneo.sorted(Comparator.comparing(Lote::getId)).toList();
+       }
+
+       //Assert
+       assertEquals(List.of(1L, 2L), lidos.stream().map(Lote::getId).toList());
+       assertEquals(100, lidos.get(0).getNumeroDeItens());
+       assertEquals(50, lidos.get(1).getNumeroDeItens());
+       assertEquals(70, driver.find(1L).getNumeroDeItens());
+       assertNull(driver.find(2L));
+       assertEquals(2, driver.findAll().size());
+       assertEquals(77, driver.recalcularEstoque().getGeral().getItens());
+   }
+
+   @Test
+   @DisplayName("Remocao sai do mapa quando todos os instantaneos abertos ja a enxergam")
+   void remocaoSaiComInstantaneosSobrepostos() {
+       //Arrange
+       VolatilLoteRepository repositorio = new VolatilLoteRepository();
+       repositorio.save(lote);
+       repositorio.save(lote.toBuilder().id(2L).build());
+       Stream<Lote> primeiro = repositorio.streamAll();
+       repositorio.delete(lote.toBuilder().id(2L).build());
+       Stream<Lote> segundo = repositorio.streamAll();
+
+       //Act
+       primeiro.close();
+       boolean guardadaParaOSegundo = repositorio.lotes.get(2L) != null;
+       Stream<Lote> terceiro = repositorio.streamAll();
+       segundo.close();
+
+       //Assert
+       assertTrue(guardadaParaOSegundo);
+       assertNull(repositorio.lotes.get(2L));
+       try (terceiro) {
+           assertEquals(List.of(1L), terceiro.map(Lote::getId).toList());
+       }
+   }
+
+   @Test
+   @DisplayName("findAll durante transferencias concorrentes ve a soma de um mesmo instante")
+   void findAllConsistenteDuranteEscritas() throws Exception {
+       //Arrange
+       int total = 1_000;
+       driver.save(lote.toBuilder().numeroDeItens(total).build());
+       driver.save(lote.toBuilder().id(2L).numeroDeItens(0).build());
+       AtomicBoolean parar = new AtomicBoolean();
+       ExecutorService executor = Executors.newSingleThreadExecutor();
+       Future<?> transferencias = executor.submit(() -> {
+           for (long i = 0; !parar.get(); i++) {
+               long origem = i / total % 2 == 0 ? 1L : 2L;
+               driver.reservar(origem, 1);
+               driver.liberar(3L - origem, 1);
+           }
+       });
+
+       //Act
+       Set<Long> somas = new HashSet<>();
+       try {
+           for (int leitura = 0; leitura < 20_000; leitura++) {
+               somas.add(driver.findAll().stream().mapToLong(Lote::getNumeroDeItens).sum());
+           }
+       } finally {
+           parar.set(true);
+           transferencias.get();
+           executor.shutdown();
+       }
+
+       //Assert
+       assertTrue(Set.of((long) total, total - 1L).containsAll(somas), somas.toString());
+       assertEquals(total, driver.recalcularEstoque().getGeral().getItens());
+   }
+
+}
@@ -0,0 +1,388 @@
+package com.ufcg.psoft.mercadofacil.repository;
+
+import com.ufcg.psoft.mercadofacil.model.Produto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DisplayName("Testes do repositorio volatil de Produtos")
+class VolatilProdutoRepositoryTest {
+
+    @Autowired
+    VolatilProdutoRepository driver;
+
+    Produto produto;
+
+    @BeforeEach
+    void setup() {
+        produto = Produto.builder()
+                .id(1L)
+                .nome("Produto Base")
+                .codigoBarra("7899137500100")
+                .fabricante("Fabricante Base")
+                .preco(125.36)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        produto = null;
+        driver.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Buscar Produto pelo codigo de barras e pelo fabricante")
+    void buscarPorIndicesSecundarios() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").build());
+
+        assertEquals(2L, driver.findByCodigoBarra("7899137500117").getId());
+        assertEquals(2, driver.findByFabricante("Fabricante Base").size());
+        assertNull(driver.findByCodigoBarra("0000000000000"));
+        assertTrue(driver.findByFabricante("Fabricante Inexistente").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Update mantem os indices secundarios consistentes")
+    void updateAtualizaIndices() {
+        driver.save(produto);
+
+        driver.update(produto.toBuilder().codigoBarra("7899137500117").fabricante("Fabricante Novo").build());
+
+        assertNull(driver.findByCodigoBarra("7899137500100"));
+        assertEquals(1L, driver.findByCodigoBarra("7899137500117").getId());
+        assertTrue(driver.findByFabricante("Fabricante Base").isEmpty());
+        assertEquals(1, driver.findByFabricante("Fabricante Novo").size());
+    }
+
+    @Test
+    @DisplayName("Update com versao desatualizada e rejeitado e nao altera o Produto")
+    void updateComVersaoDesatualizada() {
+        Produto lido = driver.save(produto);
+        Produto atualizado = driver.update(lido.toBuilder().nome("Primeira Alteracao").build());
+
+        ConflitoDeVersaoException thrown = assertThrows(
+                ConflitoDeVersaoException.class,
+                () -> driver.update(lido.toBuilder().nome("Segunda Alteracao").build())
+        );
+
+        assertEquals("Versao desatualizada!", thrown.getMessage());
+        assertEquals(1L, lido.getVersao());
+        assertEquals(2L, atualizado.getVersao());
+        assertEquals("Primeira Alteracao", driver.find(1L).getNome());
+        assertEquals(3L, driver.update(produto.toBuilder().nome("Sem Versao").build()).getVersao());
+    }
+
+    @Test
+    @DisplayName("Delete remove o Produto de todos os indices")
+    void deleteRemoveDosIndices() {
+        driver.save(produto);
+
+        driver.delete(produto);
+
+        assertNull(driver.find(1L));
+        assertNull(driver.findByCodigoBarra("7899137500100"));
+        assertTrue(driver.findByFabricante("Fabricante Base").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Produtos guardam a mesma instancia do fabricante enquanto algum o usa")
+    void fabricanteCanonico() {
+        driver.save(produto.toBuilder().fabricante(new String("Fabricante Base")).build());
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117")
+                .fabricante(new String("Fabricante Base")).build());
+
+        assertSame(driver.find(1L).getFabricante(), driver.find(2L).getFabricante());
+        assertEquals(1, driver.relatorioMemoria().get(0).getEntradas());
+        assertEquals(2, driver.relatorioMemoria().get(0).getReferencias());
+
+        driver.update(produto.toBuilder().fabricante("Fabricante Novo").build());
+        driver.delete(produto.toBuilder().id(2L).build());
+
+        assertEquals(1, driver.relatorioMemoria().get(0).getEntradas());
+
+        driver.deleteAll();
+
+        assertEquals(0, driver.relatorioMemoria().get(0).getEntradas());
+    }
+
+    @Test
+    @DisplayName("Buscar Produto por prefixos de nome e fabricante sem diferenciar acentos")
+    void buscarPorPrefixo() {
+        driver.save(produto.toBuilder().nome("Açúcar Refinado").fabricante("União").build());
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117")
+                .nome("Café Torrado").fabricante("Pilão").build());
+        driver.save(produto.toBuilder().id(3L).codigoBarra("7899137500124")
+                .nome("Açaí Congelado").fabricante("Frutos do Pará").build());
+
+        assertEquals(List.of(1L), ids(driver.search("acucar", 20)));
+        assertEquals(List.of(2L), ids(driver.search("CAFE pil", 20)));
+        assertEquals(2, driver.search("aç", 20).size());
+        assertEquals(1, driver.search("aç", 1).size());
+        assertTrue(driver.search("acucar pilao", 20).isEmpty());
+        assertTrue(driver.search("  ", 20).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Update e delete mantem o indice textual consistente")
+    void buscarAposUpdateEDelete() {
+        driver.save(produto.toBuilder().nome("Feijão Preto").build());
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").nome("Feijão Carioca").build());
+
+        driver.update(produto.toBuilder().nome("Arroz Integral").build());
+        driver.delete(produto.toBuilder().id(2L).build());
+
+        assertTrue(driver.search("feij", 20).isEmpty());
+        assertEquals(List.of(1L), ids(driver.search("arroz fabricante", 20)));
+    }
+
+    @Test
+    @DisplayName("Buscar Produtos por faixa de preco paginando pelo cursor")
+    void buscarPorFaixaDePreco() {
+        Random aleatorio = new Random(7);
+        List<Produto> salvos = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            salvos.add(driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id)
+                    .preco(1 + aleatorio.nextInt(100)).build()));
+        }
+        for (long id = 1; id <= 2000; id += 3) {
+            driver.delete(produto.toBuilder().id(id).build());
+        }
+        driver.update(salvos.get(1).toBuilder().preco(30.5).build());
+        List<Long> esperados = driver.findAll().stream()
+                .filter(p -> p.getPreco() >= 10 && p.getPreco() <= 50)
+                .sorted(Comparator.comparingDouble(Produto::getPreco).thenComparing(Produto::getId))
+                .map(Produto::getId)
+                .toList();
+
+        List<Long> encontrados = new ArrayList<>();
+        Long cursor = null;
+        List<Produto> pagina;
+        do {
+            pagina = driver.findByPreco(10, 50, cursor, 100);
+            pagina.forEach(p -> encontrados.add(p.getId()));
+            cursor = pagina.isEmpty() ? null : pagina.get(pagina.size() - 1).getId();
+        } while (!pagina.isEmpty());
+
+        assertEquals(esperados, encontrados);
+        assertTrue(encontrados.contains(2L));
+    }
+
+    @Test
+    @DisplayName("Buscar os Produtos mais caros")
+    void buscarMaisCaros() {
+        driver.save(produto.toBuilder().preco(10).build());
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").preco(30).build());
+        driver.save(produto.toBuilder().id(3L).codigoBarra("7899137500124").preco(20).build());
+
+        driver.update(produto.toBuilder().preco(40).build());
+
+        assertEquals(List.of(1L, 2L), ids(driver.findMaisCaros(2)));
+        assertEquals(3, driver.findMaisCaros(10).size());
+    }
+
+    @Test
+    @DisplayName("Codigo de barras repetido em outro Produto")
+    void codigoBarraRepetido() {
+        driver.save(produto);
+
+        RuntimeException thrown = assertThrows(
+                RuntimeException.class,
+                () -> driver.save(produto.toBuilder().id(2L).build())
+        );
+
+        assertEquals("Codigo de barra ja cadastrado!", thrown.getMessage());
+        assertNull(driver.find(2L));
+    }
+
+    @Test
+    @DisplayName("UpdateAll devolve o motivo de cada falha e aplica os demais")
+    void updateAllComFalhas() {
+        Produto lido = driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").build());
+
+        List<ResultadoAtualizacao<Produto>> resultado = driver.updateAll(List.of(
+                lido.toBuilder().versao(7L).nome("Conflito").build(),
+                produto.toBuilder().id(2L).codigoBarra("7899137500100").build(),
+                produto.toBuilder().id(3L).build(),
+                lido.toBuilder().preco(99.9).build()));
+
+        assertEquals(ResultadoAtualizacao.Falha.VERSAO_DESATUALIZADA, resultado.get(0).falha());
+        assertEquals(ResultadoAtualizacao.Falha.CODIGO_BARRA_DUPLICADO, resultado.get(1).falha());
+        assertEquals(ResultadoAtualizacao.Falha.NAO_ENCONTRADO, resultado.get(2).falha());
+        assertTrue(resultado.get(3).sucesso());
+        assertEquals(99.9, resultado.get(3).atualizado().getPreco());
+        assertEquals("7899137500117", driver.find(2L).getCodigoBarra());
+        assertEquals(1L, driver.findByCodigoBarra("7899137500100").getId());
+    }
+
+    @Test
+    @DisplayName("Alterar o Produto devolvido nao altera o repositorio")
+    void produtoDevolvidoEhCopia() {
+        driver.save(produto);
+
+        driver.find(1L).setCodigoBarra("7899137500117");
+
+        assertEquals("7899137500100", driver.find(1L).getCodigoBarra());
+    }
+
+    @Test
+    @DisplayName("Escritas concorrentes com 64 threads mantem os indices consistentes")
+    void escritasConcorrentes() throws Exception {
+        int threads = 64;
+        int rodadas = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long id = t + 1;
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < rodadas; i++) {
+                        Produto atual = produto.toBuilder()
+                                .id(id)
+                                .codigoBarra("cb-" + id + "-" + i)
+                                .fabricante("Fabricante " + (i % 4))
+                                .build();
+                        if (i == 0) {
+                            driver.save(atual);
+                        } else {
+                            driver.update(atual);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        String fabricanteFinal = "Fabricante " + ((rodadas - 1) % 4);
+        assertEquals(threads, driver.findAll().size());
+        assertEquals(threads, driver.findByFabricante(fabricanteFinal).size());
+        assertEquals(threads, driver.porCodigoBarra.size());
+        for (long id = 1; id <= threads; id++) {
+            assertEquals(id, driver.findByCodigoBarra("cb-" + id + "-" + (rodadas - 1)).getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Paginar Produtos por id e por preco a partir de um cursor")
+    void paginarPorChave() {
+        for (long id = 1; id <= 10; id++) {
+            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(100 - id * 5).build());
+        }
+
+        List<Produto> primeiraPorId = driver.findPage(null, 4, Ordenacao.ID);
+        List<Produto> segundaPorId = driver.findPage(4L, 4, Ordenacao.ID);
+        List<Produto> primeiraPorPreco = driver.findPage(null, 3, Ordenacao.PRECO);
+        List<Produto> segundaPorPreco = driver.findPage(8L, 3, Ordenacao.PRECO);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), primeiraPorId.stream().map(Produto::getId).toList());
+        assertEquals(List.of(5L, 6L, 7L, 8L), segundaPorId.stream().map(Produto::getId).toList());
+        assertEquals(List.of(10L, 9L, 8L), primeiraPorPreco.stream().map(Produto::getId).toList());
+        assertEquals(List.of(7L, 6L, 5L), segundaPorPreco.stream().map(Produto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Paginar por preco reflete o preco atualizado")
+    void paginarPorPrecoAposUpdate() {
+        driver.save(produto);
+        driver.save(produto.toBuilder().id(2L).codigoBarra("7899137500117").preco(50).build());
+
+        driver.update(produto.toBuilder().preco(10).build());
+
+        assertEquals(List.of(1L, 2L), driver.findPage(null, 10, Ordenacao.PRECO).stream().map(Produto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Paginas grandes intercalam os segmentos do indice na ordem por preco")
+    void paginarPaginasGrandesPorPreco() {
+        Random aleatorio = new Random(42);
+        List<Produto> salvos = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            salvos.add(driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id)
+                    .preco(1 + aleatorio.nextInt(200)).build()));
+        }
+        Comparator<Produto> porPreco = Comparator.comparingDouble(Produto::getPreco).thenComparing(Produto::getId);
+        List<Long> esperados = ids(salvos.stream().sorted(porPreco).toList());
+
+        List<Long> paginados = new ArrayList<>();
+        Long cursor = null;
+        List<Produto> pagina;
+        while (!(pagina = driver.findPage(cursor, 700, Ordenacao.PRECO)).isEmpty()) {
+            paginados.addAll(ids(pagina));
+            cursor = pagina.get(pagina.size() - 1).getId();
+        }
+
+        assertEquals(esperados, paginados);
+        assertEquals(esperados.reversed().subList(0, 1500), ids(driver.findMaisCaros(1500)));
+        assertEquals(LongStream.rangeClosed(1, 3000).boxed().toList(), ids(driver.findPage(null, 5000, Ordenacao.ID)));
+    }
+
+    @Test
+    @DisplayName("Alteracoes de preco concorrentes mantem o indice por preco ordenado e completo")
+    void alteracoesDePrecoConcorrentes() throws Exception {
+        int threads = 8;
+        int porThread = 250;
+        for (long id = 1; id <= threads * porThread; id++) {
+            driver.save(produto.toBuilder().id(id).codigoBarra("cb-" + id).preco(1 + id % 300).build());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long primeiro = (long) t * porThread + 1;
+                Random aleatorio = new Random(t);
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < 4000; i++) {
+                        long id = primeiro + aleatorio.nextInt(porThread);
+                        driver.update(driver.find(id).toBuilder().preco(1 + aleatorio.nextInt(300)).build());
+                        if (i % 100 == 0) {
+                            driver.findPage(null, 50, Ordenacao.PRECO);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Comparator<Produto> porPreco = Comparator.comparingDouble(Produto::getPreco).thenComparing(Produto::getId);
+        List<Long> esperados = ids(driver.findAll().stream().sorted(porPreco).toList());
+        assertEquals(threads * porThread, esperados.size());
+        assertEquals(esperados, ids(driver.findPage(null, threads * porThread + 1, Ordenacao.PRECO)));
+    }
+
+    private static List<Long> ids(List<Produto> produtos) {
+        return produtos.stream().map(Produto::getId).toList();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ufcg.psoft.mercadofacil.service;
+
+import com.ufcg.psoft.mercadofacil.model.Cliente;
+import com.ufcg.psoft.mercadofacil.repository.ClienteRepository;
+import com.ufcg.psoft.mercadofacil.validator.CpfValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Testes para a importacao de Clientes")
+class ClienteCadastroServiceTest {
+
+    ClienteCadastroImplService driver;
+
+    ClienteRepository<Cliente, Long> clienteRepository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        clienteRepository = Mockito.mock(ClienteRepository.class);
+        driver = new ClienteCadastroImplService();
+        driver.clienteRepository = clienteRepository;
+        driver.cpfValidator = new CpfValidator();
+    }
+
+    @Test
+    @DisplayName("Quando a gravacao de um lote falha a importacao devolve o que ja foi gravado")
+    void importarComFalhaNoLote() {
+        //Arrange
+        int lotesValidos = 2;
+        StringBuilder csv = new StringBuilder("nome,cpf\n");
+        for (int i = 0; i < lotesValidos * ClienteCadastroImplService.TAMANHO_LOTE_IMPORTACAO; i++) {
+            csv.append("Cliente,52998224725\n");
+        }
+        csv.append("Falha,11144477735\n");
+        AtomicInteger gravados = new AtomicInteger();
+        Mockito.when(clienteRepository.saveAll(Mockito.anyList())).thenAnswer(chamada -> {
+            List<Cliente> lote = chamada.getArgument(0);
+            if (lote.get(lote.size() - 1).getCpf() == 11144477735L) {
+                throw new RuntimeException("Falha ao gravar!");
+            }
+            gravados.addAndGet(lote.size());
+            return lote;
+        });
+
+        //Act
+        ImportacaoInterrompidaException erro = assertThrows(ImportacaoInterrompidaException.class,
+                () -> driver.importar(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                        FormatoImportacao.CSV));
+
+        /* O ForkJoinPool pode embrulhar a excecao do lote ao repassa-la para outra thread. */
+        Throwable causa = erro.getCause();
+        while (causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+
+        //Assert
+        assertEquals("Falha ao gravar!", causa.getMessage());
+        assertEquals(gravados.get(), erro.getParcial().getImportados());
+        assertEquals(lotesValidos * ClienteCadastroImplService.TAMANHO_LOTE_IMPORTACAO,
+                erro.getParcial().getImportados());
+    }
+}
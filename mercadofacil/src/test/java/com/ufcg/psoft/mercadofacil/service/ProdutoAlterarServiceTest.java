@@ -1,7 +1,12 @@
 package com.ufcg.psoft.mercadofacil.service;
 
+import com.ufcg.psoft.mercadofacil.model.Lote;
 import com.ufcg.psoft.mercadofacil.model.Produto;
+import com.ufcg.psoft.mercadofacil.model.ResultadoAlteracao;
+import com.ufcg.psoft.mercadofacil.repository.LoteRepository;
 import com.ufcg.psoft.mercadofacil.repository.ProdutoRepository;
+import com.ufcg.psoft.mercadofacil.repository.ResultadoAtualizacao;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,7 +16,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
@@ -22,6 +35,8 @@ public class ProdutoAlterarServiceTest {
     ProdutoAlterarService driver;
     @MockBean
     ProdutoRepository<Produto, Long> produtoRepository;
+    @Autowired
+    LoteRepository<Lote, Long> loteRepository;
     Produto produto;
 
     @BeforeEach
@@ -47,6 +62,17 @@ public class ProdutoAlterarServiceTest {
                 );
     }
 
+    @AfterEach
+    void tearDown() {
+        loteRepository.deleteAll();
+    }
+
+    /* clearInvocations recebe varargs do tipo generico do mock; a supressao fica so aqui. */
+    @SuppressWarnings("unchecked")
+    private void esquecerChamadas() {
+        Mockito.clearInvocations(produtoRepository);
+    }
+
     @Test
     @DisplayName("Quando altero o nome do produto com dados válidos")
     void alterarNomeDoProduto() {
@@ -178,7 +204,88 @@ public class ProdutoAlterarServiceTest {
         //Assert
         assertEquals("Codigo de barra com empresa errada!", thrown.getMessage());
     }
-}
 
+    @Test
+    @DisplayName("Quando altero um lote de produtos com validos e invalidos")
+    void alterarTodos() {
+        //Arrange
+        Produto invalido = produto.toBuilder().id(11L).preco(0.0).build();
+        Produto desatualizado = produto.toBuilder().id(12L).versao(3L).build();
+        esquecerChamadas();
+        Mockito.when(produtoRepository.updateAll(List.of(produto, desatualizado)))
+                .thenReturn(List.of(ResultadoAtualizacao.sucesso(produto),
+                        ResultadoAtualizacao.falha(ResultadoAtualizacao.Falha.VERSAO_DESATUALIZADA)));
+        //Act
+        List<ResultadoAlteracao> resultado = driver.alterarTodos(List.of(invalido, produto, desatualizado));
+        //Assert
+        assertFalse(resultado.get(0).isSucesso());
+        assertEquals("Preco invalido!", resultado.get(0).getErro());
+        assertTrue(resultado.get(1).isSucesso());
+        assertEquals(10L, resultado.get(1).getProduto().getId());
+        assertFalse(resultado.get(2).isSucesso());
+        assertEquals("Versao desatualizada!", resultado.get(2).getErro());
+        Mockito.verify(produtoRepository, Mockito.times(1)).updateAll(List.of(produto, desatualizado));
+        Mockito.verify(produtoRepository, Mockito.never()).find(Mockito.anyLong());
+        Mockito.verify(produtoRepository, Mockito.never()).find(Mockito.<Long>any());
+    }
+
+    @Test
+    @DisplayName("Quando altero o preco e o fabricante de um produto com lotes")
+    void alterarProdutoComLotes() {
+        //Arrange
+        loteRepository.save(Lote.builder().id(1L).numeroDeItens(10).produto(produto).build());
+        produto.setPreco(500.00);
+        //Act
+        Produto resultado = driver.alterar(produto);
+        //Assert
+        assertEquals(resultado, loteRepository.find(1L).getProduto());
+        assertEquals(5000.00, loteRepository.totalEstoquePorProduto(10L).getValor(), 0.001);
+        assertEquals(10, loteRepository.totalEstoquePorFabricante("Nome Fabricante Alterado").getItens());
+        assertEquals(0, loteRepository.totalEstoquePorFabricante("Empresa Dez").getItens());
+    }
 
+    @Test
+    @DisplayName("Quando altero um produto com lotes pelo caminho assincrono")
+    void alterarAssincronoComLotes() throws Exception {
+        //Arrange
+        loteRepository.save(Lote.builder().id(1L).numeroDeItens(10).produto(produto.toBuilder().build()).build());
+        produto.setPreco(500.00);
+        Produto gravado = produto.toBuilder().versao(2L).build();
+        CompletableFuture<Produto> gravacao = new CompletableFuture<>();
+        esquecerChamadas();
+        Mockito.when(produtoRepository.updateAsync(produto)).thenReturn(gravacao);
+        //Act
+        CompletableFuture<Produto> alteracao = driver.alterarAssincrono(produto);
+        double precoAntesDoDisco = loteRepository.find(1L).getProduto().getPreco();
+        gravacao.complete(gravado);
+        Produto resultado = alteracao.get(5, TimeUnit.SECONDS);
+        //Assert
+        assertEquals(450.00, precoAntesDoDisco);
+        assertEquals(gravado, resultado);
+        assertEquals(gravado, loteRepository.find(1L).getProduto());
+        assertEquals(5000.00, loteRepository.totalEstoquePorProduto(10L).getValor(), 0.001);
+        Mockito.verify(produtoRepository, Mockito.never()).find(Mockito.anyLong());
+        Mockito.verify(produtoRepository, Mockito.never()).find(Mockito.<Long>any());
+    }
 
+    @Test
+    @DisplayName("Quando a gravacao assincrona falha os lotes nao sao alterados")
+    void alterarAssincronoComFalhaNaGravacao() {
+        //Arrange
+        loteRepository.save(Lote.builder().id(1L).numeroDeItens(10).produto(produto.toBuilder().build()).build());
+        produto.setPreco(500.00);
+        CompletableFuture<Produto> gravacao = new CompletableFuture<>();
+        Mockito.when(produtoRepository.updateAsync(produto)).thenReturn(gravacao);
+        //Act
+        CompletableFuture<Produto> alteracao = driver.alterarAssincrono(produto);
+        gravacao.completeExceptionally(new RuntimeException("Log de escrita fechado!"));
+        ExecutionException thrown = assertThrows(
+                ExecutionException.class,
+                () -> alteracao.get(5, TimeUnit.SECONDS)
+        );
+        //Assert
+        assertInstanceOf(RuntimeException.class, thrown.getCause());
+        assertEquals("Log de escrita fechado!", thrown.getCause().getMessage());
+        assertEquals(450.00, loteRepository.find(1L).getProduto().getPreco());
+    }
+}
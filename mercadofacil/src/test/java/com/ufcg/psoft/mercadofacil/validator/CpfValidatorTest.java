@@ -0,0 +1,66 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Testes do validador de CPF")
+class CpfValidatorTest {
+
+    CpfValidator driver = new CpfValidator();
+
+    @Test
+    @DisplayName("Quando o CPF é valido, com ou sem pontuacao")
+    void cpfValido() {
+        assertEquals(CpfResultado.VALIDO, driver.validar("52998224725"));
+        assertEquals(CpfResultado.VALIDO, driver.validar("529.982.247-25"));
+        assertEquals(CpfResultado.VALIDO, driver.validar("01234567890"));
+        assertEquals(CpfResultado.VALIDO, driver.validar(52998224725L));
+        assertEquals(CpfResultado.VALIDO, driver.validar(1234567890L));
+        assertEquals(CpfResultado.VALIDO, driver.validar(191L));
+    }
+
+    @Test
+    @DisplayName("Quando o CPF nao tem 11 digitos")
+    void tamanhoInvalido() {
+        assertEquals(CpfResultado.TAMANHO_INVALIDO, driver.validar("5299822472"));
+        assertEquals(CpfResultado.TAMANHO_INVALIDO, driver.validar("529.982.247-2"));
+        assertEquals(CpfResultado.TAMANHO_INVALIDO, driver.validar(null));
+        assertEquals(CpfResultado.TAMANHO_INVALIDO, driver.validar(100_000_000_000L));
+        assertEquals(CpfResultado.TAMANHO_INVALIDO, driver.validar(-1L));
+    }
+
+    @Test
+    @DisplayName("Quando o CPF tem caracteres que nao sao numeros ou pontuacao fora do lugar")
+    void caractereInvalido() {
+        assertEquals(CpfResultado.CARACTERE_INVALIDO, driver.validar("5299822472a"));
+        assertEquals(CpfResultado.CARACTERE_INVALIDO, driver.validar("529-982.247.25"));
+        assertEquals(CpfResultado.CARACTERE_INVALIDO, driver.validar("52998224725..."));
+    }
+
+    @Test
+    @DisplayName("Quando o CPF tem todos os digitos iguais")
+    void digitosRepetidos() {
+        assertEquals(CpfResultado.DIGITOS_REPETIDOS, driver.validar("11111111111"));
+        assertEquals(CpfResultado.DIGITOS_REPETIDOS, driver.validar("000.000.000-00"));
+        assertEquals(CpfResultado.DIGITOS_REPETIDOS, driver.validar(0L));
+    }
+
+    @Test
+    @DisplayName("Quando um dos digitos verificadores esta errado")
+    void digitoVerificadorInvalido() {
+        assertEquals(CpfResultado.DIGITO_VERIFICADOR_INVALIDO, driver.validar("52998224715"));
+        assertEquals(CpfResultado.DIGITO_VERIFICADOR_INVALIDO, driver.validar("529.982.247-26"));
+        assertEquals(CpfResultado.DIGITO_VERIFICADOR_INVALIDO, driver.validar(52998224726L));
+    }
+
+    @Test
+    @DisplayName("O numero do CPF ignora a pontuacao e rejeita outros formatos")
+    void numero() {
+        assertEquals(52998224725L, CpfValidator.numero("529.982.247-25"));
+        assertEquals(1234567890L, CpfValidator.numero("01234567890"));
+        assertEquals(-1, CpfValidator.numero("5299822472a"));
+        assertEquals(-1, CpfValidator.numero("5299"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.ufcg.psoft.mercadofacil.validator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Testes do validador de codigo de barras EAN-13")
+class Ean13ValidatorTest {
+
+    Ean13Validator driver = new Ean13Validator("78991375", 3);
+
+    @Test
+    @DisplayName("Quando o codigo de barras é valido")
+    void codigoValido() {
+        assertEquals(Ean13Resultado.VALIDO, driver.validar("7899137500100"));
+        assertEquals(Ean13Resultado.VALIDO, driver.validar("7899137500117"));
+    }
+
+    @Test
+    @DisplayName("Quando o codigo de barras nao tem 13 digitos")
+    void tamanhoInvalido() {
+        assertEquals(Ean13Resultado.TAMANHO_INVALIDO, driver.validar("789913750010"));
+        assertEquals(Ean13Resultado.TAMANHO_INVALIDO, driver.validar(null));
+    }
+
+    @Test
+    @DisplayName("Quando o codigo de barras tem caracteres que nao sao numeros")
+    void caractereInvalido() {
+        assertEquals(Ean13Resultado.CARACTERE_INVALIDO, driver.validar("78991375001a0"));
+        assertEquals(Ean13Resultado.CARACTERE_INVALIDO, driver.validar("789913750010x"));
+    }
+
+    @Test
+    @DisplayName("Quando o prefixo de pais ou de empresa esta errado")
+    void prefixoInvalido() {
+        assertEquals(Ean13Resultado.PAIS_INVALIDO, driver.validar("9879137500104"));
+        assertEquals(Ean13Resultado.EMPRESA_INVALIDA, driver.validar("7895137500104"));
+    }
+
+    @Test
+    @DisplayName("Quando o digito verificador esta errado")
+    void digitoVerificadorInvalido() {
+        assertEquals(Ean13Resultado.DIGITO_VERIFICADOR_INVALIDO, driver.validar("7899137500104"));
+    }
+
+    @Test
+    @DisplayName("Quando o prefixo configurado é outro")
+    void prefixoConfigurado() {
+        Ean13Validator outro = new Ean13Validator("789", 3);
+
+        assertEquals(Ean13Resultado.VALIDO, outro.validar("7891000100103"));
+        assertEquals(Ean13Resultado.EMPRESA_INVALIDA, driver.validar("7891000100103"));
+    }
+
+    @Test
+    @DisplayName("Quando o prefixo configurado nao é numerico")
+    void prefixoConfiguradoInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> new Ean13Validator("78a", 3));
+    }
+}